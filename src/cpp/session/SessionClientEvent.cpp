@@ -195,6 +195,7 @@ const int kComputeThemeColors = 177;
 const int kRequestDocumentClose = 178;
 const int kRequestDocumentCloseCompleted = 179;
 const int kExecuteAppCommand = 180;
+const int kGlobalEnvironmentChanged = 181;
 }
 
 void ClientEvent::init(int type, const json::Value& data)
@@ -540,6 +541,8 @@ std::string ClientEvent::typeName() const
          return "request_document_close_completed";
       case client_events::kExecuteAppCommand:
          return "execute_app_command";
+      case client_events::kGlobalEnvironmentChanged:
+         return "global_environment_changed";
       default:
          LOG_WARNING_MESSAGE("unexpected event type: " + 
                              safe_convert::numberToString(type_));
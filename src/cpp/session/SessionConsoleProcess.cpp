@@ -15,6 +15,8 @@
 
 #include <sstream>
 
+#include <core/Thread.hpp>
+
 #include <session/SessionConsoleProcess.hpp>
 #include <session/projects/SessionProjects.hpp>
 
@@ -36,6 +38,26 @@ ConsoleProcessSocket s_terminalSocket;
 // Posix-only, use is gated via getTrackEnv() always being false on Win32.
 const std::string kEnvCommand = "/usr/bin/env";
 
+// Most websocket output held for a paused client; beyond this, held output
+// is dropped and the client is resynced from the saved buffer on resume.
+const std::size_t kMaxPausedOutput = 1024 * 1024;
+
+// Handles of processes whose saved buffer is to be sent over the websocket.
+// Requests arrive on the websocket thread, but the buffer is written on the
+// main thread, so they're queued and sent from there.
+core::thread::ThreadsafeQueue<std::string> s_bufferSends;
+
+void sendQueuedBuffers()
+{
+   std::string handle;
+   while (s_bufferSends.deque(&handle))
+   {
+      ConsoleProcessPtr proc = findProcByHandle(handle);
+      if (proc)
+         proc->sendSavedBuffer();
+   }
+}
+
 } // anonymous namespace
 
 // create process options for a terminal
@@ -539,7 +561,29 @@ void ConsoleProcess::enqueOutputEvent(const std::string &output)
 
    if (procInfo_->getChannelMode() == Websocket)
    {
-      s_terminalSocket.sendText(procInfo_->getHandle(), output);
+      // sent under the lock so that output held while paused always goes
+      // out before anything newer
+      LOCK_MUTEX(outputFlowMutex_)
+      {
+         // while the client is catching up, hold on to its output; if
+         // there's too much, it's resynced from the saved buffer instead
+         // (which already has this output)
+         if (outputPaused_ || pausedOverflow_)
+         {
+            if (!pausedOverflow_ &&
+                pausedOutput_.size() + output.size() > kMaxPausedOutput)
+            {
+               pausedOverflow_ = true;
+               pausedOutput_.clear();
+            }
+            if (!pausedOverflow_)
+               pausedOutput_.append(output);
+            return;
+         }
+
+         s_terminalSocket.sendText(procInfo_->getHandle(), output);
+      }
+      END_LOCK_MUTEX
       return;
    }
 
@@ -905,6 +949,8 @@ ConsoleProcessSocketConnectionCallbacks ConsoleProcess::createConsoleProcessSock
 {
    ConsoleProcessSocketConnectionCallbacks cb;
    cb.onReceivedInput = boost::bind(&ConsoleProcess::onReceivedInput, ConsoleProcess::shared_from_this(), _1);
+   cb.onOutputFlowControl = boost::bind(&ConsoleProcess::onOutputFlowControl, ConsoleProcess::shared_from_this(), _1);
+   cb.onBufferRequest = boost::bind(&ConsoleProcess::onBufferRequest, ConsoleProcess::shared_from_this());
    cb.onConnectionOpened = boost::bind(&ConsoleProcess::onConnectionOpened, ConsoleProcess::shared_from_this());
    cb.onConnectionClosed = boost::bind(&ConsoleProcess::onConnectionClosed, ConsoleProcess::shared_from_this());
    return cb;
@@ -927,10 +973,70 @@ void ConsoleProcess::onReceivedInput(const std::string& input)
    END_LOCK_MUTEX
 }
 
+// client asked for websocket output to be paused or resumed; called on
+// different thread
+void ConsoleProcess::onOutputFlowControl(bool pause)
+{
+   LOCK_MUTEX(outputFlowMutex_)
+   {
+      outputPaused_ = pause;
+      if (pause)
+         return;
+
+      // output stays held until the saved buffer has been sent
+      if (pausedOverflow_)
+      {
+         s_bufferSends.enque(procInfo_->getHandle());
+         return;
+      }
+
+      if (!pausedOutput_.empty())
+         s_terminalSocket.sendText(procInfo_->getHandle(), pausedOutput_);
+      pausedOutput_.clear();
+   }
+   END_LOCK_MUTEX
+}
+
+// send the saved buffer over the websocket, releasing output held since
+// it overflowed (the buffer includes that output); main thread only
+void ConsoleProcess::sendSavedBuffer()
+{
+   LOCK_MUTEX(outputFlowMutex_)
+   {
+      Error error = s_terminalSocket.sendBuffer(procInfo_->getHandle(), getBuffer());
+      if (error)
+         LOG_ERROR(error);
+
+      if (pausedOverflow_ && !outputPaused_)
+      {
+         pausedOverflow_ = false;
+         pausedOutput_.clear();
+      }
+   }
+   END_LOCK_MUTEX
+}
+
+// client asked for the saved buffer, so it can be sent in one message
+// rather than through repeated process_get_buffer_chunk RPCs; called on
+// different thread, so the buffer is read and sent from the main thread
+void ConsoleProcess::onBufferRequest()
+{
+   s_bufferSends.enque(procInfo_->getHandle());
+}
+
 // websocket connection closed; called on different thread
 void ConsoleProcess::onConnectionClosed()
 {
    s_terminalSocket.stopListening(handle());
+
+   // a reconnecting client reloads the buffer, so needn't see held output
+   LOCK_MUTEX(outputFlowMutex_)
+   {
+      outputPaused_ = false;
+      pausedOverflow_ = false;
+      pausedOutput_.clear();
+   }
+   END_LOCK_MUTEX
 }
 
 // websocket connection opened; called on different thread
@@ -995,6 +1101,9 @@ core::json::Array processesAsJson(SerializationMode serialMode)
 
 Error initialize()
 {
+   module_context::events().onBackgroundProcessing.connect(
+            boost::bind(sendQueuedBuffers));
+
    return internalInitialize();
 }
 
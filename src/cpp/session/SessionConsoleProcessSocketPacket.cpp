@@ -21,6 +21,10 @@ namespace console_process {
 
 const std::string ConsoleProcessSocketPacket::kKeepAlivePrefix = "b";
 const std::string ConsoleProcessSocketPacket::kTextPrefix = "a";
+const std::string ConsoleProcessSocketPacket::kPauseOutputPrefix = "c";
+const std::string ConsoleProcessSocketPacket::kResumeOutputPrefix = "d";
+const std::string ConsoleProcessSocketPacket::kBufferRequestPrefix = "e";
+const std::string ConsoleProcessSocketPacket::kBufferPrefix = "f";
 
 /* static */
 std::string ConsoleProcessSocketPacket::textPacket(const std::string& text)
@@ -34,12 +38,36 @@ std::string ConsoleProcessSocketPacket::keepAlivePacket()
    return kKeepAlivePrefix;
 }
 
+/* static */
+std::string ConsoleProcessSocketPacket::bufferPacket(const std::string& buffer)
+{
+   return kBufferPrefix + buffer;
+}
+
 /* static */
 bool ConsoleProcessSocketPacket::isKeepAlive(const std::string& text)
 {
    return text == kKeepAlivePrefix;
 }
 
+/* static */
+bool ConsoleProcessSocketPacket::isPauseOutput(const std::string& text)
+{
+   return text == kPauseOutputPrefix;
+}
+
+/* static */
+bool ConsoleProcessSocketPacket::isResumeOutput(const std::string& text)
+{
+   return text == kResumeOutputPrefix;
+}
+
+/* static */
+bool ConsoleProcessSocketPacket::isBufferRequest(const std::string& text)
+{
+   return text == kBufferRequestPrefix;
+}
+
 /* static */
 std::string ConsoleProcessSocketPacket::getMessage(const std::string& text)
 {
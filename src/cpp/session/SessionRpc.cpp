@@ -14,6 +14,9 @@
  */
 
 #include <string>
+#include <vector>
+
+#include <boost/make_shared.hpp>
 
 #include "SessionRpc.hpp"
 #include "SessionHttpMethods.hpp"
@@ -38,6 +41,9 @@ namespace {
 
 // json rpc methods
 core::json::JsonRpcAsyncMethods* s_pJsonRpcMethods = nullptr;
+
+// method used by the client to send several calls in one request
+const char * const kMultiCall = "multi_call";
    
 void endHandleRpcRequestDirect(boost::shared_ptr<HttpConnection> ptrConnection,
                          boost::posix_time::ptime executeStartTime,
@@ -103,6 +109,182 @@ void endHandleRpcRequestIndirect(
    module_context::enqueClientEvent(evt);
 }
 
+// state shared by the calls within a multi_call request
+struct MultiCallState
+{
+   explicit MultiCallState(std::size_t count)
+      : responses(count), pending(count)
+   {
+   }
+
+   std::vector<json::JsonRpcResponse> responses;
+   std::size_t pending;
+};
+
+void endHandleMultiCall(boost::shared_ptr<HttpConnection> ptrConnection,
+                        boost::posix_time::ptime executeStartTime,
+                        boost::shared_ptr<MultiCallState> pState,
+                        std::size_t index,
+                        const core::Error& executeError,
+                        json::JsonRpcResponse* pJsonRpcResponse)
+{
+   // record the response for this call
+   json::JsonRpcResponse& response = pState->responses[index];
+   if (executeError)
+      response.setError(executeError);
+   else if (pJsonRpcResponse)
+      response = *pJsonRpcResponse;
+
+   // wait until every call in the batch has responded
+   if (--pState->pending > 0)
+      return;
+
+   json::Array results;
+   bool detectChanges = false;
+   bool afterResponse = false;
+   for (json::JsonRpcResponse& callResponse : pState->responses)
+   {
+      results.push_back(callResponse.getRawResponse());
+      detectChanges = detectChanges || !callResponse.suppressDetectChanges();
+      afterResponse = afterResponse || callResponse.hasAfterResponse();
+   }
+
+   json::JsonRpcResponse multiCallResponse;
+   multiCallResponse.setResult(results);
+
+   // allow modules to detect changes after rpc calls
+   if (detectChanges)
+   {
+      module_context::events().onDetectChanges(
+            module_context::ChangeSourceRPC);
+   }
+
+   // are there (or will there likely be) events pending?
+   // (if not then notify the client)
+   if (!clientEventQueue().eventAddedSince(executeStartTime) && !afterResponse)
+      multiCallResponse.setField(kEventsPending, "false");
+
+   ptrConnection->sendJsonRpcResponse(multiCallResponse);
+
+   // run after response functions (then detect changes again)
+   if (afterResponse)
+   {
+      for (json::JsonRpcResponse& callResponse : pState->responses)
+      {
+         if (callResponse.hasAfterResponse())
+            callResponse.runAfterResponse();
+      }
+
+      if (detectChanges)
+      {
+         module_context::events().onDetectChanges(
+               module_context::ChangeSourceRPC);
+      }
+   }
+}
+
+// execute a batch of rpc calls sent by the client as a single request,
+// responding with an array containing the response to each call (in order)
+void handleMultiCall(const json::JsonRpcRequest& request,
+                     boost::shared_ptr<HttpConnection> ptrConnection,
+                     boost::posix_time::ptime executeStartTime)
+{
+   json::Array calls;
+   Error error = json::readParams(request.params, &calls);
+   if (error)
+   {
+      endHandleRpcRequestDirect(ptrConnection, executeStartTime, error, nullptr);
+      return;
+   }
+
+   if (calls.size() == 0)
+   {
+      json::JsonRpcResponse response;
+      response.setResult(json::Array());
+      endHandleRpcRequestDirect(ptrConnection, executeStartTime, Success(), &response);
+      return;
+   }
+
+   boost::shared_ptr<MultiCallState> pState =
+         boost::make_shared<MultiCallState>(calls.size());
+   for (std::size_t i = 0, n = calls.size(); i < n; ++i)
+   {
+      // each call inherits the source window, client id, etc. of the batch
+      json::JsonRpcRequest callRequest = request;
+      callRequest.clear();
+
+      json::Value callValue = calls[i];
+      if (!json::isType<json::Object>(callValue))
+      {
+         endHandleMultiCall(ptrConnection, executeStartTime, pState, i,
+                            Error(json::errc::InvalidRequest, ERROR_LOCATION),
+                            nullptr);
+         continue;
+      }
+
+      json::Object call = callValue.get_obj();
+      error = json::readObject(call, "method", &callRequest.method);
+      if (error)
+      {
+         endHandleMultiCall(ptrConnection, executeStartTime, pState, i,
+                            error, nullptr);
+         continue;
+      }
+
+      json::Object::iterator it = call.find("params");
+      if (it != call.end() && json::isType<json::Array>((*it).value()))
+         callRequest.params = (*it).value().get_array();
+      it = call.find("kwparams");
+      if (it != call.end() && json::isType<json::Object>((*it).value()))
+         callRequest.kwparams = (*it).value().get_obj();
+
+      auto methodIt = s_pJsonRpcMethods->find(callRequest.method);
+      if (methodIt == s_pJsonRpcMethods->end())
+      {
+         Error executeError = Error(json::errc::MethodNotFound, ERROR_LOCATION);
+         executeError.addProperty("method", callRequest.method);
+         LOG_ERROR(executeError);
+
+         endHandleMultiCall(ptrConnection, executeStartTime, pState, i,
+                            executeError, nullptr);
+         continue;
+      }
+
+      std::pair<bool, json::JsonRpcAsyncFunction> reg = methodIt->second;
+      json::JsonRpcAsyncFunction handlerFunction = reg.second;
+
+      if (reg.first)
+      {
+         // direct return
+         handlerFunction(callRequest,
+                         boost::bind(endHandleMultiCall,
+                                     ptrConnection,
+                                     executeStartTime,
+                                     pState,
+                                     i,
+                                     _1,
+                                     _2));
+      }
+      else
+      {
+         // indirect return (asyncHandle style); the client copes with the
+         // completion event arriving before the handle is returned to it
+         std::string handle = core::system::generateUuid(true);
+         json::JsonRpcResponse response;
+         response.setAsyncHandle(handle);
+
+         handlerFunction(callRequest,
+                         boost::bind(endHandleRpcRequestIndirect,
+                                     handle,
+                                     _1,
+                                     _2));
+
+         endHandleMultiCall(ptrConnection, executeStartTime, pState, i,
+                            Success(), &response);
+      }
+   }
+}
+
 void saveJsonResponse(const core::Error& error, core::json::JsonRpcResponse *pSrc,
                       core::Error *pError,      core::json::JsonRpcResponse *pDest)
 {
@@ -261,6 +443,13 @@ void handleRpcRequest(const core::json::JsonRpcRequest& request,
    using namespace boost::posix_time; 
    ptime executeStartTime = microsec_clock::universal_time();
    
+   // batched calls from the client
+   if (request.method == kMultiCall)
+   {
+      handleMultiCall(request, ptrConnection, executeStartTime);
+      return;
+   }
+
    // execute the method
    auto it = s_pJsonRpcMethods->find(request.method);
    if (it != s_pJsonRpcMethods->end())
@@ -199,6 +199,9 @@ public:
    static ConsoleProcessPtr fromJson(const core::json::Object& obj);
 
    void onReceivedInput(const std::string& input);
+   void onOutputFlowControl(bool pause);
+   void onBufferRequest();
+   void sendSavedBuffer();
 
    void setZombie();
    static bool useWebsockets();
@@ -260,6 +263,15 @@ private:
    int lastInputSequence_ = kIgnoreSequence;
    boost::mutex inputOutputQueueMutex_;
 
+   // Websocket output held back while the client has asked for output to
+   // be paused; guarded by outputFlowMutex_ (flow control requests arrive on
+   // the websocket thread). If too much is held, it's dropped and the client
+   // is sent the saved buffer instead once it resumes.
+   bool outputPaused_ = false;
+   bool pausedOverflow_ = false;
+   std::string pausedOutput_;
+   boost::mutex outputFlowMutex_;
+
    boost::function<bool(const std::string&, Input*)> onPrompt_;
    RSTUDIO_BOOST_SIGNAL<void(int)> onExit_;
 
@@ -58,6 +58,14 @@ struct ConsoleProcessSocketConnectionCallbacks
    // invoked when input arrives on the socket
    boost::function<void (const std::string& input)> onReceivedInput;
 
+   // invoked when the client asks for output to be paused (true) because
+   // it is falling behind, or resumed (false) once it has caught up
+   boost::function<void (bool pause)> onOutputFlowControl;
+
+   // invoked when the client asks for the saved buffer (e.g. when reloading
+   // the terminal after a browser refresh)
+   boost::function<void()> onBufferRequest;
+
    // invoked when connection opens
    boost::function<void()> onConnectionOpened;
 
@@ -105,6 +113,10 @@ public:
    core::Error sendText(const std::string& terminalHandle,
                         const std::string& message);
 
+   // send saved buffer packet to client
+   core::Error sendBuffer(const std::string& terminalHandle,
+                          const std::string& buffer);
+
    // send keepalive response to client; we're not using low-level WebSocket
    // ping/pong as that isn't accessible from JavaScript apps; so we're just doing a
    // simple message exchange to keep proxies from killing an idle terminal
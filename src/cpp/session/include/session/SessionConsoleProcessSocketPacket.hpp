@@ -29,8 +29,13 @@ namespace console_process {
  * First character is a method indicator, as follows:
  *    "a" = send text, e.g. "aHello"
  *    "b" = ping/pong, e.g. "b"
+ *    "c" = pause output (client to server), e.g. "c"
+ *    "d" = resume output (client to server), e.g. "d"
+ *    "e" = request saved buffer (client to server), e.g. "e"
+ *    "f" = saved buffer (server to client), e.g. "fHello"
  *
- * Only the "send text" method has a payload (everything after the "a").
+ * Only the "send text" and "saved buffer" methods have a payload (everything
+ * after the first character).
  *
  * See TerminalSocketPacket in Java code for client-side of this.
  */
@@ -43,15 +48,31 @@ public:
    // create keepalive packet
    static std::string keepAlivePacket();
 
+   // create packet for saved buffer
+   static std::string bufferPacket(const std::string& buffer);
+
    // is this packet a keep-alive packet?
    static bool isKeepAlive(const std::string& text);
 
+   // is this packet a request to pause output?
+   static bool isPauseOutput(const std::string& text);
+
+   // is this packet a request to resume output?
+   static bool isResumeOutput(const std::string& text);
+
+   // is this packet a request for the saved buffer?
+   static bool isBufferRequest(const std::string& text);
+
    // extract text from packet (empty string if unable to comply)
    static std::string getMessage(const std::string& text);
 
 private:
    static const std::string kKeepAlivePrefix;
    static const std::string kTextPrefix;
+   static const std::string kPauseOutputPrefix;
+   static const std::string kResumeOutputPrefix;
+   static const std::string kBufferRequestPrefix;
+   static const std::string kBufferPrefix;
 };
 
 } // namespace console_process
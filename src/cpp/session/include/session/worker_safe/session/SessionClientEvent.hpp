@@ -196,6 +196,7 @@ extern const int kComputeThemeColors;
 extern const int kRequestDocumentClose;
 extern const int kRequestDocumentCloseCompleted;
 extern const int kExecuteAppCommand;
+extern const int kGlobalEnvironmentChanged;
 }
    
 class ClientEvent
@@ -474,6 +474,16 @@ public:
       return boost::shared_ptr<core::r_util::RSourceIndex>();
    }
 
+   // is this a source file in the index (i.e. one searchFiles would find)?
+   bool hasSourceFile(const FilePath& filePath)
+   {
+      Entry entry(core::toFileInfo(filePath));
+      EntryTree::iterator it = pEntries_->find(entry);
+      return pEntries_->is_valid(it) &&
+             it != pEntries_->end() &&
+             isSourceFile((*it).fileInfo);
+   }
+
    template <typename ForwardIterator>
    void enqueFiles(ForwardIterator begin, ForwardIterator end)
    {
@@ -1557,6 +1567,53 @@ json::Array toJsonArray(
 
 
 
+json::Object codeSearchResultsAsJson(const std::vector<std::string>& names,
+                                     const std::vector<std::string>& paths,
+                                     const std::vector<SourceItem>& srcItems,
+                                     bool moreAvailable)
+{
+   json::Object result;
+
+   json::Object files;
+   files["filename"] = json::toJsonArray(names);
+   files["path"] = json::toJsonArray(paths);
+   result["file_items"] = files;
+
+   // return rpc array list (wire efficiency)
+   json::Object src;
+   src["type"] = toJsonArray<int>(srcItems, &SourceItem::type);
+   src["name"] = toJsonArray<std::string>(srcItems, &SourceItem::name);
+   src["parent_name"] = toJsonArray<std::string>(srcItems, &SourceItem::parentName);
+   src["extra_info"] = toJsonArray<std::string>(srcItems, &SourceItem::extraInfo);
+   src["context"] = toJsonArray<std::string>(srcItems, &SourceItem::context);
+   src["line"] = toJsonArray<int>(srcItems, &SourceItem::line);
+   src["column"] = toJsonArray<int>(srcItems, &SourceItem::column);
+   result["source_items"] = src;
+
+   // set more available bit
+   result["more_available"] = moreAvailable;
+
+   return result;
+}
+
+// maximum number of files (and of source items) sent to the client for it
+// to search locally; the client searches larger projects on the server
+const std::size_t kMaxIndexItems = 200000;
+
+bool isCppSourceFile(const FilePath& filePath)
+{
+   std::string ext = filePath.extensionLowerCase();
+   return ext == ".c" || ext == ".cc" || ext == ".cpp" ||
+          ext == ".h" || ext == ".hpp";
+}
+
+bool isGeneratedSourceItem(const SourceItem& item)
+{
+   const std::string& context = item.context();
+   return boost::algorithm::ends_with(context, "RcppExports.R") ||
+          boost::algorithm::ends_with(context, "RcppExports.cpp");
+}
+
 Error searchCode(const json::JsonRpcRequest& request,
                  json::JsonRpcResponse* pResponse)
 {
@@ -1569,9 +1626,6 @@ Error searchCode(const json::JsonRpcRequest& request,
    std::size_t maxResults = safe_convert::numberTo<int, std::size_t>(maxResultsInt,
                                                                 20);
 
-   // object to return
-   json::Object result;
-
    // search files
    std::vector<std::string> names;
    std::vector<std::string> paths;
@@ -1655,29 +1709,157 @@ Error searchCode(const json::JsonRpcRequest& request,
       srcItemsFiltered.push_back(srcItems[pair.first]);
    }
 
-   // fill result
-   json::Object files;
-   files["filename"] = json::toJsonArray(namesFiltered);
-   files["path"] = json::toJsonArray(pathsFiltered);
-   result["file_items"] = files;
+   pResponse->setResult(codeSearchResultsAsJson(
+                           namesFiltered,
+                           pathsFiltered,
+                           srcItemsFiltered,
+                           moreFilesAvailable || moreSourceItemsAvailable));
 
-   // return rpc array list (wire efficiency)
-   json::Object src;
-   src["type"] = toJsonArray<int>(srcItemsFiltered, &SourceItem::type);
-   src["name"] = toJsonArray<std::string>(srcItemsFiltered, &SourceItem::name);
-   src["parent_name"] = toJsonArray<std::string>(srcItemsFiltered, &SourceItem::parentName);
-   src["extra_info"] = toJsonArray<std::string>(srcItemsFiltered, &SourceItem::extraInfo);
-   src["context"] = toJsonArray<std::string>(srcItemsFiltered, &SourceItem::context);
-   src["line"] = toJsonArray<int>(srcItemsFiltered, &SourceItem::line);
-   src["column"] = toJsonArray<int>(srcItemsFiltered, &SourceItem::column);
-   result["source_items"] = src;
+   return Success();
+}
 
-   // set more available bit
-   result["more_available"] =
-         moreFilesAvailable || moreSourceItemsAvailable;
+Error getCodeSearchIndex(const json::JsonRpcRequest& request,
+                         json::JsonRpcResponse* pResponse)
+{
+   // an empty term matches everything
+   std::string term;
+
+   // collect all source files
+   std::vector<std::string> names;
+   std::vector<std::string> paths;
+   bool moreFilesAvailable = false;
+   searchFiles(term, kMaxIndexItems, true, &names, &paths, &moreFilesAvailable);
 
-   pResponse->setResult(result);
+   // collect all R source items
+   std::vector<SourceItem> srcItems;
+   std::vector<r_util::RSourceItem> rSrcItems;
+   bool moreSourceItemsAvailable = false;
+   searchSource(term, kMaxIndexItems, false, &rSrcItems, &moreSourceItemsAvailable);
+   std::transform(rSrcItems.begin(),
+                  rSrcItems.end(),
+                  std::back_inserter(srcItems),
+                  fromRSourceItem);
+
+   // collect all cpp definitions
+   std::vector<clang::CppDefinition> cppDefinitions;
+   clang::searchDefinitions(term, &cppDefinitions);
+   std::transform(cppDefinitions.begin(),
+                  cppDefinitions.end(),
+                  std::back_inserter(srcItems),
+                  fromCppDefinition);
+
+   // don't index auto-generated files (as for searchCode)
+   std::vector<SourceItem> srcItemsFiltered;
+   for (const SourceItem& item : srcItems)
+   {
+      if (isGeneratedSourceItem(item))
+         continue;
+
+      srcItemsFiltered.push_back(item);
+      if (srcItemsFiltered.size() >= kMaxIndexItems)
+      {
+         moreSourceItemsAvailable = true;
+         break;
+      }
+   }
+
+   pResponse->setResult(codeSearchResultsAsJson(
+                           names,
+                           paths,
+                           srcItemsFiltered,
+                           moreFilesAvailable || moreSourceItemsAvailable));
+
+   return Success();
+}
+
+// returns the entries getCodeSearchIndex would return for the given files,
+// so that the client can update its index as files change
+Error getCodeSearchFileIndex(const json::JsonRpcRequest& request,
+                             json::JsonRpcResponse* pResponse)
+{
+   json::Array jsonPaths;
+   Error error = json::readParams(request.params, &jsonPaths);
+   if (error)
+      return error;
+
+   bool hasFileMonitor = projects::projectContext().hasFileMonitor();
+   std::vector<boost::shared_ptr<r_util::RSourceIndex> > docIndexes =
+                                                   rSourceIndex().indexes();
+
+   std::vector<std::string> names;
+   std::vector<std::string> paths;
+   std::vector<r_util::RSourceItem> rSrcItems;
+   std::set<std::string> cppContexts;
+   for (const json::Value& jsonPath : jsonPaths)
+   {
+      if (!json::isType<std::string>(jsonPath))
+         return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+
+      FilePath filePath = module_context::resolveAliasedPath(jsonPath.get_str());
+      std::string context = module_context::createAliasedPath(filePath);
+      if (!filePath.exists() || filePath.isDirectory())
+         continue;
+
+      // open documents take precedence over the project index (as in
+      // searchSource)
+      boost::shared_ptr<r_util::RSourceIndex> pIndex;
+      for (boost::shared_ptr<r_util::RSourceIndex>& pDocIndex : docIndexes)
+      {
+         if (pDocIndex->context() == context &&
+             sourceDatabaseFilter(*pDocIndex))
+         {
+            pIndex = pDocIndex;
+            break;
+         }
+      }
+
+      bool indexed = false;
+      if (hasFileMonitor)
+      {
+         indexed = s_projectIndex.hasSourceFile(filePath);
+         if (!pIndex)
+            pIndex = s_projectIndex.get(filePath);
+      }
+      else
+      {
+         indexed = pIndex.get() != nullptr;
+      }
+
+      if (indexed)
+      {
+         names.push_back(filePath.filename());
+         paths.push_back(context);
+      }
+
+      if (pIndex)
+         pIndex->search("", false, false, std::back_inserter(rSrcItems));
+
+      if (isCppSourceFile(filePath))
+         cppContexts.insert(context);
+   }
+
+   std::vector<SourceItem> srcItems;
+   for (const r_util::RSourceItem& rSrcItem : rSrcItems)
+   {
+      SourceItem item = fromRSourceItem(rSrcItem);
+      if (!isGeneratedSourceItem(item))
+         srcItems.push_back(item);
+   }
+
+   // C++ definitions aren't indexed by file, so pick out those in the files
+   if (!cppContexts.empty())
+   {
+      std::vector<clang::CppDefinition> cppDefinitions;
+      clang::searchDefinitions("", &cppDefinitions);
+      for (const clang::CppDefinition& cppDefinition : cppDefinitions)
+      {
+         SourceItem item = fromCppDefinition(cppDefinition);
+         if (cppContexts.count(item.context()) && !isGeneratedSourceItem(item))
+            srcItems.push_back(item);
+      }
+   }
 
+   pResponse->setResult(codeSearchResultsAsJson(names, paths, srcItems, false));
    return Success();
 }
 
@@ -2502,6 +2684,8 @@ Error initialize()
    ExecBlock initBlock ;
    initBlock.addFunctions()
       (bind(registerRpcMethod, "search_code", searchCode))
+      (bind(registerRpcMethod, "get_code_search_index", getCodeSearchIndex))
+      (bind(registerRpcMethod, "get_code_search_file_index", getCodeSearchFileIndex))
       (bind(registerRpcMethod, "get_function_definition", getFunctionDefinition))
       (bind(registerRpcMethod, "get_search_path_function_definition", getSearchPathFunctionDefinition))
       (bind(registerRpcMethod, "get_method_definition", getMethodDefinition))
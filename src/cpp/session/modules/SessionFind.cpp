@@ -43,18 +43,24 @@ namespace find {
 
 namespace {
 
-// This must be the same as MAX_COUNT in FindOutputPane.java
-const size_t MAX_COUNT = 1000;
+// This must be the same as MAX_COUNT in FindResultStore.java
+const size_t MAX_COUNT = 100000;
+
+// The number of results kept for re-fetching. Results beyond these are
+// only sent to the client as they're found.
+const size_t MAX_SAVED_COUNT = 1000;
 
 // Reflects the current set of Find results that are being
 // displayed, in case they need to be re-fetched (i.e. browser
-// refresh)
+// refresh). Only the first MAX_SAVED_COUNT results are kept; the
+// client is told if there were more.
 class FindInFilesState : public boost::noncopyable
 {
 public:
 
    explicit FindInFilesState() :
       regex_(false),
+      count_(0),
       running_(false)
    {
    }
@@ -64,9 +70,10 @@ public:
       return handle_;
    }
 
+   // the number of results found, including any not kept
    int resultCount() const
    {
-      return gsl::narrow_cast<int>(files_.size());
+      return gsl::narrow_cast<int>(count_);
    }
 
    bool isRunning() const
@@ -86,11 +93,17 @@ public:
       else if (handle_ != handle)
          return false;
 
-      std::copy(files.begin(), files.end(), std::back_inserter(files_));
-      std::copy(lineNums.begin(), lineNums.end(), std::back_inserter(lineNums_));
-      std::copy(contents.begin(), contents.end(), std::back_inserter(contents_));
-      std::copy(matchOns.begin(), matchOns.end(), std::back_inserter(matchOns_));
-      std::copy(matchOffs.begin(), matchOffs.end(), std::back_inserter(matchOffs_));
+      count_ += files.size();
+
+      // keep only as many as fit in the saved results
+      std::size_t room = files_.size() < MAX_SAVED_COUNT ?
+                         MAX_SAVED_COUNT - files_.size() : 0;
+      std::size_t n = std::min(files.size(), room);
+      std::copy(files.begin(), files.begin() + n, std::back_inserter(files_));
+      std::copy(lineNums.begin(), lineNums.begin() + n, std::back_inserter(lineNums_));
+      std::copy(contents.begin(), contents.begin() + n, std::back_inserter(contents_));
+      std::copy(matchOns.begin(), matchOns.begin() + n, std::back_inserter(matchOns_));
+      std::copy(matchOffs.begin(), matchOffs.begin() + n, std::back_inserter(matchOffs_));
       return true;
    }
 
@@ -115,6 +128,7 @@ public:
    void clear()
    {
       handle_ = std::string();
+      count_ = 0;
       files_.clear();
       lineNums_.clear();
       contents_.clear();
@@ -151,6 +165,13 @@ public:
          contents_.clear();
       }
 
+      // (older state doesn't record whether results were dropped)
+      bool truncated = false;
+      error = json::readObject(asJson, "truncated", &truncated);
+      if (error)
+         truncated = false;
+      count_ = files_.size() + (truncated ? 1 : 0);
+
       return Success();
    }
 
@@ -169,6 +190,7 @@ public:
       results["matchOn"] = matchOns_;
       results["matchOff"] = matchOffs_;
       obj["results"] = results;
+      obj["truncated"] = count_ > files_.size();
 
       obj["running"] = running_;
 
@@ -180,6 +202,7 @@ private:
    std::string input_;
    std::string path_;
    bool regex_;
+   std::size_t count_;
    json::Array files_;
    json::Array lineNums_;
    json::Array contents_;
@@ -184,13 +184,15 @@ Error getHistoryItems(const json::JsonRpcRequest& request,
    return Success();
 }
 
-void enqueConsoleResetHistoryEvent(bool preserveUIContext)
+void enqueConsoleResetHistoryEvent(bool preserveUIContext,
+                                   bool archiveRotated = false)
 {
    json::Array historyJson;
    r::session::consoleHistory().asJson(&historyJson);
    json::Object resetJson;
    resetJson["history"] = historyJson;
    resetJson["preserve_ui_context"] = preserveUIContext;
+   resetJson["archive_rotated"] = archiveRotated;
    ClientEvent event(client_events::kConsoleResetHistory, resetJson);
    module_context::enqueClientEvent(event);
 }
@@ -395,10 +397,16 @@ Error searchHistoryArchiveByPrefix(const json::JsonRpcRequest& request,
 void onHistoryAdd(const std::string& command)
 {   
    // add command to history archive
-   Error error = historyArchive().add(command);
+   bool rotated = false;
+   Error error = historyArchive().add(command, &rotated);
    if (error)
       LOG_ERROR(error);
 
+   // rotating the archive renumbers its entries, so let the client know
+   // that any copy of it it holds is out of date
+   if (rotated)
+      enqueConsoleResetHistoryEvent(true, true);
+
    // fire event
    int entryIndex = r::session::consoleHistory().size() - 1;
    std::vector<HistoryEntry> entries;
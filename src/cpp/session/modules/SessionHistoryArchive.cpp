@@ -50,7 +50,7 @@ FilePath historyDatabaseRotatedFilePath()
    return module_context::userScratchPath().complete(kHistoryDatabase ".1");
 }
 
-void rotateHistoryDatabase()
+bool rotateHistoryDatabase()
 {
    FilePath historyDB = historyDatabaseFilePath();
    if (historyDB.exists() && (historyDB.size() > kHistoryMaxBytes))
@@ -62,7 +62,10 @@ void rotateHistoryDatabase()
 
       // now rotate the file
       historyDB.move(rotatedHistoryDB);
+      return true;
    }
+
+   return false;
 }
 
 void writeEntry(double timestamp, const std::string& command, std::ostream* pOS)
@@ -127,15 +130,16 @@ HistoryArchive& historyArchive()
    return instance;
 }
 
-Error HistoryArchive::add(const std::string& command)
+Error HistoryArchive::add(const std::string& command, bool* pRotated)
 {
    // reset the cache (since this write will invalidate the current one,
    // no sense in keeping our cache around in memory)
    entries_.clear();
    entryCacheLastWriteTime_ = -1;
 
-   // rotate if necessary
-   rotateHistoryDatabase();
+   // rotate if necessary (this drops the oldest entries, renumbering the
+   // rest of the archive)
+   *pRotated = rotateHistoryDatabase();
 
    // write the entry to the file
    std::ostringstream ostrEntry ;
@@ -462,6 +462,52 @@ Error saveDocument(const json::JsonRpcRequest& request,
    return Success();
 }
 
+// The client gives offsets and lengths in UTF-16 code units (as JavaScript
+// counts string lengths), in which characters outside the Basic
+// Multilingual Plane count twice. This moves the iterator forward the given
+// number of such units through UTF-8 text.
+Error utf16Advance(std::string::iterator begin,
+                   std::size_t units,
+                   std::string::iterator end,
+                   std::string::iterator* pResult)
+{
+   while (units > 0)
+   {
+      if (begin == end)
+         return systemError(boost::system::errc::invalid_argument,
+                            ERROR_LOCATION);
+
+      // four byte sequences are the ones needing a surrogate pair
+      std::size_t width = static_cast<unsigned char>(*begin) >= 0xF0 ? 2 : 1;
+      if (width > units)
+         return systemError(boost::system::errc::invalid_argument,
+                            ERROR_LOCATION);
+
+      Error error = string_utils::utf8Advance(begin, 1, end, &begin);
+      if (error)
+         return error;
+      units -= width;
+   }
+
+   *pResult = begin;
+   return Success();
+}
+
+// The length of UTF-8 text in UTF-16 code units.
+std::size_t utf16Length(const std::string& contents)
+{
+   std::size_t length = 0;
+   for (std::string::const_iterator it = contents.begin(); it != contents.end(); ++it)
+   {
+      unsigned char byte = static_cast<unsigned char>(*it);
+      if ((byte & 0xC0) != 0x80)
+         length++;
+      if (byte >= 0xF0)
+         length++;
+   }
+   return length;
+}
+
 Error saveDocumentDiff(const json::JsonRpcRequest& request,
                        json::JsonRpcResponse* pResponse)
 {
@@ -471,10 +517,10 @@ Error saveDocumentDiff(const json::JsonRpcRequest& request,
    std::string id;
    json::Value jsonPath, jsonType, jsonEncoding, jsonFoldSpec, jsonChunkOutput;
    
-   // This is a chunk of text that should be inserted into the
-   // current document. It replaces the subrange [offset, offset+length).
-   std::string replacement;
-   int offset, length;
+   // These are chunks of text that should be inserted into the current
+   // document, each replacing the subrange [offset, offset+length). They
+   // are either single values or arrays of edits to be applied in order.
+   json::Value jsonReplacement, jsonOffset, jsonLength;
    
    // This is the expected hash of the current document. If the
    // current hash value is different than this value, then the
@@ -489,12 +535,44 @@ Error saveDocumentDiff(const json::JsonRpcRequest& request,
                                   &jsonEncoding,
                                   &jsonFoldSpec,
                                   &jsonChunkOutput,
-                                  &replacement,
-                                  &offset,
-                                  &length,
+                                  &jsonReplacement,
+                                  &jsonOffset,
+                                  &jsonLength,
                                   &hash);
    if (error)
       return error ;
+
+   // When edits are sent, this is the length (in UTF-16 units, as the
+   // client counts them) the document should have once they're applied. If
+   // it doesn't, the client's record of the edits has drifted from what we
+   // have and the request should be discarded (the client then resends the
+   // whole document). -1 skips the check.
+   int expectedLength = -1;
+   if (request.params.size() > 10)
+   {
+      if (!json::isType<int>(request.params[10]))
+         return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+      expectedLength = request.params[10].get_int();
+   }
+
+   json::Array replacements, offsets, lengths;
+   if (json::isType<json::Array>(jsonReplacement))
+   {
+      replacements = jsonReplacement.get_array();
+      offsets = jsonOffset.get_array();
+      lengths = jsonLength.get_array();
+   }
+   else
+   {
+      replacements.push_back(jsonReplacement);
+      offsets.push_back(jsonOffset);
+      lengths.push_back(jsonLength);
+   }
+   if (offsets.size() != replacements.size() ||
+       lengths.size() != replacements.size())
+   {
+      return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+   }
    
    // if this has no path then it is an autosave, in this case
    // suppress change detection
@@ -513,20 +591,53 @@ Error saveDocumentDiff(const json::JsonRpcRequest& request,
    {
       std::string contents(pDoc->contents());
 
-      // Offset and length are specified in characters, but contents
-      // is in UTF8 bytes. Convert before using.
-      std::string::iterator rangeBegin = contents.begin();
-      error = utf8Advance(rangeBegin, offset, contents.end(), &rangeBegin);
-      if (error)
-         return Success(); // UTF8 decoding failed. Abort differential save.
+      // the start of the previous edit, in UTF-16 units and in bytes; text
+      // before it isn't changed by the edit, so later edits starting after
+      // it can be found from there rather than from the top
+      std::size_t anchorUnits = 0;
+      std::size_t anchorBytes = 0;
 
-      std::string::iterator rangeEnd = rangeBegin;
-      error = utf8Advance(rangeEnd, length, contents.end(), &rangeEnd);
-      if (error)
-         return Success(); // UTF8 decoding failed. Abort differential save.
+      for (std::size_t i = 0; i < replacements.size(); ++i)
+      {
+         if (!json::isType<std::string>(replacements[i]) ||
+             !json::isType<int>(offsets[i]) ||
+             !json::isType<int>(lengths[i]))
+         {
+            return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+         }
+         std::string replacement = replacements[i].get_str();
+         int offset = offsets[i].get_int();
+         int length = lengths[i].get_int();
+         if (offset < 0 || length < 0)
+            return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+
+         // Offset and length are specified in UTF-16 units, but contents
+         // is in UTF8 bytes. Convert before using.
+         if (static_cast<std::size_t>(offset) < anchorUnits)
+         {
+            anchorUnits = 0;
+            anchorBytes = 0;
+         }
+         std::string::iterator rangeBegin = contents.begin() + anchorBytes;
+         error = utf16Advance(rangeBegin, offset - anchorUnits, contents.end(), &rangeBegin);
+         if (error)
+            return Success(); // UTF8 decoding failed. Abort differential save.
+
+         std::string::iterator rangeEnd = rangeBegin;
+         error = utf16Advance(rangeEnd, length, contents.end(), &rangeEnd);
+         if (error)
+            return Success(); // UTF8 decoding failed. Abort differential save.
+
+         anchorUnits = offset;
+         anchorBytes = rangeBegin - contents.begin();
+         contents.replace(rangeBegin, rangeEnd, replacement);
+      }
 
-      contents.erase(rangeBegin, rangeEnd);
-      contents.insert(rangeBegin, replacement.begin(), replacement.end());
+      if (expectedLength != -1 &&
+          utf16Length(contents) != static_cast<std::size_t>(expectedLength))
+      {
+         return Success(); // Edits don't match the client's document.
+      }
       
       // track if we're updating the document contents
       bool hasChanges = contents != pDoc->contents();
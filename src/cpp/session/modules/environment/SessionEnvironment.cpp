@@ -729,11 +729,79 @@ Error getEnvironmentState(boost::shared_ptr<int> pContextDepth,
    return Success();
 }
 
+// The bindings in the global environment as of the last check, kept while
+// the environment monitor isn't watching the global environment (because
+// monitoring is off, or a function's environment is being monitored while
+// debugging) so that the client still learns which global objects change.
+std::vector<r::sexp::Variable> s_globalEnvironment;
+bool s_globalEnvironmentListed = false;
+
+bool compareVarName(const r::sexp::Variable& var1,
+                    const r::sexp::Variable& var2)
+{
+   return var1.first < var2.first;
+}
+
+void checkForGlobalEnvironmentChanges()
+{
+   if (s_monitoring &&
+       s_pEnvironmentMonitor->getMonitoredEnvironment() == R_GlobalEnv)
+   {
+      // the monitor reports these changes itself
+      s_globalEnvironment.clear();
+      s_globalEnvironmentListed = false;
+      return;
+   }
+
+   // list the bindings (this doesn't fire active bindings or force promises)
+   std::vector<r::sexp::Variable> currentEnv;
+   r::sexp::Protect rProtect;
+   r::sexp::listEnvironment(R_GlobalEnv, false, false, &rProtect, &currentEnv);
+   std::sort(currentEnv.begin(), currentEnv.end(), compareVarName);
+
+   if (!s_globalEnvironmentListed)
+   {
+      // anything may have changed since the monitor last looked
+      s_globalEnvironment = currentEnv;
+      s_globalEnvironmentListed = true;
+      ClientEvent changedEvent(client_events::kGlobalEnvironmentChanged);
+      module_context::enqueClientEvent(changedEvent);
+      return;
+   }
+
+   if (currentEnv == s_globalEnvironment)
+      return;
+
+   // the names of the objects assigned, reassigned or removed
+   std::vector<r::sexp::Variable> changedVars;
+   std::set_symmetric_difference(s_globalEnvironment.begin(),
+                                 s_globalEnvironment.end(),
+                                 currentEnv.begin(),
+                                 currentEnv.end(),
+                                 std::back_inserter(changedVars));
+   s_globalEnvironment = currentEnv;
+
+   // (a reassigned object appears twice, once with each value)
+   json::Array names;
+   std::string lastName;
+   for (const r::sexp::Variable& var : changedVars)
+   {
+      if (var.first != lastName)
+         names.push_back(var.first);
+      lastName = var.first;
+   }
+
+   ClientEvent changedEvent(client_events::kGlobalEnvironmentChanged, names);
+   module_context::enqueClientEvent(changedEvent);
+}
+
 void onDetectChanges(module_context::ChangeSource source)
 {
    // Prevent recursive calls to this function
    DROP_RECURSIVE_CALLS;
 
+   checkForGlobalEnvironmentChanges();
+
    // Ignore if not monitoring
    if (!s_monitoring)
       return;
@@ -53,6 +53,25 @@ var RCodeModel = function(session, tokenizer,
    this.$codeEndPattern = codeEndPattern;
    this.$scopes = new ScopeManager(ScopeNode);
 
+   // The tokenizer state, and the brackets left open, at the end of each row
+   // as of the last time the scope tree was built over it. These move with
+   // their rows as rows are inserted and removed, so that a rebuild can tell
+   // when it has caught up with the previous build.
+   this.$scopeStates = [];
+
+   // Whether the scope tree covers the whole document; if so, an edit can
+   // reuse the scopes following it (see $restoreScopesFrom).
+   this.$scopesComplete = false;
+
+   // The edits made since the scope tree was last complete: the rows after
+   // $damageEndRow are the previous build's rows, moved by $rowDelta rows.
+   this.$damageEndRow = 0;
+   this.$rowDelta = 0;
+
+   // The row up to which the scope tree has been rebuilt since it was last
+   // asked for (see takeScopeTreeChangedEndRow).
+   this.$changedEndRow = 0;
+
    var $firstChange = true;
    var onChangeMode = function(data, session)
    {
@@ -795,6 +814,12 @@ var RCodeModel = function(session, tokenizer,
       if (token == null)
          return row;
 
+      // The row whose state is to be recorded next, the brackets left open
+      // so far, and whether the rest of the previous build was restored.
+      var stateRow = row;
+      var openBrackets = this.$getOpenBracketsAt(row, column);
+      var restored = false;
+
       // Grab local state that we'll use when building the scope tree.
       var value = token.value;
       var type = token.type;
@@ -803,6 +828,18 @@ var RCodeModel = function(session, tokenizer,
 
       do
       {
+         // On reaching a new row, stop if the rest of the previous build
+         // still holds.
+         if (iterator.$row > stateRow)
+         {
+            if (this.$restoreScopesFrom(stateRow, iterator.$row, openBrackets))
+            {
+               restored = true;
+               break;
+            }
+            stateRow = iterator.$row;
+         }
+
          // Bail if we've stepped past the max row.
          if (iterator.$row > maxRow)
             break;
@@ -827,6 +864,9 @@ var RCodeModel = function(session, tokenizer,
          if (this.$codeBeginPattern)
             isInRMode = /^r-/.test(this.$session.getState(iterator.$row));
 
+         if (isInRMode && openBrackets != null && /\bparen\b/.test(type))
+            $updateOpenBrackets(openBrackets, value);
+
          // Add Markdown headers.
          //
          // The markdown highlight rules are a bit strange in that
@@ -1122,6 +1162,22 @@ var RCodeModel = function(session, tokenizer,
 
       } while ((token = iterator.moveToNextToken()));
 
+      if (restored)
+      {
+         var lastRow = this.$doc.getLength() - 1;
+         this.$scopes.parsePos = {row: lastRow, column: -1};
+         this.$scopesComplete = true;
+         return lastRow;
+      }
+
+      // If we ran out of tokens, the whole document has been built.
+      if (token == null)
+      {
+         this.$recordScopeStates(stateRow, this.$doc.getLength(), openBrackets);
+         this.$changedEndRow = this.$doc.getLength();
+         this.$scopesComplete = true;
+      }
+
       // Update the current parse position. We want to set this just
       // after the current token; in practice, since the tokenization
       // happens row-wise this means setting the parse position at the
@@ -1134,6 +1190,136 @@ var RCodeModel = function(session, tokenizer,
       return rowTokenizedUpTo;
    };
 
+   // Updates the count of brackets left open for a bracket token. Only
+   // parentheses and square brackets are counted: these are what lookbacks
+   // (e.g. for the function owning a brace) match across rows, whereas braces
+   // are tracked by the scope tree itself.
+   var $updateOpenBrackets = function(openBrackets, value)
+   {
+      if (value === "(")
+         openBrackets.paren++;
+      else if (value === ")")
+         openBrackets.paren = Math.max(0, openBrackets.paren - 1);
+      else if (value === "[")
+         openBrackets.square++;
+      else if (value === "]")
+         openBrackets.square = Math.max(0, openBrackets.square - 1);
+   };
+
+   // Returns the brackets left open before 'column' on 'row', as recorded by
+   // the build that covered the previous row; or null if that is unknown.
+   this.$getOpenBracketsAt = function(row, column)
+   {
+      var openBrackets = {paren: 0, square: 0};
+      if (row > 0)
+      {
+         var recorded = this.$scopeStates[row - 1];
+         if (recorded == null || recorded.paren == null)
+            return null;
+         openBrackets.paren = recorded.paren;
+         openBrackets.square = recorded.square;
+      }
+
+      if (column > 0 &&
+          (!this.$codeBeginPattern || /^r-/.test(this.$session.getState(row))))
+      {
+         var tokens = this.$session.getTokens(row);
+         var tokenColumn = 0;
+         for (var i = 0; i < tokens.length && tokenColumn < column; i++)
+         {
+            if (/\bparen\b/.test(tokens[i].type))
+               $updateOpenBrackets(openBrackets, tokens[i].value);
+            tokenColumn += tokens[i].value.length;
+         }
+      }
+
+      return openBrackets;
+   };
+
+   this.$recordScopeStates = function(startRow, endRow, openBrackets)
+   {
+      for (var row = startRow; row < endRow; row++)
+      {
+         this.$scopeStates[row] = {
+            state: String(this.$session.getState(row)),
+            paren: openBrackets ? openBrackets.paren : null,
+            square: openBrackets ? openBrackets.square : null
+         };
+      }
+   };
+
+   // Returns whether the scopes from 'row' on can only depend on the rows
+   // before it through the tokenizer state and the brackets left open: that
+   // is, unless 'row' starts with a comment, or with a token whose scope
+   // would be labelled from the tokens before it (a brace following a
+   // function's arguments, part of a function definition, or the underline
+   // of a Markdown heading).
+   this.$isScopeBoundary = function(row)
+   {
+      var tokens = this.$session.getTokens(row);
+      for (var i = 0; i < tokens.length; i++)
+      {
+         var token = tokens[i];
+         if (/^\s*$/.test(token.value))
+            continue;
+
+         if (/\bcomment\b/.test(token.type) ||
+             Utils.startsWith(token.type, "markup.heading"))
+            return false;
+
+         if (this.$codeBeginPattern &&
+             !/^r-/.test(this.$session.getState(row)))
+            return true;
+
+         return token.value !== "{" &&
+                token.value !== "(" &&
+                !pFunction(token) &&
+                !pAssign(token);
+      }
+      return false;
+   };
+
+   // Called as a rebuild reaches 'row' (having built the rows from
+   // 'fromRow'). If the tokenizer is in the state it was in at this point of
+   // the previous build, no brackets are left open (now or then) for the
+   // rows that follow to be matched against, and the rows from here on
+   // haven't been edited since, the previous build's scopes from here on
+   // are restored and true is returned.
+   this.$restoreScopesFrom = function(fromRow, row, openBrackets)
+   {
+      var previous = this.$scopeStates[row - 1];
+      this.$recordScopeStates(fromRow, row, openBrackets);
+
+      if (!this.$scopes.hasInvalidatedScopes() || row < this.$damageEndRow)
+         return false;
+
+      if (!this.$isScopeBoundary(row))
+         return false;
+
+      var current = this.$scopeStates[row - 1];
+      if (previous == null ||
+          previous.state !== current.state ||
+          previous.paren !== 0 || previous.square !== 0 ||
+          current.paren !== 0 || current.square !== 0)
+         return false;
+
+      if (!this.$scopes.restoreFrom(row, this.$rowDelta))
+         return false;
+
+      this.$changedEndRow = Math.max(this.$changedEndRow, row);
+      return true;
+   };
+
+   // Returns the row up to which the scope tree has been rebuilt since this
+   // was last called (so rows from there on hold the scopes they held then,
+   // moved by any rows inserted or removed above them).
+   this.takeScopeTreeChangedEndRow = function()
+   {
+      var row = this.$changedEndRow;
+      this.$changedEndRow = 0;
+      return row;
+   };
+
    this.$getFoldToken = function(session, foldStyle, row) {
       this.$tokenizeUpToRow(row);
 
@@ -2001,8 +2187,60 @@ var RCodeModel = function(session, tokenizer,
       else
          this.$removeRows(evt.start.row, evt.end.row - evt.start.row);
 
+      // Move the recorded tokenizer states along with their rows. (The
+      // state recorded for a row is that at the end of the text which now
+      // ends it, so the edited row keeps its state when rows are inserted.)
+      var row = evt.start.row;
+      var rowDelta = evt.end.row - evt.start.row;
+      if (evt.action === "insert")
+      {
+         var args = [row, 0];
+         for (var i = 0; i < rowDelta; i++)
+            args.push(null);
+         this.$scopeStates.splice.apply(this.$scopeStates, args);
+      }
+      else
+      {
+         this.$scopeStates.splice(row, rowDelta);
+         rowDelta = -rowDelta;
+      }
+
+      if (this.$changedEndRow > row)
+         this.$changedEndRow = Math.max(row + 1, this.$changedEndRow + rowDelta);
+
+      // If the scope tree was complete, hold on to the scopes after the edit
+      // so that the rebuild can stop once it converges with the previous
+      // build.
+      if (this.$scopesComplete)
+      {
+         this.$scopesComplete = false;
+         this.$damageEndRow = 0;
+         this.$rowDelta = 0;
+         this.$addDamage(row, rowDelta);
+         this.$scopes.invalidateFromIncremental(evt.start);
+         return;
+      }
+
+      // Further edits can be folded in while those scopes are waiting to be
+      // restored, unless they are in rows that have already been rebuilt.
+      var pos = {row: Math.max(0, row - 1), column: 0};
+      if (this.$scopes.hasInvalidatedScopes() &&
+          comparePoints(this.$scopes.parsePos, pos) <= 0)
+      {
+         this.$addDamage(row, rowDelta);
+         return;
+      }
+
       this.$scopes.invalidateFrom(evt.start);
    };
+
+   this.$addDamage = function(row, rowDelta)
+   {
+      if (this.$damageEndRow > row)
+         this.$damageEndRow = Math.max(row + 1, this.$damageEndRow + rowDelta);
+      this.$damageEndRow = Math.max(this.$damageEndRow, row + 1 + Math.max(0, rowDelta));
+      this.$rowDelta += rowDelta;
+   };
    
    this.$invalidateRow = function(row)
    {
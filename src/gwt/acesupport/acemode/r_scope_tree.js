@@ -31,6 +31,44 @@ define('mode/r_scope_tree', ["require", "exports", "module"], function(require,
       return pos1.column - pos2.column;
    }
 
+   function shiftRows(pos, rowDelta) {
+      if (pos == null)
+         return pos;
+      return {row: pos.row + rowDelta, column: pos.column};
+   }
+
+   // Returns the index of the first node (in an array of sibling nodes)
+   // beginning at or after pos.
+   function findFirstNodeFrom(nodes, pos) {
+      var start = 0, end = nodes.length;
+      while (start < end)
+      {
+         var mid = Math.floor((start + end) / 2);
+         if (comparePoints(nodes[mid].preamble, pos) < 0)
+            start = mid + 1;
+         else
+            end = mid;
+      }
+      return start;
+   }
+
+   // Returns the index of the node (in an array of sibling nodes) containing
+   // pos, not counting a node that begins at pos; or -1 if there is none.
+   function findContainingNode(nodes, pos) {
+      var start = 0, end = nodes.length;
+      while (start < end)
+      {
+         var mid = Math.floor((start + end) / 2);
+         if (comparePoints(pos, nodes[mid].preamble) <= 0)
+            end = mid;
+         else if (nodes[mid].end != null && comparePoints(pos, nodes[mid].end) >= 0)
+            start = mid + 1;
+         else
+            return mid;
+      }
+      return -1;
+   }
+
    var ScopeNode = function(label, start, preamble, scopeType, attributes) {
 
       // The label associated with the scope.
@@ -254,8 +292,10 @@ define('mode/r_scope_tree', ["require", "exports", "module"], function(require,
       };
 
       // Invalidates everything after pos, and possibly some stuff before.
-      // Returns the position from which parsing should resume.
-      this.invalidateFrom = function(pos) {
+      // Returns the position from which parsing should resume. If supplied,
+      // 'invalidated' collects the children removed and the ends cleared, so
+      // that they can be restored later.
+      this.invalidateFrom = function(pos, invalidated /*optional*/) {
 
          var index = this.$binarySearch(pos);
 
@@ -278,7 +318,7 @@ define('mode/r_scope_tree', ["require", "exports", "module"], function(require,
                // the scope, just recurse into the child to make sure its
                // children get invalidated correctly, and its 'end' property
                // is nulled out.
-               resumePos = this.$children[index].invalidateFrom(pos);
+               resumePos = this.$children[index].invalidateFrom(pos, invalidated);
 
                // Increment index so this child doesn't get removed.
                index++;
@@ -292,14 +332,28 @@ define('mode/r_scope_tree', ["require", "exports", "module"], function(require,
 
          if (index < this.$children.length)
          {
-            this.$children.splice(index, this.$children.length - index);
+            var removed = this.$children.splice(index, this.$children.length - index);
+            if (invalidated)
+               invalidated.children.push({parent: this, nodes: removed});
          }
 
+         if (invalidated)
+            invalidated.ends.push({node: this, end: this.end});
          this.end = null;
 
          return resumePos;
       };
 
+      // Moves this node and its descendants by 'rowDelta' rows. New
+      // position objects are used, since positions may be shared.
+      this.$shiftRows = function(rowDelta) {
+         this.preamble = shiftRows(this.preamble, rowDelta);
+         this.start = shiftRows(this.start, rowDelta);
+         this.end = shiftRows(this.end, rowDelta);
+         for (var i = 0; i < this.$children.length; i++)
+            this.$children[i].$shiftRows(rowDelta);
+      };
+
       // Returns index of the child that contains this position, if it exists;
       // otherwise, -(index + 1) where index is where such a child would be.
       this.$binarySearch = function(pos, start /*optional*/, end /*optional*/) {
@@ -353,6 +407,7 @@ define('mode/r_scope_tree', ["require", "exports", "module"], function(require,
    var ScopeManager = function(ScopeNodeFactory) {
       this.$ScopeNodeFactory = ScopeNodeFactory || ScopeNode;
       this.parsePos = {row: 0, column: 0};
+      this.$invalidated = null;
       this.$root = new this.$ScopeNodeFactory("(Top Level)", this.parsePos, null,
                                  ScopeNode.TYPE_ROOT);
    };
@@ -547,12 +602,132 @@ define('mode/r_scope_tree', ["require", "exports", "module"], function(require,
          return this.$root.getFunctionsInScope(pos, tokenizer);
       };
 
+      // Returns the position from which parsing should resume.
       this.invalidateFrom = function(pos) {
          pos = {row: Math.max(0, pos.row-1), column: 0};
          debuglog("Invalidate from " + pos.row + ", " + pos.column);
+         this.$invalidated = null;
          if (comparePoints(this.parsePos, pos) > 0)
             this.parsePos = this.$root.invalidateFrom(pos);
          this.printScopeTree();
+         return this.parsePos;
+      };
+
+      // Like 'invalidateFrom', but holds on to the invalidated scopes so that
+      // 'restoreFrom' can bring them back once the reparse catches up with
+      // the previous parse. Only valid when the previous parse was complete.
+      this.invalidateFromIncremental = function(pos) {
+         pos = {row: Math.max(0, pos.row-1), column: 0};
+         debuglog("Invalidate (incremental) from " + pos.row + ", " + pos.column);
+         this.$invalidated = null;
+         if (comparePoints(this.parsePos, pos) > 0)
+         {
+            var invalidated = {
+               children: [],
+               ends: [],
+               chunkCount: this.getChunkCount()
+            };
+            this.parsePos = this.$root.invalidateFrom(pos, invalidated);
+            this.$invalidated = invalidated;
+         }
+         this.printScopeTree();
+         return this.parsePos;
+      };
+
+      this.hasInvalidatedScopes = function() {
+         return this.$invalidated != null;
+      };
+
+      // Called as a reparse following 'invalidateFromIncremental' reaches the
+      // start of 'row', which was at 'row - rowDelta' in the previous parse.
+      // If the scopes open there are the ones that were open there in the
+      // previous parse, the rest of the previous parse still holds: its
+      // scopes are moved by 'rowDelta' rows and restored, and true is
+      // returned.
+      this.restoreFrom = function(row, rowDelta) {
+         var invalidated = this.$invalidated;
+         if (invalidated == null)
+            return false;
+
+         var pos = {row: row, column: 0};
+         var oldPos = {row: row - rowDelta, column: 0};
+
+         // the scopes open now, from outermost to innermost
+         var open = [];
+         for (var node = this.$root; ; )
+         {
+            var index = findContainingNode(node.$children, pos);
+            if (index === -1)
+               break;
+            node = node.$children[index];
+            open.push(node);
+         }
+
+         // an invalidated scope that was open in the previous parse can't
+         // have been reproduced yet
+         var i, j;
+         for (i = 0; i < invalidated.children.length; i++)
+         {
+            if (findContainingNode(invalidated.children[i].nodes, oldPos) !== -1)
+               return false;
+         }
+
+         // otherwise, the scopes open in the previous parse are the ones
+         // (other than the root) whose ends were cleared and that ended after
+         // the old position; these are recorded from innermost to outermost
+         var reopened = [];
+         for (i = invalidated.ends.length - 1; i >= 0; i--)
+         {
+            var entry = invalidated.ends[i];
+            if (entry.node === this.$root)
+               continue;
+            if (entry.end == null || comparePoints(oldPos, entry.end) < 0)
+               reopened.push(entry);
+         }
+
+         if (open.length !== reopened.length)
+            return false;
+         for (i = 0; i < open.length; i++)
+         {
+            if (open[i] !== reopened[i].node)
+               return false;
+         }
+
+         // chunks are labelled by number, so the restored chunks keep their
+         // labels only if as many chunks precede them as did before
+         var restoredChunkCount = 0;
+         for (i = 0; i < invalidated.children.length; i++)
+         {
+            var candidates = invalidated.children[i].nodes;
+            for (j = findFirstNodeFrom(candidates, oldPos); j < candidates.length; j++)
+               restoredChunkCount += $getChunkCount(candidates[j]);
+         }
+         if (this.getChunkCount() + restoredChunkCount !== invalidated.chunkCount)
+            return false;
+
+         debuglog("Restoring scopes from " + row + " (" + rowDelta + " rows moved)");
+
+         for (i = 0; i < reopened.length; i++)
+            reopened[i].node.end = shiftRows(reopened[i].end, rowDelta);
+
+         // the scopes (with their descendants) that began after the old
+         // position go back where they were; the others have been reparsed
+         for (i = 0; i < invalidated.children.length; i++)
+         {
+            var parent = invalidated.children[i].parent;
+            var nodes = invalidated.children[i].nodes;
+            var first = findFirstNodeFrom(nodes, oldPos);
+            for (j = first; j < nodes.length; j++)
+            {
+               if (rowDelta !== 0)
+                  nodes[j].$shiftRows(rowDelta);
+            }
+            Array.prototype.push.apply(parent.$children, nodes.slice(first));
+         }
+
+         this.$invalidated = null;
+         this.printScopeTree();
+         return true;
       };
 
       function $getChunkCount(node) {
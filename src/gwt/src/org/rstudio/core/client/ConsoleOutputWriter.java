@@ -90,10 +90,11 @@ public class ConsoleOutputWriter
          virtualConsole_ = vcFactory_.create(trailing);
       }
 
-      int oldLineCount = DomUtils.countLines(virtualConsole_.getParent(), true);
+      // the virtual console tracks its newline count as it renders, so this
+      // costs as much as the new output rather than the whole scrollback
+      int oldLineCount = virtualConsole_.getLineCount();
       virtualConsole_.submit(text, className, isError);
-      int newLineCount = DomUtils.countLines(virtualConsole_.getParent(), true);
-      lines_ += newLineCount - oldLineCount;
+      lines_ += virtualConsole_.getLineCount() - oldLineCount;
 
       return ignoreLineCount ? true : !trimExcess();
    }
@@ -107,6 +108,11 @@ public class ConsoleOutputWriter
       if (linesToTrim > 0)
       {
          lines_ -= DomUtils.trimLines(getElement(), linesToTrim);
+         
+         // let the virtual console drop what's no longer displayed so its
+         // buffers stay bounded by the line limit along with the DOM
+         if (virtualConsole_ != null)
+            virtualConsole_.releaseTrimmedOutput();
          return true;
       }
 
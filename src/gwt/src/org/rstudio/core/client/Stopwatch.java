@@ -31,6 +31,11 @@ public class Stopwatch
       startTime_ = System.currentTimeMillis();
    }
 
+   public long elapsed()
+   {
+      return System.currentTimeMillis() - startTime_;
+   }
+
    public long mark(String label)
    {
       long stopTime = System.currentTimeMillis();
@@ -69,7 +69,7 @@ public class VirtualConsole
    private void backspace()
    {
       clearPartialAnsiCode();
-      if (cursor_ == 0)
+      if (cursor_ == trimmed_)
          return;
       cursor_--;
    }
@@ -77,16 +77,16 @@ public class VirtualConsole
    private void carriageReturn()
    {
       clearPartialAnsiCode();
-      if (cursor_ == 0)
+      if (cursor_ == trimmed_)
          return;
-      while (cursor_ > 0 && output_.charAt(cursor_ - 1) != '\n')
+      while (cursor_ > trimmed_ && charAt(cursor_ - 1) != '\n')
          cursor_--;
    }
 
    private void newline(String clazz)
    {
       clearPartialAnsiCode();
-      while (cursor_ < output_.length() && output_.charAt(cursor_) != '\n')
+      while (cursor_ < end() && charAt(cursor_) != '\n')
          cursor_++;
       // Now we're either at the end of the buffer, or on top of a '\n'
       text("\n", clazz, false/*forceNewRange*/);
@@ -97,7 +97,9 @@ public class VirtualConsole
       clearPartialAnsiCode();
       output_.setLength(0);
       cursor_ = 0;
+      trimmed_ = 0;
       class_.clear();
+      lineCount_ = 0;
       if (parent_ != null)
          parent_.setInnerHTML("");
    }
@@ -106,6 +108,23 @@ public class VirtualConsole
    {
       partialAnsiCode_ = null;
    }
+   
+   /**
+    * Character at the given console position; positions (cursor_ and range
+    * starts) are absolute, while output_ only holds text past trimmed_
+    */
+   private char charAt(int pos)
+   {
+      return output_.charAt(pos - trimmed_);
+   }
+   
+   /**
+    * @return absolute position of the end of the console output
+    */
+   private int end()
+   {
+      return trimmed_ + output_.length();
+   }
 
    /**
     * Debugging aid
@@ -137,6 +156,12 @@ public class VirtualConsole
       Debug.logToConsole("Done dumping " + name);
    }
    
+   /**
+    * @return the console's output (with long lines truncated if the user has
+    *    asked for that). Output released by releaseTrimmedOutput is not
+    *    included: once a console has been trimmed, this is only the output
+    *    still displayed, not everything written to it.
+    */
    @Override
    public String toString()
    {
@@ -161,6 +186,10 @@ public class VirtualConsole
       return joined;
    }
    
+   /**
+    * @return the length of the output held by the console; like toString,
+    *    this excludes output released by releaseTrimmedOutput
+    */
    public int getLength()
    {
       return output_.length();
@@ -171,6 +200,71 @@ public class VirtualConsole
       return parent_;
    }
    
+   /**
+    * Releases output that has been trimmed from the front of the DOM (see
+    * DomUtils.trimLines) from the text buffer and range map, so that memory
+    * held by the console is bounded by what is still displayed. Positions
+    * are not renumbered; the trimmed prefix is recorded as an offset so that
+    * the cursor and carriage-return overwrites keep working.
+    * 
+    * Released output is no longer reported by toString and getLength, so
+    * this should only be called for consoles whose text isn't read back
+    * (currently only ConsoleOutputWriter, which trims the R console).
+    */
+   public void releaseTrimmedOutput()
+   {
+      int cut = trimmed_;
+      while (!class_.isEmpty())
+      {
+         ClassRange range = class_.firstEntry().getValue();
+         if (range.element.getParentElement() == null)
+         {
+            // range was removed from the DOM entirely
+            class_.pollFirstEntry();
+            lineCount_ -= range.lines;
+            cut = range.start + range.length;
+            continue;
+         }
+         
+         int remaining = range.text().length();
+         if (remaining < range.length)
+         {
+            // range was trimmed from the left
+            int newStart = range.start + (range.length - remaining);
+            int lines = countNewlines(output_.substring(
+                  range.start - trimmed_, newStart - trimmed_));
+            range.lines -= lines;
+            lineCount_ -= lines;
+            class_.pollFirstEntry();
+            range.start = newStart;
+            range.length = remaining;
+            class_.put(newStart, range);
+            cut = newStart;
+         }
+         break;
+      }
+      
+      if (cut <= trimmed_)
+         return;
+      
+      output_.delete(0, Math.min(cut, end()) - trimmed_);
+      trimmed_ = cut;
+      if (cursor_ < trimmed_)
+         cursor_ = trimmed_;
+   }
+   
+   /**
+    * Number of newlines currently rendered by this console; maintained
+    * incrementally as ranges change so callers can compute the number of
+    * lines added by a submit without walking the DOM.
+    * 
+    * @return number of newlines in the console's output ranges
+    */
+   public int getLineCount()
+   {
+      return lineCount_;
+   }
+   
    /**
     * Appends text to the end of the virtual console.
     * 
@@ -304,6 +398,7 @@ public class VirtualConsole
          {
             // this range is fully overwritten, just delete it
             deletions.add(l);
+            lineCount_ -= overlap.lines;
             if (parent_ != null)
                parent_.removeChild(overlap.element);
          }
@@ -358,6 +453,11 @@ public class VirtualConsole
       {
          class_.put(val.start, val);
       }
+      
+      // if the new range was merged into existing ranges rather than being
+      // inserted, its newlines are already accounted for by those ranges
+      if (!insertions.contains(range))
+         lineCount_ -= range.lines;
    }
    
    /**
@@ -376,13 +476,13 @@ public class VirtualConsole
       if (parent_ != null)
       {
          // short circuit common case in which we're just adding output
-         if (cursor_ == output_.length() && !class_.isEmpty())
+         if (cursor_ == end() && !class_.isEmpty())
             appendText(text, clazz, forceNewRange);
          else
             insertText(new ClassRange(start, clazz, text));
       }
 
-      output_.replace(start, end, text);
+      output_.replace(start - trimmed_, end - trimmed_, text);
       cursor_ += text.length();
    }
    
@@ -585,6 +685,8 @@ public class VirtualConsole
          if (className != null)
             element.addClassName(clazz);
          element.setInnerText(text);
+         lines = countNewlines(text);
+         lineCount_ += lines;
          
          if (captureNewElements_)
          {
@@ -596,13 +698,16 @@ public class VirtualConsole
       {
          length -= delta;
          start += delta;
-         element.setInnerText(element.getInnerText().substring(delta));
+         String text = element.getInnerText();
+         adjustLines(-countNewlines(text.substring(0, delta)));
+         element.setInnerText(text.substring(delta));
       }
       
       public void trimRight(int delta)
       {
          length -= delta;
          String text = element.getInnerText();
+         adjustLines(-countNewlines(text.substring(text.length() - delta)));
          element.setInnerText(text.substring(0, text.length() - delta));
       }
       
@@ -610,14 +715,18 @@ public class VirtualConsole
       {
          length += content.length() - delta;
          start -= (content.length() - delta);
-         element.setInnerText(content + 
-               element.getInnerText().substring(delta));
+         String text = element.getInnerText();
+         adjustLines(countNewlines(content) - 
+               countNewlines(text.substring(0, delta)));
+         element.setInnerText(content + text.substring(delta));
       }
       
       public void appendRight(String content, int delta)
       {
          length += content.length() - delta;
          String text = text();
+         adjustLines(countNewlines(content) - 
+               countNewlines(text.substring(text.length() - delta)));
          element.setInnerText(text.substring(0,
                text.length() - delta) + content);
       }
@@ -625,6 +734,8 @@ public class VirtualConsole
       public void overwrite(String content, int pos)
       {
          String text = element.getInnerText();
+         adjustLines(countNewlines(content) - 
+               countNewlines(text.substring(pos, pos + content.length())));
          element.setInnerText(
                text.substring(0, pos) + content +
                text.substring(pos + content.length(), text.length()));
@@ -637,8 +748,17 @@ public class VirtualConsole
       
       public void clearText()
       {
+         adjustLines(-lines);
          element.setInnerText("");
       }
+      
+      // only the changed portion of the text is scanned for newlines, so
+      // keeping the count current costs as much as the edit itself
+      private void adjustLines(int delta)
+      {
+         lines += delta;
+         lineCount_ += delta;
+      }
 
       public String debugDump()
       {
@@ -649,8 +769,17 @@ public class VirtualConsole
       public String clazz;
       public int length;
       public int start;
+      public int lines;
       public SpanElement element;
    }
+   
+   private static int countNewlines(String text)
+   {
+      int count = 0;
+      for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1))
+         count++;
+      return count;
+   }
 
    private static final Pattern CONTROL = Pattern.create("[\r\b\f\n]");
    
@@ -659,6 +788,11 @@ public class VirtualConsole
    private final Element parent_;
    
    private int cursor_ = 0;
+   private int lineCount_ = 0;
+   
+   // number of characters released from the front of output_ after being
+   // trimmed from the DOM; cursor_ and range positions include this offset
+   private int trimmed_ = 0;
    private AnsiCode ansi_;
    private String partialAnsiCode_;
    private AnsiCode.AnsiClazzes ansiCodeStyles_ = new AnsiCode.AnsiClazzes();
@@ -196,6 +196,8 @@ public class RpcRequest
    
    public void cancel()
    {
+      cancelled_ = true;
+      
       if (request_ != null)
       {
          request_.cancel();
@@ -209,6 +211,11 @@ public class RpcRequest
       }
    }
 
+   public boolean isCancelled()
+   {
+      return cancelled_;
+   }
+
    public String getUrl()
    {
       return url_;
@@ -277,6 +284,7 @@ public class RpcRequest
    final private JSONString clientId_;
    final private JSONString clientVersion_;
    private Request request_ = null;
+   private boolean cancelled_ = false;
    private RequestLogEntry requestLogEntry_ = null;
    
      
@@ -20,6 +20,8 @@ import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.*;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Style.Cursor;
+import com.google.gwt.dom.client.Style.Display;
+import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.dom.client.*;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.DOM;
@@ -36,6 +38,7 @@ import org.rstudio.core.client.widget.events.SelectionChangedHandler;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.TreeSet;
 
 public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widget
    implements HasAllMouseHandlers, HasClickHandlers, HasAllKeyHandlers
@@ -89,7 +92,8 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
             if (cell == null)
                return;
             TableRowElement row = (TableRowElement) cell.getParentElement();
-            if (codec_.isValueRow(row))
+            if (codec_.isValueRow(row) &&
+                (!windowed_ || getItemIndex(row) >= 0))
                handleRowClick(event, row);
          }
       });
@@ -125,6 +129,63 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       scrollPanel_ = scrollPanel;
    }
 
+   /**
+    * Puts the table in windowed mode, in which only the rows in (or near)
+    * the owning scroll panel's viewport are rendered; the rest of the table
+    * is represented by spacers sized by the height of a rendered row.
+    * Selection and navigation then work on items rather than on rows, so
+    * the cost of the table no longer grows with the number of items.
+    *
+    * Windowed mode requires an owning scroll panel, a codec that doesn't
+    * introduce non-value rows of its own (though items may be rendered as
+    * non-value rows, e.g. as headers), and rows of (roughly) uniform
+    * height. It must be set before any items are added; it is ignored
+    * otherwise.
+    */
+   public void setWindowed(boolean windowed)
+   {
+      if (windowed == windowed_ ||
+          scrollPanel_ == null ||
+          codec_.hasNonValueRows() ||
+          table_.getRows().getLength() > 0)
+      {
+         return;
+      }
+
+      windowed_ = windowed;
+      if (windowed_)
+      {
+         scrollRegistration_ = scrollPanel_.addScrollHandler(
+               new ScrollHandler()
+         {
+            public void onScroll(ScrollEvent event)
+            {
+               updateWindow();
+            }
+         });
+      }
+      else if (scrollRegistration_ != null)
+      {
+         scrollRegistration_.removeHandler();
+         scrollRegistration_ = null;
+      }
+   }
+
+   public boolean isWindowed()
+   {
+      return windowed_;
+   }
+
+   /**
+    * In windowed mode, renders the rows now in view if they aren't already
+    * (e.g. after the owning scroll panel has been resized).
+    */
+   public void updateWindow()
+   {
+      if (windowed_)
+         renderWindow(false);
+   }
+
    private void handleRowClick(MouseDownEvent event, TableRowElement row)
    {
       int modifiers = KeyboardShortcut.getModifierValue(event.getNativeEvent());
@@ -153,14 +214,27 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       {
          // SHIFT or CTRL+SHIFT
 
-         int target = row.getRowIndex();
+         int target;
          Integer min = null;
          Integer max = null;
-         for (TableRowElement selectedRow : selectedRows_)
+         if (windowed_)
+         {
+            target = getItemIndex(row);
+            if (!selectedItems_.isEmpty())
+            {
+               min = selectedItems_.first();
+               max = selectedItems_.last();
+            }
+         }
+         else
          {
-            if (min == null)
-               min = selectedRow.getRowIndex();
-            max = selectedRow.getRowIndex();
+            target = row.getRowIndex();
+            for (TableRowElement selectedRow : selectedRows_)
+            {
+               if (min == null)
+                  min = selectedRow.getRowIndex();
+               max = selectedRow.getRowIndex();
+            }
          }
 
          int offset; // selection offset
@@ -201,7 +275,10 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
          clearSelection();
          if (length > 0)
          {
-            setSelectedPhysical(offset, length, true);
+            if (windowed_)
+               setSelectedItems(offset, length, true);
+            else
+               setSelectedPhysical(offset, length, true);
          }
       }
    }
@@ -253,6 +330,21 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
    
    private void selectPreviousRow(boolean clearSelection)
    {
+      if (windowed_)
+      {
+         int min = selectedItems_.isEmpty() ? items_.size()
+                                            : selectedItems_.first();
+         int index = findNextValueItem(min, true);
+         if (index >= 0)
+         {
+            if (clearSelection)
+               clearSelection();
+            setItemSelected(index, true);
+            ensureItemVisible(index);
+         }
+         return;
+      }
+
       int min = selectedRows_.size() > 0
             ? selectedRows_.get(0).getRowIndex()
             : table_.getRows().getLength();
@@ -274,6 +366,20 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
    
    private void selectNextRow(boolean clearSelection)
    {
+      if (windowed_)
+      {
+         int max = selectedItems_.isEmpty() ? -1 : selectedItems_.last();
+         int index = findNextValueItem(max, false);
+         if (index >= 0)
+         {
+            if (clearSelection)
+               clearSelection();
+            setItemSelected(index, true);
+            ensureItemVisible(index);
+         }
+         return;
+      }
+
       int max = selectedRows_.size() > 0
             ? selectedRows_.get(selectedRows_.size() - 1).getRowIndex()
             : -1;
@@ -313,12 +419,54 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public void clearSelection()
    {
+      if (windowed_)
+      {
+         for (Integer index : selectedItems_)
+         {
+            TableRowElement row = getRenderedRow(index);
+            if (row != null)
+               setStyleName(row, selectedClassName_, false);
+         }
+         selectedItems_.clear();
+         return;
+      }
+
       while (selectedRows_.size() > 0)
          setSelected(selectedRows_.get(0), false);
    }
 
    public void addItems(Iterable<TItemInput> items, boolean top)
    {
+      if (windowed_)
+      {
+         ArrayList<TItemInput> added = new ArrayList<TItemInput>();
+         for (TItemInput item : items)
+            added.add(item);
+
+         if (top)
+         {
+            boolean wasEmpty = items_.isEmpty();
+            items_.addAll(0, added);
+            shiftSelectedItems(added.size());
+
+            // keep the rows that were in view where they were, as happens
+            // when rows are inserted above them in the DOM
+            renderWindow(true);
+            if (!wasEmpty)
+            {
+               scrollPanel_.setVerticalScrollPosition(
+                     scrollPanel_.getVerticalScrollPosition() +
+                     added.size() * rowHeight_);
+            }
+         }
+         else
+         {
+            items_.addAll(added);
+            renderWindow(true);
+         }
+         return;
+      }
+
       TableSectionElement tbody = Document.get().createTBodyElement();
       for (TItemInput item : items)
          tbody.appendChild(codec_.getRowForItem(item));
@@ -339,6 +487,10 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
    {
       table_.setInnerText("");
       selectedRows_.clear();
+      items_.clear();
+      selectedItems_.clear();
+      windowBody_ = null;
+      windowStart_ = windowEnd_ = 0;
    }
    
    public void focus()
@@ -349,6 +501,8 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
    
    public int getRowCount()
    {
+      if (windowed_)
+         return items_.size();
       return codec_.getLogicalRowCount(table_);
    }
    
@@ -357,6 +511,15 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       if (rowCount <= 0)
          return;
 
+      if (windowed_)
+      {
+         rowCount = Math.min(rowCount, items_.size());
+         items_.subList(0, rowCount).clear();
+         shiftSelectedItems(-rowCount);
+         renderWindow(true);
+         return;
+      }
+
       NodeList<TableSectionElement> tBodies = table_.getTBodies();
       for (int i = 0; i < tBodies.getLength(); i++)
       {
@@ -387,6 +550,9 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public ArrayList<Integer> getSelectedRowIndexes()
    {
+      if (windowed_)
+         return new ArrayList<Integer>(selectedItems_);
+
       sortSelectedRows();
 
       ArrayList<Integer> results = new ArrayList<Integer>();
@@ -409,6 +575,12 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public void setSelected(int offset, int length, boolean selected)
    {
+      if (windowed_)
+      {
+         setSelectedItems(offset, length, selected);
+         return;
+      }
+
       if (codec_.hasNonValueRows())
       {
          // If the codec might have stuck in some non-value rows, we need
@@ -439,6 +611,14 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public void setSelected(TableRowElement row, boolean selected)
    {
+      if (windowed_)
+      {
+         int index = getItemIndex(row);
+         if (index >= 0)
+            setItemSelected(index, selected);
+         return;
+      }
+
       try
       {
          if (row.getParentElement().getParentElement() != table_)
@@ -467,23 +647,24 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
          selectedRows_.remove(row);
 
       if (selected && !allowMultiSelect_)
+         fireSelectionChanged();
+   }
+
+   private void fireSelectionChanged()
+   {
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
       {
-         Scheduler.get().scheduleDeferred(new ScheduledCommand()
+         public void execute()
          {
-            public void execute()
-            {
-               fireEvent(new SelectionChangedEvent());
-            }
-         });
-      }
+            fireEvent(new SelectionChangedEvent());
+         }
+      });
    }
 
    public ArrayList<TItemOutput> getSelectedValues()
    {
-      sortSelectedRows();
-
       ArrayList<TItemOutput> results = new ArrayList<TItemOutput>();
-      for (TableRowElement row : selectedRows_)
+      for (TableRowElement row : getSortedSelectedRows())
          results.add(codec_.getOutputForRow(row));
       return results;
    }
@@ -501,16 +682,47 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public ArrayList<TItemOutput2> getSelectedValues2()
    {
-      sortSelectedRows();
-
       ArrayList<TItemOutput2> results = new ArrayList<TItemOutput2>();
-      for (TableRowElement row : selectedRows_)
+      for (TableRowElement row : getSortedSelectedRows())
          results.add(codec_.getOutputForRow2(row));
       return results;
    }
 
+   // the selected rows, in order; in windowed mode, rows are created (but
+   // not attached) for selected items that aren't currently rendered
+   private ArrayList<TableRowElement> getSortedSelectedRows()
+   {
+      if (!windowed_)
+      {
+         sortSelectedRows();
+         return selectedRows_;
+      }
+
+      ArrayList<TableRowElement> rows = new ArrayList<TableRowElement>();
+      for (Integer index : selectedItems_)
+      {
+         TableRowElement row = getRenderedRow(index);
+         rows.add(row != null ? row : codec_.getRowForItem(items_.get(index)));
+      }
+      return rows;
+   }
+
    public boolean moveSelectionUp()
    {
+      if (windowed_)
+      {
+         if (selectedItems_.isEmpty())
+            return false;
+
+         int index = findNextValueItem(selectedItems_.first(), true);
+         if (index < 0)
+            return false;
+
+         clearSelection();
+         setItemSelected(index, true);
+         return true;
+      }
+
       if (selectedRows_.isEmpty())
          return false;
 
@@ -538,6 +750,20 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public boolean moveSelectionDown()
    {
+      if (windowed_)
+      {
+         if (selectedItems_.isEmpty())
+            return false;
+
+         int index = findNextValueItem(selectedItems_.last(), false);
+         if (index < 0)
+            return false;
+
+         clearSelection();
+         setItemSelected(index, true);
+         return true;
+      }
+
       if (selectedRows_.isEmpty())
          return false;
 
@@ -570,6 +796,9 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public TableRowElement getTopRow()
    {
+      if (windowed_)
+         return getRenderedRow(0);
+
       if (table_.getRows().getLength() > 0)
          return getRow(0);
       else
@@ -578,18 +807,32 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
 
    public ArrayList<TableRowElement> getSelectedRows()
    {
-      return new ArrayList<TableRowElement>(selectedRows_);
+      return new ArrayList<TableRowElement>(getSortedSelectedRows());
    }
 
    public Rectangle getSelectionRect()
    {
-      if (selectedRows_.isEmpty())
+      ArrayList<TableRowElement> selectedRows = selectedRows_;
+      if (windowed_)
+      {
+         // only rendered rows have a position
+         selectedRows = new ArrayList<TableRowElement>();
+         for (Integer index : selectedItems_)
+         {
+            TableRowElement row = getRenderedRow(index);
+            if (row != null)
+               selectedRows.add(row);
+         }
+      }
+
+      if (selectedRows.isEmpty())
          return null;
 
-      sortSelectedRows();
+      if (!windowed_)
+         sortSelectedRows();
 
-      TableRowElement first = selectedRows_.get(0);
-      TableRowElement last = selectedRows_.get(selectedRows_.size() - 1);
+      TableRowElement first = selectedRows.get(0);
+      TableRowElement last = selectedRows.get(selectedRows.size() - 1);
       int top = first.getOffsetTop();
       int bottom = last.getOffsetTop() + last.getOffsetHeight();
       int left = first.getOffsetLeft();
@@ -597,6 +840,196 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
       return new Rectangle(left, top, width, bottom - top);
    }
 
+   // Windowed mode ---------------------------------------------------------
+
+   private void setSelectedItems(int offset, int length, boolean selected)
+   {
+      int end = Math.min(offset + length, items_.size());
+      for (int i = Math.max(offset, 0); i < end; i++)
+         setItemSelected(i, selected);
+   }
+
+   private void setItemSelected(int index, boolean selected)
+   {
+      if (index < 0 || index >= items_.size())
+         return;
+
+      if (selected && !isValueItem(index))
+         return;
+
+      boolean changed = selected ? selectedItems_.add(index)
+                                 : selectedItems_.remove(index);
+      if (!changed)
+         return;
+
+      TableRowElement row = getRenderedRow(index);
+      if (row != null)
+         setStyleName(row, selectedClassName_, selected);
+
+      if (selected && !allowMultiSelect_)
+         fireSelectionChanged();
+   }
+
+   // moves the selection by the given number of items (after items have
+   // been added or removed at the top), dropping items that no longer exist
+   private void shiftSelectedItems(int delta)
+   {
+      if (selectedItems_.isEmpty())
+         return;
+
+      TreeSet<Integer> shifted = new TreeSet<Integer>();
+      for (Integer index : selectedItems_)
+      {
+         if (index + delta >= 0 && index + delta < items_.size())
+            shifted.add(index + delta);
+      }
+      selectedItems_.clear();
+      selectedItems_.addAll(shifted);
+   }
+
+   private boolean isValueItem(int index)
+   {
+      TableRowElement row = getRenderedRow(index);
+      if (row == null)
+         row = codec_.getRowForItem(items_.get(index));
+      return codec_.isValueRow(row);
+   }
+
+   // returns the index of the next value item above or below the given
+   // index, or -1 if there isn't one
+   private int findNextValueItem(int index, boolean up)
+   {
+      int increment = up ? -1 : 1;
+      for (int i = index + increment; i >= 0 && i < items_.size(); i += increment)
+      {
+         if (isValueItem(i))
+            return i;
+      }
+      return -1;
+   }
+
+   /**
+    * In windowed mode, scrolls the given item into view (rendering it if
+    * necessary).
+    */
+   public void ensureItemVisible(int index)
+   {
+      if (!windowed_ || index < 0 || index >= items_.size())
+         return;
+
+      if (getRenderedRow(index) == null)
+      {
+         // scroll (roughly) to the item, so that it gets rendered
+         int viewTop = getWindowViewTop();
+         int tableTop = scrollPanel_.getVerticalScrollPosition() - viewTop;
+         scrollPanel_.setVerticalScrollPosition(
+               tableTop + index * rowHeight_);
+         renderWindow(false);
+      }
+
+      TableRowElement row = getRenderedRow(index);
+      if (row != null)
+         DomUtils.ensureVisibleVert(scrollPanel_.getElement(), row, 0);
+   }
+
+   private int getItemIndex(TableRowElement row)
+   {
+      if (row == null || row.getParentElement() != windowBody_)
+         return -1;
+      return row.getPropertyInt(ITEM_INDEX) - 1;
+   }
+
+   private TableRowElement getRenderedRow(int index)
+   {
+      if (windowBody_ == null || index < windowStart_ || index >= windowEnd_)
+         return null;
+
+      // the first row is the spacer above the rendered rows
+      return windowBody_.getRows().getItem(1 + index - windowStart_);
+   }
+
+   // the offset of the top of the viewport from the top of the table
+   private int getWindowViewTop()
+   {
+      return scrollPanel_.getElement().getAbsoluteTop() -
+             table_.getAbsoluteTop();
+   }
+
+   private void renderWindow(boolean force)
+   {
+      int count = items_.size();
+      int viewHeight = scrollPanel_.getOffsetHeight();
+      if (viewHeight <= 0)
+         viewHeight = DEFAULT_WINDOW_ROWS * rowHeight_;
+      int viewTop = Math.max(0, getWindowViewTop());
+
+      int first = Math.min(count, viewTop / rowHeight_);
+      int last = Math.min(count, (viewTop + viewHeight) / rowHeight_ + 1);
+
+      // nothing to do if the rows in view are already rendered
+      if (!force && windowBody_ != null &&
+          first >= windowStart_ && last <= windowEnd_)
+         return;
+
+      windowStart_ = Math.max(0, first - WINDOW_OVERSCAN_ROWS);
+      windowEnd_ = Math.min(count, last + WINDOW_OVERSCAN_ROWS);
+
+      if (windowBody_ == null || windowBody_.getParentElement() != table_)
+      {
+         windowBody_ = Document.get().createTBodyElement();
+         getElement().appendChild(windowBody_);
+      }
+
+      windowBody_.setInnerText("");
+      TableCellElement topSpacer = appendSpacer();
+      int columns = 1;
+      for (int i = windowStart_; i < windowEnd_; i++)
+      {
+         TableRowElement row = codec_.getRowForItem(items_.get(i));
+         row.setPropertyInt(ITEM_INDEX, i + 1);
+         if (selectedItems_.contains(i))
+            setStyleName(row, selectedClassName_, true);
+         windowBody_.appendChild(row);
+         columns = Math.max(columns, row.getCells().getLength());
+      }
+      TableCellElement bottomSpacer = appendSpacer();
+      codec_.onRowsChanged(windowBody_);
+
+      // size the spacers using the height of an unselected rendered row
+      // (selected rows may be taller, e.g. if they wrap)
+      for (int i = windowStart_; i < windowEnd_; i++)
+      {
+         if (selectedItems_.contains(i))
+            continue;
+         int height = getRenderedRow(i).getOffsetHeight();
+         if (height > 0)
+            rowHeight_ = height;
+         break;
+      }
+
+      sizeSpacer(topSpacer, windowStart_, columns);
+      sizeSpacer(bottomSpacer, count - windowEnd_, columns);
+   }
+
+   private void sizeSpacer(TableCellElement spacer, int rows, int columns)
+   {
+      spacer.setColSpan(columns);
+      spacer.getStyle().setHeight(rows * rowHeight_, Unit.PX);
+      if (rows == 0)
+         spacer.getParentElement().getStyle().setDisplay(Display.NONE);
+   }
+
+   private TableCellElement appendSpacer()
+   {
+      TableRowElement row = Document.get().createTRElement();
+      TableCellElement cell = Document.get().createTDElement();
+      cell.getStyle().setPadding(0, Unit.PX);
+      cell.getStyle().setBorderWidth(0, Unit.PX);
+      row.appendChild(cell);
+      windowBody_.appendChild(row);
+      return cell;
+   }
+
    protected Element getEventTargetCell(Event event) {
      Element td = DOM.eventGetTarget(event);
      for (; td != null; td = DOM.getParent(td)) {
@@ -685,4 +1118,20 @@ public class FastSelectTable<TItemInput, TItemOutput, TItemOutput2> extends Widg
    private final boolean allowMultiSelect_;
    private ScrollPanel scrollPanel_;
    private final boolean focusable_;
+
+   // windowed mode: all items, the selected items' indexes, and the range
+   // of items currently rendered (between two spacer rows) in windowBody_
+   private boolean windowed_ = false;
+   private HandlerRegistration scrollRegistration_;
+   private final ArrayList<TItemInput> items_ = new ArrayList<TItemInput>();
+   private final TreeSet<Integer> selectedItems_ = new TreeSet<Integer>();
+   private TableSectionElement windowBody_;
+   private int windowStart_ = 0;
+   private int windowEnd_ = 0;
+   private int rowHeight_ = 20;
+
+   // stored one greater than the item index, since unset properties read 0
+   private static final String ITEM_INDEX = "__fastSelectTableItem";
+   private static final int WINDOW_OVERSCAN_ROWS = 50;
+   private static final int DEFAULT_WINDOW_ROWS = 100;
 }
\ No newline at end of file
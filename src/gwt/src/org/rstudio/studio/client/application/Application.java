@@ -73,6 +73,7 @@ import org.rstudio.studio.client.projects.events.NewProjectEvent;
 import org.rstudio.studio.client.projects.events.OpenProjectEvent;
 import org.rstudio.studio.client.projects.events.SwitchToProjectEvent;
 import org.rstudio.studio.client.server.*;
+import org.rstudio.studio.client.server.remote.ClientEventStats;
 import org.rstudio.studio.client.workbench.ClientStateUpdater;
 import org.rstudio.studio.client.workbench.Workbench;
 import org.rstudio.studio.client.workbench.commands.Commands;
@@ -423,6 +424,12 @@ public class Application implements ApplicationEventHandlers
       });
    }
 
+   @Handler
+   public void onShowClientEventStats()
+   {
+      Debug.logToConsole("Client event timings:\n" + ClientEventStats.report());
+   }
+
    @Handler
    public void onLogFocusedElement()
    {
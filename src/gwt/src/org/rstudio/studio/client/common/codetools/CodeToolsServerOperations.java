@@ -55,6 +55,10 @@ public interface CodeToolsServerOperations extends HelpServerOperations,
          boolean isConsole,
          ServerRequestCallback<Completions> completions);
    
+   void getPackageCompletionIndex(
+         JsArrayString packages,
+         ServerRequestCallback<JsArray<PackageExports>> exports);
+   
    void getDplyrJoinCompletions(
          String token,
          String leftDataName,
@@ -0,0 +1,50 @@
+/*
+ * PackageExports.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.codetools;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+
+/**
+ * The objects exported by a package (names, completion types and, for
+ * functions, argument lists), sorted by name.
+ */
+public class PackageExports extends JavaScriptObject
+{
+   protected PackageExports()
+   {
+   }
+
+   public final native String getPackage() /*-{
+      return this.package;
+   }-*/;
+
+   public final native String getVersion() /*-{
+      return this.version;
+   }-*/;
+
+   public final native JsArrayString getNames() /*-{
+      return this.names || [];
+   }-*/;
+
+   public final native JsArrayInteger getTypes() /*-{
+      return this.types || [];
+   }-*/;
+
+   public final native JsArrayString getArgs() /*-{
+      return this.args || [];
+   }-*/;
+}
@@ -70,6 +70,14 @@ public class MathJax
       void onMathJaxTypesetComplete(boolean error);
    }
    
+   // also told when a render starts typesetting (a line widget render first
+   // waits for its widget to be attached, which happens only once the editor
+   // is shown)
+   interface MathJaxRenderCallback extends MathJaxTypesetCallback
+   {
+      void onMathJaxTypesetStarted();
+   }
+   
    public MathJax(DocDisplay docDisplay, DocUpdateSentinel sentinel,
          UIPrefs prefs)
    {
@@ -77,7 +85,6 @@ public class MathJax
       sentinel_ = sentinel;
       prefs_ = prefs;
       popup_ = new MathJaxPopupPanel(this);
-      renderQueue_ = new MathJaxRenderQueue(this);
       handlers_ = new ArrayList<HandlerRegistration>();
       cowToPlwMap_ = new SafeMap<ChunkOutputWidget, PinnedLineWidget>();
       lwToPlwMap_ = new SafeMap<LineWidget, ChunkOutputWidget>();
@@ -201,8 +208,22 @@ public class MathJax
    
    public void renderLatex()
    {
-      final List<Range> ranges = MathJaxUtil.findLatexChunks(docDisplay_);
-      renderQueue_.enqueueAndRender(ranges);
+      // show the equations we've typeset before (here or in another editor)
+      // straight away, and typeset the rest in the background
+      List<Range> pending = new ArrayList<Range>();
+      for (Range range : MathJaxUtil.findLatexChunks(docDisplay_))
+      {
+         String text = docDisplay_.getTextForRange(range);
+         if (isEmptyLatexChunk(text))
+            continue;
+         
+         if (MathJaxCache.get(MathJaxCache.key(prefs_, text)) != null)
+            renderLatex(range, false);
+         else
+            pending.add(range);
+      }
+      
+      MathJaxRenderQueue.get().enqueueAndRender(this, pending);
    }
    
    public void renderLatex(Range range)
@@ -257,13 +278,19 @@ public class MathJax
          {
             // don't render if chunk contents empty
             if (isEmptyLatexChunk(text))
+            {
+               onRenderSkipped(callback);
                return;
+            }
             
             // don't render if this is a background render request and
             // the line widget is collapsed
             final int row = range.getEnd().getRow();
             if (background && isLineWidgetCollapsed(row))
+            {
+               onRenderSkipped(callback);
                return;
+            }
             
             renderLatexLineWidget(range, text, callback);
             return;
@@ -302,8 +329,13 @@ public class MathJax
          // it's possible that we will already have a pinned line widget
          // (ie a previous render is pending here)
          for (Map.Entry<ChunkOutputWidget, PinnedLineWidget> entry : cowToPlwMap_.entrySet())
+         {
             if (entry.getValue().getRow() == row)
+            {
+               onRenderSkipped(callback);
                return;
+            }
+         }
          
          // if we don't have a widget, create one and render the LaTeX once
          // the widget is attached to the editor
@@ -345,7 +377,9 @@ public class MathJax
          @Override
          public void execute()
          {
-            mathjaxTypeset(el, text, new MathJaxTypesetCallback()
+            final String key = MathJaxCache.key(prefs_, text);
+            onTypesetStarted(callback);
+            typeset(el, text, new MathJaxTypesetCallback()
             {
                @Override
                public void onMathJaxTypesetComplete(final boolean error)
@@ -356,8 +390,21 @@ public class MathJax
                      @Override
                      public void execute(Boolean stateChanged)
                      {
-                        // re-position the element
-                        int height = el.getOffsetHeight() + 30;
+                        // re-position the element (using the height measured
+                        // when this output was first shown, if we have it)
+                        MathJaxCache.Entry entry = error ? null : MathJaxCache.get(key);
+                        int height;
+                        if (entry != null && entry.getHeight() >= 0)
+                        {
+                           height = entry.getHeight();
+                        }
+                        else
+                        {
+                           height = el.getOffsetHeight();
+                           if (entry != null)
+                              entry.setHeight(height);
+                        }
+                        height += 30;
                         Element ppElement = el.getParentElement().getParentElement();
                         ppElement.getStyle().setHeight(height, Unit.PX);
                         docDisplay_.onLineWidgetChanged(lineWidget);
@@ -526,20 +573,26 @@ public class MathJax
    {
       // no need to re-render if text hasn't changed or is empty
       if (text == lastRenderedText_)
+      {
+         onRenderSkipped(callback);
          return;
+      }
       
       // if empty, hide popup
       if (text.isEmpty())
       {
          endRender();
+         onRenderSkipped(callback);
          return;
       }
       
+      onTypesetStarted(callback);
+      
       // no need to re-position popup if already showing;
       // just typeset
       if (popup_.isShowing())
       {
-         mathjaxTypeset(popup_.getContentElement(), text, callback);
+         typeset(popup_.getContentElement(), text, callback);
          return;
       }
       
@@ -548,7 +601,7 @@ public class MathJax
       popup_.show();
       
       // typeset and position after typesetting finished
-      mathjaxTypeset(popup_.getContentElement(), text, new MathJaxTypesetCallback()
+      typeset(popup_.getContentElement(), text, new MathJaxTypesetCallback()
       {
          
          @Override
@@ -619,6 +672,52 @@ public class MathJax
       }
    }
    
+   private void onRenderSkipped(MathJaxTypesetCallback callback)
+   {
+      if (callback != null)
+         callback.onMathJaxTypesetComplete(false);
+   }
+   
+   private void onTypesetStarted(MathJaxTypesetCallback callback)
+   {
+      if (callback instanceof MathJaxRenderCallback)
+         ((MathJaxRenderCallback) callback).onMathJaxTypesetStarted();
+   }
+   
+   // shows the output for the text from the cache if we have it, and
+   // typesets (and caches) it otherwise
+   private void typeset(final Element el,
+                        final String text,
+                        final MathJaxTypesetCallback callback)
+   {
+      final String key = MathJaxCache.key(prefs_, text);
+      MathJaxCache.Entry entry = MathJaxCache.get(key);
+      if (entry != null)
+      {
+         // cached output has no jax to recover its text from, so note it
+         el.setInnerHTML(entry.getHtml());
+         el.setAttribute(RENDERED_TEXT_ATTRIBUTE, text);
+         el.getStyle().setVisibility(Visibility.VISIBLE);
+         lastRenderedText_ = text;
+         if (callback != null)
+            callback.onMathJaxTypesetComplete(false);
+         return;
+      }
+      
+      mathjaxTypeset(el, text, new MathJaxTypesetCallback()
+      {
+         @Override
+         public void onMathJaxTypesetComplete(boolean error)
+         {
+            if (!error)
+               MathJaxCache.put(key, el);
+            
+            if (callback != null)
+               callback.onMathJaxTypesetComplete(error);
+         }
+      });
+   }
+   
    private final void mathjaxTypeset(Element el, String currentText)
    {
       mathjaxTypeset(el, currentText, null);
@@ -637,9 +736,13 @@ public class MathJax
    /*-{
       var MathJax = $wnd.MathJax;
       
-      // save last rendered text
+      // save last rendered text (the element's output may have come from
+      // the cache, in which case there's no jax holding it)
       var jax = MathJax.Hub.getAllJax(el)[0];
-      var lastRenderedText = jax && jax.originalText || "";
+      var lastRenderedText =
+         el.getAttribute(@org.rstudio.studio.client.common.mathjax.MathJax::RENDERED_TEXT_ATTRIBUTE) ||
+         jax && jax.originalText ||
+         "";
       
       // update text in element
       el.innerText = currentText;
@@ -647,16 +750,24 @@ public class MathJax
       // typeset element
       var self = this;
       MathJax.Hub.Queue($entry(function() {
-         MathJax.Hub.Typeset(el, $entry(function() {
-            // restore original typesetting on failure
-            jax = MathJax.Hub.getAllJax(el)[0];
-            var error = !!(jax && jax.texError);
-            if (error && lastRenderedText.length)
-               jax.Text(lastRenderedText);
+         try {
+            MathJax.Hub.Typeset(el, $entry(function() {
+               // restore original typesetting on failure
+               jax = MathJax.Hub.getAllJax(el)[0];
+               var error = !!(jax && jax.texError);
+               if (error && lastRenderedText.length)
+                  jax.Text(lastRenderedText);
+               else if (!error)
+                  el.setAttribute(@org.rstudio.studio.client.common.mathjax.MathJax::RENDERED_TEXT_ATTRIBUTE, currentText);
 
-            // callback to GWT
-            self.@org.rstudio.studio.client.common.mathjax.MathJax::onMathJaxTypesetCompleted(Ljava/lang/Object;Ljava/lang/String;ZLjava/lang/Object;I)(el, currentText, error, command, attempt);
-         }));
+               // callback to GWT
+               self.@org.rstudio.studio.client.common.mathjax.MathJax::onMathJaxTypesetCompleted(Ljava/lang/Object;Ljava/lang/String;ZLjava/lang/Object;I)(el, currentText, error, command, attempt);
+            }));
+         } catch (e) {
+            // MathJax won't call back if typesetting throws, so report the
+            // render as failed (rather than leave callers waiting for it)
+            self.@org.rstudio.studio.client.common.mathjax.MathJax::onMathJaxTypesetCompleted(Ljava/lang/Object;Ljava/lang/String;ZLjava/lang/Object;I)(el, currentText, true, command, @org.rstudio.studio.client.common.mathjax.MathJax::MAX_RENDER_ATTEMPTS);
+         }
       }));
    }-*/;
    
@@ -694,6 +805,7 @@ public class MathJax
       for (HandlerRegistration handler : handlers_)
          handler.removeHandler();
       handlers_.clear();
+      MathJaxRenderQueue.get().remove(this);
    }
    
    public interface Styles extends CssResource
@@ -717,7 +829,6 @@ public class MathJax
    private final DocUpdateSentinel sentinel_;
    private final UIPrefs prefs_;
    private final MathJaxPopupPanel popup_;
-   private final MathJaxRenderQueue renderQueue_;
    private final List<HandlerRegistration> handlers_;
    private final SafeMap<ChunkOutputWidget, PinnedLineWidget> cowToPlwMap_;
    private final SafeMap<LineWidget, ChunkOutputWidget> lwToPlwMap_;
@@ -732,6 +843,10 @@ public class MathJax
    // text automatically before giving up
    private static final int MAX_RENDER_ATTEMPTS = 2;
    
+   // the last text rendered without errors into an element, restored if the
+   // element's next text has errors
+   private static final String RENDERED_TEXT_ATTRIBUTE = "data-rendered-text";
+   
    public static final String LINE_WIDGET_TYPE = "mathjax-preview";
    public static final String MATHJAX_ROOT_CLASSNAME = "rstudio-mathjax-root";
 }
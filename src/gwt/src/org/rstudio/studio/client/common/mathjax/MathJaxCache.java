@@ -0,0 +1,143 @@
+/*
+ * MathJaxCache.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.mathjax;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
+import org.rstudio.studio.client.workbench.views.source.editors.text.themes.AceTheme;
+
+import com.google.gwt.dom.client.Element;
+
+/**
+ * Remembers the output MathJax produced for the LaTeX it has typeset, so
+ * that equations seen before (in any editor) can be shown without being
+ * typeset again. Entries are keyed by the LaTeX text along with the editor
+ * theme and font size it was typeset with, and the least recently used
+ * entries are discarded once the cache is full.
+ */
+public class MathJaxCache
+{
+   public static class Entry
+   {
+      private Entry(String html)
+      {
+         html_ = html;
+      }
+
+      public String getHtml()
+      {
+         return html_;
+      }
+
+      /**
+       * @return the height of the output when shown in a line widget, or -1
+       *    if it has not been measured yet
+       */
+      public int getHeight()
+      {
+         return height_;
+      }
+
+      public void setHeight(int height)
+      {
+         height_ = height;
+      }
+
+      private final String html_;
+      private int height_ = -1;
+   }
+
+   private MathJaxCache()
+   {
+   }
+
+   public static String key(UIPrefs prefs, String text)
+   {
+      AceTheme theme = prefs.theme().getValue();
+      return (theme == null ? "" : theme.getName()) + SEPARATOR +
+             prefs.fontSize().getValue() + SEPARATOR +
+             text;
+   }
+
+   /**
+    * @return the cached output for the key, or null if there is none
+    */
+   public static Entry get(String key)
+   {
+      return entries_.get(key);
+   }
+
+   /**
+    * Records the output MathJax has just typeset into the element. Output
+    * showing errors is not recorded.
+    */
+   public static Entry put(String key, Element el)
+   {
+      String html = snapshot(el);
+      if (html == null)
+         return null;
+
+      Entry entry = new Entry(html);
+      entries_.put(key, entry);
+      return entry;
+   }
+
+   // copies the rendered output, leaving out the math source scripts and
+   // previews (which MathJax would otherwise treat as math to typeset) and
+   // element ids (which would be duplicated wherever the output is shown);
+   // without its script, the output has no jax, so MathJax.java records the
+   // text shown separately
+   private static final native String snapshot(Element el)
+   /*-{
+      if (el.querySelector(".MathJax_Error"))
+         return null;
+
+      var clone = el.cloneNode(true);
+      var scripts = clone.querySelectorAll("script, .MathJax_Preview");
+      for (var i = 0; i < scripts.length; i++)
+         scripts[i].parentNode.removeChild(scripts[i]);
+
+      var identified = clone.querySelectorAll("[id]");
+      for (var i = 0; i < identified.length; i++)
+         identified[i].removeAttribute("id");
+
+      return clone.innerHTML;
+   }-*/;
+
+   private static class EntryMap extends LinkedHashMap<String, Entry>
+   {
+      public EntryMap(int capacity)
+      {
+         super(capacity, 0.75f, true);
+         capacity_ = capacity;
+      }
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+      {
+         return size() > capacity_;
+      }
+
+      private final int capacity_;
+   }
+
+   private static final String SEPARATOR = "\n";
+   private static final int MAX_ENTRIES = 500;
+
+   // key => typeset output, most recently used last
+   private static final EntryMap entries_ = new EntryMap(MAX_ENTRIES);
+}
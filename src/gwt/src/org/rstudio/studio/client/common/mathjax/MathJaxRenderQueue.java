@@ -14,39 +14,57 @@
  */
 package org.rstudio.studio.client.common.mathjax;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
-import org.rstudio.studio.client.common.mathjax.MathJax.MathJaxTypesetCallback;
+import org.rstudio.studio.client.common.mathjax.MathJax.MathJaxRenderCallback;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
 
+import com.google.gwt.user.client.Timer;
+
+// typesets LaTeX one range at a time, in the background; shared by all
+// editors so that opening several documents doesn't flood MathJax with work
 public class MathJaxRenderQueue
 {
-   public MathJaxRenderQueue(MathJax mathjax)
+   private MathJaxRenderQueue()
    {
-      mathjax_ = mathjax;
+      jobs_ = new LinkedList<Job>();
       
-      ranges_ = new LinkedList<Range>();
-      callback_ = new MathJaxTypesetCallback()
+      // move on if a render doesn't start typesetting in time (e.g. because
+      // its editor is hidden, so its line widget isn't attached until the
+      // editor is shown; the render still completes then, outside the
+      // queue). typesetting itself isn't timed, so that a slow typeset
+      // doesn't overlap the next one
+      startTimeout_ = new Timer()
       {
          @Override
-         public void onMathJaxTypesetComplete(boolean error)
+         public void run()
          {
-            renderNext();
+            onRenderCompleted(current_);
          }
       };
-      
    }
    
-   public void enqueueAndRender(final List<Range> ranges)
+   public static MathJaxRenderQueue get()
    {
+      if (INSTANCE == null)
+         INSTANCE = new MathJaxRenderQueue();
+      return INSTANCE;
+   }
+   
+   public void enqueueAndRender(final MathJax mathjax, final List<Range> ranges)
+   {
+      if (ranges.isEmpty())
+         return;
+      
       MathJaxLoader.withMathJaxLoaded(new MathJaxLoader.Callback()
       {
          @Override
          public void onLoaded(boolean alreadyLoaded)
          {
-            ranges_.addAll(ranges);
+            for (Range range : ranges)
+               jobs_.add(new Job(mathjax, range));
             if (isRunning_)
                return;
 
@@ -55,26 +73,83 @@ public class MathJaxRenderQueue
       });
    }
    
+   // drops the ranges waiting to be rendered by the given editor's MathJax
+   // when the editor is closed, and moves on if one of them is being
+   // rendered (since it may never complete)
+   public void remove(MathJax mathjax)
+   {
+      Iterator<Job> it = jobs_.iterator();
+      while (it.hasNext())
+      {
+         if (it.next().mathjax == mathjax)
+            it.remove();
+      }
+      
+      if (current_ != null && current_.mathjax == mathjax)
+         onRenderCompleted(current_);
+   }
+   
    // Private Methods ----
    
    private boolean renderNext()
    {
-      Range range = ranges_.poll();
-      if (range == null)
+      final Job job = jobs_.poll();
+      if (job == null)
       {
          isRunning_ = false;
          return false;
       }
       
       isRunning_ = true;
-      mathjax_.renderLatex(range, false, callback_);
+      current_ = job;
+      startTimeout_.schedule(START_TIMEOUT_MS);
+      job.mathjax.renderLatex(job.range, false, new MathJaxRenderCallback()
+      {
+         @Override
+         public void onMathJaxTypesetStarted()
+         {
+            if (job == current_)
+               startTimeout_.cancel();
+         }
+         
+         @Override
+         public void onMathJaxTypesetComplete(boolean error)
+         {
+            onRenderCompleted(job);
+         }
+      });
       return true;
    }
    
-   private final MathJax mathjax_;
+   private void onRenderCompleted(Job job)
+   {
+      // ignore renders we've already given up on
+      if (job == null || job != current_)
+         return;
+      
+      startTimeout_.cancel();
+      current_ = null;
+      renderNext();
+   }
+   
+   private static class Job
+   {
+      public Job(MathJax mathjax, Range range)
+      {
+         this.mathjax = mathjax;
+         this.range = range;
+      }
+      
+      public final MathJax mathjax;
+      public final Range range;
+   }
    
-   private final Queue<Range> ranges_;
-   private final MathJaxTypesetCallback callback_;
+   private final LinkedList<Job> jobs_;
+   private final Timer startTimeout_;
+   private Job current_;
    private boolean isRunning_;
+   
+   private static MathJaxRenderQueue INSTANCE;
+   private static final int START_TIMEOUT_MS = 5000;
 
 }
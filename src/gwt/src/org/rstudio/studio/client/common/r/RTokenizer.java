@@ -15,11 +15,15 @@
 package org.rstudio.studio.client.common.r;
 
 import org.rstudio.core.client.StringUtil;
-import org.rstudio.core.client.regex.Match;
-import org.rstudio.core.client.regex.Pattern;
 
 import java.util.ArrayList;
 
+/**
+ * Splits R code into tokens. Tokens are recognized by scanning characters
+ * forward from the current position (never searching beyond the token
+ * being matched), so tokenizing takes time linear in the length of the
+ * code.
+ */
 public class RTokenizer
 {
    public RTokenizer(String data)
@@ -108,9 +112,11 @@ public class RTokenizer
    
    private RToken matchWhitespace()
    {
-      String whitespace = peek("[\\s\\u00A0]+") ;
-      assert whitespace != null ;
-      return consumeToken(RToken.WHITESPACE, whitespace.length()) ;
+      int end = pos_ ;
+      while (end < data_.length() && isWhitespace(data_.charAt(end)))
+         end++ ;
+      assert end > pos_ ;
+      return consumeToken(RToken.WHITESPACE, end - pos_) ;
    }
    
    private RToken matchStringLiteral()
@@ -124,7 +130,9 @@ public class RTokenizer
       
       while (!eol())
       {
-         eatUntil("[\\\\\'\"]", true) ;
+         // skip to the next quote or escape
+         while (!eol() && !isStringDelimiter(peek()))
+            pos_++ ;
          if (eol())
             break ;
          
@@ -155,23 +163,40 @@ public class RTokenizer
    
    private RToken matchNumber()
    {
-      String num = peek("0x[0-9a-fA-F]*L?") ;
-      if (num == null)
-         num = peek("[0-9]*(\\.[0-9]*)?([eE][+-]?[0-9]*)?[Li]?") ;
-
-      // We should only be in this method if 0-9 was matched, so this should
-      // be a safe assumption
-      assert num != null ;
+      int end = pos_ ;
+      if (peek(0, false) == '0' && peek(1, false) == 'x')
+      {
+         // hexadecimal: 0x[0-9a-fA-F]*L?
+         end = skipWhile(end + 2, HEX_DIGITS) ;
+         end = skipOne(end, 'L') ;
+      }
+      else
+      {
+         // decimal: [0-9]*(\.[0-9]*)?([eE][+-]?[0-9]*)?[Li]?
+         end = skipWhile(end, DIGITS) ;
+         if (end < data_.length() && data_.charAt(end) == '.')
+            end = skipWhile(end + 1, DIGITS) ;
+         if (end < data_.length() && 
+             (data_.charAt(end) == 'e' || data_.charAt(end) == 'E'))
+         {
+            end = skipOne(end + 1, '+', '-') ;
+            end = skipWhile(end, DIGITS) ;
+         }
+         end = skipOne(end, 'L', 'i') ;
+      }
 
-      return consumeToken(RToken.NUMBER, num.length()) ;
+      return consumeToken(RToken.NUMBER, end - pos_) ;
    }
    
    private RToken matchIdentifier()
    {
       int start = pos_ ;
       eat() ;
-      String rest = peek("[\\w.]*") ;
-      pos_ += (rest != null ? rest : "").length() ;
+      
+      // [\w.]*
+      while (!eol() && isIdentifierChar(peek()))
+         pos_++ ;
+      
       return new RToken(RToken.ID, 
                         data_.substring(start, pos_), 
                         start, 
@@ -180,26 +205,29 @@ public class RTokenizer
 
    private RToken matchQuotedIdentifier()
    {
-      String iden = peek("`[^`]*`") ;
-      if (iden == null)
+      int end = data_.indexOf('`', pos_ + 1) ;
+      if (end == -1)
          return consumeToken(RToken.ERROR, 1);
       else
-         return consumeToken(RToken.ID, iden.length());
+         return consumeToken(RToken.ID, end + 1 - pos_);
    }
 
    private RToken matchComment()
    {
-      String comment = peek("#.*?$");
-      return consumeToken(RToken.COMMENT, comment.length());
+      // the comment runs to the end of the line
+      int end = pos_ ;
+      while (end < data_.length() && !isLineTerminator(data_.charAt(end)))
+         end++ ;
+      return consumeToken(RToken.COMMENT, end - pos_);
    }
    
    private RToken matchUserOperator()
    {
-      String oper = peek("%[^%]*%") ;
-      if (oper == null)
+      int end = data_.indexOf('%', pos_ + 1) ;
+      if (end == -1)
          return consumeToken(RToken.ERROR, 1) ;
       else
-         return consumeToken(RToken.UOPER, oper.length()) ;
+         return consumeToken(RToken.UOPER, end + 1 - pos_) ;
    }
    
    private RToken matchOperator()
@@ -254,38 +282,58 @@ public class RTokenizer
       return result ;
    }
    
-   private String peek(String regex)
+   // returns the position of the first character at or after pos that
+   // isn't one of chars
+   private int skipWhile(int pos, String chars)
    {
-      Match match = Pattern.create(regex).match(data_, pos_) ;
-      if (match == null)
-         return null ;
-      int idx = match.getIndex() ;
-      if (idx != pos_)
-         return null ;
-      
-      return match.getValue() ;
+      while (pos < data_.length() && chars.indexOf(data_.charAt(pos)) != -1)
+         pos++ ;
+      return pos ;
    }
    
-   private String eatUntil(String regex, boolean eatAllOnFailure)
+   // returns the position after the character at pos if it is one of chars
+   private int skipOne(int pos, char... chars)
    {
-      int start = pos_ ;
-      Match match = Pattern.create(regex).match(data_, pos_) ;
-      if (match == null)
-      {
-         if (eatAllOnFailure)
-         {
-            pos_ = data_.length() ;
-            return data_.substring(start) ;
-         }
-         else
-         {
-            return null ;
-         }
-      }
-      else
+      if (pos >= data_.length())
+         return pos ;
+      for (char c : chars)
+         if (data_.charAt(pos) == c)
+            return pos + 1 ;
+      return pos ;
+   }
+   
+   private static boolean isStringDelimiter(char c)
+   {
+      return c == '\\' || c == '\'' || c == '"' ;
+   }
+   
+   // matches the regex class \w, plus '.'
+   private static boolean isIdentifierChar(char c)
+   {
+      return (c >= 'a' && c <= 'z') ||
+             (c >= 'A' && c <= 'Z') ||
+             (c >= '0' && c <= '9') ||
+             c == '_' || c == '.' ;
+   }
+   
+   // matches the characters JavaScript regular expressions treat as line
+   // terminators
+   private static boolean isLineTerminator(char c)
+   {
+      return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' ;
+   }
+   
+   // matches the characters in the JavaScript regex class \s
+   private static boolean isWhitespace(char c)
+   {
+      switch (c)
       {
-         pos_ = match.getIndex() ;
-         return data_.substring(start, pos_) ;
+      case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+      case '\u00A0': case '\u1680': case '\u2028': case '\u2029':
+      case '\u202F': case '\u205F': case '\u3000': case '\uFEFF':
+         return true ;
+      default:
+         return c >= '\u2000' && c <= '\u200A' ;
       }
    }
    
@@ -303,4 +351,7 @@ public class RTokenizer
    
    private final String data_ ;
    private int pos_ ;
+   
+   private static final String DIGITS = "0123456789" ;
+   private static final String HEX_DIGITS = "0123456789abcdefABCDEF" ;
 }
@@ -17,7 +17,19 @@ var SpellingPrefetcher;
 (function () {
     "use strict";
 
+    // suggestions take a while to compute, so prefetch few at a time
+    var PREFETCH_BATCH_SIZE = 5;
+
     SpellingPrefetcher = function(typoJsCode) {
+        this.requests = {};
+        this.nextId = 0;
+
+        // requests waiting for the worker; it is sent one at a time so that
+        // requests someone is waiting on can go ahead of prefetching
+        this.interactive = [];
+        this.background = [];
+        this.busy = false;
+
         if (typeof(Worker) === "undefined" || typeof(URL) === "undefined" || typeof(Blob) === "undefined")
             return;
 
@@ -32,25 +44,41 @@ var SpellingPrefetcher;
          *  sake due to our unique runtime environment in a Desktop deployment
          *  See: https://stackoverflow.com/questions/5408406/web-workers-without-a-separate-javascript-file
          *  If interested in deeper research
+         *
+         *  The worker parses the dictionary once (when it is loaded) and
+         *  then answers requests to check or suggest corrections for lists
+         *  of words, so only the words and results cross between threads.
          */
         var blobURL = URL.createObjectURL(new Blob(['(', ""+
 "           function(){"+
                this.typoJsCode +
-"              var typo = new Typo();"+
+"              var typo = null;"+
+"              var dictionary = null;"+
 ""+
 "              onmessage = function(event) {"+
 "                 if (event.target.origin !== '" + window.origin + "') return;"+
-"                 var inTypo = event.data;"+
+"                 var request = event.data;"+
 "                 "+
-"                 ['rules', 'dictionaryTable', 'compoundRules', 'compoundRuleCodes', 'replacementTable',"+
-"                  'flags', 'memoized', 'loaded'].forEach(function(e) { typo[e] = inTypo[e] });"+
+"                 if (request.type === 'load') {"+
+"                    typo = null;"+
+"                    typo = new Typo(request.dictionary, request.aff, request.dic);"+
+"                    dictionary = request.dictionary;"+
+"                    return;"+
+"                 }"+
 ""+
-"                 var s = {};"+
-"                 inTypo.inputwords.forEach(function(word) {"+
-"                    typo.suggest(word);"+
-"                    s[word] = typo.memoized[word];"+
-"                 });"+
-"                 this.postMessage(s);"+
+"                 var response = { id: request.id, available: false, results: [] };"+
+"                 if (typo !== null && dictionary === request.dictionary) {"+
+"                    try {"+
+"                       request.words.forEach(function(word) {"+
+"                          response.results.push(request.type === 'check' ?"+
+"                             typo.check(word) : typo.suggest(word));"+
+"                       });"+
+"                       response.available = true;"+
+"                    } catch (e) {"+
+"                       response.results = [];"+
+"                    }"+
+"                 }"+
+"                 this.postMessage(response);"+
 "              }"+
 "           }",
             ')()'], {type: 'application/javascript'}));
@@ -59,44 +87,103 @@ var SpellingPrefetcher;
         /*
          * End Worker Definition
         */
+
+        var self = this;
+        this.w.onmessage = function (event) {
+            var response = event.data;
+            if (!response || !self.requests.hasOwnProperty(response.id))
+                return;
+
+            var request = self.requests[response.id];
+            delete self.requests[response.id];
+            self.busy = false;
+            self.sendNext();
+            request.callback(request.words, response.available ? response.results : null);
+        };
     };
 
     SpellingPrefetcher.prototype = {
-        prefetch : function (words, typojs) {
-            if (!this.w || !words || !typojs)
+        isAvailable : function () {
+            return !!this.w;
+        },
+
+        // Parses the dictionary in the worker, replacing any loaded before
+        loadDictionary : function (dictionary, aff, dic) {
+            if (!this.w)
                 return;
 
-            // Worker output consumer, bound to local typojs parameter
-            this.w.onmessage = function (event) {
-                if (!!event.data) {
-                    var suggestions = event.data;
-
-                    for (var s in suggestions) {
-                        if (suggestions.hasOwnProperty(s) && typeof suggestions[s] !== 'function') {
-                            typojs.memoized[s] = suggestions[s];
-                        }
-                    }
-                }
-            };
-
-            // Only run worker on words we know we don't have memoized
-            // Possibly premature optimization but it can catch some cases
-            // where we're calling on only already fetched data
-            typojs.inputwords = [];
-            words = words.split(',');
-            words.forEach(function(w) {
-               if (!typojs.memoized.hasOwnProperty(w)) {
-                   typojs.inputwords.push(w);
-               }
+            this.w.postMessage({ type: 'load', dictionary: dictionary, aff: aff, dic: dic });
+        },
+
+        // Calls back with the words and whether each is spelled correctly
+        // (or null results if the dictionary isn't loaded in the worker)
+        check : function (dictionary, words, callback) {
+            this.request('check', dictionary, words, callback);
+        },
+
+        // Calls back with the words and the suggested corrections for each
+        // (or null results if the dictionary isn't loaded in the worker)
+        suggest : function (dictionary, words, callback) {
+            this.request('suggest', dictionary, words, callback);
+        },
+
+        // As suggest, but in small batches (calling back once for each) sent
+        // only when no other request is waiting
+        prefetch : function (dictionary, words, callback) {
+            if (!this.w || !words || words.length === 0) {
+                callback(words, null);
+                return;
+            }
+
+            for (var i = 0; i < words.length; i += PREFETCH_BATCH_SIZE) {
+                this.background.push({
+                    type: 'suggest',
+                    dictionary: dictionary,
+                    words: words.slice(i, i + PREFETCH_BATCH_SIZE),
+                    callback: callback
+                });
+            }
+            this.sendNext();
+        },
+
+        request : function (type, dictionary, words, callback) {
+            if (!this.w || !words || words.length === 0) {
+                callback(words, null);
+                return;
+            }
+
+            this.interactive.push({
+                type: type,
+                dictionary: dictionary,
+                words: words,
+                callback: callback
             });
+            this.sendNext();
+        },
 
-            // Run Worker
-            if (typojs.inputwords.length > 0)
-                this.w.postMessage(typojs);
+        sendNext : function () {
+            if (this.busy)
+                return;
+
+            var request = this.interactive.length > 0 ?
+                this.interactive.shift() :
+                this.background.shift();
+            if (!request)
+                return;
+
+            var id = this.nextId++;
+            this.requests[id] = request;
+            this.busy = true;
+            this.w.postMessage({
+                type: request.type,
+                id: id,
+                dictionary: request.dictionary,
+                words: request.words
+            });
         }
     }
 })();
 
 if (typeof module !== 'undefined') {
     module.exports = SpellingPrefetcher;
-}
\ No newline at end of file
+}
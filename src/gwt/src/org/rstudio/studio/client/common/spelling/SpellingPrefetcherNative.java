@@ -15,14 +15,33 @@
 
 package org.rstudio.studio.client.common.spelling;
 
+import jsinterop.annotations.JsFunction;
 import jsinterop.annotations.JsPackage;
 import jsinterop.annotations.JsType;
 
 @JsType(isNative = true, namespace = JsPackage.GLOBAL, name = "SpellingPrefetcher")
 public class SpellingPrefetcherNative
 {
+   @JsFunction
+   public interface CheckCallback
+   {
+      // correct is null if the worker couldn't check the words
+      void onChecked(String[] words, boolean[] correct);
+   }
+
+   @JsFunction
+   public interface SuggestCallback
+   {
+      // suggestions is null if the worker couldn't check the words
+      void onSuggestions(String[] words, String[][] suggestions);
+   }
+
    SpellingPrefetcherNative(String typoJsCode) {}
 
-   public native void prefetch(String words, Object typoNative);
+   public native boolean isAvailable();
+   public native void loadDictionary(String dictionary, String aff, String dic);
+   public native void check(String dictionary, String[] words, CheckCallback callback);
+   public native void suggest(String dictionary, String[] words, SuggestCallback callback);
+   public native void prefetch(String dictionary, String[] words, SuggestCallback callback);
 }
 
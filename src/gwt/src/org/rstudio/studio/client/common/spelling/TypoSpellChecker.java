@@ -24,8 +24,11 @@ import com.google.gwt.http.client.RequestException;
 import com.google.gwt.http.client.Response;
 import com.google.gwt.resources.client.ClientBundle;
 import com.google.gwt.resources.client.TextResource;
+import com.google.gwt.user.client.Command;
 import com.google.inject.Inject;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.ExternalJavaScriptLoader;
+import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.jsonrpc.RequestLog;
 import org.rstudio.core.client.jsonrpc.RequestLogEntry;
 import org.rstudio.studio.client.RStudioGinjector;
@@ -38,7 +41,9 @@ import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TypoSpellChecker
 {
@@ -69,7 +74,11 @@ public class TypoSpellChecker
 
       // subscribe to spelling prefs changes (invalidateAll on changes)
       ValueChangeHandler<Boolean> prefChangedHandler = (event) -> context_.invalidateAllWords();
-      ValueChangeHandler<String> dictChangedHandler = (event) -> loadDictionary();
+      ValueChangeHandler<String> dictChangedHandler = (event) ->
+      {
+         loadDictionary();
+         context_.invalidateAllWords();
+      };
       uiPrefs_.realTimeSpellChecking().addValueChangeHandler(prefChangedHandler);
       uiPrefs_.ignoreWordsInUppercase().addValueChangeHandler(prefChangedHandler);
       uiPrefs_.ignoreWordsWithNumbers().addValueChangeHandler(prefChangedHandler);
@@ -103,6 +112,7 @@ public class TypoSpellChecker
          spellingWorkerInitialized_ = true;
          ExternalJavaScriptLoader.Callback loadSpellingWorker = () -> {
             spellingPrefetcherNative_ = new SpellingPrefetcherNative(RES.typoJsCode().getText());
+            loadWorkerDictionary();
          };
          new ExternalJavaScriptLoader(
             SpellingPrefetcherResources.INSTANCE.spellingprefetcherjs().getSafeUri().asString()
@@ -112,14 +122,6 @@ public class TypoSpellChecker
       loadDictionary();
    }
 
-   // Check the spelling of a single word, directly returning an
-   // array of suggestions for corrections. The array is empty if the
-   // word is deemed correct by the dictionary
-   public boolean checkSpelling(String word)
-   {
-      return allIgnoredWords_.contains(word) || typoNative_.check(word);
-   }
-
    public void checkSpelling(List<String> words, final ServerRequestCallback<SpellCheckerResult> callback)
    {
       // allocate results
@@ -132,25 +134,55 @@ public class TypoSpellChecker
          return;
       }
 
+      ArrayList<String> wordsToCheck = new ArrayList<>();
       for (String word : words)
       {
          if (isWordIgnored(word))
-         {
             spellCheckerResult.getCorrect().add(word);
-         }
          else
+            wordsToCheck.add(word);
+      }
+
+      // (no words can be checked if the browser can't run the worker)
+      if (wordsToCheck.isEmpty() || isWorkerUnsupported())
+      {
+         spellCheckerResult.getCorrect().addAll(wordsToCheck);
+         callback.onResponseReceived(spellCheckerResult);
+         return;
+      }
+
+      // words can't be checked until the spelling worker has the dictionary,
+      // so hold on to them until it does
+      if (!isWorkerAvailable())
+      {
+         pendingChecks_.add(() -> checkSpelling(words, callback));
+         return;
+      }
+
+      // check the words as a batch in the spelling worker (which owns the
+      // dictionary)
+      final String dictionary = loadedDict_;
+      spellingPrefetcherNative_.check(
+            dictionary,
+            wordsToCheck.toArray(new String[0]),
+            (checkedWords, correct) ->
+      {
+         if (correct == null)
          {
-            if (typoNative_.check(word))
+            // if another dictionary was loaded since the words were sent,
+            // check them again against it; otherwise the worker couldn't
+            // check them at all
+            if (!StringUtil.equals(dictionary, loadedDict_) || !typoLoaded_)
             {
-               spellCheckerResult.getCorrect().add(word);
-            }
-            else
-            {
-               spellCheckerResult.getIncorrect().add(word);
+               checkSpelling(words, callback);
+               return;
             }
          }
-      }
-      callback.onResponseReceived(spellCheckerResult);
+
+         for (int i = 0; i < checkedWords.length; i++)
+            addCheckResult(spellCheckerResult, checkedWords[i], correct == null || correct[i]);
+         callback.onResponseReceived(spellCheckerResult);
+      });
    }
 
    public void addToUserDictionary(final String word)
@@ -168,16 +200,70 @@ public class TypoSpellChecker
       context_.invalidateMisspelledWords();
    }
 
-   public String[] suggestionList(String word)
+   // Produces the suggested corrections for a word: directly if they are
+   // cached (e.g. because the word was prefetched), and otherwise once the
+   // spelling worker has computed them
+   public void suggestionList(String word, final CommandWithArg<String[]> onReady)
    {
-      if (typoNative_ == null)
+      final String dictionary = loadedDict_;
+      String[] cached = suggestionCache_.get(cacheKey(dictionary, word));
+      if (cached != null)
+      {
+         onReady.execute(cached);
+         return;
+      }
+
+      if (!isWorkerAvailable())
       {
-         return new String[0];
+         onReady.execute(new String[0]);
+         return;
       }
 
-      return typoNative_.suggest(word);
+      spellingPrefetcherNative_.suggest(
+            dictionary,
+            new String[] { word },
+            (requestedWords, suggestions) ->
+      {
+         if (suggestions == null)
+         {
+            onReady.execute(new String[0]);
+            return;
+         }
+
+         suggestionCache_.put(cacheKey(dictionary, word), suggestions[0]);
+         onReady.execute(suggestions[0]);
+      });
+   }
+
+   private static void addCheckResult(SpellCheckerResult result,
+                                      String word,
+                                      boolean correct)
+   {
+      if (correct)
+         result.getCorrect().add(word);
+      else
+         result.getIncorrect().add(word);
+   }
+
+   private static boolean isWorkerAvailable()
+   {
+      return typoLoaded_ &&
+             spellingPrefetcherNative_ != null &&
+             spellingPrefetcherNative_.isAvailable();
+   }
+
+   private static boolean isWorkerUnsupported()
+   {
+      return spellingPrefetcherNative_ != null &&
+             !spellingPrefetcherNative_.isAvailable();
    }
-   private boolean isWordIgnored(String word)
+
+   private static String cacheKey(String dictionary, String word)
+   {
+      return dictionary + "/" + word;
+   }
+
+   public boolean isWordIgnored(String word)
    {
       return (allIgnoredWords_.contains(word) ||
               ignoreUppercaseWord(word) ||
@@ -221,8 +307,10 @@ public class TypoSpellChecker
    {
       String dictLanguage = uiPrefs_.spellingDictionaryLanguage().getValue();
 
-      // don't load the same dictionary again
-      if (typoLoaded_ && loadedDict_ == dictLanguage)
+      // don't load the same dictionary again (the dictionary is shared by
+      // all editors, each of which asks for it)
+      if (StringUtil.equals(loadingDict_, dictLanguage) ||
+          (typoLoaded_ && StringUtil.equals(loadedDict_, dictLanguage)))
          return;
 
       String path = GWT.getHostPageBaseURL() + "dictionaries/" + dictLanguage + "/" + dictLanguage;
@@ -230,6 +318,7 @@ public class TypoSpellChecker
       RequestLogEntry affLogEntry = RequestLog.log(dictLanguage + "_aff_request", "");
       RequestLogEntry dicLogEntry = RequestLog.log(dictLanguage + "_dic_request", "");
 
+      loadingDict_ = dictLanguage;
       typoLoaded_ = false;
       try
       {
@@ -241,44 +330,104 @@ public class TypoSpellChecker
                   new RequestBuilder(RequestBuilder.GET, path + ".dic").sendRequest("", new RequestCallback() {
                      @Override
                      public void onResponseReceived(Request dicReq, Response dicResp) {
-                        ExternalJavaScriptLoader.Callback loadTypoCallback = () -> {
-                           typoNative_ = new TypoNative(dictLanguage, affResp.getText(), dicResp.getText(), null);
-                           loadedDict_ = dictLanguage;
-                           typoLoaded_ = true;
-                        };
-                        new ExternalJavaScriptLoader(TypoResources.INSTANCE.typojs().getSafeUri().asString()).addCallback(loadTypoCallback);
+                        // ignore the dictionary if another was requested since
+                        if (!StringUtil.equals(loadingDict_, dictLanguage))
+                           return;
+
+                        // only the spelling worker parses the dictionary
+                        loadedDict_ = dictLanguage;
+                        loadingDict_ = null;
+                        typoLoaded_ = true;
+
+                        workerDict_ = dictLanguage;
+                        workerAff_ = affResp.getText();
+                        workerDic_ = dicResp.getText();
+                        loadWorkerDictionary();
                      }
 
                      @Override
                      public void onError(Request res, Throwable throwable) {
+                        loadingDict_ = null;
                         dicLogEntry.logResponse(RequestLogEntry.ResponseType.Error, throwable.getLocalizedMessage());
                      }
                   });
                }
                catch (RequestException e)
                {
+                  loadingDict_ = null;
                   dicLogEntry.logResponse(RequestLogEntry.ResponseType.Unknown, e.getLocalizedMessage());
                }
             }
 
             @Override
             public void onError(Request res, Throwable throwable) {
+               loadingDict_ = null;
                affLogEntry.logResponse(RequestLogEntry.ResponseType.Error, throwable.getLocalizedMessage());
             }
          });
       }
       catch (RequestException e)
       {
+         loadingDict_ = null;
          affLogEntry.logResponse(RequestLogEntry.ResponseType.Unknown, e.getLocalizedMessage());
       }
    }
 
+   // Parses the loaded dictionary in the spelling worker, once both are ready
+   private static void loadWorkerDictionary()
+   {
+      if (spellingPrefetcherNative_ == null || workerDict_ == null)
+         return;
+
+      spellingPrefetcherNative_.loadDictionary(workerDict_, workerAff_, workerDic_);
+      workerDict_ = null;
+      workerAff_ = null;
+      workerDic_ = null;
+
+      // check the words that were waiting for the dictionary (requests
+      // reach the worker after the dictionary does)
+      ArrayList<Command> pending = new ArrayList<>(pendingChecks_);
+      pendingChecks_.clear();
+      for (Command command : pending)
+         command.execute();
+   }
+
+   // Computes (in the spelling worker) and caches suggestions for the words
+   // that don't already have them
    public void prefetchWords(ArrayList<String> words)
    {
-      if (spellingWorkerInitialized_)
+      if (!isWorkerAvailable())
+         return;
+
+      final String dictionary = loadedDict_;
+      ArrayList<String> wordsToFetch = new ArrayList<>();
+      for (String word : words)
       {
-         spellingPrefetcherNative_.prefetch(String.join(",", words), typoNative_);
+         String key = cacheKey(dictionary, word);
+         if (suggestionCache_.containsKey(key) || pendingSuggestions_.contains(key))
+            continue;
+
+         pendingSuggestions_.add(key);
+         wordsToFetch.add(word);
       }
+
+      if (wordsToFetch.isEmpty())
+         return;
+
+      // (in small batches behind any suggestions asked for interactively)
+      spellingPrefetcherNative_.prefetch(
+            dictionary,
+            wordsToFetch.toArray(new String[0]),
+            (requestedWords, suggestions) ->
+      {
+         for (int i = 0; i < requestedWords.length; i++)
+         {
+            String key = cacheKey(dictionary, requestedWords[i]);
+            pendingSuggestions_.remove(key);
+            if (suggestions != null)
+               suggestionCache_.put(key, suggestions[i]);
+         }
+      });
    }
 
    public static boolean isLoaded() { return typoLoaded_; }
@@ -290,8 +439,22 @@ public class TypoSpellChecker
    private static boolean spellingWorkerInitialized_ = false;
 
    private static String loadedDict_;
+   private static String loadingDict_;
    private static boolean typoLoaded_ = false;
-   private static TypoNative typoNative_;
+
+   // the dictionary waiting to be loaded by the spelling worker
+   private static String workerDict_;
+   private static String workerAff_;
+   private static String workerDic_;
+
+   // suggested corrections, keyed by dictionary and word (in order of use)
+   private static final int MAX_CACHED_SUGGESTIONS = 2000;
+   private static final SuggestionCache suggestionCache_ =
+         new SuggestionCache(MAX_CACHED_SUGGESTIONS);
+   private static final HashSet<String> pendingSuggestions_ = new HashSet<>();
+
+   // spelling checks waiting for the dictionary to reach the worker
+   private static final ArrayList<Command> pendingChecks_ = new ArrayList<>();
 
    private WorkbenchList userDictionary_;
    private ArrayList<String> userDictionaryWords_;
@@ -299,5 +462,22 @@ public class TypoSpellChecker
    private final HashSet<String> allIgnoredWords_ = new HashSet<>();
 
    private UIPrefs uiPrefs_;
+
+   private static class SuggestionCache extends LinkedHashMap<String, String[]>
+   {
+      public SuggestionCache(int capacity)
+      {
+         super(capacity, 0.75f, true);
+         capacity_ = capacity;
+      }
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest)
+      {
+         return size() > capacity_;
+      }
+
+      private final int capacity_;
+   }
 }
 
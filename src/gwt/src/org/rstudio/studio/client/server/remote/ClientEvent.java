@@ -185,6 +185,7 @@ class ClientEvent extends JavaScriptObject
    public static final String ComputeThemeColors = "compute_theme_colors";
    public static final String RequestDocumentClose = "request_document_close";
    public static final String ExecuteAppCommand = "execute_app_command";
+   public static final String GlobalEnvironmentChanged = "global_environment_changed";
 
    protected ClientEvent()
    {
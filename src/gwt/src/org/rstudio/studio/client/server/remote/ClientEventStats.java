@@ -0,0 +1,120 @@
+/*
+ * ClientEventStats.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long the client spends handling each type of server event,
+ * so that the events most responsible for blocking the UI can be found.
+ */
+public class ClientEventStats
+{
+   public static void record(String type, long elapsedMs)
+   {
+      Histogram histogram = histograms_.get(type);
+      if (histogram == null)
+      {
+         histogram = new Histogram(type);
+         histograms_.put(type, histogram);
+      }
+      histogram.add(elapsedMs);
+   }
+
+   public static void reset()
+   {
+      histograms_.clear();
+   }
+
+   /**
+    * @return a report of count, total, p95 and max handling time for each
+    *    event type, most expensive (by total time) first
+    */
+   public static String report()
+   {
+      List<Histogram> histograms = new ArrayList<Histogram>(histograms_.values());
+      Collections.sort(histograms, (a, b) -> Long.compare(b.total_, a.total_));
+
+      StringBuilder report = new StringBuilder();
+      report.append("type\tcount\ttotal_ms\tp95_ms\tmax_ms\n");
+      for (Histogram histogram : histograms)
+      {
+         report.append(histogram.type_).append('\t')
+               .append(histogram.count_).append('\t')
+               .append(histogram.total_).append('\t')
+               .append(histogram.percentile(0.95)).append('\t')
+               .append(histogram.max_).append('\n');
+      }
+      return report.toString();
+   }
+
+   private static class Histogram
+   {
+      public Histogram(String type)
+      {
+         type_ = type;
+      }
+
+      public void add(long elapsedMs)
+      {
+         count_++;
+         total_ += elapsedMs;
+         max_ = Math.max(max_, elapsedMs);
+
+         int bucket = 0;
+         while (bucket < BUCKET_LIMITS.length - 1 &&
+                elapsedMs > BUCKET_LIMITS[bucket])
+         {
+            bucket++;
+         }
+         buckets_[bucket]++;
+      }
+
+      /**
+       * @return upper bound (in ms) of the bucket containing the given
+       *    percentile; the exact value is not retained
+       */
+      public long percentile(double fraction)
+      {
+         long threshold = (long) Math.ceil(count_ * fraction);
+         long seen = 0;
+         for (int i = 0; i < buckets_.length; i++)
+         {
+            seen += buckets_[i];
+            if (seen >= threshold)
+               return Math.min(BUCKET_LIMITS[i], max_);
+         }
+         return max_;
+      }
+
+      private final String type_;
+      private final long[] buckets_ = new long[BUCKET_LIMITS.length];
+      private long count_ = 0;
+      private long total_ = 0;
+      private long max_ = 0;
+   }
+
+   // upper bounds (inclusive, in ms) of the histogram buckets
+   private static final long[] BUCKET_LIMITS = {
+         0, 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, Long.MAX_VALUE
+   };
+
+   private static final Map<String, Histogram> histograms_ =
+         new HashMap<String, Histogram>();
+}
@@ -0,0 +1,140 @@
+/*
+ * ConsoleOutputCoalescer.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.workbench.views.console.events.ConsoleWriteErrorEvent;
+import org.rstudio.studio.client.workbench.views.console.events.ConsoleWriteOutputEvent;
+import org.rstudio.studio.client.workbench.views.console.model.ConsoleText;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.core.client.GWT;
+
+/**
+ * Gathers runs of consecutive console output (or error) events bound for the
+ * same console into a single event, dispatched on the next animation frame,
+ * so that a burst of output results in one write to the console rather than
+ * one per server event. Callers must flush before dispatching any other
+ * event so that output stays ordered with respect to prompts, input, etc.
+ */
+class ConsoleOutputCoalescer implements AnimationScheduler.AnimationCallback
+{
+   public ConsoleOutputCoalescer(EventBus eventBus)
+   {
+      eventBus_ = eventBus;
+   }
+
+   public boolean handles(String type)
+   {
+      return StringUtil.equals(type, ClientEvent.ConsoleOutput) ||
+             StringUtil.equals(type, ClientEvent.ConsoleError);
+   }
+
+   public void add(String type, ConsoleText output)
+   {
+      // a change of style or target console ends the current run
+      if (pendingType_ != null &&
+          (!StringUtil.equals(pendingType_, type) ||
+           !StringUtil.equals(pendingConsole_, output.console)))
+      {
+         flush();
+      }
+
+      if (pendingType_ == null)
+      {
+         pendingType_ = type;
+         pendingConsole_ = output.console;
+      }
+      pending_.append(output.text);
+      eventsReceived_++;
+
+      // don't let a run grow without bound (e.g. when animation frames are
+      // suspended because the window is hidden)
+      if (pending_.length() >= MAX_PENDING_CHARS)
+         flush();
+      else if (frame_ == null)
+         frame_ = AnimationScheduler.get().requestAnimationFrame(this);
+   }
+
+   public void flush()
+   {
+      if (frame_ != null)
+      {
+         frame_.cancel();
+         frame_ = null;
+      }
+
+      if (pendingType_ == null)
+         return;
+
+      ConsoleText output = new ConsoleText();
+      output.text = pending_.toString();
+      output.console = pendingConsole_;
+      String type = pendingType_;
+
+      pending_.setLength(0);
+      pendingType_ = null;
+      pendingConsole_ = null;
+      eventsDispatched_++;
+
+      try
+      {
+         if (StringUtil.equals(type, ClientEvent.ConsoleOutput))
+            eventBus_.dispatchEvent(new ConsoleWriteOutputEvent(output));
+         else
+            eventBus_.dispatchEvent(new ConsoleWriteErrorEvent(output));
+      }
+      catch(Throwable e)
+      {
+         GWT.log("WARNING: Exception occured dispatching event: " + type, e);
+      }
+   }
+
+   @Override
+   public void execute(double timestamp)
+   {
+      frame_ = null;
+      flush();
+   }
+
+   /**
+    * @return number of console output/error events received from the server
+    */
+   public int getEventsReceived()
+   {
+      return eventsReceived_;
+   }
+
+   /**
+    * @return number of console writes avoided by merging events
+    */
+   public int getWritesSaved()
+   {
+      return eventsReceived_ - eventsDispatched_;
+   }
+
+   private final EventBus eventBus_;
+   private final StringBuilder pending_ = new StringBuilder();
+
+   private String pendingType_;
+   private String pendingConsole_;
+   private AnimationScheduler.AnimationHandle frame_;
+
+   private int eventsReceived_ = 0;
+   private int eventsDispatched_ = 0;
+
+   private static final int MAX_PENDING_CHARS = 256 * 1024;
+}
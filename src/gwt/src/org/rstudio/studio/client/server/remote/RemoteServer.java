@@ -45,6 +45,7 @@ import org.rstudio.studio.client.application.model.*;
 import org.rstudio.studio.client.common.JSONArrayBuilder;
 import org.rstudio.studio.client.common.JSONUtils;
 import org.rstudio.studio.client.common.codetools.Completions;
+import org.rstudio.studio.client.common.codetools.PackageExports;
 import org.rstudio.studio.client.common.console.ConsoleProcess;
 import org.rstudio.studio.client.common.console.ConsoleProcess.ConsoleProcessFactory;
 import org.rstudio.studio.client.common.console.ConsoleProcessInfo;
@@ -149,6 +150,7 @@ import org.rstudio.studio.client.workbench.model.TexCapabilities;
 import org.rstudio.studio.client.workbench.model.WorkbenchMetrics;
 import org.rstudio.studio.client.workbench.prefs.model.RPrefs;
 import org.rstudio.studio.client.workbench.prefs.model.SpellingPrefsContext;
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.snippets.model.SnippetData;
 import org.rstudio.studio.client.workbench.views.buildtools.model.BookdownFormats;
 import org.rstudio.studio.client.workbench.views.connections.model.ConnectionId;
@@ -224,7 +226,8 @@ public class RemoteServer implements Server
    public RemoteServer(Session session, 
                        EventBus eventBus,
                        final SatelliteManager satelliteManager,
-                       Provider<ConsoleProcessFactory> pConsoleProcessFactory)
+                       Provider<ConsoleProcessFactory> pConsoleProcessFactory,
+                       final Provider<UIPrefs> pUIPrefs)
    {
       pConsoleProcessFactory_ = pConsoleProcessFactory;
       clientId_ = null;
@@ -256,6 +259,10 @@ public class RemoteServer implements Server
          public void onSessionInit(SessionInitEvent sie)
          {
             userHomePath_ = getUserHomePath(session_.getSessionInfo());
+            
+            // rpc batching is opt-in
+            pUIPrefs.get().batchRpcRequests().bind(
+                  (enabled) -> requestBatcher_.setEnabled(enabled));
          }
       });
       
@@ -602,6 +609,21 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, SEARCH_CODE, params, requestCallback);
    }
    
+   public void getCodeSearchIndex(
+         ServerRequestCallback<CodeSearchResults> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, GET_CODE_SEARCH_INDEX, requestCallback);
+   }
+   
+   public void getCodeSearchFileIndex(
+         JsArrayString paths,
+         ServerRequestCallback<CodeSearchResults> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      setArrayString(params, 0, paths);
+      sendRequest(RPC_SCOPE, GET_CODE_SEARCH_FILE_INDEX, params, requestCallback);
+   }
+   
    public void getObjectDefinition(
          String line, 
          int pos,
@@ -1023,6 +1045,18 @@ public class RemoteServer implements Server
                   requestCallback);
    }
    
+   public void getPackageCompletionIndex(
+         JsArrayString packages,
+         ServerRequestCallback<JsArray<PackageExports>> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      setArrayString(params, 0, packages);
+      sendRequest(RPC_SCOPE,
+                  GET_PACKAGE_COMPLETION_INDEX,
+                  params,
+                  requestCallback);
+   }
+   
    public void markdownGetCompletions(int completionType,
                                       JavaScriptObject completionData,
                                       ServerRequestCallback<Completions> requestCallback)
@@ -2076,6 +2110,36 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, SAVE_DOCUMENT_DIFF, params, requestCallback);
    }
 
+   public void saveDocumentEdits(String id,
+                                 String path,
+                                 String fileType,
+                                 String encoding,
+                                 String foldSpec,
+                                 JsArray<ChunkDefinition> chunkDefs,
+                                 JsArrayString replacements,
+                                 JsArrayInteger offsets,
+                                 JsArrayInteger lengths,
+                                 String hash,
+                                 int documentLength,
+                                 ServerRequestCallback<String> requestCallback)
+   {
+      eventBus_.fireEvent(new ApplicationTutorialEvent(ApplicationTutorialEvent.FILE_SAVE));
+
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(id));
+      params.set(1, path == null ? JSONNull.getInstance() : new JSONString(path));
+      params.set(2, fileType == null ? JSONNull.getInstance() : new JSONString(fileType));
+      params.set(3, encoding == null ? JSONNull.getInstance() : new JSONString(encoding));
+      params.set(4, new JSONString(StringUtil.notNull(foldSpec)));
+      params.set(5, chunkDefs == null ? JSONNull.getInstance() : new JSONObject(chunkDefs));
+      params.set(6, new JSONArray(replacements));
+      params.set(7, new JSONArray(offsets));
+      params.set(8, new JSONArray(lengths));
+      params.set(9, new JSONString(hash));
+      params.set(10, new JSONNumber(documentLength));
+      sendRequest(RPC_SCOPE, SAVE_DOCUMENT_DIFF, params, requestCallback);
+   }
+
    public void checkForExternalEdit(
          String id,
          ServerRequestCallback<CheckForExternalEditResult> requestCallback)
@@ -3265,8 +3329,8 @@ public class RemoteServer implements Server
       if (isDisconnected(scope))
          return rpcRequest;
 
-      // send the request
-      rpcRequest.send(new RpcRequestCallback() {
+      // send the request (possibly batched with others issued alongside it)
+      RpcRequestCallback requestCallback = new RpcRequestCallback() {
          public void onError(RpcRequest request, RpcError error)
          {
             // ignore errors if we are disconnected
@@ -3337,12 +3401,23 @@ public class RemoteServer implements Server
                   serverEventListener_.ensureEvents();
             }
          }
-      });
+      };
+      if (isBatchable(scope, method))
+         requestBatcher_.send(rpcRequest, requestCallback);
+      else
+         rpcRequest.send(requestCallback);
 
       // return the request
       return rpcRequest;
    }
    
+   private boolean isBatchable(String scope, String method)
+   {
+      // the batcher decides which rpc methods can travel in a multi_call
+      return StringUtil.equals(scope, RPC_SCOPE) &&
+             RpcRequestBatcher.isBatchable(method);
+   }
+   
    private void ensureListeningForEvents()
    {
       // don't do this if we are disconnected
@@ -5912,6 +5987,7 @@ public class RemoteServer implements Server
 
    private final RemoteServerAuth serverAuth_;
    private final RemoteServerEventListener serverEventListener_ ;
+   private final RpcRequestBatcher requestBatcher_ = new RpcRequestBatcher();
 
    private final Provider<ConsoleProcessFactory> pConsoleProcessFactory_;
 
@@ -5951,6 +6027,8 @@ public class RemoteServer implements Server
    private static final String GET_TERMINAL_SHELLS = "get_terminal_shells";
    private static final String START_TERMINAL = "start_terminal";
    private static final String SEARCH_CODE = "search_code";
+   private static final String GET_CODE_SEARCH_INDEX = "get_code_search_index";
+   private static final String GET_CODE_SEARCH_FILE_INDEX = "get_code_search_file_index";
    private static final String GET_SEARCH_PATH_FUNCTION_DEFINITION = "get_search_path_function_definition";
    private static final String GET_METHOD_DEFINITION = "get_method_definition";
    private static final String GET_FUNCTION_DEFINITION = "get_function_definition";
@@ -5969,6 +6047,7 @@ public class RemoteServer implements Server
    private static final String EXTRACT_CHUNK_OPTIONS = "extract_chunk_options";
    private static final String EXECUTE_USER_COMMAND = "execute_user_command";
    private static final String GET_COMPLETIONS = "get_completions";
+   private static final String GET_PACKAGE_COMPLETION_INDEX = "get_package_completion_index";
    private static final String IS_FUNCTION = "is_function";
    private static final String GET_HELP_AT_CURSOR = "get_help_at_cursor";
 
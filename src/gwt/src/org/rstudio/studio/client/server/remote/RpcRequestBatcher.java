@@ -0,0 +1,287 @@
+/*
+ * RpcRequestBatcher.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.core.client.jsonrpc.RpcError;
+import org.rstudio.core.client.jsonrpc.RpcRequest;
+import org.rstudio.core.client.jsonrpc.RpcRequestCallback;
+import org.rstudio.core.client.jsonrpc.RpcResponse;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+
+/**
+ * When enabled, gathers the RPC requests issued during a single event loop
+ * tick and sends them to the server as one multi_call request, then splits
+ * the replies back out to each request's callback. Each callback sees
+ * exactly the response (or error) it would have seen had its request been
+ * sent on its own, so per-call handling (retries, credential refresh, async
+ * handles, etc.) is unaffected.
+ *
+ * The server replies to a multi_call once every call in it has completed,
+ * so each call in a batch is answered only as quickly as the slowest call
+ * batched with it. A request cancelled before its batch is sent is left out
+ * of the batch; one cancelled afterwards still runs on the server (as an
+ * unbatched request would), but its callback is not invoked.
+ */
+class RpcRequestBatcher
+{
+   interface Transport
+   {
+      void send(RpcRequest request, RpcRequestCallback callback);
+   }
+
+   public RpcRequestBatcher()
+   {
+      this((request, callback) -> request.send(callback));
+   }
+
+   public RpcRequestBatcher(Transport transport)
+   {
+      transport_ = transport;
+   }
+
+   public void setEnabled(boolean enabled)
+   {
+      if (!enabled)
+         flush();
+      enabled_ = enabled;
+   }
+
+   public boolean isEnabled()
+   {
+      return enabled_;
+   }
+
+   /**
+    * @return whether requests for the method can be sent in a multi_call.
+    *    Requests which start, end or interrupt the session are sent on their
+    *    own, as are replies to the session's requests for input (e.g.
+    *    console_input and edit_completed): while R waits on these the
+    *    session only accepts them as requests of their own, and would
+    *    otherwise buffer the multi_call until R stopped waiting.
+    */
+   public static boolean isBatchable(String method)
+   {
+      return !StringUtil.equals(method, "client_init") &&
+             !StringUtil.equals(method, "abort") &&
+             !StringUtil.equals(method, "quit_session") &&
+             !StringUtil.equals(method, "suspend_session") &&
+             !StringUtil.equals(method, "interrupt") &&
+             !StringUtil.equals(method, "console_input") &&
+             !StringUtil.equals(method, "set_computed_theme_colors") &&
+             !method.endsWith("_completed");
+   }
+
+   public void send(RpcRequest request, RpcRequestCallback callback)
+   {
+      if (!enabled_ || !isBatchable(request.getMethod()))
+      {
+         // send anything already queued first, so requests stay in order
+         flush();
+         transport_.send(request, callback);
+         return;
+      }
+
+      // the server executes all calls in a batch on behalf of a single
+      // source window, so a change of window ends the current batch
+      if (!pending_.isEmpty() &&
+          !StringUtil.equals(pending_.get(0).request.getSourceWindow(),
+                             request.getSourceWindow()))
+      {
+         flush();
+      }
+
+      pending_.add(new PendingCall(request, callback));
+      if (!flushScheduled_)
+      {
+         flushScheduled_ = true;
+         Scheduler.get().scheduleFinally(new ScheduledCommand()
+         {
+            @Override
+            public void execute()
+            {
+               flush();
+            }
+         });
+      }
+   }
+
+   public void flush()
+   {
+      flushScheduled_ = false;
+      if (pending_.isEmpty())
+         return;
+
+      final List<PendingCall> calls = new ArrayList<PendingCall>();
+      for (PendingCall call : pending_)
+      {
+         if (!call.request.isCancelled())
+            calls.add(call);
+      }
+      pending_.clear();
+      if (calls.isEmpty())
+         return;
+
+      // nothing to be gained from wrapping a lone request
+      if (calls.size() == 1)
+      {
+         transport_.send(calls.get(0).request, calls.get(0).callback);
+         return;
+      }
+
+      JSONArray callsJson = new JSONArray();
+      boolean redactLog = false;
+      for (int i = 0; i < calls.size(); i++)
+      {
+         RpcRequest request = calls.get(i).request;
+         JSONObject call = new JSONObject();
+         call.put("method", new JSONString(request.getMethod()));
+         if (request.getParams() != null)
+            call.put("params", request.getParams());
+         if (request.getKwparams() != null)
+            call.put("kwparams", request.getKwparams());
+         callsJson.set(i, call);
+         redactLog = redactLog || request.getRedactLog();
+      }
+      JSONArray params = new JSONArray();
+      params.set(0, callsJson);
+
+      RpcRequest first = calls.get(0).request;
+      String url = first.getUrl();
+      url = url.substring(0, url.length() - first.getMethod().length()) +
+            MULTI_CALL;
+      RpcRequest envelope = new RpcRequest(url,
+                                           MULTI_CALL,
+                                           params,
+                                           null,
+                                           redactLog,
+                                           null,
+                                           unquote(first.getSourceWindow()),
+                                           unquote(first.getClientId()),
+                                           unquote(first.getClientVersion()));
+
+      batchesSent_++;
+      requestsBatched_ += calls.size();
+
+      transport_.send(envelope, new RpcRequestCallback()
+      {
+         @Override
+         public void onError(RpcRequest request, RpcError error)
+         {
+            for (PendingCall call : calls)
+            {
+               if (!call.request.isCancelled())
+                  call.callback.onError(call.request, error);
+            }
+         }
+
+         @Override
+         public void onResponseReceived(RpcRequest request,
+                                        RpcResponse response)
+         {
+            // an error for the envelope as a whole (e.g. unauthorized)
+            // applies equally to every call within it
+            JsArray<RpcResponse> responses = null;
+            if (response.getError() == null)
+               responses = response.getResult();
+
+            for (int i = 0; i < calls.size(); i++)
+            {
+               PendingCall call = calls.get(i);
+               if (call.request.isCancelled())
+                  continue;
+               
+               if (responses == null)
+               {
+                  call.callback.onResponseReceived(call.request, response);
+               }
+               else if (i >= responses.length() || responses.get(i) == null)
+               {
+                  call.callback.onError(call.request, RpcError.create(
+                        RpcError.TRANSMISSION_ERROR,
+                        "No response for " + call.request.getMethod() +
+                        " in " + MULTI_CALL + " result"));
+               }
+               else
+               {
+                  RpcResponse callResponse = responses.get(i);
+                  copyEventsPending(response, callResponse);
+                  call.callback.onResponseReceived(call.request, callResponse);
+               }
+            }
+         }
+      });
+   }
+
+   /**
+    * @return number of multi_call requests sent
+    */
+   public int getBatchesSent()
+   {
+      return batchesSent_;
+   }
+
+   /**
+    * @return number of individual requests sent within multi_call requests
+    */
+   public int getRequestsBatched()
+   {
+      return requestsBatched_;
+   }
+
+   // RpcRequest hands back its string fields as JSON string literals
+   private static native String unquote(String value) /*-{
+      return value == null ? null : JSON.parse(value);
+   }-*/;
+
+   private static native void copyEventsPending(JavaScriptObject from,
+                                                JavaScriptObject to) /*-{
+      if (typeof(from.ep) !== "undefined" && typeof(to.ep) === "undefined")
+         to.ep = from.ep;
+   }-*/;
+
+   private static class PendingCall
+   {
+      public PendingCall(RpcRequest request, RpcRequestCallback callback)
+      {
+         this.request = request;
+         this.callback = callback;
+      }
+
+      public final RpcRequest request;
+      public final RpcRequestCallback callback;
+   }
+
+   private final Transport transport_;
+   private final List<PendingCall> pending_ = new ArrayList<PendingCall>();
+
+   private boolean enabled_ = false;
+   private boolean flushScheduled_ = false;
+
+   private int batchesSent_ = 0;
+   private int requestsBatched_ = 0;
+
+   public static final String MULTI_CALL = "multi_call";
+}
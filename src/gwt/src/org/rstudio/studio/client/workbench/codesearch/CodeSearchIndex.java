@@ -0,0 +1,521 @@
+/*
+ * CodeSearchIndex.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.codesearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.rstudio.core.client.JsVectorInteger;
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.core.client.regex.Match;
+import org.rstudio.core.client.regex.Pattern;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.codesearch.model.CodeSearchResults;
+import org.rstudio.studio.client.workbench.codesearch.model.CodeSearchServerOperations;
+import org.rstudio.studio.client.workbench.codesearch.model.FileItem;
+import org.rstudio.studio.client.workbench.codesearch.model.SourceItem;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeEvent;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeHandler;
+import org.rstudio.studio.client.workbench.views.files.model.FileChange;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.user.client.Timer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A client-side copy of the files and functions searched by Go to
+ * File/Function, so that searches can be answered without waiting on the
+ * server. Entries are indexed by the characters their names contain, and a
+ * query that extends the previous one is answered by filtering the previous
+ * query's matches. The index is kept up to date as files change: deleted
+ * files are dropped as they are reported, and added or modified files are
+ * re-indexed individually (shortly afterwards, in batches). Only an added
+ * directory marks the whole index stale, to be reloaded in the background
+ * the next time it is used.
+ */
+@Singleton
+public class CodeSearchIndex implements FileChangeHandler
+{
+   public static class Results
+   {
+      public final ArrayList<FileItem> fileItems = new ArrayList<FileItem>();
+      public final ArrayList<SourceItem> sourceItems =
+            new ArrayList<SourceItem>();
+      public boolean moreAvailable = false;
+   }
+
+   @Inject
+   public CodeSearchIndex(CodeSearchServerOperations server, EventBus events)
+   {
+      server_ = server;
+      events.addHandler(FileChangeEvent.TYPE, this);
+   }
+
+   /**
+    * @return true if the index is loaded and complete (i.e. the project
+    *    wasn't too large to index); loads it if it isn't already
+    */
+   public boolean isAvailable()
+   {
+      refreshIfStale();
+      return entries_ != null && !incomplete_;
+   }
+
+   public void refreshIfStale()
+   {
+      if (!stale_ || refreshing_)
+         return;
+
+      stale_ = false;
+      refreshing_ = true;
+      server_.getCodeSearchIndex(new ServerRequestCallback<CodeSearchResults>()
+      {
+         @Override
+         public void onResponseReceived(CodeSearchResults response)
+         {
+            refreshing_ = false;
+            load(response);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            refreshing_ = false;
+            stale_ = true;
+         }
+      });
+   }
+
+   /**
+    * @return the best matches for the query, files first (as from the
+    *    search_code RPC)
+    */
+   public Results search(String query, int limit)
+   {
+      Results results = new Results();
+      if (entries_ == null)
+         return results;
+
+      // queries may take the form '<query>:<line>:<column>'
+      int colonIndex = query.indexOf(':');
+      if (colonIndex != -1)
+         query = query.substring(0, colonIndex);
+      String queryLower = query.toLowerCase();
+
+      JsVectorInteger matches = findMatches(queryLower);
+
+      // score each match once, keeping the best (lowest scoring) in order;
+      // ties go to files, then to the entry found first
+      int[] best = new int[Math.max(limit, 0)];
+      int[] bestScores = new int[best.length];
+      int bestCount = 0;
+      for (int i = 0, n = matches.length(); i < n; i++)
+      {
+         int index = matches.get(i);
+         Entry entry = entries_.get(index);
+         if (entry.removed)
+            continue;
+
+         int score = CodeSearchOracle.scoreMatch(entry.name,
+                                                 entry.nameLower,
+                                                 query,
+                                                 queryLower,
+                                                 entry.isFile());
+
+         if (bestCount == best.length)
+         {
+            results.moreAvailable = true;
+            if (bestCount == 0 ||
+                !isBetter(score, entry, bestScores[bestCount - 1],
+                          entries_.get(best[bestCount - 1])))
+               continue;
+            bestCount--;
+         }
+
+         int pos = bestCount;
+         while (pos > 0 && isBetter(score, entry, bestScores[pos - 1],
+                                    entries_.get(best[pos - 1])))
+         {
+            best[pos] = best[pos - 1];
+            bestScores[pos] = bestScores[pos - 1];
+            pos--;
+         }
+         best[pos] = index;
+         bestScores[pos] = score;
+         bestCount++;
+      }
+
+      for (int i = 0; i < bestCount; i++)
+      {
+         Entry entry = entries_.get(best[i]);
+         if (entry.isFile())
+            results.fileItems.add(entry.fileItem);
+         else
+            results.sourceItems.add(entry.sourceItem);
+      }
+      return results;
+   }
+
+   @Override
+   public void onFileChange(FileChangeEvent event)
+   {
+      if (entries_ == null)
+         return;
+
+      FileChange change = event.getFileChange();
+      FileSystemItem file = change.getFile();
+      switch (change.getType())
+      {
+      case FileChange.ADD:
+         // we can't tell which of the files in a new directory the server
+         // will index
+         if (file.isDirectory())
+         {
+            stale_ = true;
+            return;
+         }
+         break;
+      case FileChange.MODIFIED:
+         // only changes to R and C/C++ sources alter the functions defined
+         if (!SOURCE_EXTENSIONS.contains(file.getExtension().toLowerCase()))
+            return;
+         break;
+      case FileChange.DELETE:
+         pendingPaths_.remove(file.getPath());
+         remove(file.getPath(), true);
+         compactIfNeeded();
+         return;
+      default:
+         return;
+      }
+
+      // we can't tell here whether the server will index the file, nor
+      // which functions it defines, so ask it (after giving it a moment to
+      // index the file itself)
+      pendingPaths_.add(file.getPath());
+      updateTimer_.schedule(UPDATE_DELAY_MS);
+   }
+
+   private void updatePendingFiles()
+   {
+      if (entries_ == null || updating_ || pendingPaths_.isEmpty())
+         return;
+
+      final List<String> paths = new ArrayList<String>(pendingPaths_);
+      pendingPaths_.clear();
+      JsArrayString request = JavaScriptObject.createArray().cast();
+      for (String path : paths)
+         request.push(path);
+
+      updating_ = true;
+      server_.getCodeSearchFileIndex(
+            request,
+            new ServerRequestCallback<CodeSearchResults>()
+      {
+         @Override
+         public void onResponseReceived(CodeSearchResults response)
+         {
+            updating_ = false;
+            if (entries_ != null)
+            {
+               for (String path : paths)
+                  remove(path, false);
+               add(response);
+               compactIfNeeded();
+            }
+            updatePendingFiles();
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            updating_ = false;
+            stale_ = true;
+         }
+      });
+   }
+
+   // marks the entries for the file (and, optionally, for the files within
+   // it if it's a directory) as removed
+   private void remove(String path, boolean children)
+   {
+      String dirPath = path.endsWith("/") ? path : path + "/";
+      for (Entry entry : entries_)
+      {
+         if (entry.removed)
+            continue;
+
+         String entryPath = entry.getPath();
+         if (entryPath.equals(path) ||
+             (children && entryPath.startsWith(dirPath)))
+         {
+            entry.removed = true;
+            removedCount_++;
+         }
+      }
+   }
+
+   private void add(CodeSearchResults response)
+   {
+      for (Entry entry : toEntries(response))
+         addEntry(entry, entries_, postings_);
+      lastQuery_ = null;
+      lastMatches_ = null;
+   }
+
+   // once most of the entries have been removed, rebuild the index from the
+   // remaining ones so searches don't keep skipping over them
+   private void compactIfNeeded()
+   {
+      if (removedCount_ * 2 <= entries_.size())
+         return;
+
+      ArrayList<Entry> remaining = new ArrayList<Entry>();
+      for (Entry entry : entries_)
+      {
+         if (!entry.removed)
+            remaining.add(entry);
+      }
+      build(remaining);
+   }
+
+   private JsVectorInteger findMatches(String queryLower)
+   {
+      // wildcard queries are matched against every entry
+      if (queryLower.indexOf('*') != -1)
+      {
+         Pattern pattern = patternForTerm(queryLower);
+         JsVectorInteger matches = JsVectorInteger.createVector();
+         for (int i = 0, n = entries_.size(); i < n; i++)
+         {
+            Match match = pattern.match(entries_.get(i).nameLower, 0);
+            if (match != null && match.getIndex() == 0)
+               matches.push(i);
+         }
+         lastQuery_ = null;
+         return matches;
+      }
+
+      // anything matching the query matches any prefix of it, so if the
+      // query extends the last one we only need to look at the last matches
+      JsVectorInteger candidates;
+      if (lastQuery_ != null && queryLower.startsWith(lastQuery_))
+      {
+         if (queryLower.length() == lastQuery_.length())
+            return lastMatches_;
+         candidates = lastMatches_;
+      }
+      else
+      {
+         candidates = candidatesFor(queryLower);
+      }
+
+      JsVectorInteger matches = JsVectorInteger.createVector();
+      for (int i = 0, n = candidates.length(); i < n; i++)
+      {
+         int index = candidates.get(i);
+         if (queryLower.length() == 0 ||
+             StringUtil.isSubsequence(entries_.get(index).nameLower, queryLower))
+         {
+            matches.push(index);
+         }
+      }
+
+      lastQuery_ = queryLower;
+      lastMatches_ = matches;
+      return matches;
+   }
+
+   /**
+    * @return the entries containing the least common of the query's
+    *    characters (all entries for an empty query)
+    */
+   private JsVectorInteger candidatesFor(String queryLower)
+   {
+      JsVectorInteger candidates = null;
+      for (int i = 0; i < queryLower.length(); i++)
+      {
+         JsVectorInteger posting = postings_.get(queryLower.charAt(i));
+         if (posting == null)
+            return JsVectorInteger.createVector();
+         if (candidates == null || posting.length() < candidates.length())
+            candidates = posting;
+      }
+
+      if (candidates == null)
+      {
+         candidates = JsVectorInteger.createVector();
+         for (int i = 0, n = entries_.size(); i < n; i++)
+            candidates.push(i);
+      }
+      return candidates;
+   }
+
+   private void load(CodeSearchResults response)
+   {
+      build(toEntries(response));
+      incomplete_ = response.getMoreAvailable();
+   }
+
+   private void build(ArrayList<Entry> entries)
+   {
+      ArrayList<Entry> indexed = new ArrayList<Entry>(entries.size());
+      HashMap<Character, JsVectorInteger> postings =
+            new HashMap<Character, JsVectorInteger>();
+      for (Entry entry : entries)
+         addEntry(entry, indexed, postings);
+
+      entries_ = indexed;
+      postings_ = postings;
+      removedCount_ = 0;
+      lastQuery_ = null;
+      lastMatches_ = null;
+   }
+
+   private static ArrayList<Entry> toEntries(CodeSearchResults response)
+   {
+      ArrayList<Entry> entries = new ArrayList<Entry>();
+
+      ArrayList<FileItem> fileItems = response.getFileItems().toArrayList();
+      for (FileItem fileItem : fileItems)
+         entries.add(new Entry(fileItem.getFilename(), fileItem, null));
+
+      ArrayList<SourceItem> sourceItems =
+            response.getSourceItems().toArrayList();
+      for (SourceItem sourceItem : sourceItems)
+         entries.add(new Entry(sourceItem.getName(), null, sourceItem));
+
+      return entries;
+   }
+
+   private static void addEntry(Entry entry,
+                                ArrayList<Entry> entries,
+                                HashMap<Character, JsVectorInteger> postings)
+   {
+      int index = entries.size();
+      entries.add(entry);
+
+      String name = entry.nameLower;
+      for (int j = 0; j < name.length(); j++)
+      {
+         char ch = name.charAt(j);
+
+         // only record the first occurrence of each character
+         if (name.indexOf(ch) != j)
+            continue;
+
+         JsVectorInteger posting = postings.get(ch);
+         if (posting == null)
+         {
+            posting = JsVectorInteger.createVector();
+            postings.put(ch, posting);
+         }
+         posting.push(index);
+      }
+   }
+
+   private static boolean isBetter(int score, Entry entry,
+                                   int otherScore, Entry other)
+   {
+      if (score != otherScore)
+         return score < otherScore;
+      return entry.isFile() && !other.isFile();
+   }
+
+   private static Pattern patternForTerm(String term)
+   {
+      // split the term on *
+      StringBuilder regex = new StringBuilder();
+      String[] components = term.split("\\*", -1);
+      for (int i=0; i<components.length; i++)
+      {
+         if (i > 0)
+            regex.append(".*");
+         regex.append(Pattern.escape(components[i]));
+      }
+      return Pattern.create(regex.toString());
+   }
+
+   private static class Entry
+   {
+      public Entry(String name, FileItem fileItem, SourceItem sourceItem)
+      {
+         this.name = name;
+         this.nameLower = name.toLowerCase();
+         this.fileItem = fileItem;
+         this.sourceItem = sourceItem;
+      }
+
+      public boolean isFile()
+      {
+         return fileItem != null;
+      }
+
+      public String getPath()
+      {
+         return StringUtil.notNull(
+               isFile() ? fileItem.getPath() : sourceItem.getContext());
+      }
+
+      public final String name;
+      public final String nameLower;
+      public final FileItem fileItem;
+      public final SourceItem sourceItem;
+      public boolean removed = false;
+   }
+
+   private final CodeSearchServerOperations server_;
+
+   private ArrayList<Entry> entries_ = null;
+   private HashMap<Character, JsVectorInteger> postings_ = null;
+   private boolean incomplete_ = false;
+   private boolean stale_ = true;
+   private boolean refreshing_ = false;
+
+   // the number of entries marked as removed
+   private int removedCount_ = 0;
+
+   // files to re-index, and whether they're being re-indexed
+   private final Set<String> pendingPaths_ = new LinkedHashSet<String>();
+   private boolean updating_ = false;
+   private final Timer updateTimer_ = new Timer()
+   {
+      @Override
+      public void run()
+      {
+         updatePendingFiles();
+      }
+   };
+
+   // the last (non-wildcard) query and the entries that matched it
+   private String lastQuery_ = null;
+   private JsVectorInteger lastMatches_ = null;
+
+   private static final int UPDATE_DELAY_MS = 500;
+
+   // extensions of the files the server extracts functions etc. from
+   private static final Set<String> SOURCE_EXTENSIONS = new HashSet<String>(
+         Arrays.asList(".r", ".s", ".c", ".cc", ".cpp", ".h", ".hpp"));
+}
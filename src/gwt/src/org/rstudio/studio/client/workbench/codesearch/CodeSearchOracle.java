@@ -16,7 +16,9 @@ package org.rstudio.studio.client.workbench.codesearch;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.rstudio.core.client.CodeNavigationTarget;
 import org.rstudio.core.client.DuplicateHelper;
@@ -43,9 +45,11 @@ public class CodeSearchOracle extends SuggestOracle
 {
    @Inject
    public CodeSearchOracle(CodeSearchServerOperations server,
+                           CodeSearchIndex index,
                            WorkbenchContext workbenchContext)
    {
       server_ = server;
+      index_ = index;
       workbenchContext_ = workbenchContext;
    }
    
@@ -59,15 +63,32 @@ public class CodeSearchOracle extends SuggestOracle
    // (see: SessionCodeSearch.cpp)
    public static int scoreMatch(String suggestion, String query, boolean isFile)
    {
-      String suggestionLower = suggestion.toLowerCase();
-      String queryLower = query.toLowerCase();
-      
+      return scoreMatch(suggestion,
+                        suggestion.toLowerCase(),
+                        query,
+                        query.toLowerCase(),
+                        isFile);
+   }
+   
+   static int scoreMatch(String suggestion,
+                         String suggestionLower,
+                         String query,
+                         String queryLower,
+                         boolean isFile)
+   {
       // No penalty for identical results
       if (suggestion == query)
          return 0;
       
       int totalPenalty = 0;
       
+      // 'Uninteresting' files and extensions (e.g. .Rd) are penalized below
+      boolean uninterestingFile =
+            suggestion == "RcppExports.R" ||
+            suggestion == "RcppExports.cpp";
+      boolean uninterestingExtension =
+            StringUtil.getExtension(suggestionLower).toLowerCase() == "rd";
+      
       // Get query matches in string (ordered)
       List<Integer> matches = StringUtil.subsequenceIndices(suggestionLower, queryLower);
       
@@ -95,13 +116,11 @@ public class CodeSearchOracle extends SuggestOracle
             penalty--;
          
          // More penalty for 'uninteresting' files
-         if (suggestion == "RcppExports.R" ||
-             suggestion == "RcppExports.cpp")
+         if (uninterestingFile)
             penalty += 6;
          
          // More penalty for 'uninteresting' extensions (e.g. .Rd)
-         String extension = StringUtil.getExtension(suggestionLower);
-         if (extension.toLowerCase() == "rd")
+         if (uninterestingExtension)
             penalty += 6;
          
          totalPenalty += penalty;
@@ -124,6 +143,24 @@ public class CodeSearchOracle extends SuggestOracle
       // invalidate any outstanding search
       searchInvalidation_.invalidate();
       
+      // search locally if we have an index of the project (the index is
+      // only kept for projects, where file changes are monitored)
+      if (workbenchContext_.getActiveProjectDir() != null &&
+          index_.isAvailable())
+      {
+         CodeSearchIndex.Results results =
+               index_.search(request.getQuery(), request.getLimit());
+         
+         ArrayList<CodeSearchSuggestion> suggestions =
+               createSuggestions(results.fileItems, results.sourceItems);
+         suggestions = processSuggestions(request,
+                                          suggestions,
+                                          results.moreAvailable);
+         sortSuggestions(suggestions, request.getQuery());
+         callback.onSuggestionsReady(request, new Response(suggestions));
+         return;
+      }
+      
       // first see if we can serve the request from the cache
       for (int i=resultCache_.size() - 1; i >= 0; i--)
       {
@@ -254,6 +291,10 @@ public class CodeSearchOracle extends SuggestOracle
    public void clear()
    {
       resultCache_.clear();
+      
+      // take the opportunity to bring the index up to date
+      if (workbenchContext_.getActiveProjectDir() != null)
+         index_.refreshIfStale();
    }
    
    @Override
@@ -307,25 +348,9 @@ public class CodeSearchOracle extends SuggestOracle
             @Override
             public void onResponseReceived(CodeSearchResults response)
             {  
-               ArrayList<CodeSearchSuggestion> suggestions = 
-                                       new ArrayList<CodeSearchSuggestion>();
-               
-               // file results
-               ArrayList<FileItem> fileResults = 
-                                    response.getFileItems().toArrayList();
-               for (int i = 0; i<fileResults.size(); i++) 
-                  suggestions.add(new CodeSearchSuggestion(fileResults.get(i)));  
-               
-               
-               // src results
-               FileSystemItem context = workbenchContext_.getActiveProjectDir();
-               ArrayList<SourceItem> srcResults = 
-                                    response.getSourceItems().toArrayList();
-               for (int i = 0; i<srcResults.size(); i++)
-               {
-                  suggestions.add(
-                     new CodeSearchSuggestion(srcResults.get(i), context));    
-               }
+               ArrayList<CodeSearchSuggestion> suggestions =
+                     createSuggestions(response.getFileItems().toArrayList(),
+                                       response.getSourceItems().toArrayList());
                   
                // process suggestions (disambiguate paths & cache)
               suggestions = processSuggestions(request_, 
@@ -365,6 +390,28 @@ public class CodeSearchOracle extends SuggestOracle
       private boolean executing_;
    };
    
+   private ArrayList<CodeSearchSuggestion> createSuggestions(
+                                       ArrayList<FileItem> fileResults,
+                                       ArrayList<SourceItem> srcResults)
+   {
+      ArrayList<CodeSearchSuggestion> suggestions = 
+                              new ArrayList<CodeSearchSuggestion>();
+      
+      // file results
+      for (int i = 0; i<fileResults.size(); i++) 
+         suggestions.add(new CodeSearchSuggestion(fileResults.get(i)));  
+      
+      // src results
+      FileSystemItem context = workbenchContext_.getActiveProjectDir();
+      for (int i = 0; i<srcResults.size(); i++)
+      {
+         suggestions.add(
+            new CodeSearchSuggestion(srcResults.get(i), context));    
+      }
+      
+      return suggestions;
+   }
+   
    private void sortSuggestions(ArrayList<CodeSearchSuggestion> suggestions,
                                 String query)
    {
@@ -375,6 +422,12 @@ public class CodeSearchOracle extends SuggestOracle
             query.substring(0, colonIndex) :
             query;
       
+      // score each suggestion once, rather than on every comparison
+      final Map<CodeSearchSuggestion, Integer> scores =
+            new IdentityHashMap<CodeSearchSuggestion, Integer>();
+      for (CodeSearchSuggestion suggestion : suggestions)
+         scores.put(suggestion, scoreMatch(suggestion, localQuery));
+      
       java.util.Collections.sort(suggestions,
             new Comparator<CodeSearchSuggestion>() {
 
@@ -382,8 +435,8 @@ public class CodeSearchOracle extends SuggestOracle
          public int compare(CodeSearchSuggestion lhs,
                             CodeSearchSuggestion rhs)
          {
-            int lhsScore = scoreMatch(lhs, localQuery);
-            int rhsScore = scoreMatch(rhs, localQuery);
+            int lhsScore = scores.get(lhs);
+            int rhsScore = scores.get(rhs);
 
             if (lhsScore == rhsScore)
             {
@@ -441,6 +494,7 @@ public class CodeSearchOracle extends SuggestOracle
    private final Invalidation searchInvalidation_ = new Invalidation();
    
    private final CodeSearchServerOperations server_ ;
+   private final CodeSearchIndex index_;
    private final WorkbenchContext workbenchContext_;
    private final CodeSearchCommand codeSearch_ = new CodeSearchCommand();
    
@@ -16,6 +16,8 @@ package org.rstudio.studio.client.workbench.codesearch.model;
 
 import org.rstudio.studio.client.server.ServerRequestCallback;
 
+import com.google.gwt.core.client.JsArrayString;
+
 public interface CodeSearchServerOperations 
 {   
    /*
@@ -27,6 +29,22 @@ public interface CodeSearchServerOperations
          int maxResults,
          ServerRequestCallback<CodeSearchResults> requestCallback);
    
+   /*
+    * Get all of the files and functions that searchCode would search, so
+    * that they can be searched on the client (more_available is set if
+    * there were too many to return)
+    */
+   void getCodeSearchIndex(
+         ServerRequestCallback<CodeSearchResults> requestCallback);
+   
+   /*
+    * Get the files and functions getCodeSearchIndex would return for the
+    * given (aliased) file paths
+    */
+   void getCodeSearchFileIndex(
+         JsArrayString paths,
+         ServerRequestCallback<CodeSearchResults> requestCallback);
+   
    /**
     * Get the definition of the specified object (if known).
     * We pass a line and pos rather than a function name because that is
@@ -439,6 +439,7 @@ public abstract class
    public abstract AppCommand helpUsingRStudio();
    public abstract AppCommand helpKeyboardShortcuts();
    public abstract AppCommand showRequestLog();
+   public abstract AppCommand showClientEventStats();
    public abstract AppCommand logFocusedElement();
    public abstract AppCommand debugDumpContents();
    public abstract AppCommand debugImportDump();
@@ -781,6 +781,11 @@ public class UIPrefsAccessor extends Prefs
       return bool("console_double_click_select", false);
    }
    
+   public PrefValue<Boolean> batchRpcRequests()
+   {
+      return bool("batch_rpc_requests", false);
+   }
+   
    // Meant to be called when the satellite window receives the sessionInfo.
    protected void UpdateSessionInfo(SessionInfo sessionInfo)
    {
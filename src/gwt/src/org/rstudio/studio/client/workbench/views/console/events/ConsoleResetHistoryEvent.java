@@ -38,6 +38,11 @@ public class ConsoleResetHistoryEvent extends GwtEvent<ConsoleResetHistoryHandle
    {
       return reset_.getPreserveUIContext();
    }
+
+   public boolean getArchiveRotated()
+   {
+      return reset_.getArchiveRotated();
+   }
    
    @Override
    protected void dispatch(ConsoleResetHistoryHandler handler)
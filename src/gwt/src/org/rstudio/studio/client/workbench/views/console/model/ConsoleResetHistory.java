@@ -31,4 +31,8 @@ public class ConsoleResetHistory extends JavaScriptObject
    public final native boolean getPreserveUIContext() /*-{
       return this.preserve_ui_context;
    }-*/;
+
+   public final native boolean getArchiveRotated() /*-{
+      return !!this.archive_rotated;
+   }-*/;
 }
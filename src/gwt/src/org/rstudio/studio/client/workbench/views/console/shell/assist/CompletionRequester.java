@@ -49,6 +49,7 @@ import org.rstudio.studio.client.workbench.views.source.editors.text.ace.DplyrJo
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Position;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.RScopeObject;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.TokenCursor;
+import org.rstudio.studio.client.workbench.views.source.editors.text.r.SignatureCache;
 import org.rstudio.studio.client.workbench.views.source.model.RnwChunkOptions;
 import org.rstudio.studio.client.workbench.views.source.model.RnwChunkOptions.RnwOptionCompletionResult;
 import org.rstudio.studio.client.workbench.views.source.model.RnwCompletionContext;
@@ -64,6 +65,8 @@ public class CompletionRequester
 {
    private CodeToolsServerOperations server_ ;
    private UIPrefs uiPrefs_;
+   private PackageCompletionIndex packageIndex_;
+   private SignatureCache signatures_;
    private final DocDisplay docDisplay_ ;
    private final SnippetHelper snippets_ ;
 
@@ -83,10 +86,15 @@ public class CompletionRequester
    }
    
    @Inject
-   void initialize(CodeToolsServerOperations server, UIPrefs uiPrefs)
+   void initialize(CodeToolsServerOperations server,
+                   UIPrefs uiPrefs,
+                   PackageCompletionIndex packageIndex,
+                   SignatureCache signatures)
    {
       server_ = server;
       uiPrefs_ = uiPrefs;
+      packageIndex_ = packageIndex;
+      signatures_ = signatures;
    }
    
    private boolean usingCache(
@@ -135,13 +143,13 @@ public class CompletionRequester
       
    }
    
-   private String basename(String absolutePath)
+   private static String basename(String absolutePath)
    {
       return absolutePath.substring(absolutePath.lastIndexOf('/') + 1);
    }
    
-   private boolean filterStartsWithDot(String item,
-                                       String token)
+   private static boolean filterStartsWithDot(String item,
+                                              String token)
    {
       return !(!token.startsWith(".") && item.startsWith("."));
    }
@@ -154,9 +162,54 @@ public class CompletionRequester
                                    final String diff,
                                    CompletionResult cachedResult)
    {
-      ArrayList<QualifiedName> newCompletions = new ArrayList<QualifiedName>();
-      newCompletions.ensureCapacity(cachedResult.completions.size());
+      // Anything matching a token also matches that token less its last
+      // character, so when the token has grown by one character we can
+      // narrow the list produced for the previous keystroke rather than the
+      // full list. (Not so for '/', which starts a new path component.)
+      List<QualifiedName> candidates = cachedResult.completions;
+      if (diff.length() > 1 && !diff.endsWith("/"))
+      {
+         CompletionResult previous = cachedCompletions_.get(
+               diff.substring(0, diff.length() - 1));
+         if (previous != null)
+            candidates = previous.completions;
+      }
+      
+      CompletionResult result = new CompletionResult(
+            token,
+            narrowCompletions(token, candidates),
+            cachedResult.guessedFunctionName,
+            cachedResult.suggestOnAccept,
+            cachedResult.dontInsertParens) ;
       
+      cachedCompletions_.put(diff, result);
+      return result;
+   }
+   
+   /**
+    * Returns the candidates matching the token, best match first. Each
+    * match is scored once, up front, rather than on every comparison.
+    */
+   static ArrayList<QualifiedName> narrowCompletions(
+         final String token,
+         List<QualifiedName> candidates)
+   {
+      return narrowCompletions(token, candidates, SCORE_MATCH);
+   }
+   
+   /**
+    * Scores how well a name matches a token; lower scores are better.
+    */
+   interface MatchScorer
+   {
+      int score(String name, String token, boolean isFile);
+   }
+   
+   static ArrayList<QualifiedName> narrowCompletions(
+         final String token,
+         List<QualifiedName> candidates,
+         MatchScorer scorer)
+   {
       // For completions that are files or directories, we need to post-process
       // the token and the qualified name to strip out just the basename (filename).
       // Note that we normalize the paths such that files will have no trailing slash,
@@ -167,57 +220,69 @@ public class CompletionRequester
       final String tokenSub   = token.substring(token.lastIndexOf('/') + 1);
       final String tokenFuzzy = fuzzy(tokenSub);
       
-      for (QualifiedName qname : cachedResult.completions)
+      final QualifiedName[] matches = new QualifiedName[candidates.size()];
+      final int[] scores = new int[candidates.size()];
+      int count = 0;
+      
+      for (QualifiedName qname : candidates)
       {
+         int score;
+         
          // File types are narrowed only by the file name
          if (RCompletionType.isFileType(qname.type))
          {
-            if (StringUtil.isSubsequence(basename(qname.name), tokenFuzzy, true))
-               newCompletions.add(qname);
+            String name = basename(qname.name);
+            if (!StringUtil.isSubsequence(name, tokenFuzzy, true))
+               continue;
+            score = scorer.score(name, tokenSub, true);
          }
          else
          {
-            if (StringUtil.isSubsequence(qname.name, tokenFuzzy, true) &&
-                filterStartsWithDot(qname.name, token))
-               newCompletions.add(qname) ;
+            if (!StringUtil.isSubsequence(qname.name, tokenFuzzy, true) ||
+                !filterStartsWithDot(qname.name, token))
+               continue;
+            score = scorer.score(qname.name, token, false);
          }
+         
+         // Place arguments higher (give less penalty)
+         if (qname.type == RCompletionType.ARGUMENT)
+            score -= 3;
+         
+         matches[count] = qname;
+         scores[count] = score;
+         count++;
       }
       
-      java.util.Collections.sort(newCompletions, new Comparator<QualifiedName>() {
+      Integer[] order = new Integer[count];
+      for (int i = 0; i < count; i++)
+         order[i] = i;
+      
+      Arrays.sort(order, new Comparator<Integer>() {
          
          @Override
-         public int compare(QualifiedName lhs, QualifiedName rhs)
+         public int compare(Integer lhs, Integer rhs)
          {
-            int lhsScore = RCompletionType.isFileType(lhs.type)
-                  ? CodeSearchOracle.scoreMatch(basename(lhs.name), tokenSub, true)
-                  : CodeSearchOracle.scoreMatch(lhs.name, token, false);
-            
-            int rhsScore = RCompletionType.isFileType(rhs.type)
-               ? CodeSearchOracle.scoreMatch(basename(rhs.name), tokenSub, true)
-               : CodeSearchOracle.scoreMatch(rhs.name, token, false);
-            
-            // Place arguments higher (give less penalty)
-            if (lhs.type == RCompletionType.ARGUMENT) lhsScore -= 3;
-            if (rhs.type == RCompletionType.ARGUMENT) rhsScore -= 3;
+            int lhsScore = scores[lhs];
+            int rhsScore = scores[rhs];
             
             if (lhsScore == rhsScore)
-               return lhs.compareTo(rhs);
+               return matches[lhs].compareTo(matches[rhs]);
             
             return lhsScore < rhsScore ? -1 : 1;
          }
       });
       
-      CompletionResult result = new CompletionResult(
-            token,
-            newCompletions,
-            cachedResult.guessedFunctionName,
-            cachedResult.suggestOnAccept,
-            cachedResult.dontInsertParens) ;
+      ArrayList<QualifiedName> newCompletions =
+            new ArrayList<QualifiedName>(count);
+      for (int i = 0; i < count; i++)
+         newCompletions.add(matches[order[i]]);
       
-      cachedCompletions_.put(diff, result);
-      return result;
+      return newCompletions;
    }
    
+   private static final MatchScorer SCORE_MATCH =
+         (name, token, isFile) -> CodeSearchOracle.scoreMatch(name, token, isFile);
+   
    public void getDplyrJoinCompletionsString(
          final String token,
          final String string,
@@ -348,6 +413,12 @@ public class CompletionRequester
       if (usingCache(token, isHelp, callback))
          return;
       
+      final String namespace = getIndexableNamespace(
+            token, assocData, dataType, chainDataName);
+      if (namespace != null &&
+          usingPackageIndex(token, namespace, isConsole, callback))
+         return;
+      
       doGetCompletions(
             token,
             assocData,
@@ -373,76 +444,162 @@ public class CompletionRequester
          @Override
          public void onResponseReceived(Completions response)
          {
-            cachedLinePrefix_ = token;
-            String token = response.getToken();
-
-            JsArrayString comp = response.getCompletions();
-            JsArrayString pkgs = response.getPackages();
-            JsArrayBoolean quote = response.getQuote();
-            JsArrayInteger type = response.getType();
-            JsArrayString meta = response.getMeta();
-            ArrayList<QualifiedName> newComp = new ArrayList<QualifiedName>();
-            
-            // Get function completions from the server
-            for (int i = 0; i < comp.length(); i++)
-               if (comp.get(i).endsWith(" = "))
-                  newComp.add(new QualifiedName(comp.get(i), pkgs.get(i), quote.get(i), type.get(i), meta.get(i), response.getHelpHandler(), response.getLanguage()));
-            
-            // Try getting our own function argument completions
-            if (!response.getExcludeOtherCompletions())
-            {
-               addFunctionArgumentCompletions(token, newComp);
-               addScopedArgumentCompletions(token, newComp);
-            }
-            
-            // Get variable completions from the current scope
-            if (!response.getExcludeOtherCompletions())
-            {
-               addScopedCompletions(token, newComp, "variable");
-               addScopedCompletions(token, newComp, "function");
-            }
+            callback.onResponseReceived(
+                  processCompletions(token, response, isConsole));
             
-            // Get other server completions
-            for (int i = 0; i < comp.length(); i++)
-               if (!comp.get(i).endsWith(" = "))
-                  newComp.add(new QualifiedName(comp.get(i), pkgs.get(i), quote.get(i), type.get(i), meta.get(i), response.getHelpHandler(), response.getLanguage()));
+            // index the namespace so that we needn't ask next time
+            if (namespace != null)
+               packageIndex_.ensureIndexed(namespace);
             
-            // Get snippet completions. Bail if this isn't a top-level
-            // completion -- TODO is to add some more context that allows us
-            // to properly ascertain this.
-            if (isTopLevelCompletionRequest())
-            {
-               // disable snippets if Python REPL is active for now
-               boolean noSnippets =
-                     isConsole &&
-                     !StringUtil.equals(response.getLanguage(), ConsoleLanguageTracker.LANGUAGE_R);
-               
-               if (!noSnippets)
-               {
-                  addSnippetCompletions(token, newComp);
-               }
-            }
-            
-            // Remove duplicates
-            newComp = resolveDuplicates(newComp);
-            
-            CompletionResult result = new CompletionResult(
-                  response.getToken(),
-                  newComp,
-                  response.getGuessedFunctionName(),
-                  response.getSuggestOnAccept(),
-                  response.getOverrideInsertParens());
-
-            if (response.isCacheable())
-            {
-               cachedCompletions_.put("", result);
-            }
-
-            callback.onResponseReceived(result);
+            // note where the functions completed are found on the search path
+            if (isSearchPathCompletion(dataType))
+               signatures_.addCompletions(response);
          }
       }) ;
    }
    
+   /**
+    * Answers completions for a package's exports from the client-side
+    * package index, if the package has been indexed.
+    */
+   private boolean usingPackageIndex(
+         String token,
+         String namespace,
+         boolean isConsole,
+         final ServerRequestCallback<CompletionResult> callback)
+   {
+      Completions completions = packageIndex_.getExportCompletions(namespace);
+      if (completions == null)
+         return false;
+      
+      // cache the full export list, as though it had been requested from the
+      // session with an empty token, then narrow it to the token as usual
+      cachedCompletions_.clear();
+      CompletionResult result = processCompletions("", completions, isConsole);
+      if (!usingCache(token, callback))
+         callback.onResponseReceived(result);
+      return true;
+   }
+   
+   /**
+    * @return the package whose exports are being completed if the request
+    *    can be answered from the package index (i.e. it's a plain 'pkg::'
+    *    completion, whose result doesn't depend on the rest of the context),
+    *    or null otherwise
+    */
+   private String getIndexableNamespace(String token,
+                                        List<String> assocData,
+                                        List<Integer> dataType,
+                                        String chainObjectName)
+   {
+      if (dataType.isEmpty() ||
+          dataType.get(0) != AutocompletionContext.TYPE_NAMESPACE_EXPORTED)
+         return null;
+      
+      // the session may add chain completions, or suppress parentheses for
+      // calls within an enclosing function
+      if (!StringUtil.isNullOrEmpty(chainObjectName))
+         return null;
+      
+      for (int i = 1; i < dataType.size(); i++)
+      {
+         if (dataType.get(i) == AutocompletionContext.TYPE_FUNCTION ||
+             dataType.get(i) == AutocompletionContext.TYPE_UNKNOWN)
+            return null;
+      }
+      
+      if (rnwContext_ != null &&
+          rnwContext_.getRnwOptionsStart(token, token.length()) >= 0)
+         return null;
+      
+      String namespace = assocData.get(0);
+      return StringUtil.isNullOrEmpty(namespace) ? null : namespace;
+   }
+   
+   // whether the completions are for a bare name (rather than e.g. the
+   // exports of a package, or the elements of an object)
+   private boolean isSearchPathCompletion(List<Integer> dataType)
+   {
+      if (dataType.isEmpty())
+         return true;
+      
+      int type = dataType.get(0);
+      return type == AutocompletionContext.TYPE_UNKNOWN ||
+             type == AutocompletionContext.TYPE_FUNCTION;
+   }
+   
+   private CompletionResult processCompletions(String requestToken,
+                                               Completions response,
+                                               boolean isConsole)
+   {
+      cachedLinePrefix_ = requestToken;
+      String token = response.getToken();
+
+      JsArrayString comp = response.getCompletions();
+      JsArrayString pkgs = response.getPackages();
+      JsArrayBoolean quote = response.getQuote();
+      JsArrayInteger type = response.getType();
+      JsArrayString meta = response.getMeta();
+      ArrayList<QualifiedName> newComp = new ArrayList<QualifiedName>();
+      
+      // Get function completions from the server
+      for (int i = 0; i < comp.length(); i++)
+         if (comp.get(i).endsWith(" = "))
+            newComp.add(new QualifiedName(comp.get(i), pkgs.get(i), quote.get(i), type.get(i), meta.get(i), response.getHelpHandler(), response.getLanguage()));
+      
+      // Try getting our own function argument completions
+      if (!response.getExcludeOtherCompletions())
+      {
+         addFunctionArgumentCompletions(token, newComp);
+         addScopedArgumentCompletions(token, newComp);
+      }
+      
+      // Get variable completions from the current scope
+      if (!response.getExcludeOtherCompletions())
+      {
+         addScopedCompletions(token, newComp, "variable");
+         addScopedCompletions(token, newComp, "function");
+      }
+      
+      // Get other server completions
+      for (int i = 0; i < comp.length(); i++)
+         if (!comp.get(i).endsWith(" = "))
+            newComp.add(new QualifiedName(comp.get(i), pkgs.get(i), quote.get(i), type.get(i), meta.get(i), response.getHelpHandler(), response.getLanguage()));
+      
+      // Get snippet completions. Bail if this isn't a top-level
+      // completion -- TODO is to add some more context that allows us
+      // to properly ascertain this.
+      if (isTopLevelCompletionRequest())
+      {
+         // disable snippets if Python REPL is active for now
+         boolean noSnippets =
+               isConsole &&
+               !StringUtil.equals(response.getLanguage(), ConsoleLanguageTracker.LANGUAGE_R);
+         
+         if (!noSnippets)
+         {
+            addSnippetCompletions(token, newComp);
+         }
+      }
+      
+      // Remove duplicates
+      newComp = resolveDuplicates(newComp);
+      
+      CompletionResult result = new CompletionResult(
+            response.getToken(),
+            newComp,
+            response.getGuessedFunctionName(),
+            response.getSuggestOnAccept(),
+            response.getOverrideInsertParens());
+
+      if (response.isCacheable())
+      {
+         cachedCompletions_.put("", result);
+      }
+
+      return result;
+   }
+   
    private ArrayList<QualifiedName>
    resolveDuplicates(ArrayList<QualifiedName> completions)
    {
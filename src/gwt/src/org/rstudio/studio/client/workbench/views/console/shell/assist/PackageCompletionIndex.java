@@ -0,0 +1,386 @@
+/*
+ * PackageCompletionIndex.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell.assist;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.common.codetools.CodeToolsServerOperations;
+import org.rstudio.studio.client.common.codetools.Completions;
+import org.rstudio.studio.client.common.codetools.PackageExports;
+import org.rstudio.studio.client.application.model.RVersionsInfo;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.model.Session;
+import org.rstudio.studio.client.workbench.model.SessionInfo;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStateChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStateChangedHandler;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageInfo;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayBoolean;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.storage.client.Storage;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A client-side index of the objects exported by each package, kept in
+ * browser local storage so that it survives reloads. Namespace completions
+ * (e.g. 'dplyr::') are answered from the index without a round trip to the
+ * R session, so they remain available while R is busy. Each package's
+ * entry records the version it was built from; entries are refreshed in
+ * the background when the installed version changes. Stored entries are
+ * keyed by the R version and library the package was installed in, and
+ * aren't used until the package state tells us which copy is installed.
+ */
+@Singleton
+public class PackageCompletionIndex implements PackageStateChangedHandler
+{
+   @Inject
+   public PackageCompletionIndex(CodeToolsServerOperations server,
+                                 Session session,
+                                 EventBus events)
+   {
+      server_ = server;
+      session_ = session;
+      storage_ = Storage.getLocalStorageIfSupported();
+      events.addHandler(PackageStateChangedEvent.TYPE, this);
+   }
+
+   /**
+    * @return completions (for an empty token) for everything the package
+    *    exports, in the order the R session would list them; or null if the
+    *    package has not been indexed or its entry is out of date
+    */
+   public Completions getExportCompletions(String pkg)
+   {
+      PackageExports exports = getCurrent(pkg);
+      if (exports == null)
+         return null;
+
+      JsArrayString names = exports.getNames();
+      JsArrayInteger types = exports.getTypes();
+      if (names.length() > MAX_COMPLETIONS)
+         return null;
+
+      JsArrayString results = JavaScriptObject.createArray().cast();
+      JsArrayString packages = JavaScriptObject.createArray().cast();
+      JsArrayBoolean quote = JavaScriptObject.createArray().cast();
+      JsArrayInteger type = JavaScriptObject.createArray().cast();
+      JsArrayString meta = JavaScriptObject.createArray().cast();
+
+      // as for completions from the session, favor names starting with a
+      // letter or digit (retaining the order within each group)
+      for (int pass = 0; pass < 2; pass++)
+      {
+         for (int i = 0; i < names.length(); i++)
+         {
+            String name = names.get(i);
+            if (startsWithAlnum(name) != (pass == 0))
+               continue;
+
+            results.push(name);
+            packages.push(pkg);
+            quote.push(false);
+            type.push(types.get(i));
+            meta.push("");
+         }
+      }
+
+      return Completions.createCompletions(
+            "", results, packages, quote, type, meta, "",
+            true, false, true, null, "R");
+   }
+
+   /**
+    * @return the argument list of the given exported function (e.g.
+    *    "(x, ...)"), or null if it is not known
+    */
+   public String getArgs(String pkg, String name)
+   {
+      PackageExports exports = getCurrent(pkg);
+      if (exports == null)
+         return null;
+
+      JsArrayString names = exports.getNames();
+      JsArrayString args = exports.getArgs();
+      for (int i = 0; i < names.length() && i < args.length(); i++)
+      {
+         if (StringUtil.equals(names.get(i), name))
+            return StringUtil.isNullOrEmpty(args.get(i)) ? null : args.get(i);
+      }
+      return null;
+   }
+
+   /**
+    * Requests an index of the package from the session (in the background)
+    * unless one is already present and current.
+    */
+   public void ensureIndexed(String pkg)
+   {
+      if (getCurrent(pkg) != null)
+         return;
+
+      List<String> packages = new ArrayList<String>();
+      packages.add(pkg);
+      refresh(packages);
+   }
+
+   @Override
+   public void onPackageStateChanged(PackageStateChangedEvent event)
+   {
+      JsArray<PackageInfo> packageList =
+            event.getPackageState().getPackageList();
+      if (packageList == null)
+         return;
+
+      // when a package is installed in several libraries, the copy that
+      // is loaded (if any) is the one that matters
+      HashMap<String, PackageInfo> installed = new HashMap<String, PackageInfo>();
+      for (int i = 0; i < packageList.length(); i++)
+      {
+         PackageInfo info = packageList.get(i);
+         if (info.isLoaded() || !installed.containsKey(info.getName()))
+            installed.put(info.getName(), info);
+      }
+      installed_ = installed;
+
+      // drop entries for packages that are gone or that can't be re-indexed
+      // yet (they will be when next used), and refresh the rest in the
+      // background; entries fetched before we knew where packages were
+      // installed can now be stored
+      List<String> stale = new ArrayList<String>();
+      for (String pkg : new ArrayList<String>(entries_.keySet()))
+      {
+         PackageExports exports = entries_.get(pkg);
+         if (isCurrent(exports))
+         {
+            if (unsaved_.remove(pkg))
+               store(exports);
+            continue;
+         }
+
+         entries_.remove(pkg);
+         unsaved_.remove(pkg);
+         PackageInfo info = installed.get(pkg);
+         if (info != null && info.isLoaded())
+            stale.add(pkg);
+      }
+
+      refresh(stale);
+   }
+
+   private void refresh(final List<String> packages)
+   {
+      packages.removeAll(pending_);
+      if (packages.isEmpty())
+         return;
+      pending_.addAll(packages);
+
+      JsArrayString request = JavaScriptObject.createArray().cast();
+      for (String pkg : packages)
+         request.push(pkg);
+
+      server_.getPackageCompletionIndex(
+            request,
+            new ServerRequestCallback<JsArray<PackageExports>>()
+      {
+         @Override
+         public void onResponseReceived(JsArray<PackageExports> response)
+         {
+            pending_.removeAll(packages);
+            if (response == null)
+               return;
+            for (int i = 0; i < response.length(); i++)
+               put(response.get(i));
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            pending_.removeAll(packages);
+            Debug.logError(error);
+         }
+      });
+   }
+
+   private PackageExports getCurrent(String pkg)
+   {
+      // entries fetched during this session are current until the package
+      // state says otherwise
+      PackageExports exports = entries_.get(pkg);
+      if (exports != null)
+         return installed_ == null || isCurrent(exports) ? exports : null;
+
+      // stored entries can't be checked until we know which copy of the
+      // package is installed
+      String key = storageKey(pkg);
+      if (key == null)
+         return null;
+
+      String json = storage_.getItem(key);
+      if (json == null)
+         return null;
+
+      exports = parse(json);
+      if (exports == null || !isCurrent(exports))
+      {
+         storage_.removeItem(key);
+         return null;
+      }
+
+      entries_.put(pkg, exports);
+      return exports;
+   }
+
+   private boolean isCurrent(PackageExports exports)
+   {
+      PackageInfo info = installed_ == null ?
+            null : installed_.get(exports.getPackage());
+      return info != null &&
+             StringUtil.equals(info.getVersion(), exports.getVersion());
+   }
+
+   private void put(PackageExports exports)
+   {
+      entries_.put(exports.getPackage(), exports);
+      if (installed_ == null)
+         unsaved_.add(exports.getPackage());
+      else
+         store(exports);
+   }
+
+   private void store(PackageExports exports)
+   {
+      String key = storageKey(exports.getPackage());
+      if (key == null)
+         return;
+
+      String json = stringify(exports);
+      try
+      {
+         storage_.setItem(key, json);
+      }
+      catch (Exception e)
+      {
+         // out of space; make room by discarding the other entries (they
+         // will be rebuilt as they are used)
+         for (String other : storedKeys())
+         {
+            if (!StringUtil.equals(other, key))
+               storage_.removeItem(other);
+         }
+
+         try
+         {
+            storage_.setItem(key, json);
+         }
+         catch (Exception e2)
+         {
+            Debug.log("Unable to store completion index for package '" +
+                      exports.getPackage() + "'");
+         }
+      }
+   }
+
+   // the local storage key for the installed copy of the package (which
+   // differs by R version and library, since the same local storage is
+   // shared by every session using this server); null if it's not known
+   // which copy is installed
+   private String storageKey(String pkg)
+   {
+      if (storage_ == null || installed_ == null)
+         return null;
+
+      PackageInfo info = installed_.get(pkg);
+      SessionInfo sessionInfo = session_.getSessionInfo();
+      RVersionsInfo versions =
+            sessionInfo == null ? null : sessionInfo.getRVersionsInfo();
+      if (info == null || versions == null)
+         return null;
+
+      String library = info.getLibraryAbsolute();
+      if (library.isEmpty())
+         library = info.getLibrary();
+
+      return KEY_PREFIX + versions.getRVersion() + KEY_SEPARATOR +
+             library + KEY_SEPARATOR + pkg;
+   }
+
+   private List<String> storedKeys()
+   {
+      List<String> keys = new ArrayList<String>();
+      for (int i = 0; i < storage_.getLength(); i++)
+      {
+         String key = storage_.key(i);
+         if (key != null && key.startsWith(KEY_PREFIX))
+            keys.add(key);
+      }
+      return keys;
+   }
+
+   private static boolean startsWithAlnum(String name)
+   {
+      if (name.length() == 0)
+         return false;
+
+      char ch = name.charAt(0);
+      return (ch >= 'a' && ch <= 'z') ||
+             (ch >= 'A' && ch <= 'Z') ||
+             (ch >= '0' && ch <= '9');
+   }
+
+   private static native String stringify(JavaScriptObject object) /*-{
+      return JSON.stringify(object);
+   }-*/;
+
+   private static native PackageExports parse(String json) /*-{
+      try {
+         return JSON.parse(json);
+      } catch (e) {
+         return null;
+      }
+   }-*/;
+
+   private final CodeToolsServerOperations server_;
+   private final Session session_;
+   private final Storage storage_;
+
+   // package name => entries fetched during this session or read from
+   // storage, and the packages whose entries haven't been stored yet
+   private final HashMap<String, PackageExports> entries_ =
+         new HashMap<String, PackageExports>();
+   private final Set<String> unsaved_ = new HashSet<String>();
+   private final Set<String> pending_ = new HashSet<String>();
+
+   // package name => installed copy, as of the last package state change;
+   // null until the first one
+   private HashMap<String, PackageInfo> installed_ = null;
+
+   private static final String KEY_PREFIX = "rstudio.packageCompletionIndex.";
+   private static final String KEY_SEPARATOR = "|";
+
+   // the session truncates (and won't cache) longer completion lists
+   private static final int MAX_COMPLETIONS = 2000;
+}
@@ -0,0 +1,59 @@
+/*
+ * GlobalEnvironmentChangedEvent.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.environment.events;
+
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.event.shared.EventHandler;
+import com.google.gwt.event.shared.GwtEvent;
+
+// Sent when objects in the global environment change while the environment
+// monitor isn't watching it (so no assigned/removed events are sent for them)
+public class GlobalEnvironmentChangedEvent 
+                              extends GwtEvent<GlobalEnvironmentChangedEvent.Handler>
+{
+   public interface Handler extends EventHandler
+   {
+      void onGlobalEnvironmentChanged(GlobalEnvironmentChangedEvent event);
+   }
+
+   public static final GwtEvent.Type<GlobalEnvironmentChangedEvent.Handler> TYPE =
+      new GwtEvent.Type<GlobalEnvironmentChangedEvent.Handler>();
+   
+   public GlobalEnvironmentChangedEvent(JsArrayString objectNames)
+   {
+      objectNames_ = objectNames;
+   }
+   
+   // the names of the objects assigned or removed, or null if any object
+   // may have changed
+   public JsArrayString getObjectNames()
+   {
+      return objectNames_;
+   }
+   
+   @Override
+   protected void dispatch(GlobalEnvironmentChangedEvent.Handler handler)
+   {
+      handler.onGlobalEnvironmentChanged(this);
+   }
+
+   @Override
+   public GwtEvent.Type<GlobalEnvironmentChangedEvent.Handler> getAssociatedType()
+   {
+      return TYPE;
+   }
+   
+   private final JsArrayString objectNames_;
+}
@@ -23,10 +23,18 @@ import org.rstudio.core.client.theme.res.ThemeStyles;
 import org.rstudio.studio.client.workbench.views.environment.EnvironmentPane;
 
 import com.google.gwt.cell.client.FieldUpdater;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.dom.client.TableRowElement;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.safehtml.shared.SafeHtml;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
 import com.google.gwt.text.shared.AbstractSafeHtmlRenderer;
+import com.google.gwt.user.cellview.client.AbstractHasData.RedrawEvent;
 import com.google.gwt.user.cellview.client.Column;
+import com.google.gwt.user.client.ui.ScrollPanel;
+import com.google.gwt.view.client.Range;
 
 public abstract class EnvironmentObjectDisplay 
                       extends ScrollingDataGrid<RObjectEntry>
@@ -44,14 +52,15 @@ public abstract class EnvironmentObjectDisplay
       void setShowInternalFunctions(boolean hide);
       public void fillEntryContents(RObjectEntry entry, int idx, 
                                     boolean drawProgress);
+      // all of the objects, including those not drawn
+      public List<RObjectEntry> getObjects();
    }
 
    public EnvironmentObjectDisplay(Host host, 
                                    EnvironmentObjectsObserver observer,
                                    String environmentName)
    {
-      super(EnvironmentObjects.MAX_ENVIRONMENT_OBJECTS, 
-            RObjectEntry.KEY_PROVIDER);
+      super(PAGE_SIZE, RObjectEntry.KEY_PROVIDER);
 
       observer_ = observer;
       host_ = host;
@@ -69,11 +78,118 @@ public abstract class EnvironmentObjectDisplay
             return sb.toSafeHtml();
          }
       };
+      
+      // only a window of rows is drawn, with space left above and below it
+      // for the rest; move the window as the user scrolls beyond it
+      getScrollPanel().addScrollHandler(new ScrollHandler()
+      {
+         @Override
+         public void onScroll(ScrollEvent event)
+         {
+            updateWindow();
+         }
+      });
+      addRedrawHandler(new RedrawEvent.Handler()
+      {
+         @Override
+         public void onRedraw()
+         {
+            sizeSpacers();
+         }
+      });
    }
    
    public abstract List<String> getSelectedObjects();
    public abstract void clearSelection();
 
+   /**
+    * Moves the window of drawn rows, if necessary, so that it includes the
+    * given row.
+    */
+   public void ensureRowDrawn(int row)
+   {
+      if (isRowDrawn(row) || row < 0 || row >= getRowCount())
+         return;
+      
+      drawWindowAround(row, row + 1);
+   }
+   
+   /**
+    * Returns to drawing the first rows (e.g. when the rows are about to be
+    * replaced).
+    */
+   public void resetDrawnRows()
+   {
+      if (getVisibleRange().getStart() != 0)
+         setVisibleRange(0, PAGE_SIZE);
+   }
+   
+   public boolean isRowDrawn(int row)
+   {
+      Range range = getVisibleRange();
+      return row >= range.getStart() &&
+             row < range.getStart() + range.getLength() &&
+             row < getRowCount();
+   }
+   
+   /**
+    * @return the element for the given (drawn) row, which is indexed from
+    *    the first row rather than the first drawn row
+    */
+   public TableRowElement getDrawnRowElement(int row)
+   {
+      return getRowElement(row - getVisibleRange().getStart());
+   }
+   
+   // draws the rows that are scrolled into view, if they aren't already
+   private void updateWindow()
+   {
+      if (getRowCount() <= PAGE_SIZE)
+         return;
+      
+      ScrollPanel panel = getScrollPanel();
+      int top = panel.getVerticalScrollPosition();
+      int first = top / rowHeight_;
+      int last = (top + panel.getOffsetHeight()) / rowHeight_ + 1;
+      if (!isRowDrawn(first) || !isRowDrawn(Math.min(last, getRowCount()) - 1))
+         drawWindowAround(first, last);
+   }
+   
+   // draws a window of rows centered on the given ones
+   private void drawWindowAround(int first, int last)
+   {
+      int start = first - (PAGE_SIZE - (last - first)) / 2;
+      start = Math.max(0, Math.min(start, getRowCount() - PAGE_SIZE));
+      setVisibleRange(start, PAGE_SIZE);
+   }
+   
+   // makes room above and below the drawn rows for those that aren't drawn,
+   // estimating their heights from those that are
+   private void sizeSpacers()
+   {
+      Range range = getVisibleRange();
+      int count = getRowCount();
+      int start = range.getStart();
+      int end = Math.min(count, start + range.getLength());
+      if (start > 0 && start >= count)
+      {
+         // the rows in the window were removed
+         setVisibleRange(Math.max(0, count - PAGE_SIZE), PAGE_SIZE);
+         return;
+      }
+      
+      int drawnHeight = getTableBodyElement().getOffsetHeight();
+      if (end > start && drawnHeight > 0)
+         rowHeight_ = Math.max(1, drawnHeight / (end - start));
+      
+      // the table sits in a container which is scrolled
+      Element container = getScrollPanel().getWidget().getElement()
+            .getParentElement();
+      container.getStyle().setPaddingTop(start * rowHeight_, Unit.PX);
+      container.getStyle().setPaddingBottom(
+            Math.max(0, count - end) * rowHeight_, Unit.PX);
+   }
+
    public void setEnvironmentName(String environmentName)
    {
       environmentName_ = environmentName;
@@ -109,4 +225,10 @@ public abstract class EnvironmentObjectDisplay
    protected Host host_;
    protected EnvironmentStyle environmentStyle_;
    protected String environmentName_ = "";
+   
+   // estimated height of a row; updated each time rows are drawn
+   private int rowHeight_ = 25;
+   
+   // the number of rows drawn at a time
+   private static final int PAGE_SIZE = 1024;
 }
@@ -92,7 +92,7 @@ public class EnvironmentObjectGrid extends EnvironmentObjectDisplay
       boolean hasFilter = !host_.getFilterText().isEmpty();
       ArrayList<String> selectedObjectNames = new ArrayList<String>();
       ArrayList<String> filteredObjectNames = new ArrayList<String>();
-      List<RObjectEntry> objects = getVisibleItems();
+      List<RObjectEntry> objects = host_.getObjects();
       for (RObjectEntry object: objects)
       {
          if (object.visible)
@@ -231,7 +231,7 @@ public class EnvironmentObjectGrid extends EnvironmentObjectDisplay
    
    private void setSelectAll(boolean selected)
    {
-      List<RObjectEntry> objects = getVisibleItems();
+      List<RObjectEntry> objects = host_.getObjects();
       for (RObjectEntry object: objects)
       {
          if (object.visible)
@@ -17,7 +17,9 @@ package org.rstudio.studio.client.workbench.views.environment.view;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsArray;
@@ -109,15 +111,18 @@ public class EnvironmentObjects extends ResizeComposite
       int idx = indexOfExistingObject(obj.getName());
       final RObjectEntry newEntry = entryFromRObject(obj);
       boolean added = false;
+      int oldCategory = -1;
 
       // if the object is already in the environment, just update the value
       if (idx >= 0)
       {
          final RObjectEntry oldEntry = objectDataProvider_.getList().get(idx);
+         oldCategory = oldEntry.getCategory();
 
          if (oldEntry.rObject.getType() == obj.getType())
          {
             // type hasn't changed
+            idx = replaceObject(idx, newEntry);
             if (oldEntry.expanded && 
                 newEntry.contentsAreDeferred)
             {
@@ -132,7 +137,6 @@ public class EnvironmentObjects extends ResizeComposite
                // contents aren't deferred, just use the expanded state directly
                newEntry.expanded = oldEntry.expanded;
             }
-            objectDataProvider_.getList().set(idx, newEntry);
             added = true;
          }
          else
@@ -144,16 +148,21 @@ public class EnvironmentObjects extends ResizeComposite
       }
       if (!added)
       {
-         RObjectEntry entry = entryFromRObject(obj);
-         idx = indexOfNewObject(entry);
-         objectDataProvider_.getList().add(idx, entry);
+         idx = indexOfNewObject(newEntry);
+         objectDataProvider_.getList().add(idx, newEntry);
       }
-      updateCategoryLeaders(true);
+      objectsByName_.put(obj.getName(), newEntry);
+      
+      updateCategoryLeader(newEntry.getCategory());
+      if (oldCategory >= 0 && oldCategory != newEntry.getCategory())
+         updateCategoryLeader(oldCategory);
       
       // defer to give the display a chance to update + render
       final int index = idx;
       Scheduler.get().scheduleDeferred(() -> {
-         objectDisplay_.getRowElement(index).scrollIntoView();
+         objectDisplay_.ensureRowDrawn(index);
+         if (objectDisplay_.isRowDrawn(index))
+            objectDisplay_.getDrawnRowElement(index).scrollIntoView();
       });
    }
 
@@ -162,15 +171,18 @@ public class EnvironmentObjects extends ResizeComposite
       int idx = indexOfExistingObject(objName);
       if (idx >= 0)
       {
-         objectDataProvider_.getList().remove(idx);
+         RObjectEntry entry = objectDataProvider_.getList().remove(idx);
+         objectsByName_.remove(objName);
+         updateCategoryLeader(entry.getCategory());
       }
-
-      updateCategoryLeaders(true);
    }
    
    public void clearObjects()
    {
       objectDataProvider_.getList().clear();
+      objectsByName_.clear();
+      if (objectDisplay_ != null)
+         objectDisplay_.resetDrawnRows();
    }
    
    public void clearSelection()
@@ -188,6 +200,7 @@ public class EnvironmentObjects extends ResizeComposite
       {
          RObjectEntry entry = entryFromRObject(objects.get(i));
          objectEntryList.add(entry);
+         objectsByName_.put(entry.rObject.getName(), entry);
       }
       Collections.sort(objectEntryList, objectSort_);
 
@@ -450,6 +463,12 @@ public class EnvironmentObjects extends ResizeComposite
       return filterText_;
    }
    
+   @Override
+   public List<RObjectEntry> getObjects()
+   {
+      return objectDataProvider_.getList();
+   }
+   
    @Override
    public int getSortColumn()
    {
@@ -513,40 +532,127 @@ public class EnvironmentObjects extends ResizeComposite
 
    private int indexOfExistingObject(String objectName)
    {
-      List<RObjectEntry> objects = objectDataProvider_.getList();
+      RObjectEntry entry = objectsByName_.get(objectName);
+      if (entry == null)
+         return -1;
 
-      // find the position of the object in the list--we can't use binary
-      // search here since we're matching on names and the list isn't sorted
-      // by name (it's sorted by type, then name)
-      int index;
-      boolean foundObject = false;
-      for (index = 0; index < objects.size(); index++)
-      {
-         if (objects.get(index).rObject.getName() == objectName)
-         {
-            foundObject = true;
-            break;
-         }
-      }
+      // the list is kept sorted, and the sort orders entries with the same
+      // key by name, so the entry is wherever a new copy of it would go
+      List<RObjectEntry> objects = objectDataProvider_.getList();
+      int idx = indexOfNewObject(entry) - 1;
+      if (idx >= 0 && objects.get(idx) == entry)
+         return idx;
 
-      return foundObject ? index : -1;
+      // shouldn't happen, but if the list is somehow out of order fall back
+      // on looking at every entry
+      return objects.indexOf(entry);
    }
 
    // returns the position a new object entry should occupy in the table
    private int indexOfNewObject(RObjectEntry obj)
    {
       List<RObjectEntry> objects = objectDataProvider_.getList();
-      int numObjects = objects.size();
-      int idx;
-      // consider: can we use binary search here?
-      for (idx = 0; idx < numObjects; idx++)
+      int lo = 0;
+      int hi = objects.size();
+      while (lo < hi)
       {
-         if (objectSort_.compare(obj, objects.get(idx)) < 0)
-         {
+         int mid = (lo + hi) >>> 1;
+         if (objectSort_.compare(obj, objects.get(mid)) < 0)
+            hi = mid;
+         else
+            lo = mid + 1;
+      }
+      return lo;
+   }
+
+   // replaces the entry at the given index, moving it if its new value puts
+   // it somewhere else in the sort order; returns its new index
+   private int replaceObject(int idx, RObjectEntry entry)
+   {
+      List<RObjectEntry> objects = objectDataProvider_.getList();
+      boolean inOrder =
+            (idx == 0 ||
+             objectSort_.compare(objects.get(idx - 1), entry) < 0) &&
+            (idx == objects.size() - 1 ||
+             objectSort_.compare(entry, objects.get(idx + 1)) < 0);
+      
+      if (inOrder)
+      {
+         objects.set(idx, entry);
+         return idx;
+      }
+      
+      objects.remove(idx);
+      idx = indexOfNewObject(entry);
+      objects.add(idx, entry);
+      return idx;
+   }
+   
+   // returns the index of the first entry in the given category (the list is
+   // sorted by category when category leaders are shown)
+   private int indexOfCategory(int category)
+   {
+      List<RObjectEntry> objects = objectDataProvider_.getList();
+      int lo = 0;
+      int hi = objects.size();
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (objects.get(mid).getCategory() < category)
+            lo = mid + 1;
+         else
+            hi = mid;
+      }
+      return lo;
+   }
+   
+   // after an object in the given category is added or removed, re-tag that
+   // category's leader and the first object. only the first two visible
+   // objects in a category can have changed roles, so we needn't look at the
+   // rest of the list
+   private void updateCategoryLeader(int category)
+   {
+      if (objectDisplayType_ != OBJECT_LIST_VIEW)
+         return;
+      
+      tagFirstVisibleObject(indexOfCategory(category), category);
+      tagFirstVisibleObject(0, -1);
+   }
+   
+   // tags the first visible object at or after the given index as the
+   // category leader (or, if no category is given, as the first object), and
+   // untags the next visible object
+   private void tagFirstVisibleObject(int start, int category)
+   {
+      List<RObjectEntry> objects = objectDataProvider_.getList();
+      boolean found = false;
+      for (int i = start; i < objects.size(); i++)
+      {
+         RObjectEntry entry = objects.get(i);
+         if (category >= 0 && entry.getCategory() != category)
             break;
+         if (!entry.visible)
+            continue;
+         
+         boolean tagged;
+         if (category >= 0)
+         {
+            tagged = entry.isCategoryLeader;
+            entry.isCategoryLeader = !found;
+         }
+         else
+         {
+            tagged = entry.isFirstObject;
+            entry.isFirstObject = !found;
          }
+         
+         if (tagged == found)
+            redrawRowSafely(i);
+         
+         if (found)
+            break;
+         found = true;
       }
-      return idx;
    }
 
    // after adds or removes, we need to tag the new category-leading objects
@@ -660,21 +766,19 @@ public class EnvironmentObjects extends ResizeComposite
          {
             if (deferredExpandedObjects_ != null)
             { 
-               // loop through the objects in the list and check to see if each
-               // is marked expanded in the persisted list of expanded objects
+               // look up each object in the persisted list of expanded
+               // objects and mark it expanded
                List<RObjectEntry> objects = objectDataProvider_.getList();
-               for (int idxObj = 0; idxObj < objects.size(); idxObj++)
+               for (int idxExpanded = 0;
+                    idxExpanded < deferredExpandedObjects_.length();
+                    idxExpanded++)
                {
-                  for (int idxExpanded = 0;
-                       idxExpanded < deferredExpandedObjects_.length();
-                       idxExpanded++)
+                  int idxObj = indexOfExistingObject(
+                        deferredExpandedObjects_.get(idxExpanded));
+                  if (idxObj >= 0)
                   {
-                     if (objects.get(idxObj).rObject.getName() ==
-                         deferredExpandedObjects_.get(idxExpanded))
-                     {
-                        objects.get(idxObj).expanded = true;
-                        redrawRowSafely(idxObj);
-                     }
+                     objects.get(idxObj).expanded = true;
+                     redrawRowSafely(idxObj);
                   }
                }
             }
@@ -700,16 +804,11 @@ public class EnvironmentObjects extends ResizeComposite
       return new RObjectEntry(obj, matchesFilter(obj));
    }
    
-   // for very large environments, the number of objects may exceed the number
-   // of physical rows; avoid redrawing rows outside the bounds of the
-   // container's physical limit
+   // for large environments, only a window of objects is drawn; avoid
+   // redrawing rows that aren't in it
    private void redrawRowSafely(int idx)
    {
-      boolean oob =
-            idx >= MAX_ENVIRONMENT_OBJECTS ||
-            idx >= objectDisplay_.getRowCount();
-
-      if (oob)
+      if (!objectDisplay_.isRowDrawn(idx))
          return;
             
       objectDisplay_.redrawRow(idx);
@@ -730,6 +829,8 @@ public class EnvironmentObjects extends ResizeComposite
 
    private ListDataProvider<RObjectEntry> objectDataProvider_;
    private RObjectEntrySort objectSort_;
+   private final Map<String, RObjectEntry> objectsByName_ =
+         new HashMap<String, RObjectEntry>();
 
    private EnvironmentObjectsObserver observer_;
    private int contextDepth_;
@@ -744,6 +845,4 @@ public class EnvironmentObjects extends ResizeComposite
    private boolean pendingCallFramePanelSize_ = false;
    private Integer deferredObjectDisplayType_ = new Integer(OBJECT_LIST_VIEW);
    private int gridRenderRetryCount_ = 0;
-   
-   public final static int MAX_ENVIRONMENT_OBJECTS = 1024;
 }
@@ -103,6 +103,18 @@ class RObjectEntrySort implements Comparator<RObjectEntry>
             break;
          }
       }
+      
+      // order objects that are otherwise equal by name, so that every object
+      // has a well-defined place in the list (and can be found there by
+      // binary search)
+      if (result == 0)
+      {
+         result = localeCompare(first.rObject.getName(),
+                                second.rObject.getName());
+         if (result == 0)
+            result = first.rObject.getName().compareTo(
+                                second.rObject.getName());
+      }
       return result;
    }
 
@@ -151,6 +151,12 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
          final String query = searchQuery_;
          if (searchQuery_ != null && searchQuery_.length() > 0)
          {
+            if (index_.isAvailable())
+            {
+               showLocalSearchResults(query);
+               return;
+            }
+
             server_.searchHistoryArchive(
                   searchQuery_, COMMAND_CHUNK_SIZE,
                   new SimpleRequestCallback<RpcObjectList<HistoryEntry>>()
@@ -177,12 +183,23 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
          {
             view_.dismissSearchResults();
          }
+         else if (index_.isAvailable())
+         {
+            // answer immediately when we can do so without the session
+            showLocalSearchResults(query);
+         }
          else
          {
             nudge();
          }
       }
 
+      private void showLocalSearchResults(String query)
+      {
+         view_.showSearchResults(query,
+                                 index_.search(query, COMMAND_CHUNK_SIZE));
+      }
+
       public void dismissResults()
       {
          view_.dismissSearchResults();
@@ -209,6 +226,7 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
       consoleDispatcher_ = consoleDispatcher;
       searchCommand_ = new SearchCommand(session);
       session_ = session;
+      index_ = new HistoryIndex(server);
 
       binder.bind(commands, this);
 
@@ -221,6 +239,14 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
          @Override
          public void onConsoleResetHistory(ConsoleResetHistoryEvent event)
          {
+            // the session may have renumbered the archive, so reload the
+            // search index when next used
+            index_.invalidate();
+
+            // rotating the archive leaves the recent commands as they were
+            if (event.getArchiveRotated())
+               return;
+
             view_.bringToFront();
             
             // convert to HistoryEntry
@@ -266,7 +292,14 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
       {
          public void onHistoryEntriesAdded(HistoryEntriesAddedEvent event)
          {
-            view_.addRecentCommands(toList(event.getEntries()), false);
+            ArrayList<HistoryEntry> entries = toList(event.getEntries());
+            view_.addRecentCommands(entries, false);
+
+            ArrayList<String> commands = new ArrayList<String>();
+            for (HistoryEntry entry : entries)
+               commands.add(entry.getCommand());
+            index_.addCommands(commands);
+
             view_.truncateRecentCommands(
                         session_.getSessionInfo().getConsoleHistoryCapacity());
          }
@@ -671,6 +704,7 @@ public class History extends BasePresenter implements SelectionCommitHandler<Voi
    private final EventBus events_;
    private final GlobalDisplay globalDisplay_;
    private final SearchCommand searchCommand_;
+   private final HistoryIndex index_;
    private HistoryServerOperations server_;
    private final Session session_;
    private final ConsoleDispatcher consoleDispatcher_;
@@ -0,0 +1,346 @@
+/*
+ * HistoryIndex.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.history;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.JsVectorInteger;
+import org.rstudio.core.client.jsonrpc.RpcObjectList;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.history.model.HistoryEntry;
+import org.rstudio.studio.client.workbench.views.history.model.HistoryServerOperations;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+/**
+ * A client-side copy of the history archive, so that history searches can
+ * be answered as the user types (and while R is busy) rather than by the
+ * session. Entries are indexed by the trigrams their commands contain, and
+ * a query that extends the previous one is answered by filtering the
+ * previous query's matches. Queries are matched as the session matches
+ * them: every term (a run of letters and digits, or a punctuation
+ * character) must appear in the command.
+ */
+public class HistoryIndex
+{
+   public HistoryIndex(HistoryServerOperations server)
+   {
+      server_ = server;
+   }
+
+   // an index of the given entries, built immediately (for testing)
+   HistoryIndex(List<HistoryEntry> entries)
+   {
+      server_ = null;
+      for (HistoryEntry entry : entries)
+         addEntry(entry);
+      built_ = true;
+      stale_ = false;
+   }
+
+   /**
+    * @return true if the index is loaded and can answer searches; starts
+    *    loading it if it isn't already
+    */
+   public boolean isAvailable()
+   {
+      refreshIfStale();
+      return built_;
+   }
+
+   /**
+    * Discards the index; it is reloaded the next time it is used.
+    */
+   public void invalidate()
+   {
+      generation_++;
+      entries_ = new ArrayList<HistoryEntry>();
+      postings_ = new HashMap<String, JsVectorInteger>();
+      built_ = false;
+      loading_ = false;
+      stale_ = true;
+      resetLastQuery();
+   }
+
+   /**
+    * Records commands newly added to the history archive.
+    */
+   public void addCommands(ArrayList<String> commands)
+   {
+      if (!built_)
+      {
+         // the archive being loaded may or may not include these, so
+         // load it again once this load completes
+         if (loading_)
+            reloadRequired_ = true;
+         return;
+      }
+
+      double nextIndex = entries_.isEmpty()
+            ? 0
+            : entries_.get(entries_.size() - 1).getIndex() + 1;
+      double timestamp = Duration.currentTimeMillis();
+      for (String command : commands)
+         addEntry(HistoryEntry.create(nextIndex++, timestamp, command));
+      resetLastQuery();
+   }
+
+   /**
+    * @return the most recent entries matching the query, newest first
+    */
+   public ArrayList<HistoryEntry> search(String query, int limit)
+   {
+      ArrayList<HistoryEntry> results = new ArrayList<HistoryEntry>();
+      if (!built_)
+         return results;
+
+      ArrayList<String> terms = tokenize(query);
+      if (terms.isEmpty())
+         return results;
+
+      // anything matching the query matches any prefix of it, so if the
+      // query extends the last one we only need to look at the last matches
+      JsVectorInteger matches;
+      if (lastQuery_ != null && query.startsWith(lastQuery_))
+      {
+         matches = query.length() == lastQuery_.length()
+               ? lastMatches_
+               : filter(lastMatches_, terms);
+      }
+      else
+      {
+         matches = filter(candidatesFor(terms), terms);
+      }
+
+      lastQuery_ = query;
+      lastMatches_ = matches;
+
+      for (int i = matches.length() - 1; i >= 0 && results.size() < limit; i--)
+         results.add(entries_.get(matches.get(i)));
+      return results;
+   }
+
+   private void refreshIfStale()
+   {
+      if (!stale_ || loading_)
+         return;
+
+      stale_ = false;
+      loading_ = true;
+      reloadRequired_ = false;
+      final int generation = generation_;
+      server_.getHistoryArchiveItems(
+            0,
+            Integer.MAX_VALUE,
+            new ServerRequestCallback<RpcObjectList<HistoryEntry>>()
+      {
+         @Override
+         public void onResponseReceived(RpcObjectList<HistoryEntry> response)
+         {
+            if (generation == generation_)
+               build(response, generation);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            if (generation != generation_)
+               return;
+
+            Debug.logError(error);
+            loading_ = false;
+            stale_ = true;
+         }
+      });
+   }
+
+   private void build(final RpcObjectList<HistoryEntry> response,
+                      final int generation)
+   {
+      // index the archive a chunk at a time so that large histories don't
+      // block the UI
+      final int count = response.length();
+      Scheduler.get().scheduleIncremental(new RepeatingCommand()
+      {
+         @Override
+         public boolean execute()
+         {
+            if (generation != generation_)
+               return false;
+
+            int end = Math.min(next_ + BUILD_CHUNK_SIZE, count);
+            for (; next_ < end; next_++)
+               addEntry(response.get(next_));
+
+            if (next_ < count)
+               return true;
+
+            loading_ = false;
+            built_ = true;
+            if (reloadRequired_)
+               invalidate();
+            return false;
+         }
+
+         private int next_ = 0;
+      });
+   }
+
+   private void addEntry(HistoryEntry entry)
+   {
+      int position = entries_.size();
+      entries_.add(entry);
+
+      String command = entry.getCommand();
+      for (int i = 0; i + TRIGRAM_LENGTH <= command.length(); i++)
+      {
+         String trigram = command.substring(i, i + TRIGRAM_LENGTH);
+         JsVectorInteger posting = postings_.get(trigram);
+         if (posting == null)
+         {
+            posting = JsVectorInteger.createVector();
+            postings_.put(trigram, posting);
+         }
+
+         // only record each entry once per trigram
+         int length = posting.length();
+         if (length == 0 || posting.get(length - 1) != position)
+            posting.push(position);
+      }
+   }
+
+   /**
+    * @return the entries containing the least common of the terms' trigrams
+    *    (all entries if no term is long enough to have any)
+    */
+   private JsVectorInteger candidatesFor(ArrayList<String> terms)
+   {
+      JsVectorInteger candidates = null;
+      for (String term : terms)
+      {
+         for (int i = 0; i + TRIGRAM_LENGTH <= term.length(); i++)
+         {
+            JsVectorInteger posting =
+                  postings_.get(term.substring(i, i + TRIGRAM_LENGTH));
+            if (posting == null)
+               return JsVectorInteger.createVector();
+            if (candidates == null || posting.length() < candidates.length())
+               candidates = posting;
+         }
+      }
+
+      if (candidates == null)
+      {
+         candidates = JsVectorInteger.createVector();
+         for (int i = 0, n = entries_.size(); i < n; i++)
+            candidates.push(i);
+      }
+      return candidates;
+   }
+
+   private JsVectorInteger filter(JsVectorInteger candidates,
+                                  ArrayList<String> terms)
+   {
+      JsVectorInteger matches = JsVectorInteger.createVector();
+      for (int i = 0, n = candidates.length(); i < n; i++)
+      {
+         int position = candidates.get(i);
+         String command = entries_.get(position).getCommand();
+
+         boolean matched = true;
+         for (int j = 0; j < terms.size() && matched; j++)
+            matched = command.contains(terms.get(j));
+
+         if (matched)
+            matches.push(position);
+      }
+      return matches;
+   }
+
+   private void resetLastQuery()
+   {
+      lastQuery_ = null;
+      lastMatches_ = null;
+   }
+
+   /**
+    * Splits a query into terms as the session does: whitespace separates
+    * terms, and each punctuation character is a term of its own.
+    */
+   static ArrayList<String> tokenize(String query)
+   {
+      ArrayList<String> terms = new ArrayList<String>();
+      int start = -1;
+      for (int i = 0; i <= query.length(); i++)
+      {
+         char ch = i < query.length() ? query.charAt(i) : ' ';
+         boolean space = isSpace(ch);
+         boolean punct = !space && isPunct(ch);
+         if (start != -1 && (space || punct))
+         {
+            terms.add(query.substring(start, i));
+            start = -1;
+         }
+
+         if (punct)
+            terms.add(String.valueOf(ch));
+         else if (!space && start == -1)
+            start = i;
+      }
+      return terms;
+   }
+
+   private static boolean isSpace(char ch)
+   {
+      return ch == ' ' || (ch >= '\t' && ch <= '\r');
+   }
+
+   private static boolean isPunct(char ch)
+   {
+      return ch < 128 && PUNCTUATION.indexOf(ch) != -1;
+   }
+
+   private final HistoryServerOperations server_;
+
+   // entries in archive order, and the positions of the entries containing
+   // each trigram (in ascending order)
+   private ArrayList<HistoryEntry> entries_ = new ArrayList<HistoryEntry>();
+   private HashMap<String, JsVectorInteger> postings_ =
+         new HashMap<String, JsVectorInteger>();
+
+   private boolean built_ = false;
+   private boolean loading_ = false;
+   private boolean stale_ = true;
+   private boolean reloadRequired_ = false;
+
+   // incremented whenever the index is discarded, so that loads begun
+   // beforehand can be abandoned
+   private int generation_ = 0;
+
+   // the last query and the entries that matched it
+   private String lastQuery_ = null;
+   private JsVectorInteger lastMatches_ = null;
+
+   private static final int TRIGRAM_LENGTH = 3;
+   private static final int BUILD_CHUNK_SIZE = 5000;
+   private static final String PUNCTUATION =
+         "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+}
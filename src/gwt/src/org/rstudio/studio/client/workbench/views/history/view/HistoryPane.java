@@ -97,6 +97,14 @@ public class HistoryPane extends WorkbenchPane
       scrollToBottom();
    }
 
+   @Override
+   public void onResize()
+   {
+      super.onResize();
+      if (commandList_ != null)
+         commandList_.updateWindow();
+   }
+
    @Override
    public void onBeforeUnselected()
    {
@@ -163,6 +171,7 @@ public class HistoryPane extends WorkbenchPane
       recentScrollPanel_.getElement().getStyle().setProperty("overflowX", "hidden");
       recentScrollPanel_.setWidget(vpanel);
       commandList_.setOwningScrollPanel(recentScrollPanel_);
+      commandList_.setWindowed(true);
 
       mainPanel_.add(recentScrollPanel_);
       mainPanel_.setWidgetTopBottom(recentScrollPanel_, 0, Unit.PX, 0, Unit.PX);
@@ -417,6 +426,18 @@ public class HistoryPane extends WorkbenchPane
 
    public void addRecentCommands(ArrayList<HistoryEntry> entries, boolean top)
    {
+      if (commandList_.isWindowed())
+      {
+         // the table keeps the rows in view in place when adding to the top
+         boolean wasEmpty = commandList_.getRowCount() == 0;
+         commandList_.addItems(entries, top);
+         if (top && wasEmpty)
+            recentScrollPanel_.scrollToBottom();
+         else if (!top)
+            recentScrollPanel_.onContentSizeChanged();
+         return;
+      }
+
       TableRowElement topRow = null;
       if (top)
          topRow = commandList_.getTopRow();
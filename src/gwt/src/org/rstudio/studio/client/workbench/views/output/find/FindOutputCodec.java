@@ -16,15 +16,24 @@ package org.rstudio.studio.client.workbench.views.output.find;
 
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.TableCellElement;
+import com.google.gwt.dom.client.TableElement;
 import com.google.gwt.dom.client.TableRowElement;
+import com.google.gwt.dom.client.TableSectionElement;
 import org.rstudio.core.client.CodeNavigationTarget;
 import org.rstudio.core.client.FilePosition;
-import org.rstudio.core.client.widget.HeaderBreaksItemCodec;
+import org.rstudio.core.client.widget.FastSelectTable.ItemCodec;
 import org.rstudio.studio.client.workbench.views.output.find.FindOutputResources.Styles;
+import org.rstudio.studio.client.workbench.views.output.find.FindResultStore.Group;
+import org.rstudio.studio.client.workbench.views.output.find.FindResultStore.Item;
 import org.rstudio.studio.client.workbench.views.output.find.model.FindResult;
 
+/**
+ * Renders the items of a FindResultStore. File headers are items in their
+ * own right (rather than rows inserted by the codec), so the table can
+ * render them in windowed mode.
+ */
 public class FindOutputCodec
-      extends HeaderBreaksItemCodec<FindResult, CodeNavigationTarget, Object>
+      implements ItemCodec<Item, CodeNavigationTarget, Object>
 {
    public FindOutputCodec(FindOutputResources resources)
    {
@@ -32,21 +41,41 @@ public class FindOutputCodec
    }
 
    @Override
-   public TableRowElement getRowForItem(FindResult entry)
+   public TableRowElement getRowForItem(Item item)
    {
-      if (entry == null)
+      if (item == null)
       {
          // Overflow message
          TableRowElement tr = Document.get().createTRElement();
          TableCellElement td = Document.get().createTDElement();
          td.setClassName(styles_.overflowWarning());
          td.setColSpan(2);
-         td.setInnerText("More than 1000 matching lines were found. " +
-                         "Only the first 1000 lines are shown.");
+         td.setInnerText("More than " + overflowCount_ +
+                         " matching lines were found. " +
+                         "Only the first " + overflowCount_ +
+                         " lines are shown.");
+         tr.appendChild(td);
+         return tr;
+      }
+
+      if (item.isHeader())
+      {
+         Group group = item.getGroup();
+         TableRowElement tr = Document.get().createTRElement();
+         tr.setClassName(styles_.headerRow());
+         tr.setAttribute(DATA_GROUP, group.getIndex() + "");
+
+         TableCellElement td = Document.get().createTDElement();
+         td.setColSpan(2);
+         td.setInnerText((group.isFolded() ? "\u25B8 " : "\u25BE ") +
+                         group.getFile() +
+                         (group.isFolded() ? " (" + group.getCount() + ")"
+                                           : ""));
          tr.appendChild(td);
          return tr;
       }
 
+      FindResult entry = item.getResult();
       TableRowElement tr = Document.get().createTRElement();
       tr.setAttribute(DATA_FILE, entry.getFile());
       tr.setAttribute(DATA_LINE, entry.getLine() + "");
@@ -65,28 +94,8 @@ public class FindOutputCodec
    }
 
    @Override
-   protected boolean needsBreak(TableRowElement prevRow, TableRowElement row)
+   public void onRowsChanged(TableSectionElement tbody)
    {
-      if (!row.hasAttribute(DATA_FILE))
-         return false;
-
-      return prevRow == null ||
-             prevRow.getAttribute(DATA_FILE) != row.getAttribute(DATA_FILE);
-   }
-
-   @Override
-   protected int addBreak(TableRowElement row)
-   {
-      TableRowElement tr = Document.get().createTRElement();
-      tr.setClassName(styles_.headerRow());
-
-      TableCellElement td = Document.get().createTDElement();
-      td.setColSpan(2);
-      td.setInnerText(row.getAttribute(DATA_FILE));
-      tr.appendChild(td);
-
-      row.getParentElement().insertBefore(tr, row);
-      return 1;
    }
 
    @Override
@@ -110,14 +119,54 @@ public class FindOutputCodec
       return row.hasAttribute(DATA_FILE);
    }
 
+   /**
+    * @return the index of the group whose header the row is, or -1 if the
+    *    row isn't a file header
+    */
+   public int getGroupForRow(TableRowElement row)
+   {
+      if (!row.hasAttribute(DATA_GROUP))
+         return -1;
+      return Integer.parseInt(row.getAttribute(DATA_GROUP));
+   }
+
+   /**
+    * Sets the number of matches shown, for the message shown when there
+    * were more.
+    */
+   public void setOverflowCount(int count)
+   {
+      overflowCount_ = count;
+   }
+
    @Override
    public boolean hasNonValueRows()
    {
-      return true;
+      return false;
+   }
+
+   @Override
+   public Integer logicalOffsetToPhysicalOffset(TableElement table, int offset)
+   {
+      return offset;
+   }
+
+   @Override
+   public Integer physicalOffsetToLogicalOffset(TableElement table, int offset)
+   {
+      return offset;
+   }
+
+   @Override
+   public int getLogicalRowCount(TableElement table)
+   {
+      return table.getRows().getLength();
    }
 
    private Styles styles_;
+   private int overflowCount_ = FindResultStore.MAX_COUNT;
 
    private static final String DATA_FILE = "data-file";
    private static final String DATA_LINE = "data-line";
+   private static final String DATA_GROUP = "data-group";
 }
@@ -15,6 +15,7 @@
 package org.rstudio.studio.client.workbench.views.output.find;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.event.dom.client.*;
@@ -26,7 +27,6 @@ import com.google.gwt.user.client.ui.SimplePanel;
 import com.google.gwt.user.client.ui.Widget;
 import com.google.inject.Inject;
 import org.rstudio.core.client.CodeNavigationTarget;
-import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.events.EnsureVisibleEvent;
 import org.rstudio.core.client.events.HasSelectionCommitHandlers;
 import org.rstudio.core.client.events.SelectionCommitEvent;
@@ -35,6 +35,8 @@ import org.rstudio.core.client.widget.*;
 import org.rstudio.core.client.widget.events.SelectionChangedHandler;
 import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.ui.WorkbenchPane;
+import org.rstudio.studio.client.workbench.views.output.find.FindResultStore.Group;
+import org.rstudio.studio.client.workbench.views.output.find.FindResultStore.Item;
 import org.rstudio.studio.client.workbench.views.output.find.model.FindResult;
 
 import java.util.ArrayList;
@@ -67,6 +69,31 @@ public class FindOutputPane extends WorkbenchPane
 
       toolbar.addRightWidget(stopSearch_);
 
+      previousFile_ = new ToolbarButton(
+            commands_.goToPrevSection().getImageResource(),
+            new ClickHandler()
+            {
+               @Override
+               public void onClick(ClickEvent event)
+               {
+                  jumpToFile(false);
+               }
+            });
+      previousFile_.setTitle("Go to previous file");
+      toolbar.addRightWidget(previousFile_);
+
+      nextFile_ = new ToolbarButton(
+            commands_.goToNextSection().getImageResource(),
+            new ClickHandler()
+            {
+               @Override
+               public void onClick(ClickEvent event)
+               {
+                  jumpToFile(true);
+               }
+            });
+      nextFile_.setTitle("Go to next file");
+      toolbar.addRightWidget(nextFile_);
 
       return toolbar;
    }
@@ -79,8 +106,10 @@ public class FindOutputPane extends WorkbenchPane
       FindOutputResources resources = GWT.create(FindOutputResources.class);
       resources.styles().ensureInjected();
 
-      table_ = new FastSelectTable<FindResult, CodeNavigationTarget, Object>(
-            new FindOutputCodec(resources),
+      store_ = new FindResultStore();
+      codec_ = new FindOutputCodec(resources);
+      table_ = new FastSelectTable<Item, CodeNavigationTarget, Object>(
+            codec_,
             resources.styles().selectedRow(),
             true,
             false);
@@ -94,6 +123,14 @@ public class FindOutputPane extends WorkbenchPane
             if (event.getNativeButton() != NativeEvent.BUTTON_LEFT)
                return;
 
+            // clicking a file's header folds or unfolds it
+            Group group = getClickedGroup(event);
+            if (group != null)
+            {
+               setFolded(group, !group.isFolded());
+               return;
+            }
+
             if (dblClick_.checkForDoubleClick(event.getNativeEvent()))
                fireSelectionCommitted();
          }
@@ -120,6 +157,8 @@ public class FindOutputPane extends WorkbenchPane
       statusPanel_.setSize("100%", "100%");
       scrollPanel_ = new ScrollPanel(table_);
       scrollPanel_.setSize("100%", "100%");
+      table_.setOwningScrollPanel(scrollPanel_);
+      table_.setWindowed(true);
       container_.setWidget(scrollPanel_);
       return container_;
    }
@@ -131,22 +170,89 @@ public class FindOutputPane extends WorkbenchPane
          SelectionCommitEvent.fire(this, values.get(0));
    }
 
+   private Group getClickedGroup(ClickEvent event)
+   {
+      Element el = Element.as(event.getNativeEvent().getEventTarget());
+      while (el != null && !el.getTagName().equalsIgnoreCase("tr"))
+      {
+         if (el == table_.getElement())
+            return null;
+         el = el.getParentElement();
+      }
+      if (el == null)
+         return null;
+
+      return store_.getGroup(codec_.getGroupForRow(el.<TableRowElement>cast()));
+   }
+
+   private Item getSelectedItem()
+   {
+      ArrayList<Integer> indices = table_.getSelectedRowIndexes();
+      if (indices.isEmpty())
+         return null;
+      return displayedItems_.get(indices.get(0));
+   }
+
+   private void setFolded(Group group, boolean folded)
+   {
+      Item selected = getSelectedItem();
+      store_.setFolded(group, folded);
+
+      // redisplay everything (the items above the group are unchanged, so
+      // the group's header stays where it was)
+      int scrollPosition = scrollPanel_.getVerticalScrollPosition();
+      displayedItems_ = store_.getItems();
+      if (overflow_)
+         displayedItems_.add(null);
+      table_.clear();
+      table_.addItems(displayedItems_, false);
+      scrollPanel_.setVerticalScrollPosition(scrollPosition);
+
+      // reselect the selected match, if it's still displayed
+      int index = selected == null ? -1 : displayedItems_.indexOf(selected);
+      if (index >= 0)
+         table_.setSelected(index, 1, true);
+   }
+
+   private void jumpToFile(boolean next)
+   {
+      Item selected = getSelectedItem();
+      int current = selected != null ? selected.getGroup().getIndex() :
+                    next ? -1 : store_.getGroupCount();
+      Group group = store_.getGroup(current + (next ? 1 : -1));
+      if (group == null)
+         return;
+
+      if (group.isFolded())
+         setFolded(group, false);
+
+      int index = displayedItems_.indexOf(store_.getFirstItem(group));
+      if (index < 0)
+         return;
+
+      table_.clearSelection();
+      table_.setSelected(index, 1, true);
+      table_.ensureItemVisible(index);
+      table_.focus();
+   }
+
    @Override
    public void addMatches(ArrayList<FindResult> findResults)
    {
-      int matchesToAdd = Math.min(findResults.size(), MAX_COUNT - matchCount_);
+      int matchCount = store_.getMatchCount();
+      ArrayList<Item> items = store_.addMatches(findResults);
+      int matchesAdded = store_.getMatchCount() - matchCount;
 
-      if (matchesToAdd > 0)
+      if (!items.isEmpty())
       {
-         matchCount_ += matchesToAdd;
-         
-         if (matchCount_ > 0 && container_.getWidget() != scrollPanel_)
+         if (container_.getWidget() != scrollPanel_)
             container_.setWidget(scrollPanel_);
-            
-         table_.addItems(findResults.subList(0, matchesToAdd), false);
+
+         displayedItems_.addAll(items);
+         table_.addItems(items, false);
       }
       
-      if (matchesToAdd != findResults.size())
+      if (matchesAdded != findResults.size())
          showOverflow();
    }
 
@@ -155,8 +261,9 @@ public class FindOutputPane extends WorkbenchPane
    {
       context_.reset();
       table_.clear();
+      store_.clear();
+      displayedItems_ = new ArrayList<Item>();
       overflow_ = false;
-      matchCount_ = 0;
       statusPanel_.setStatusText("");
       container_.setWidget(statusPanel_);
    }
@@ -164,7 +271,7 @@ public class FindOutputPane extends WorkbenchPane
    @Override
    public void showSearchCompleted()
    {
-      if (matchCount_ == 0)
+      if (store_.getMatchCount() == 0)
          statusPanel_.setStatusText("(No results found)");
    }
    
@@ -200,13 +307,9 @@ public class FindOutputPane extends WorkbenchPane
    @Override
    public void ensureSelectedRowIsVisible()
    {
-      ArrayList<TableRowElement> rows = table_.getSelectedRows();
-      if (rows.size() > 0)
-      {
-         DomUtils.ensureVisibleVert(scrollPanel_.getElement(),
-                                    rows.get(0),
-                                    20);
-      }
+      ArrayList<Integer> indices = table_.getSelectedRowIndexes();
+      if (indices.size() > 0)
+         table_.ensureItemVisible(indices.get(0));
    }
 
    @Override
@@ -221,8 +324,10 @@ public class FindOutputPane extends WorkbenchPane
       if (overflow_)
          return;
       overflow_ = true;
-      ArrayList<FindResult> items = new ArrayList<FindResult>();
+      codec_.setOverflowCount(store_.getMatchCount());
+      ArrayList<Item> items = new ArrayList<Item>();
       items.add(null);
+      displayedItems_.add(null);
       table_.addItems(items, false);
    }
 
@@ -270,17 +375,18 @@ public class FindOutputPane extends WorkbenchPane
       
    }
    
-   private FastSelectTable<FindResult, CodeNavigationTarget, Object> table_;
+   private FastSelectTable<Item, CodeNavigationTarget, Object> table_;
+   private FindOutputCodec codec_;
+   private FindResultStore store_;
+   private ArrayList<Item> displayedItems_ = new ArrayList<Item>();
    private FindResultContext context_;
    private final Commands commands_;
    private Label searchLabel_;
    private ToolbarButton stopSearch_;
+   private ToolbarButton previousFile_;
+   private ToolbarButton nextFile_;
    private SimplePanel container_;
    private ScrollPanel scrollPanel_;
    private StatusPanel statusPanel_;
    private boolean overflow_ = false;
-   private int matchCount_;
-
-   // This must be the same as MAX_COUNT in SessionFind.cpp
-   private static final int MAX_COUNT = 1000;
 }
@@ -216,7 +216,20 @@ public class FindOutputPresenter extends BasePresenter
       view_.addMatches(state.getResults().toArrayList());
       updateSearchLabel(state.getInput(), state.getPath(), state.isRegex());
 
-      if (state.isRunning())
+      // the session only keeps the first results it found; if there were
+      // more, a running search is stopped rather than resumed (since what
+      // it finds next wouldn't follow the results we have)
+      if (state.isTruncated())
+      {
+         view_.showOverflow();
+         if (state.isRunning())
+         {
+            stop();
+            view_.showSearchCompleted();
+         }
+         events_.fireEvent(new FindOperationEndedEvent(state.getHandle()));
+      }
+      else if (state.isRunning())
          view_.setStopSearchButtonVisible(true);
       else
          events_.fireEvent(new FindOperationEndedEvent(state.getHandle()));
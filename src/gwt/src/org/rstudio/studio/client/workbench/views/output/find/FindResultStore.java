@@ -0,0 +1,199 @@
+/*
+ * FindResultStore.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.output.find;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.studio.client.workbench.views.output.find.model.FindResult;
+
+/**
+ * Holds the results of a find in files operation, grouped by file, and
+ * produces the items (file headers and matches) displayed for them. Files
+ * may be folded, in which case only their headers are displayed.
+ */
+public class FindResultStore
+{
+   public FindResultStore()
+   {
+      this(MAX_COUNT);
+   }
+
+   FindResultStore(int maxCount)
+   {
+      maxCount_ = maxCount;
+   }
+
+   public static class Group
+   {
+      private Group(int index, String file)
+      {
+         index_ = index;
+         file_ = file;
+      }
+
+      public int getIndex()
+      {
+         return index_;
+      }
+
+      public String getFile()
+      {
+         return file_;
+      }
+
+      public int getCount()
+      {
+         return items_.size();
+      }
+
+      public boolean isFolded()
+      {
+         return folded_;
+      }
+
+      private final int index_;
+      private final String file_;
+      private final Item header_ = new Item(this, null);
+      private final ArrayList<Item> items_ = new ArrayList<Item>();
+      private boolean folded_ = false;
+   }
+
+   public static class Item
+   {
+      private Item(Group group, FindResult result)
+      {
+         group_ = group;
+         result_ = result;
+      }
+
+      public Group getGroup()
+      {
+         return group_;
+      }
+
+      /**
+       * @return the match, or null if this is a file header
+       */
+      public FindResult getResult()
+      {
+         return result_;
+      }
+
+      public boolean isHeader()
+      {
+         return result_ == null;
+      }
+
+      private final Group group_;
+      private final FindResult result_;
+   }
+
+   /**
+    * Adds matches to the store (up to MAX_COUNT in all, by default).
+    *
+    * @return the items to append to the display for the new matches
+    */
+   public ArrayList<Item> addMatches(List<FindResult> results)
+   {
+      ArrayList<Item> displayItems = new ArrayList<Item>();
+      for (FindResult result : results)
+      {
+         if (isFull())
+            break;
+
+         // results arrive file by file, so a change of file starts a new
+         // group (as does a file that reappears later)
+         Group group = groups_.isEmpty() ? null
+                                         : groups_.get(groups_.size() - 1);
+         if (group == null ||
+             !StringUtil.equals(group.getFile(), result.getFile()))
+         {
+            group = new Group(groups_.size(), result.getFile());
+            groups_.add(group);
+            displayItems.add(group.header_);
+         }
+
+         Item item = new Item(group, result);
+         group.items_.add(item);
+         matchCount_++;
+         if (!group.isFolded())
+            displayItems.add(item);
+      }
+      return displayItems;
+   }
+
+   /**
+    * @return all the items to display, in order
+    */
+   public ArrayList<Item> getItems()
+   {
+      ArrayList<Item> items = new ArrayList<Item>(matchCount_ + groups_.size());
+      for (Group group : groups_)
+      {
+         items.add(group.header_);
+         if (!group.isFolded())
+            items.addAll(group.items_);
+      }
+      return items;
+   }
+
+   public Group getGroup(int index)
+   {
+      return index >= 0 && index < groups_.size() ? groups_.get(index) : null;
+   }
+
+   public int getGroupCount()
+   {
+      return groups_.size();
+   }
+
+   public void setFolded(Group group, boolean folded)
+   {
+      group.folded_ = folded;
+   }
+
+   /**
+    * @return the first match in the group
+    */
+   public Item getFirstItem(Group group)
+   {
+      return group.items_.isEmpty() ? null : group.items_.get(0);
+   }
+
+   public int getMatchCount()
+   {
+      return matchCount_;
+   }
+
+   public boolean isFull()
+   {
+      return matchCount_ >= maxCount_;
+   }
+
+   public void clear()
+   {
+      groups_.clear();
+      matchCount_ = 0;
+   }
+
+   private final int maxCount_;
+   private final ArrayList<Group> groups_ = new ArrayList<Group>();
+   private int matchCount_ = 0;
+
+   // This must be the same as MAX_COUNT in SessionFind.cpp
+   public static final int MAX_COUNT = 100000;
+}
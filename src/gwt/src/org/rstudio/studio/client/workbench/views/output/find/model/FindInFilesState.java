@@ -38,6 +38,13 @@ public class FindInFilesState extends JavaScriptObject
       return this.results;
    }-*/;
 
+   /**
+    * @return whether more results were found than were kept by the session
+    */
+   public native final boolean isTruncated() /*-{
+      return !!this.truncated;
+   }-*/;
+
    public native final boolean isRunning() /*-{
       return this.running;
    }-*/;
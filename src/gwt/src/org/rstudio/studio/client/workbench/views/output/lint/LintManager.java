@@ -334,11 +334,18 @@ public class LintManager
 
       if (uiPrefs_.realTimeSpellChecking().getValue() && TypoSpellChecker.isLoaded())
       {
-         JsArray<LintItem> spellingLint = target_.getSpellingTarget().getLint();
-         for (int i = 0; i < spellingLint.length(); i++)
+         target_.getSpellingTarget().getLint((spellingLint) ->
          {
-            finalLint.push(spellingLint.get(i));
-         }
+            if (context.token.isInvalid() || docDisplay_.isPopupVisible())
+               return;
+
+            for (int i = 0; i < spellingLint.length(); i++)
+            {
+               finalLint.push(spellingLint.get(i));
+            }
+            docDisplay_.showLint(finalLint);
+         });
+         return;
       }
       docDisplay_.showLint(finalLint);
    }
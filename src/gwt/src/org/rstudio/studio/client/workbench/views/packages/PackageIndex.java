@@ -0,0 +1,316 @@
+/*
+ * PackageIndex.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.packages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import org.rstudio.core.client.JsVectorInteger;
+import org.rstudio.studio.client.workbench.model.Session;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageInfo;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageLibraryUtils;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageLibraryUtils.PackageLibraryType;
+
+import com.google.gwt.core.client.JsArray;
+
+/**
+ * The installed packages, grouped by library and sorted by name, along with
+ * what's needed to filter them as the user types: the lowercased names and
+ * descriptions searched, each package's library type, and the packages'
+ * positions by name. A filter that extends the previous one is answered by
+ * filtering the previous filter's matches.
+ */
+public class PackageIndex
+{
+   public PackageIndex(Session session)
+   {
+      session_ = session;
+   }
+
+   /**
+    * Applies a package list received from the session. When the same
+    * packages are still installed (with the same descriptions), the index
+    * is kept and only the details of the packages that changed (e.g. their
+    * versions or whether they're loaded) are updated.
+    *
+    * @return the packages whose details changed, or null if packages were
+    *    added or removed (in which case the index is rebuilt)
+    */
+   public ArrayList<PackageInfo> update(JsArray<PackageInfo> packages)
+   {
+      int count = packages.length();
+      int[] positions = new int[count];
+      boolean rebuild = count != entries_.size();
+      for (int i = 0; i < count && !rebuild; i++)
+      {
+         PackageInfo info = packages.get(i);
+         positions[i] = find(info.getName(), info.getLibrary());
+         rebuild = positions[i] == -1 ||
+                   !entries_.get(positions[i]).info.getDesc().equals(info.getDesc());
+      }
+
+      if (rebuild)
+      {
+         build(packages);
+         return null;
+      }
+
+      ArrayList<PackageInfo> changed = new ArrayList<PackageInfo>();
+      for (int i = 0; i < count; i++)
+      {
+         PackageInfo info = packages.get(i);
+         if (!isSameInfo(entries_.get(positions[i]).info, info))
+         {
+            replace(positions[i], info);
+            changed.add(info);
+         }
+      }
+      return changed;
+   }
+
+   /**
+    * Records that a package was loaded or unloaded. Only one copy of a
+    * package can be loaded, so copies in other libraries are marked as
+    * unloaded.
+    */
+   public void setLoaded(String name, String library, boolean loaded)
+   {
+      ArrayList<Integer> positions = byName_.get(name);
+      if (positions == null)
+         return;
+
+      for (int position : positions)
+      {
+         PackageInfo info = entries_.get(position).info;
+         if (info.getLibrary().equals(library))
+            replace(position, loaded ? info.asLoaded() : info.asUnloaded());
+         else if (loaded && info.isLoaded())
+            replace(position, info.asUnloaded());
+      }
+   }
+
+   /**
+    * @param filter a lowercase filter, or an empty string to list every
+    *    package
+    * @return the packages whose names or descriptions contain the filter,
+    *    grouped by library; within each library, packages whose names start
+    *    with the filter are listed first. The first package listed from
+    *    each library is marked as such.
+    */
+   public ArrayList<PackageInfo> filter(String filter)
+   {
+      ArrayList<Integer> results = new ArrayList<Integer>();
+      if (filter.isEmpty())
+      {
+         for (int i = 0, n = entries_.size(); i < n; i++)
+            results.add(i);
+         return list(results);
+      }
+
+      // anything matching the filter matches any prefix of it, so if the
+      // filter extends the last one we only need to look at the last matches
+      JsVectorInteger candidates = null;
+      if (lastFilter_ != null && filter.startsWith(lastFilter_))
+         candidates = lastMatches_;
+
+      JsVectorInteger matches = JsVectorInteger.createVector();
+      ArrayList<Integer> others = new ArrayList<Integer>();
+      PackageLibraryType libraryType = null;
+      int count = candidates == null ? entries_.size() : candidates.length();
+      for (int i = 0; i < count; i++)
+      {
+         int position = candidates == null ? i : candidates.get(i);
+         Entry entry = entries_.get(position);
+
+         // the entries are grouped by library, so the previous library's
+         // matches are complete once we reach another library
+         if (entry.libraryType != libraryType)
+         {
+            results.addAll(others);
+            others.clear();
+            libraryType = entry.libraryType;
+         }
+
+         if (entry.name.startsWith(filter))
+            results.add(position);
+         else if (entry.name.contains(filter) || entry.desc.contains(filter))
+            others.add(position);
+         else
+            continue;
+
+         matches.push(position);
+      }
+      results.addAll(others);
+
+      lastFilter_ = filter;
+      lastMatches_ = matches;
+      return list(results);
+   }
+
+   private void build(JsArray<PackageInfo> packages)
+   {
+      clearFirstInLibrary();
+
+      // look up the type of each library once
+      HashMap<String, PackageLibraryType> libraryTypes =
+            new HashMap<String, PackageLibraryType>();
+
+      entries_ = new ArrayList<Entry>();
+      for (int i = 0; i < packages.length(); i++)
+      {
+         PackageInfo info = packages.get(i);
+         String library = info.getLibrary();
+         PackageLibraryType libraryType = libraryTypes.get(library);
+         if (libraryType == null)
+         {
+            libraryType = PackageLibraryUtils.typeOfLibrary(session_, library);
+            libraryTypes.put(library, libraryType);
+         }
+         entries_.add(new Entry(info, libraryType));
+      }
+
+      // sort first by library, then by name
+      Collections.sort(entries_, new Comparator<Entry>()
+      {
+         @Override
+         public int compare(Entry o1, Entry o2)
+         {
+            int library = o1.libraryType.compareTo(o2.libraryType);
+            return library == 0 ? o1.name.compareTo(o2.name) : library;
+         }
+      });
+
+      byName_ = new HashMap<String, ArrayList<Integer>>();
+      for (int i = 0; i < entries_.size(); i++)
+      {
+         String name = entries_.get(i).info.getName();
+         ArrayList<Integer> positions = byName_.get(name);
+         if (positions == null)
+         {
+            positions = new ArrayList<Integer>();
+            byName_.put(name, positions);
+         }
+         positions.add(i);
+      }
+
+      lastFilter_ = null;
+      lastMatches_ = null;
+   }
+
+   private int find(String name, String library)
+   {
+      ArrayList<Integer> positions = byName_.get(name);
+      if (positions == null)
+         return -1;
+
+      for (int position : positions)
+      {
+         if (entries_.get(position).info.getLibrary().equals(library))
+            return position;
+      }
+      return -1;
+   }
+
+   private void replace(int position, PackageInfo info)
+   {
+      Entry entry = entries_.get(position);
+      info.setFirstInLibrary(entry.info.isFirstInLibrary());
+      entries_.set(position, new Entry(info, entry.libraryType));
+   }
+
+   // the packages at the given positions, with the first package from each
+   // library marked (and the packages marked for the last list unmarked)
+   private ArrayList<PackageInfo> list(ArrayList<Integer> positions)
+   {
+      clearFirstInLibrary();
+
+      ArrayList<PackageInfo> packages = new ArrayList<PackageInfo>();
+      PackageLibraryType libraryType = null;
+      for (int position : positions)
+      {
+         Entry entry = entries_.get(position);
+         if (entry.libraryType != libraryType)
+         {
+            entry.info.setFirstInLibrary(true);
+            firstInLibrary_.add(position);
+            libraryType = entry.libraryType;
+         }
+         packages.add(entry.info);
+      }
+      return packages;
+   }
+
+   private void clearFirstInLibrary()
+   {
+      for (int position : firstInLibrary_)
+         entries_.get(position).info.setFirstInLibrary(false);
+      firstInLibrary_.clear();
+   }
+
+   // compares everything the session reports about two packages (but not
+   // whether they're first in their library, which we set ourselves)
+   private static final native boolean isSameInfo(PackageInfo a,
+                                                  PackageInfo b)
+   /*-{
+      var same = function(x, y) {
+         return x === y || JSON.stringify(x) === JSON.stringify(y);
+      };
+
+      for (var key in a)
+         if (key !== "first_in_library" && !same(a[key], b[key]))
+            return false;
+
+      for (var key in b)
+         if (key !== "first_in_library" && !(key in a))
+            return false;
+
+      return true;
+   }-*/;
+
+   private static class Entry
+   {
+      public Entry(PackageInfo info, PackageLibraryType libraryType)
+      {
+         this.info = info;
+         this.libraryType = libraryType;
+         this.name = info.getName().toLowerCase();
+         this.desc = info.getDesc().toLowerCase();
+      }
+
+      public final PackageInfo info;
+      public final PackageLibraryType libraryType;
+
+      // lowercased for filtering
+      public final String name;
+      public final String desc;
+   }
+
+   private final Session session_;
+
+   // packages grouped by library and sorted by name, and the positions of
+   // the packages with each name (one per library they're installed in)
+   private ArrayList<Entry> entries_ = new ArrayList<Entry>();
+   private HashMap<String, ArrayList<Integer>> byName_ =
+         new HashMap<String, ArrayList<Integer>>();
+
+   // the positions of the packages marked as first in their library
+   private final ArrayList<Integer> firstInLibrary_ = new ArrayList<Integer>();
+
+   // the last filter and the positions of the packages that matched it
+   private String lastFilter_ = null;
+   private JsVectorInteger lastMatches_ = null;
+}
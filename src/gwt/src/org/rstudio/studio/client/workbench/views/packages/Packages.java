@@ -73,8 +73,6 @@ import org.rstudio.studio.client.workbench.views.packages.model.PackageInfo;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallContext;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallOptions;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallRequest;
-import org.rstudio.studio.client.workbench.views.packages.model.PackageLibraryUtils;
-import org.rstudio.studio.client.workbench.views.packages.model.PackageLibraryUtils.PackageLibraryType;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageState;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageStatus;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageUpdate;
@@ -84,8 +82,6 @@ import org.rstudio.studio.client.workbench.views.packages.ui.CheckForUpdatesDial
 import org.rstudio.studio.client.workbench.views.packages.ui.CleanUnusedDialog;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
@@ -112,6 +108,8 @@ public class Packages
                           OperationWithInput<PackageInstallRequest> operation);
       
       void setPackageStatus(PackageStatus status);
+      
+      void updatePackage(PackageInfo info);
   
       void setObserver(PackagesDisplayObserver observer) ;
       void setProgress(boolean showProgress);
@@ -145,6 +143,7 @@ public class Packages
       packratUtil_ = packratUtil;
       pFileDialogs_ = pFileDialogs;
       session_ = session;
+      packageIndex_ = new PackageIndex(session);
       binder.bind(commands, this);
       
       events.addHandler(PackageStatusChangedEvent.TYPE, this);
@@ -756,65 +755,16 @@ public class Packages
       PackageStatus status = event.getPackageStatus();
       view_.setPackageStatus(status);
       
-      // also update the list of allPackages_
-      for (int i = 0; i<allPackages_.size(); i++)
-      {
-         PackageInfo packageInfo = allPackages_.get(i);
-         if (packageInfo.getName() == status.getName() &&
-             packageInfo.getLibrary() == status.getLib())
-         {
-            allPackages_.set(i, status.isLoaded() ? packageInfo.asLoaded() :
-                                                    packageInfo.asUnloaded());
-         }
-      }
+      // also update the index
+      packageIndex_.setLoaded(status.getName(), 
+                              status.getLib(), 
+                              status.isLoaded());
    }
    
    private void setViewPackageList()
    {
-      ArrayList<PackageInfo> packages = null;
-      
-      // apply filter (if any)
-      if (packageFilter_.length() > 0)
-      {
-         packages = new ArrayList<PackageInfo>();
-         
-         // first do prefix search
-         for (PackageInfo pkgInfo : allPackages_)
-         {
-            if (pkgInfo.getName().toLowerCase().startsWith(packageFilter_))
-               packages.add(pkgInfo);
-         }
-         
-         // then do contains search on name & desc
-         for (PackageInfo pkgInfo : allPackages_)
-         { 
-            if (pkgInfo.getName().toLowerCase().contains(packageFilter_) ||
-                pkgInfo.getDesc().toLowerCase().contains(packageFilter_))
-            {
-               if (!packages.contains(pkgInfo))
-                  packages.add(pkgInfo);
-            }
-         }
-
-         // sort results by library (to preserve grouping)
-         Collections.sort(packages, new Comparator<PackageInfo>()
-               {
-                  @Override
-                  public int compare(PackageInfo o1, PackageInfo o2)
-                  {
-                     return PackageLibraryUtils.typeOfLibrary(
-                                   session_, o1.getLibrary()).compareTo(
-                             PackageLibraryUtils.typeOfLibrary(
-                                   session_, o2.getLibrary()));
-                  }
-               });
-      }
-      else
-      {
-         packages = allPackages_;
-      }
-      
-      view_.setPackageState(packratContext_, packages);
+      view_.setPackageState(packratContext_, 
+                            packageIndex_.filter(packageFilter_));
    }
    
    private void checkPackageStatusOnNextConsolePrompt(
@@ -1149,45 +1099,37 @@ public class Packages
 
    private void setPackageState(PackageState newState)
    {
-      // sort the packages
-      allPackages_ = new ArrayList<PackageInfo>();
-      JsArray<PackageInfo> serverPackages = newState.getPackageList();
-      for (int i = 0; i < serverPackages.length(); i++)
-         allPackages_.add(serverPackages.get(i));
-      Collections.sort(allPackages_, new Comparator<PackageInfo>() {
-         public int compare(PackageInfo o1, PackageInfo o2)
-         {
-            // sort first by library, then by name
-            int library = 
-                  PackageLibraryUtils.typeOfLibrary(
-                        session_, o1.getLibrary()).compareTo(
-                  PackageLibraryUtils.typeOfLibrary(
-                        session_, o2.getLibrary()));
-            return library == 0 ? 
-                  o1.getName().compareToIgnoreCase(o2.getName()) :
-                  library;
-         }
-      });
+      ArrayList<PackageInfo> changed = 
+            packageIndex_.update(newState.getPackageList());
       
-      // Mark  which packages are first in their respective libraries (used
-      // later to render headers)
-      PackageLibraryType libraryType = PackageLibraryType.None;
-      for (PackageInfo pkgInfo: allPackages_)
+      PackratContext packratContext = newState.getPackratContext();
+      boolean packratContextChanged = 
+            !isSamePackratContext(packratContext_, packratContext);
+      packratContext_ = packratContext;
+      view_.setProgress(false);
+      
+      // if the same packages are installed, just update the ones that changed
+      if (changed != null && !packratContextChanged)
       {
-         PackageLibraryType pkgLibraryType = PackageLibraryUtils.typeOfLibrary(
-               session_, pkgInfo.getLibrary());
-         if (pkgLibraryType != libraryType)
-         {
-            pkgInfo.setFirstInLibrary(true);
-            libraryType = pkgLibraryType;
-         }
+         for (PackageInfo info : changed)
+            view_.updatePackage(info);
+         return;
       }
       
-      packratContext_ = newState.getPackratContext();
-      view_.setProgress(false);
       setViewPackageList();
    }
    
+   private boolean isSamePackratContext(PackratContext a, PackratContext b)
+   {
+      if (a == null || b == null)
+         return a == b;
+      
+      return a.isAvailable() == b.isAvailable() &&
+             a.isApplicable() == b.isApplicable() &&
+             a.isPackified() == b.isPackified() &&
+             a.isModeOn() == b.isModeOn();
+   }
+   
    private void getPackageNamesFromActions(
          JsArray<PackratPackageAction> actions,
          Set<String> pkgNames)
@@ -1202,7 +1144,7 @@ public class Packages
    private final Display view_;
    private final PackagesServerOperations server_;
    private final PackratServerOperations packratServer_;
-   private ArrayList<PackageInfo> allPackages_ = new ArrayList<PackageInfo>();
+   private final PackageIndex packageIndex_;
    private PackratContext packratContext_;
    private String packageFilter_ = new String();
    private HandlerRegistration consolePromptHandlerReg_ = null;
@@ -15,6 +15,7 @@
 package org.rstudio.studio.client.workbench.views.packages;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.cellview.ImageButtonColumn;
@@ -103,9 +104,18 @@ public class PackagesPane extends WorkbenchPane implements Packages.Display
    public void setPackageState(PackratContext packratContext, 
                                List<PackageInfo> packages)
    {
+      // the packrat columns are only shown in packrat mode, so the table
+      // only needs to be recreated if the mode has changed
+      boolean recreateTable = packagesTable_ == null ||
+            packratContext.isModeOn() != packratContext_.isModeOn();
+      
       packratContext_ = packratContext;
       packagesDataProvider_.setList(packages);
-      createPackagesTable();
+      indexPackageRows();
+      if (recreateTable)
+         createPackagesTable();
+      else if (packagesTable_.getPageSize() < packages.size())
+         packagesTable_.setPageSize(packages.size());
 
       // show the bootstrap button if this state is eligible for Packrat but the
       // project isn't currently under Packrat control
@@ -137,49 +147,56 @@ public class PackagesPane extends WorkbenchPane implements Packages.Display
    @Override
    public void setPackageStatus(PackageStatus status)
    {
-      int row = packageRow(status.getName(), status.getLib()) ;
+      List<Integer> rows = rowsByName_.get(status.getName());
+      if (rows == null)
+         return;
       
-      if (row != -1)
+      // reconcile the status of any duplicates too (only one copy of a
+      // package can be loaded)
+      List<PackageInfo> packages = packagesDataProvider_.getList();
+      for (int row : rows)
       {
-         List<PackageInfo> packages = packagesDataProvider_.getList();
-        
-         packages.set(row, status.isLoaded() ? packages.get(row).asLoaded() :
-                                               packages.get(row).asUnloaded());
+         PackageInfo info = packages.get(row);
+         if (info.getLibrary() == status.getLib())
+            packages.set(row, status.isLoaded() ? info.asLoaded() :
+                                                  info.asUnloaded());
+         else
+            packages.set(row, info.asUnloaded());
       }
+   }
+   
+   @Override
+   public void updatePackage(PackageInfo info)
+   {
+      List<Integer> rows = rowsByName_.get(info.getName());
+      if (rows == null)
+         return;
       
-      // go through any duplicates to reconcile their status
       List<PackageInfo> packages = packagesDataProvider_.getList();
-      for (int i=0; i<packages.size(); i++)
+      for (int row : rows)
       {
-         if (packages.get(i).getName() == status.getName() &&
-             i != row)
-         {
-            packages.set(i, packages.get(i).asUnloaded());
-         }
+         if (packages.get(row).getLibrary() == info.getLibrary())
+            packages.set(row, info);
       }
    }
    
-   private int packageRow(String packageName, String packageLib)
+   // records the rows showing each package, so that rows can be updated
+   // without searching the table
+   private void indexPackageRows()
    {
-      // if we haven't retreived packages yet then return not found
-      if (packagesDataProvider_ == null)
-         return -1;
-      
+      rowsByName_.clear();
       List<PackageInfo> packages = packagesDataProvider_.getList();
-      
-      // figure out which row of the table includes this package
-      int row = -1;
-      for (int i=0; i<packages.size(); i++)
+      for (int i = 0; i < packages.size(); i++)
       {
-         PackageInfo packageInfo = packages.get(i);
-         if (packageInfo.getName() == packageName &&
-             packageInfo.getLibrary() == packageLib)
+         String name = packages.get(i).getName();
+         List<Integer> rows = rowsByName_.get(name);
+         if (rows == null)
          {
-            row = i ;
-            break;
+            rows = new ArrayList<Integer>();
+            rowsByName_.put(name, rows);
          }
+         rows.add(i);
       }
-      return row ;
    }
    
    @Override
@@ -664,6 +681,8 @@ public class PackagesPane extends WorkbenchPane implements Packages.Display
    
    private DataGrid<PackageInfo> packagesTable_;
    private ListDataProvider<PackageInfo> packagesDataProvider_;
+   private final HashMap<String, List<Integer>> rowsByName_ = 
+         new HashMap<String, List<Integer>>();
    private SearchWidget searchWidget_;
    private PackagesDisplayObserver observer_ ;
    
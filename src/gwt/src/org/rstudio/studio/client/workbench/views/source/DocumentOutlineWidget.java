@@ -14,6 +14,8 @@
  */
 package org.rstudio.studio.client.workbench.views.source;
 
+import java.util.ArrayList;
+
 import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.Counter;
 import org.rstudio.core.client.HandlerRegistrations;
@@ -25,6 +27,7 @@ import org.rstudio.studio.client.common.filetypes.TextFileType;
 import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.prefs.model.UIPrefsAccessor;
 import org.rstudio.studio.client.workbench.views.source.editors.text.Scope;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Position;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ScopeFunction;
 import org.rstudio.studio.client.workbench.views.source.editors.text.TextEditingTarget;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.ActiveScopeChangedEvent;
@@ -260,8 +263,10 @@ public class DocumentOutlineWidget extends Composite
          @Override
          public void onScopeTreeReady(ScopeTreeReadyEvent event)
          {
-            rebuildScopeTree(event.getScopeTree(), event.getCurrentScope());
-            resetTreeStyles();
+            updateScopeTree(event.getScopeTree(),
+                            event.getCurrentScope(),
+                            event.getChangedStartRow(),
+                            event.getChangedEndRow());
          }
       }));
       
@@ -340,24 +345,149 @@ public class DocumentOutlineWidget extends Composite
       rebuildScopeTree(scopeTree_, currentScope_);
    }
    
-   private void rebuildScopeTree(JsArray<Scope> scopeTree, Scope currentScope)
+   // The scopes outside the changed rows are the same objects as before,
+   // other than being moved by any rows inserted or removed, so only the
+   // entries for the scopes whose bodies begin in the changed rows need to
+   // be replaced.
+   private void updateScopeTree(JsArray<Scope> scopeTree,
+                                Scope currentScope,
+                                int changedStartRow,
+                                int changedEndRow)
    {
-      scopeTree_ = scopeTree;
+      if (scopeTree != scopeTree_ ||
+          scopeTree.length() == 0 ||
+          tree_.getParent() == null ||
+          getInitialDepth(scopeTree) != initialDepth_)
+      {
+         rebuildScopeTree(scopeTree, currentScope);
+         resetTreeStyles();
+         return;
+      }
+      
       currentScope_ = currentScope;
+      Scope lastVisibleScope = currentVisibleScope_;
       currentVisibleScope_ = getCurrentVisibleScope(currentScope_);
       
-      if (scopeTree_.length() == 0)
+      // the entries before the changed rows
+      int start = 0, end = tree_.getItemCount();
+      while (start < end)
       {
-         setActiveWidget(emptyPlaceholder_);
-         return;
+         int mid = (start + end) / 2;
+         if (getItemScope(mid).getBodyStart().getRow() < changedStartRow)
+            start = mid + 1;
+         else
+            end = mid;
       }
       
-      setActiveWidget(tree_);
+      // the entries for the changed rows, and the first entry after them
+      ArrayList<Scope> nodes = new ArrayList<Scope>();
+      ArrayList<Integer> depths = new ArrayList<Integer>();
+      Scope next = collectScopes(scopeTree_, initialDepth_,
+                                 changedStartRow, changedEndRow,
+                                 nodes, depths);
+      
+      end = tree_.getItemCount();
+      if (next != null)
+      {
+         for (end = start; end < tree_.getItemCount(); end++)
+            if (getItemScope(end) == next)
+               break;
+         
+         if (end == tree_.getItemCount())
+         {
+            // shouldn't happen, but the whole tree can always be rebuilt
+            rebuildScopeTree(scopeTree, currentScope);
+            resetTreeStyles();
+            return;
+         }
+      }
+      
+      int index = start;
+      for (int i = 0; i < nodes.size(); i++, index++)
+      {
+         if (index < end)
+         {
+            DocumentOutlineTreeItem item =
+                  (DocumentOutlineTreeItem) tree_.getItem(index);
+            item.getEntry().update(nodes.get(i), depths.get(i));
+            setTreeItemStyles(item);
+         }
+         else
+         {
+            tree_.insertItem(index, createEntry(nodes.get(i), depths.get(i)));
+         }
+      }
+      
+      for (int i = end - 1; i >= index; i--)
+         tree_.getItem(i).remove();
       
+      if (currentVisibleScope_ != lastVisibleScope)
+         resetTreeStyles();
+   }
+   
+   // Collects the displayed scopes whose bodies begin at or after startRow
+   // and that begin before endRow, returning the first displayed scope
+   // beginning at or after endRow (or null if there is none).
+   private Scope collectScopes(JsArray<Scope> siblings,
+                               int depth,
+                               int startRow,
+                               int endRow,
+                               ArrayList<Scope> nodes,
+                               ArrayList<Integer> depths)
+   {
+      for (int i = findScopeEndingFrom(siblings, startRow); i < siblings.length(); i++)
+      {
+         Scope node = siblings.get(i);
+         if (shouldDisplayNode(node))
+         {
+            if (node.getPreamble().getRow() >= endRow)
+               return node;
+            
+            if (node.getBodyStart().getRow() >= startRow)
+            {
+               nodes.add(node);
+               depths.add(depth);
+            }
+         }
+         
+         // Don't add extra indentation for items within namespaces
+         Scope next = collectScopes(node.getChildren(),
+                                    node.isNamespace() ? depth : depth + 1,
+                                    startRow, endRow, nodes, depths);
+         if (next != null)
+            return next;
+      }
+      return null;
+   }
+   
+   // the index of the first of the sibling scopes that doesn't end before row
+   private int findScopeEndingFrom(JsArray<Scope> siblings, int row)
+   {
+      int start = 0, end = siblings.length();
+      while (start < end)
+      {
+         int mid = (start + end) / 2;
+         Position scopeEnd = siblings.get(mid).getEnd();
+         if (scopeEnd != null && scopeEnd.getRow() < row)
+            start = mid + 1;
+         else
+            end = mid;
+      }
+      return start;
+   }
+   
+   private Scope getItemScope(int index)
+   {
+      return ((DocumentOutlineTreeItem) tree_.getItem(index)).getEntry().getScopeNode();
+   }
+   
+   // top level entries are outdented if there's a single level 1 header
+   private int getInitialDepth(JsArray<Scope> scopeTree)
+   {
       int h1Count = 0;
-      for (int i = 0; i < scopeTree_.length(); i++)
+      for (int i = 0; i < scopeTree.length(); i++)
       {
-         Scope node = scopeTree_.get(i);
+         Scope node = scopeTree.get(i);
          if (node.isMarkdownHeader())
          {
             if (node.getDepth() == 1)
@@ -365,11 +495,28 @@ public class DocumentOutlineWidget extends Composite
          }
       }
       
-      int initialDepth = h1Count == 1 ? -1 : 0;
+      return h1Count == 1 ? -1 : 0;
+   }
+   
+   private void rebuildScopeTree(JsArray<Scope> scopeTree, Scope currentScope)
+   {
+      scopeTree_ = scopeTree;
+      currentScope_ = currentScope;
+      currentVisibleScope_ = getCurrentVisibleScope(currentScope_);
+      
+      if (scopeTree_.length() == 0)
+      {
+         setActiveWidget(emptyPlaceholder_);
+         return;
+      }
+      
+      setActiveWidget(tree_);
+      
+      initialDepth_ = getInitialDepth(scopeTree_);
       
       Counter counter = new Counter(-1);
       for (int i = 0; i < scopeTree_.length(); i++)
-         buildScopeTreeImpl(scopeTree_.get(i), initialDepth, counter);
+         buildScopeTreeImpl(scopeTree_.get(i), initialDepth_, counter);
       
       // Clean up leftovers in the tree. 
       int oldTreeSize = tree_.getItemCount();
@@ -492,6 +639,7 @@ public class DocumentOutlineWidget extends Composite
    private final HandlerRegistrations handlers_;
    
    private JsArray<Scope> scopeTree_;
+   private int initialDepth_;
    private Scope currentScope_;
    private Scope currentVisibleScope_;
    
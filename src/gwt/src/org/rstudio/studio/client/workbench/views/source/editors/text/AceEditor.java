@@ -2586,6 +2586,14 @@ public class AceEditor implements DocDisplay,
       
       return getSession().getMode().getRCodeModel().buildScopeTreeUpToRow(row);
    }
+   
+   private int takeScopeTreeChangedEndRow()
+   {
+      if (!hasCodeModelScopeTree())
+         return -1;
+      
+      return getSession().getMode().getRCodeModel().takeScopeTreeChangedEndRow();
+   }
 
    public JsArray<Scope> getScopeTree()
    {
@@ -3824,6 +3832,12 @@ public class AceEditor implements DocDisplay,
       return getSession().getTokens(row);
    }
    
+   @Override
+   public String getTokenizerState(int row)
+   {
+      return getSession().getState(row);
+   }
+   
    @Override
    public TokenIterator createTokenIterator()
    {
@@ -4069,9 +4083,23 @@ public class AceEditor implements DocDisplay,
                // Stop our timer if we've tokenized up to the end of the document.
                if (row_ >= editor_.getRowCount())
                {
+                  JsArray<Scope> scopeTree = editor_.getScopeTree();
+                  Scope currentScope = editor_.getCurrentScope();
+                  
+                  // the code model may have stopped rebuilding once it caught
+                  // up with its previous build; the rows after that are
+                  // unchanged
+                  int rowCount = editor_.getRowCount();
+                  int changedEndRow = editor_.takeScopeTreeChangedEndRow();
+                  if (changedEndRow <= changedRow_)
+                     changedEndRow = rowCount;
+                  
                   editor_.fireEvent(new ScopeTreeReadyEvent(
-                        editor_.getScopeTree(),
-                        editor_.getCurrentScope()));
+                        scopeTree,
+                        currentScope,
+                        changedRow_,
+                        Math.min(changedEndRow, rowCount)));
+                  changedRow_ = Integer.MAX_VALUE;
                   return;
                }
                
@@ -4089,6 +4117,9 @@ public class AceEditor implements DocDisplay,
                if (editor_.hasCodeModelScopeTree())
                {
                   row_ = event.getEvent().getRange().getStart().getRow();
+                  
+                  // the code model reparses from the row before the change
+                  changedRow_ = Math.min(changedRow_, Math.max(0, row_ - 1));
                   timer_.schedule(DELAY_MS);
                }
             }
@@ -4105,6 +4136,9 @@ public class AceEditor implements DocDisplay,
       
       private int row_ = 0;
       
+      // the first row reparsed since listeners were last notified
+      private int changedRow_ = 0;
+      
       private static final int DELAY_MS = 5;
       private static final int ROWS_TOKENIZED_PER_ITERATION = 200;
    }
@@ -144,6 +144,11 @@ public class ChunkHtmlPage extends ChunkOutputPage
       frame_.runAfterRender(afterRender_);
    }
 
+   public void setFrameLoaded(boolean loaded)
+   {
+      frame_.setLoaded(loaded);
+   }
+
    @Override
    public void onEditorThemeChanged(Colors colors)
    {
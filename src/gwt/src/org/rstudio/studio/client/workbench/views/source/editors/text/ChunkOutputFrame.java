@@ -67,6 +67,32 @@ public class ChunkOutputFrame extends DynamicIFrame
       if (timer_.isRunning())
          timer_.cancel();
    }
+   
+   /**
+    * Unloads the frame's document (releasing the memory used by its
+    * content), or reloads it. The frame keeps its size while unloaded.
+    * 
+    * @param loaded Whether the frame's document should be loaded.
+    */
+   public void setLoaded(boolean loaded)
+   {
+      if (loaded != (unloadedUrl_ == null))
+      {
+         if (loaded)
+         {
+            String url = unloadedUrl_;
+            unloadedUrl_ = null;
+            loadUrl(url, null);
+         }
+         else if (loaded_)
+         {
+            // (frames still waiting on their initial load are left alone)
+            unloadedUrl_ = super.getUrl();
+            loaded_ = false;
+            getIFrame().setSrc("about:blank");
+         }
+      }
+   }
 
    @Override
    public String getUrl()
@@ -74,6 +100,8 @@ public class ChunkOutputFrame extends DynamicIFrame
       // return the pending URL if we haven't loaded one yet
       if (timer_.isRunning())
          return url_;
+      else if (unloadedUrl_ != null)
+         return unloadedUrl_;
       else
          return super.getUrl();
    }
@@ -116,4 +144,5 @@ public class ChunkOutputFrame extends DynamicIFrame
    private String url_;
    private Command onCompleted_;
    private boolean loaded_ = false;
+   private String unloadedUrl_ = null;
 }
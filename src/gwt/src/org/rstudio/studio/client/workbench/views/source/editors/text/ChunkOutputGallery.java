@@ -297,6 +297,17 @@ public class ChunkOutputGallery extends Composite
          }
       }
    }
+   
+   @Override
+   public void setFramesLoaded(boolean loaded)
+   {
+      // only the active page's frame is attached (and loaded)
+      if (activePage_ >= 0 && activePage_ < pages_.size() &&
+          pages_.get(activePage_) instanceof ChunkHtmlPage)
+      {
+         ((ChunkHtmlPage)pages_.get(activePage_)).setFrameLoaded(loaded);
+      }
+   }
 
    // Private methods ---------------------------------------------------------
    
@@ -0,0 +1,104 @@
+/*
+ * ChunkOutputHeightQueue.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text;
+
+import java.util.ArrayList;
+
+import org.rstudio.core.client.StringUtil;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+
+/**
+ * Collects the height changes reported by chunk outputs and syncs each
+ * output's height once per animation frame. Output streaming into a chunk
+ * (e.g. thousands of progress lines) would otherwise make the editor measure
+ * the output and relayout its line widgets after every write. The queue is
+ * shared by all documents and is emptied every frame, so it holds nothing
+ * for a document once its pending syncs have run.
+ */
+public class ChunkOutputHeightQueue
+{
+   private ChunkOutputHeightQueue()
+   {
+   }
+
+   /**
+    * Schedules a sync of the widget's height for the next animation frame.
+    */
+   public static void add(String docId, ChunkOutputWidget widget)
+   {
+      // the change will be picked up by a sync already scheduled
+      for (Entry entry : pending_)
+      {
+         if (entry.widget == widget)
+         {
+            coalescedCount_++;
+            return;
+         }
+      }
+
+      pending_.add(new Entry(docId, widget));
+      if (!frameRequested_)
+      {
+         frameRequested_ = true;
+         AnimationScheduler.get().requestAnimationFrame(timestamp -> flush());
+      }
+   }
+
+   /**
+    * Discards the pending syncs for the given document (e.g. when it's
+    * closed).
+    */
+   public static void remove(String docId)
+   {
+      pending_.removeIf(entry -> StringUtil.equals(entry.docId, docId));
+   }
+
+   /**
+    * @return the number of height changes that were folded into a sync that
+    *    was already scheduled (i.e. the number of relayouts avoided)
+    */
+   public static int getCoalescedCount()
+   {
+      return coalescedCount_;
+   }
+
+   private static void flush()
+   {
+      frameRequested_ = false;
+
+      // syncing may report more changes, which are handled in the next frame
+      ArrayList<Entry> entries = pending_;
+      pending_ = new ArrayList<Entry>();
+      for (Entry entry : entries)
+         entry.widget.syncHeight(true, false);
+   }
+
+   private static class Entry
+   {
+      public Entry(String docId, ChunkOutputWidget widget)
+      {
+         this.docId = docId;
+         this.widget = widget;
+      }
+
+      public final String docId;
+      public final ChunkOutputWidget widget;
+   }
+
+   private static ArrayList<Entry> pending_ = new ArrayList<Entry>();
+   private static boolean frameRequested_ = false;
+   private static int coalescedCount_ = 0;
+}
@@ -63,5 +63,8 @@ public interface ChunkOutputPresenter extends IsWidget, EditorThemeListener
    
    // notify of size changes
    void onResize();
+   
+   // unload (or reload) the documents of HTML widget frames
+   void setFramesLoaded(boolean loaded);
 }
 
@@ -477,6 +477,19 @@ public class ChunkOutputStream extends FlowPanel
          }
       }
    }
+   
+   @Override
+   public void setFramesLoaded(boolean loaded)
+   {
+      for (Widget w: this)
+      {
+         if (w instanceof FixedRatioWidget)
+            w = ((FixedRatioWidget)w).getWidget();
+         
+         if (w instanceof ChunkOutputFrame)
+            ((ChunkOutputFrame)w).setLoaded(loaded);
+      }
+   }
 
    public List<ChunkOutputPage> extractPages()
    {
@@ -293,7 +293,8 @@ public class ChunkOutputWidget extends Composite
    @Override
    public void notifyHeightChanged()
    {
-      syncHeight(true, false);
+      // sync once per frame however many changes the presenter reports
+      ChunkOutputHeightQueue.add(documentId_, this);
    }
    
    public void syncHeight(final boolean scrollToBottom, 
@@ -510,6 +511,11 @@ public class ChunkOutputWidget extends Composite
       presenter_.onResize();
    }
    
+   public void setFramesLoaded(boolean loaded)
+   {
+      presenter_.setFramesLoaded(loaded);
+   }
+   
    // Event handlers ----------------------------------------------------------
 
    @Override
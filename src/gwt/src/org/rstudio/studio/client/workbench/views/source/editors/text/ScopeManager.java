@@ -36,6 +36,9 @@ public class ScopeManager
    public final native JsArray<Scope> getActiveScopes(Position position);
    public final native JsArray<Scope> getScopeList();
    public final native Position invalidateFrom(Position position);
+   public final native Position invalidateFromIncremental(Position position);
+   public final native boolean hasInvalidatedScopes();
+   public final native boolean restoreFrom(int row, int rowDelta);
    
    @JsOverlay
    public final Scope getScopeAt(Position position)
@@ -14,8 +14,12 @@
  */
 package org.rstudio.studio.client.workbench.views.source.editors.text;
 
+import org.rstudio.core.client.JsVectorString;
+import org.rstudio.core.client.StringUtil;
 import org.rstudio.studio.client.RStudioGinjector;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.AceDocumentChangeEventNative;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Position;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Token;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.TokenIterator;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.ActiveScopeChangedEvent;
@@ -38,6 +42,11 @@ import com.google.gwt.user.client.Timer;
 // towards the development of a scope tree.
 public abstract class ScopeTreeManager
 {
+   // NOTE: scope trees are rebuilt incrementally; once a rebuild reaches a
+   // row where the tokenizer state and the open scopes match the previous
+   // parse, the rest of the previous parse is reused. Implementations must
+   // therefore derive their scope events only from the tokens and the scope
+   // manager (i.e. keep no state of their own).
    public abstract void onToken(Token token,
                                 Position position,
                                 ScopeManager manager);
@@ -58,15 +67,7 @@ public abstract class ScopeTreeManager
             }),
             
             docDisplay.addDocumentChangedHandler((DocumentChangedEvent event) -> {
-               final Position position = event.getEvent().getRange().getStart();
-               Scheduler.get().scheduleDeferred(() -> {
-                  
-                  Position rebuildPos = scopeManager_.invalidateFrom(Position.create(position));
-                  if (rebuildPos == null)
-                     rebuildPos = position;
-                     
-                  worker_.rebuildScopeTreeFromRow(rebuildPos.getRow());
-               });
+               worker_.onDocumentChanged(event.getEvent());
             }),
             
             docDisplay.addCursorChangedHandler((CursorChangedEvent event) -> {
@@ -118,71 +119,185 @@ public abstract class ScopeTreeManager
          };
       }
       
-      public void rebuildScopeTreeFromRow(int row)
+      public void onDocumentChanged(AceDocumentChangeEventNative event)
       {
-         startRow_ = row;
-         endRow_ = Math.min(docDisplay_.getRowCount(), startRow_ + ROWS_TOKENIZED_PER_ITERATION);
+         Range range = event.getRange();
+         int row = range.getStart().getRow();
+         int rowDelta = range.getEnd().getRow() - row;
+         if (event.getAction().startsWith("remove"))
+            rowDelta = -rowDelta;
+         
+         // track the rows touched since the last complete parse; rows after
+         // these are the previous parse's rows, moved by rowDelta_ rows
+         if (damageEndRow_ > row)
+            damageEndRow_ = Math.max(row + 1, damageEndRow_ + rowDelta);
+         damageEndRow_ = Math.max(damageEndRow_, row + 1 + Math.max(0, rowDelta));
+         rowDelta_ += rowDelta;
+         invalidateRow_ = Math.min(invalidateRow_, row);
+         
+         // the document no longer matches the parse in progress (if any)
+         timer_.cancel();
+         if (!invalidatePending_)
+         {
+            invalidatePending_ = true;
+            Scheduler.get().scheduleDeferred(() -> invalidate());
+         }
+      }
+      
+      private void invalidate()
+      {
+         invalidatePending_ = false;
+         
+         // the previous parse can only be reused if it was complete
+         Position position = Position.create(invalidateRow_, 0);
+         Position resumePosition = parsing_
+               ? scopeManager_.invalidateFrom(position)
+               : scopeManager_.invalidateFromIncremental(position);
+         invalidateRow_ = Integer.MAX_VALUE;
+         
+         rebuildScopeTree(resumePosition);
+      }
+      
+      private void rebuildScopeTree(Position position)
+      {
+         int row = position.getRow();
+         
+         // keep the tokenizer states of the rows before the rebuild
+         if (parsing_)
+         {
+            rowStates_.setLength(resumeRow_);
+            rowStates_.push(parsedStates_);
+            rowStates_.setLength(Math.min(row, rowStates_.length()));
+         }
+         parsedStates_ = JsVectorString.createVector();
+         
+         resumeRow_ = row;
+         row_ = row;
+         column_ = Math.max(0, position.getColumn());
+         changedStartRow_ = Math.min(changedStartRow_, row);
+         parsing_ = true;
          work();
       }
       
-      private int work()
+      private void work()
       {
-         Position position = Position.create(startRow_ - 1, 0);
+         int rowCount = docDisplay_.getRowCount();
+         int endRow = Math.min(rowCount, row_ + ROWS_TOKENIZED_PER_ITERATION);
          
          // if editing near the start of the document, the token iterator may fail
          // to find any initial token. in that case, just step forward (this should
          // walk to the first token in the document)
          TokenIterator it = docDisplay_.createTokenIterator();
-         Token token = it.moveToPosition(position, true);
-         if (token == null)
+         Token token = it.moveToPosition(Position.create(row_, column_), true);
+         if (token == null && row_ == 0)
             token = it.stepForward();
+         column_ = 0;
          
-         while (true)
+         while (token != null)
          {
-            // if we don't have a token, that implies we've reached the end of the document.
-            // notify listeners that we're done building the scope tree
-            if (token == null)
+            int row = it.getCurrentTokenRow();
+            if (row > row_)
             {
-               // save the parse position (needed when invalidating rows as the document mutates)
-               scopeManager_.setParsePosition(Position.create(it.getCurrentTokenRow(), -1));
+               recordStates(row);
                
-               // notify listeners that we have a scope tree + the current scope
-               JsArray<Scope> scopeTree = scopeManager_.getScopeList();
-               Scope currentScope = scopeManager_.getScopeAt(docDisplay_.getCursorPosition());
-               ScopeTreeReadyEvent event = new ScopeTreeReadyEvent(scopeTree, currentScope);
-               docDisplay_.fireEvent(event);
+               // stop if the rest of the previous parse still holds
+               if (restoreFrom(row))
+               {
+                  finish(row);
+                  return;
+               }
                
-               // we're done!
-               return docDisplay_.getRowCount();
+               // if we've walked past the end row, schedule more work
+               if (row >= endRow)
+               {
+                  // save the parse position (needed when invalidating rows as the document mutates)
+                  scopeManager_.setParsePosition(Position.create(row, 0));
+                  timer_.schedule(DELAY_MS);
+                  return;
+               }
             }
             
-            // if we've walked past the end row, bail
-            int row = it.getCurrentTokenRow();
-            if (row >= endRow_)
-               break;
-            
             // let subclass respond to current token, and move forward
             onToken(token, it.getCurrentTokenPosition(), scopeManager_);
             token = it.stepForward();
          }
          
+         // if we don't have a token, that implies we've reached the end of the document
+         recordStates(rowCount);
+         rowStates_.setLength(resumeRow_);
+         rowStates_.push(parsedStates_);
+         finish(rowCount);
+      }
+      
+      private void recordStates(int row)
+      {
+         for (; row_ < row; row_++)
+            parsedStates_.push(docDisplay_.getTokenizerState(row_));
+      }
+      
+      private boolean restoreFrom(int row)
+      {
+         if (!scopeManager_.hasInvalidatedScopes() || row < damageEndRow_)
+            return false;
+         
+         // the tokenizer must be in the state it was in at this point of the
+         // previous parse, as must the scope manager
+         int oldRow = row - rowDelta_;
+         if (oldRow <= 0 || oldRow < resumeRow_ || oldRow > rowStates_.length())
+            return false;
+         
+         String state = parsedStates_.get(row - 1 - resumeRow_);
+         if (!StringUtil.equals(state, rowStates_.get(oldRow - 1)))
+            return false;
+         
+         if (!scopeManager_.restoreFrom(row, rowDelta_))
+            return false;
+         
+         // splice the states of the reparsed rows into the previous ones
+         rowStates_.remove(resumeRow_, oldRow - resumeRow_);
+         rowStates_.insert(resumeRow_, parsedStates_);
+         return true;
+      }
+      
+      private void finish(int changedEndRow)
+      {
+         parsedStates_ = JsVectorString.createVector();
+         
          // save the parse position (needed when invalidating rows as the document mutates)
-         scopeManager_.setParsePosition(Position.create(it.getCurrentTokenRow(), -1));
+         scopeManager_.setParsePosition(Position.create(docDisplay_.getRowCount(), 0));
          
-         // if there are still rows to be tokenized in the document,
-         // schedule more work
-         if (startRow_ < docDisplay_.getRowCount())
-         {
-            startRow_ = it.getCurrentTokenRow();
-            endRow_ = Math.min(docDisplay_.getRowCount(), startRow_ + ROWS_TOKENIZED_PER_ITERATION);
-            timer_.schedule(DELAY_MS);
-         }
+         // notify listeners that we have a scope tree + the current scope
+         JsArray<Scope> scopeTree = scopeManager_.getScopeList();
+         Scope currentScope = scopeManager_.getScopeAt(docDisplay_.getCursorPosition());
+         ScopeTreeReadyEvent event = new ScopeTreeReadyEvent(
+               scopeTree, currentScope, changedStartRow_, changedEndRow);
+         
+         parsing_ = false;
+         changedStartRow_ = Integer.MAX_VALUE;
+         damageEndRow_ = 0;
+         rowDelta_ = 0;
          
-         return it.getCurrentTokenRow();
+         docDisplay_.fireEvent(event);
       }
       
-      private int startRow_;
-      private int endRow_;
+      // the row (and, initially, column) being parsed, and the row the
+      // parse (re)started from
+      private int row_;
+      private int column_;
+      private int resumeRow_;
+      private boolean parsing_;
+      
+      // the tokenizer state at the end of each row as of the last complete
+      // parse, and at the end of each row reparsed since
+      private JsVectorString rowStates_ = JsVectorString.createVector();
+      private JsVectorString parsedStates_ = JsVectorString.createVector();
+      
+      // changes made since the last complete parse
+      private int invalidateRow_ = Integer.MAX_VALUE;
+      private boolean invalidatePending_;
+      private int damageEndRow_;
+      private int rowDelta_;
+      private int changedStartRow_ = Integer.MAX_VALUE;
       
       private final Timer timer_;
       
@@ -623,6 +623,11 @@ public class TextEditingTarget implements
          @Override
          public void onScopeTreeReady(ScopeTreeReadyEvent event)
          {
+            // the scopes containing the cursor are unchanged if it's above
+            // the reparsed rows
+            if (docDisplay_.getCursorPosition().getRow() < event.getChangedStartRow())
+               return;
+            
             updateCurrentScope();
          }
       });
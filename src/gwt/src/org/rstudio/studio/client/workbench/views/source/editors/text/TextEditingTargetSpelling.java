@@ -16,7 +16,9 @@
 package org.rstudio.studio.client.workbench.views.source.editors.text;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.shared.GWT;
@@ -24,8 +26,10 @@ import com.google.gwt.event.dom.client.KeyDownEvent;
 import com.google.gwt.event.dom.client.KeyDownHandler;
 import com.google.gwt.resources.client.ClientBundle;
 import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.MenuItem;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.CsvReader;
 import org.rstudio.core.client.CsvWriter;
 import org.rstudio.core.client.ResultCallback;
@@ -33,7 +37,9 @@ import org.rstudio.core.client.command.AppCommand;
 import org.rstudio.core.client.widget.NullProgressIndicator;
 import org.rstudio.core.client.widget.ToolbarPopupMenu;
 import org.rstudio.studio.client.common.filetypes.TextFileType;
+import org.rstudio.studio.client.common.SimpleRequestCallback;
 import org.rstudio.studio.client.common.spelling.TypoSpellChecker;
+import org.rstudio.studio.client.common.spelling.model.SpellCheckerResult;
 import org.rstudio.studio.client.server.Void;
 import org.rstudio.studio.client.workbench.views.output.lint.LintManager;
 import org.rstudio.studio.client.workbench.views.output.lint.model.LintItem;
@@ -64,9 +70,19 @@ public class TextEditingTargetSpelling implements TypoSpellChecker.Context
       lintManager_ = lintManager;
       typoSpellChecker_ = new TypoSpellChecker(this);
       injectContextMenuHandler();
+
+      // check the words on the cursor's line as it moves, so the context
+      // menu can tell (without waiting) whether a word there is misspelled
+      // even when the document isn't being spellchecked as it's edited
+      releaseOnDismiss_.add(docDisplay_.addCursorChangedHandler((event) ->
+         checkCursorLineTimer_.schedule(CHECK_CURSOR_LINE_DELAY_MS)));
    }
 
-   public JsArray<LintItem> getLint()
+   /**
+    * Checks the spelling of the document's words (in the spelling worker),
+    * producing lint for those that are misspelled.
+    */
+   public void getLint(final CommandWithArg<JsArray<LintItem>> onReady)
    {
       TextFileType fileType = docDisplay_.getFileType();
       TokenPredicate tokenPredicate = fileType.isR() ? fileType.getCommentsTokenPredicate() : fileType.getTokenPredicate();
@@ -89,14 +105,22 @@ public class TextEditingTargetSpelling implements TypoSpellChecker.Context
          words.add(docDisplay_.getTextForRange(r));
       }
 
-      JsArray<LintItem> lint = JsArray.createArray().cast();
-      if (wordRanges.size() > 0)
+      // check each distinct word once
+      ArrayList<String> distinctWords = new ArrayList<>(new LinkedHashSet<>(words));
+      typoSpellChecker_.checkSpelling(distinctWords, new SimpleRequestCallback<SpellCheckerResult>()
       {
-         ArrayList<String> prefetchWords = new ArrayList<>();
-         for (int i = 0; i < words.size(); i++) {
-            String word = words.get(i);
-            if (!typoSpellChecker_.checkSpelling(word)) {
-               prefetchWords.add(word);
+         @Override
+         public void onResponseReceived(SpellCheckerResult result)
+         {
+            misspelledWords_ = new HashSet<>(result.getIncorrect());
+            correctWords_ = new HashSet<>(result.getCorrect());
+
+            JsArray<LintItem> lint = JsArray.createArray().cast();
+            for (int i = 0; i < words.size(); i++)
+            {
+               if (!misspelledWords_.contains(words.get(i)))
+                  continue;
+
                Range range = wordRanges.get(i);
                lint.push(LintItem.create(
                   range.getStart().getRow(),
@@ -106,10 +130,10 @@ public class TextEditingTargetSpelling implements TypoSpellChecker.Context
                   "Spellcheck warning",
                   "spelling"));
             }
+            typoSpellChecker_.prefetchWords(new ArrayList<>(misspelledWords_));
+            onReady.execute(lint);
          }
-         typoSpellChecker_.prefetchWords(prefetchWords);
-      }
-      return lint;
+      });
    }
 
    // Legacy checkSpelling function for popup dialog
@@ -146,6 +170,8 @@ public class TextEditingTargetSpelling implements TypoSpellChecker.Context
    @Override
    public void invalidateAllWords()
    {
+      misspelledWords_.clear();
+      correctWords_.clear();
       lintManager_.relintAfterDelay(LintManager.DEFAULT_LINT_DELAY);
    }
 
@@ -187,6 +213,7 @@ public class TextEditingTargetSpelling implements TypoSpellChecker.Context
    
    void onDismiss()
    {
+      checkCursorLineTimer_.cancel();
       while (releaseOnDismiss_.size() > 0)
          releaseOnDismiss_.remove(0).removeHandler();
    }
@@ -227,71 +254,159 @@ public class TextEditingTargetSpelling implements TypoSpellChecker.Context
          }
          word = docDisplay_.getTextForRange(wordRange);
 
-         if (word == null || typoSpellChecker_.checkSpelling(word))
+         // offer corrections only for misspelled words; the default menu is
+         // left alone for words known to be spelled correctly
+         if (word == null ||
+             correctWords_.contains(word) ||
+             typoSpellChecker_.isWordIgnored(word))
             return;
 
          // final variables for lambdas
          final String replaceWord = word;
          final Range replaceRange = wordRange;
 
-         final ToolbarPopupMenu menu = new ToolbarPopupMenu();
-         String[] suggestions = typoSpellChecker_.suggestionList(word);
-
          // We now know we're going to show our menu, stop default context menu
          event.preventDefault();
          event.stopPropagation();
 
-         int i = 0;
-         for (String suggestion : suggestions)
+         final int clientX = event.getNativeEvent().getClientX();
+         final int clientY = event.getNativeEvent().getClientY();
+
+         if (misspelledWords_.contains(word))
          {
-            // Only show a limited number of suggestions
-            if (i >= MAX_SUGGESTIONS)
-               break;
+            showSuggestions(replaceWord, replaceRange, clientX, clientY);
+            return;
+         }
+
+         // the word hasn't been checked yet (e.g. the cursor only just moved
+         // to it), so check it before offering corrections; if it turns out
+         // to be spelled correctly no menu is shown this time
+         ArrayList<String> words = new ArrayList<>();
+         words.add(word);
+         typoSpellChecker_.checkSpelling(words, new SimpleRequestCallback<SpellCheckerResult>()
+         {
+            @Override
+            public void onResponseReceived(SpellCheckerResult result)
+            {
+               addCheckResults(result);
+               if (misspelledWords_.contains(replaceWord))
+                  showSuggestions(replaceWord, replaceRange, clientX, clientY);
+            }
+         });
+      });
+   }
+
+   private void showSuggestions(final String replaceWord,
+                                final Range replaceRange,
+                                final int clientX,
+                                final int clientY)
+   {
+      // suggestions are usually cached, having been prefetched when the
+      // word was found to be misspelled
+      typoSpellChecker_.suggestionList(replaceWord, (suggestions) ->
+      {
+         showContextMenu(replaceWord, replaceRange, suggestions, clientX, clientY);
+      });
+   }
+
+   private void checkCursorLine()
+   {
+      int row = docDisplay_.getCursorPosition().getRow();
+      TextFileType fileType = docDisplay_.getFileType();
+      TokenPredicate tokenPredicate = fileType.isR() ? fileType.getCommentsTokenPredicate() : fileType.getTokenPredicate();
+      Iterable<Range> wordSource = docDisplay_.getWords(
+         tokenPredicate,
+         fileType.getCharPredicate(),
+         Position.create(row, 0),
+         Position.create(row + 1, 0));
+
+      LinkedHashSet<String> words = new LinkedHashSet<>();
+      for (Range r : wordSource)
+      {
+         if (r.getEnd().getColumn() - r.getStart().getColumn() > 250)
+            continue;
+
+         String word = docDisplay_.getTextForRange(r);
+         if (!misspelledWords_.contains(word) && !correctWords_.contains(word))
+            words.add(word);
+      }
 
-            MenuItem suggestionItem = new MenuItem(
-               AppCommand.formatMenuLabel(null, suggestion, ""),
-               true,
-               () -> {
-                  docDisplay_.replaceRange(replaceRange, suggestion);
-                  docDisplay_.removeMarkersAtCursorPosition();
-               });
+      if (words.isEmpty())
+         return;
 
-            menu.addItem(suggestionItem);
-            i++;
+      typoSpellChecker_.checkSpelling(new ArrayList<>(words), new SimpleRequestCallback<SpellCheckerResult>()
+      {
+         @Override
+         public void onResponseReceived(SpellCheckerResult result)
+         {
+            addCheckResults(result);
+            typoSpellChecker_.prefetchWords(new ArrayList<>(result.getIncorrect()));
          }
+      });
+   }
+
+   private void addCheckResults(SpellCheckerResult result)
+   {
+      misspelledWords_.addAll(result.getIncorrect());
+      correctWords_.addAll(result.getCorrect());
+   }
+
+   private void showContextMenu(final String replaceWord,
+                                final Range replaceRange,
+                                String[] suggestions,
+                                final int clientX,
+                                final int clientY)
+   {
+      final ToolbarPopupMenu menu = new ToolbarPopupMenu();
 
-         // Only add a separator if we have suggestions to separate from
-         if (suggestions.length > 0)
-            menu.addSeparator();
+      int i = 0;
+      for (String suggestion : suggestions)
+      {
+         // Only show a limited number of suggestions
+         if (i >= MAX_SUGGESTIONS)
+            break;
 
-         MenuItem ignoreItem = new MenuItem(
-            AppCommand.formatMenuLabel(null, "Ignore word", ""),
+         MenuItem suggestionItem = new MenuItem(
+            AppCommand.formatMenuLabel(null, suggestion, ""),
             true,
             () -> {
-               typoSpellChecker_.addIgnoredWord(replaceWord);
+               docDisplay_.replaceRange(replaceRange, suggestion);
                docDisplay_.removeMarkersAtCursorPosition();
             });
 
-         menu.addItem(ignoreItem);
+         menu.addItem(suggestionItem);
+         i++;
+      }
+
+      // Only add a separator if we have suggestions to separate from
+      if (suggestions.length > 0)
          menu.addSeparator();
 
-         MenuItem addToDictionaryItem = new MenuItem(
-            AppCommand.formatMenuLabel(RES.addToDictIcon(), "Add to user dictionary", ""),
-            true,
-            () -> {
-               typoSpellChecker_.addToUserDictionary(replaceWord);
-               docDisplay_.removeMarkersAtCursorPosition();
-            });
+      MenuItem ignoreItem = new MenuItem(
+         AppCommand.formatMenuLabel(null, "Ignore word", ""),
+         true,
+         () -> {
+            typoSpellChecker_.addIgnoredWord(replaceWord);
+            docDisplay_.removeMarkersAtCursorPosition();
+         });
 
-         menu.addItem(addToDictionaryItem);
+      menu.addItem(ignoreItem);
+      menu.addSeparator();
 
-         menu.setPopupPositionAndShow((offWidth, offHeight) -> {
-            int clientX = event.getNativeEvent().getClientX();
-            int clientY = event.getNativeEvent().getClientY();
-            int menuX = Math.min(clientX, Window.getClientWidth() - offWidth);
-            int menuY = Math.min(clientY, Window.getClientHeight() - offHeight);
-            menu.setPopupPosition(menuX, menuY);
+      MenuItem addToDictionaryItem = new MenuItem(
+         AppCommand.formatMenuLabel(RES.addToDictIcon(), "Add to user dictionary", ""),
+         true,
+         () -> {
+            typoSpellChecker_.addToUserDictionary(replaceWord);
+            docDisplay_.removeMarkersAtCursorPosition();
          });
+
+      menu.addItem(addToDictionaryItem);
+
+      menu.setPopupPositionAndShow((offWidth, offHeight) -> {
+         int menuX = Math.min(clientX, Window.getClientWidth() - offWidth);
+         int menuY = Math.min(clientY, Window.getClientHeight() - offHeight);
+         menu.setPopupPosition(menuX, menuY);
       });
    }
 
@@ -312,8 +427,23 @@ public class TextEditingTargetSpelling implements TypoSpellChecker.Context
 
    private boolean isSpellChecking_;
 
+   // the words found to be misspelled (or spelled correctly) when the
+   // document was last linted, or on lines the cursor has been to since
+   private HashSet<String> misspelledWords_ = new HashSet<>();
+   private HashSet<String> correctWords_ = new HashSet<>();
+
+   private final Timer checkCursorLineTimer_ = new Timer()
+   {
+      @Override
+      public void run()
+      {
+         checkCursorLine();
+      }
+   };
+
    private final static String IGNORED_WORDS = "ignored_words";
    private final static int MAX_SUGGESTIONS = 5;
+   private final static int CHECK_CURSOR_LINE_DELAY_MS = 250;
    
    private final DocDisplay docDisplay_;
    private final DocUpdateSentinel docUpdateSentinel_;
@@ -19,6 +19,7 @@ import java.util.List;
 
 import org.rstudio.core.client.BrowseCap;
 import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.JsVectorString;
 import org.rstudio.core.client.ListUtil;
 import org.rstudio.core.client.MapUtil;
 import org.rstudio.core.client.MapUtil.ForEachCommand;
@@ -46,6 +47,7 @@ import org.rstudio.studio.client.workbench.views.files.model.FilesServerOperatio
 import org.rstudio.studio.client.workbench.views.source.editors.text.AceEditor;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.DocumentChangedEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.EditorModeChangedEvent;
+import org.rstudio.studio.client.workbench.views.source.editors.text.events.RenderFinishedEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.CommandClickEvent;
 
 import com.google.gwt.core.client.GWT;
@@ -76,7 +78,8 @@ public class AceEditorBackgroundLinkHighlighter
             DocumentChangedEvent.Handler,
             EditorModeChangedEvent.Handler,
             MouseMoveHandler,
-            MouseUpHandler
+            MouseUpHandler,
+            RenderFinishedEvent.Handler
 {
    interface Highlighter
    {
@@ -103,23 +106,14 @@ public class AceEditorBackgroundLinkHighlighter
       
       editor_ = editor;
       activeMarkers_ = new SafeMap<Integer, List<MarkerRegistration>>();
+      highlightedLines_ = JsVectorString.createVector();
       
-      nextHighlightStart_ = 0;
       timer_ = new Timer()
       {
          @Override
          public void run()
          {
-            int n = editor_.getCurrentLineCount();
-            int startRow = nextHighlightStart_;
-            int endRow   = Math.min(nextHighlightStart_ + N_HIGHLIGHT_ROWS, n);
-            
-            for (int row = startRow; row < endRow; row++)
-               highlightRow(row);
-            
-            nextHighlightStart_ = endRow;
-            if (endRow != n)
-               timer_.schedule(5);
+            highlightVisibleRows();
          }
       };
       
@@ -133,6 +127,7 @@ public class AceEditorBackgroundLinkHighlighter
       handlers_.add(editor_.addEditorModeChangedHandler(this));
       handlers_.add(editor_.addMouseMoveHandler(this));
       handlers_.add(editor_.addMouseUpHandler(this));
+      handlers_.add(editor_.addRenderFinishedHandler(this));
       
       refreshHighlighters(editor_.getModeId());
    }
@@ -150,16 +145,42 @@ public class AceEditorBackgroundLinkHighlighter
             highlighters_.add(webLinkHighlighter());
             if (fileType != null && (fileType.isMarkdown() || fileType.isRmd()))
                highlighters_.add(markdownLinkHighlighter());
-            nextHighlightStart_ = 0;
+            highlightedLines_ = JsVectorString.createVector();
             timer_.schedule(700);
          }
       });
    }
    
-   private void highlightRow(int row)
+   /**
+    * Highlights the rows that are visible (or nearly so) and have changed
+    * since they were last highlighted; rows that are never scrolled into
+    * view are never highlighted.
+    */
+   private void highlightVisibleRows()
+   {
+      int n = editor_.getCurrentLineCount();
+      int startRow = Math.max(0, editor_.getFirstVisibleRow() - N_MARGIN_ROWS);
+      int endRow   = Math.min(editor_.getLastVisibleRow() + N_MARGIN_ROWS + 1, n);
+      
+      for (int row = startRow; row < endRow; row++)
+      {
+         String line = editor_.getLine(row);
+         if (highlightedLines_.isSet(row) &&
+             StringUtil.equals(highlightedLines_.get(row), line))
+         {
+            continue;
+         }
+         
+         clearRowMarkers(row);
+         highlightRow(row, line);
+         highlightedLines_.set(row, line);
+      }
+   }
+   
+   private void highlightRow(int row, String line)
    {
       for (Highlighter highlighter : highlighters_)
-         highlighter.highlight(editor_, editor_.getLine(row), row);
+         highlighter.highlight(editor_, line, row);
    }
    
    private void registerActiveMarker(int row,
@@ -285,6 +306,16 @@ public class AceEditorBackgroundLinkHighlighter
       activeMarkers_.clear();
    }
    
+   private void clearRowMarkers(int row)
+   {
+      if (!activeMarkers_.containsKey(row))
+         return;
+      
+      for (MarkerRegistration marker : activeMarkers_.get(row))
+         marker.detach();
+      activeMarkers_.remove(row);
+   }
+   
    private void clearMarkers(final Range range)
    {
       for (int row = range.getStart().getRow();
@@ -576,11 +607,28 @@ public class AceEditorBackgroundLinkHighlighter
    public void onDocumentChanged(DocumentChangedEvent event)
    {
       // clear markers within the delete range
-      clearMarkers(event.getEvent().getRange());
+      AceDocumentChangeEventNative nativeEvent = event.getEvent();
+      Range range = nativeEvent.getRange();
+      clearMarkers(range);
+      
+      // keep the record of highlighted lines in step with the document; the
+      // rows touched by the change are re-highlighted when next visible
+      int startRow = range.getStart().getRow();
+      int newlineCount = range.getEnd().getRow() - startRow;
+      if (nativeEvent.getAction().startsWith("insert"))
+      {
+         highlightedLines_.unset(startRow);
+         if (newlineCount > 0)
+            highlightedLines_.insert(startRow, JsVectorString.ofLength(newlineCount));
+      }
+      else if (nativeEvent.getAction().startsWith("remove"))
+      {
+         if (newlineCount > 0 && startRow < highlightedLines_.length())
+            highlightedLines_.remove(startRow, newlineCount);
+         highlightedLines_.unset(startRow);
+      }
       
       // prepare highlighter
-      int row = event.getEvent().getRange().getStart().getRow();
-      nextHighlightStart_ = Math.min(nextHighlightStart_, row);
       timer_.schedule(700);
       
       // update marker positions (deferred so that anchors update)
@@ -610,6 +658,14 @@ public class AceEditorBackgroundLinkHighlighter
       });
    }
    
+   @Override
+   public void onRenderFinished(RenderFinishedEvent event)
+   {
+      // highlight rows scrolled into view (unless a pass is already pending)
+      if (!timer_.isRunning())
+         timer_.schedule(100);
+   }
+   
    @Override
    public void onEditorModeChanged(EditorModeChangedEvent event)
    {
@@ -790,8 +846,14 @@ public class AceEditorBackgroundLinkHighlighter
    private final List<HandlerRegistration> handlers_;
    
    private SafeMap<Integer, List<MarkerRegistration>> activeMarkers_;
-   private int nextHighlightStart_;
-   private static final int N_HIGHLIGHT_ROWS = 200;
+   
+   // the content of each row when it was last highlighted (unset for rows
+   // not yet highlighted, or changed since)
+   private JsVectorString highlightedLines_;
+   
+   // rows beyond the visible range to highlight, so that links are ready
+   // as they are scrolled into view
+   private static final int N_MARGIN_ROWS = 50;
    
    private HandlerRegistration previewHandler_;
    private Element activeHighlightMarkerEl_;
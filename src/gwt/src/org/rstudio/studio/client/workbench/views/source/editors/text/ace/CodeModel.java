@@ -128,4 +128,12 @@ public class CodeModel extends JavaScriptObject
       return this.$buildScopeTreeUpToRow(row);
    }-*/;
    
+   // the row up to which the scope tree has been rebuilt since last asked,
+   // or -1 if the code model doesn't track this
+   public native final int takeScopeTreeChangedEndRow() /*-{
+      if (typeof this.takeScopeTreeChangedEndRow !== "function")
+         return -1;
+      return this.takeScopeTreeChangedEndRow();
+   }-*/;
+   
 }
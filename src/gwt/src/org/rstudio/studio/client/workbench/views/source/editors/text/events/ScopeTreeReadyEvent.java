@@ -23,17 +23,28 @@ import com.google.gwt.event.shared.GwtEvent;
 public class ScopeTreeReadyEvent extends GwtEvent<ScopeTreeReadyEvent.Handler>
 {
    public ScopeTreeReadyEvent(JsArray<Scope> scopeTree,
-                              Scope currentScope)
+                              Scope currentScope,
+                              int changedStartRow,
+                              int changedEndRow)
    {
       scopeTree_ = scopeTree;
       currentScope_ = currentScope;
+      changedStartRow_ = changedStartRow;
+      changedEndRow_ = changedEndRow;
    }
    
    public JsArray<Scope> getScopeTree() { return scopeTree_; }
    public Scope getCurrentScope() { return currentScope_; }
    
+   // the rows [start, end) that were reparsed; scopes outside these rows are
+   // unchanged, other than being moved by any rows inserted or removed
+   public int getChangedStartRow() { return changedStartRow_; }
+   public int getChangedEndRow() { return changedEndRow_; }
+   
    private final JsArray<Scope> scopeTree_;
    private final Scope currentScope_;
+   private final int changedStartRow_;
+   private final int changedEndRow_;
    
    // Boilerplate ----
    
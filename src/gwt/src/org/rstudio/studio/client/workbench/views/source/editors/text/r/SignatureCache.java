@@ -0,0 +1,360 @@
+/*
+ * SignatureCache.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text.r;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.common.codetools.Completions;
+import org.rstudio.studio.client.common.codetools.RCompletionType;
+import org.rstudio.studio.client.workbench.views.console.shell.assist.PackageCompletionIndex;
+import org.rstudio.studio.client.workbench.views.environment.events.EnvironmentObjectAssignedEvent;
+import org.rstudio.studio.client.workbench.views.environment.events.EnvironmentObjectRemovedEvent;
+import org.rstudio.studio.client.workbench.views.environment.events.EnvironmentRefreshEvent;
+import org.rstudio.studio.client.workbench.views.environment.events.GlobalEnvironmentChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStateChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStateChangedHandler;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageInfo;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Remembers the signatures (e.g. "(x, ...)") shown in function tooltips, so
+ * that tooltips for functions seen before can be shown without a round trip
+ * to the R session (and while R is busy). Signatures are also taken from the
+ * package completion index, for functions whose package is known from their
+ * name or from completions. Entries are keyed by the function's name and
+ * where it was looked up, and are discarded when the package they came from
+ * changes. Entries for functions looked up from the global environment are
+ * discarded when an object of the same name is assigned or removed there (as
+ * reported by the environment monitor or, when the monitor isn't watching the
+ * global environment, by the session at each prompt), and all of them are
+ * discarded when the environment is refreshed.
+ */
+@Singleton
+public class SignatureCache implements PackageStateChangedHandler,
+                                       EnvironmentObjectAssignedEvent.Handler,
+                                       EnvironmentObjectRemovedEvent.Handler,
+                                       EnvironmentRefreshEvent.Handler,
+                                       GlobalEnvironmentChangedEvent.Handler
+{
+   interface PackageIndex
+   {
+      String getArgs(String pkg, String name);
+      void ensureIndexed(String pkg);
+   }
+   
+   @Inject
+   public SignatureCache(final PackageCompletionIndex packageIndex,
+                         EventBus events)
+   {
+      this(new PackageIndex()
+      {
+         @Override
+         public String getArgs(String pkg, String name)
+         {
+            return packageIndex.getArgs(pkg, name);
+         }
+
+         @Override
+         public void ensureIndexed(String pkg)
+         {
+            packageIndex.ensureIndexed(pkg);
+         }
+      });
+      
+      events.addHandler(PackageStateChangedEvent.TYPE, this);
+      events.addHandler(EnvironmentObjectAssignedEvent.TYPE, this);
+      events.addHandler(EnvironmentObjectRemovedEvent.TYPE, this);
+      events.addHandler(EnvironmentRefreshEvent.TYPE, this);
+      events.addHandler(GlobalEnvironmentChangedEvent.TYPE, this);
+   }
+   
+   SignatureCache(PackageIndex packageIndex)
+   {
+      packageIndex_ = packageIndex;
+   }
+
+   /**
+    * @param name the function name, possibly qualified (e.g. "stats::lm")
+    * @param source where the function was found (e.g. "package:stats"), or
+    *    an empty string if it should be looked up from the global environment
+    * @return the function's signature, or null if it is not known
+    */
+   public String get(String name, String source)
+   {
+      String signature = entries_.get(key(name, source));
+      if (signature != null)
+         return signature;
+
+      // the session infers the signatures of these from write.table
+      String namespace = getNamespace(name, source);
+      if (namespace == null && StringUtil.isNullOrEmpty(source))
+         namespace = packages_.get(name);
+      String function = getFunction(name);
+      if (namespace == null ||
+          (StringUtil.equals(namespace, "utils") && function.startsWith("write.csv")))
+      {
+         return null;
+      }
+
+      signature = packageIndex_.getArgs(namespace, function);
+      if (signature != null)
+         entries_.put(key(name, source), signature);
+      return signature;
+   }
+
+   public void put(String name, String source, String signature)
+   {
+      entries_.put(key(name, source), signature);
+   }
+
+   /**
+    * Notes the packages of the functions in a completion response, so that
+    * the signatures of those functions (looked up from the global
+    * environment) can be answered from the package completion index.
+    */
+   public void addCompletions(Completions completions)
+   {
+      JsArrayString names = completions.getCompletions();
+      JsArrayString packages = completions.getPackages();
+      JsArrayInteger types = completions.getType();
+      if (names == null || packages == null || types == null)
+         return;
+
+      for (int i = 0; i < names.length(); i++)
+      {
+         if (!RCompletionType.isFunctionType(types.get(i)))
+            continue;
+
+         // functions found elsewhere (e.g. in the global environment) mask
+         // any package function of the same name
+         String name = names.get(i);
+         String pkg = StringUtil.notNull(packages.get(i));
+         if (pkg.startsWith("package:"))
+            pkg = pkg.substring("package:".length());
+         if (!loadedVersions_.containsKey(pkg))
+         {
+            if (packages_.remove(name) != null)
+               entries_.remove(key(name, ""));
+            continue;
+         }
+
+         if (!StringUtil.equals(pkg, packages_.get(name)))
+         {
+            packages_.put(name, pkg);
+            entries_.remove(key(name, ""));
+         }
+         packageIndex_.ensureIndexed(pkg);
+      }
+   }
+
+   @Override
+   public void onPackageStateChanged(PackageStateChangedEvent event)
+   {
+      JsArray<PackageInfo> packageList =
+            event.getPackageState().getPackageList();
+      if (packageList == null)
+         return;
+
+      HashMap<String, String> loaded = new HashMap<String, String>();
+      for (int i = 0; i < packageList.length(); i++)
+      {
+         PackageInfo info = packageList.get(i);
+         if (info.isLoaded())
+            loaded.put(info.getName(), info.getVersion());
+      }
+      setLoadedPackages(loaded);
+   }
+
+   @Override
+   public void onEnvironmentObjectAssigned(EnvironmentObjectAssignedEvent event)
+   {
+      removeFunction(event.getObjectInfo().getName());
+   }
+
+   @Override
+   public void onEnvironmentObjectRemoved(EnvironmentObjectRemovedEvent event)
+   {
+      removeFunction(event.getObjectName());
+   }
+
+   @Override
+   public void onEnvironmentRefresh(EnvironmentRefreshEvent event)
+   {
+      // the environment was reset or reloaded wholesale
+      removeUnqualified();
+   }
+
+   @Override
+   public void onGlobalEnvironmentChanged(GlobalEnvironmentChangedEvent event)
+   {
+      JsArrayString names = event.getObjectNames();
+      if (names == null)
+      {
+         removeUnqualified();
+         return;
+      }
+
+      HashSet<String> functions = new HashSet<String>();
+      for (int i = 0; i < names.length(); i++)
+         functions.add(names.get(i));
+      removeFunctions(functions);
+   }
+
+   // package name => version, for the packages now loaded
+   void setLoadedPackages(HashMap<String, String> loaded)
+   {
+      // packages that were loaded, unloaded or updated
+      ArrayList<String> changed = new ArrayList<String>();
+      for (Map.Entry<String, String> entry : loaded.entrySet())
+      {
+         if (!StringUtil.equals(entry.getValue(), loadedVersions_.get(entry.getKey())))
+            changed.add(entry.getKey());
+      }
+      for (String pkg : loadedVersions_.keySet())
+      {
+         if (!loaded.containsKey(pkg))
+            changed.add(pkg);
+      }
+      loadedVersions_ = loaded;
+
+      if (changed.isEmpty())
+         return;
+
+      // functions looked up on the search path may now be found elsewhere
+      packages_.clear();
+      Iterator<String> it = entries_.keySet().iterator();
+      while (it.hasNext())
+      {
+         String namespace = namespaceOfKey(it.next());
+         if (namespace == null || changed.contains(namespace))
+            it.remove();
+      }
+   }
+
+   // discards the entries for unqualified lookups
+   void removeUnqualified()
+   {
+      packages_.clear();
+      Iterator<String> it = entries_.keySet().iterator();
+      while (it.hasNext())
+      {
+         if (namespaceOfKey(it.next()) == null)
+            it.remove();
+      }
+   }
+
+   // discards the entries for unqualified lookups of the function, which an
+   // object of the same name may now mask (or no longer mask)
+   void removeFunction(String name)
+   {
+      HashSet<String> functions = new HashSet<String>();
+      functions.add(name);
+      removeFunctions(functions);
+   }
+
+   void removeFunctions(HashSet<String> names)
+   {
+      if (names.isEmpty())
+         return;
+
+      packages_.keySet().removeAll(names);
+      Iterator<String> it = entries_.keySet().iterator();
+      while (it.hasNext())
+      {
+         String key = it.next();
+         if (namespaceOfKey(key) == null &&
+             names.contains(key.substring(key.indexOf(SEPARATOR) + 1)))
+         {
+            it.remove();
+         }
+      }
+   }
+
+   private static String key(String name, String source)
+   {
+      return StringUtil.notNull(source) + SEPARATOR + name;
+   }
+
+   private static String namespaceOfKey(String key)
+   {
+      int index = key.indexOf(SEPARATOR);
+      return getNamespace(key.substring(index + 1), key.substring(0, index));
+   }
+
+   // the package a function comes from, if known (from either a qualified
+   // name like "stats::lm" or a source like "package:stats")
+   private static String getNamespace(String name, String source)
+   {
+      int index = name.indexOf("::");
+      if (index > 0)
+         return name.substring(0, index);
+
+      if (source != null && source.startsWith("package:"))
+         return source.substring("package:".length());
+
+      return null;
+   }
+
+   private static String getFunction(String name)
+   {
+      int index = name.lastIndexOf(':');
+      return index == -1 ? name : name.substring(index + 1);
+   }
+
+   private static class SignatureMap extends LinkedHashMap<String, String>
+   {
+      public SignatureMap(int capacity)
+      {
+         super(capacity, 0.75f, true);
+         capacity_ = capacity;
+      }
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+      {
+         return size() > capacity_;
+      }
+
+      private final int capacity_;
+   }
+
+   private final PackageIndex packageIndex_;
+
+   // "source\nname" => signature, most recently used last
+   private final SignatureMap entries_ = new SignatureMap(MAX_ENTRIES);
+
+   // function name => the package it was last completed from, for unqualified
+   // lookups
+   private final HashMap<String, String> packages_ = new HashMap<String, String>();
+
+   // package name => version, for the packages loaded as of the last package
+   // state change
+   private HashMap<String, String> loadedVersions_ = new HashMap<String, String>();
+
+   private static final String SEPARATOR = "\n";
+   private static final int MAX_ENTRIES = 1000;
+}
@@ -66,6 +66,18 @@ public class SignatureToolTipManager
                                        final String helpHandler,
                                        final CommandWithArg<String> onReady)
    {
+      // signatures from custom help handlers aren't cached
+      final boolean cacheable = StringUtil.isNullOrEmpty(helpHandler);
+      if (cacheable)
+      {
+         String signature = signatures_.get(name, source);
+         if (signature != null)
+         {
+            onReady.execute(signature);
+            return;
+         }
+      }
+      
       server_.getArgs(name, source, helpHandler, new ServerRequestCallback<String>()
       {
          @Override
@@ -74,6 +86,8 @@ public class SignatureToolTipManager
             if (StringUtil.isNullOrEmpty(response))
                return;
             
+            if (cacheable)
+               signatures_.put(name, source, response);
             onReady.execute(response);
          }
 
@@ -208,11 +222,13 @@ public class SignatureToolTipManager
    @Inject
    public void initialize(UIPrefs uiPrefs,
                           EventBus events,
-                          CodeToolsServerOperations server)
+                          CodeToolsServerOperations server,
+                          SignatureCache signatures)
    {
       uiPrefs_ = uiPrefs;
       events_ = events;
       server_ = server;
+      signatures_ = signatures;
    }
    
    private void attachPreviewHandler()
@@ -592,6 +608,7 @@ public class SignatureToolTipManager
    private UIPrefs uiPrefs_;
    private EventBus events_;
    private CodeToolsServerOperations server_;
+   private SignatureCache signatures_;
    
    private static final int MONITOR_DELAY_MS = 200;
    private static final int TIMER_DELAY_MS   = 900;
@@ -49,9 +49,11 @@ public class ChunkDefinition extends JavaScriptObject
    
    public final ChunkDefinition with(int row, String chunkLabel)
    {
-      return ChunkDefinition.create(row, getRowCount(), getVisible(), 
-            getExpansionState(), getOptions(), getDocumentId(),
+      ChunkDefinition def = ChunkDefinition.create(row, getRowCount(), 
+            getVisible(), getExpansionState(), getOptions(), getDocumentId(),
             getChunkId(), chunkLabel);
+      def.setOutputHeight(getOutputHeight());
+      return def;
    }
    
    public native final int getRow()  /*-{
@@ -90,6 +92,16 @@ public class ChunkDefinition extends JavaScriptObject
       this.expansion_state = state;
    }-*/;
 
+   // the height of the chunk's (expanded) output when last rendered, or 0
+   // if not known
+   public native final int getOutputHeight() /*-{
+      return this.output_height || 0;
+   }-*/;
+   
+   public native final void setOutputHeight(int height) /*-{
+      this.output_height = height;
+   }-*/;
+
    public native final RmdChunkOptions getOptions() /*-{
       return this.options || {};
    }-*/;
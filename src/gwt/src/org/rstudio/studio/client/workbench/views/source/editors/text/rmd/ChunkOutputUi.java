@@ -14,10 +14,13 @@
  */
 package org.rstudio.studio.client.workbench.views.source.editors.text.rmd;
 
+import java.util.ArrayList;
+
 import org.rstudio.core.client.Rectangle;
 import org.rstudio.core.client.theme.res.ThemeStyles;
 import org.rstudio.studio.client.RStudioGinjector;
 import org.rstudio.studio.client.rmarkdown.model.RmdChunkOptions;
+import org.rstudio.studio.client.rmarkdown.model.RmdChunkOutput;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ChunkOutputSize;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ChunkOutputWidget;
 import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
@@ -133,6 +136,73 @@ public class ChunkOutputUi
       outputWidget_.setOptions(options);
    }
    
+   /**
+    * Shows output in the chunk's output widget. Output replayed from the
+    * notebook cache for a chunk that isn't near the viewport is held (with a
+    * placeholder of the output's last known height shown in its place) until
+    * the chunk is scrolled near the viewport.
+    */
+   public void showChunkOutput(RmdChunkOutput output, int mode, int scope,
+         boolean complete, boolean ensureVisible)
+   {
+      if (output.isReplay() && !ensureVisible &&
+          (!deferredOutput_.isEmpty() || !isNearViewport(
+                display_.getFirstVisibleRow(), display_.getLastVisibleRow(),
+                MATERIALIZE_MARGIN_ROWS)))
+      {
+         deferredOutput_.add(new DeferredOutput(output, mode, scope, complete));
+         showPlaceholder();
+         return;
+      }
+      
+      materialize();
+      outputWidget_.showChunkOutput(output, mode, scope, complete, 
+            ensureVisible);
+   }
+   
+   /**
+    * Shows any output held while the chunk was away from the viewport.
+    */
+   public void materialize()
+   {
+      if (deferredOutput_.isEmpty())
+         return;
+      
+      ArrayList<DeferredOutput> deferred = deferredOutput_;
+      deferredOutput_ = new ArrayList<DeferredOutput>();
+      for (DeferredOutput output: deferred)
+      {
+         outputWidget_.showChunkOutput(output.output, output.mode, 
+               output.scope, output.complete, false);
+      }
+   }
+   
+   /**
+    * Takes over the output held by another chunk output UI (whose output
+    * widget this one now hosts).
+    */
+   public void takeDeferredOutput(ChunkOutputUi other)
+   {
+      deferredOutput_.addAll(other.deferredOutput_);
+      other.deferredOutput_.clear();
+      if (!deferredOutput_.isEmpty())
+         showPlaceholder();
+   }
+   
+   /**
+    * Materializes the chunk's output if it's near the given range of visible
+    * rows, and unloads its HTML widgets if it's far from them.
+    */
+   public void syncToViewport(int firstVisibleRow, int lastVisibleRow)
+   {
+      if (isNearViewport(firstVisibleRow, lastVisibleRow, 
+            MATERIALIZE_MARGIN_ROWS))
+         materialize();
+      
+      outputWidget_.setFramesLoaded(isNearViewport(firstVisibleRow, 
+            lastVisibleRow, UNLOAD_MARGIN_ROWS));
+   }
+   
    public void remove()
    {
       if (!attached_)
@@ -153,6 +223,8 @@ public class ChunkOutputUi
    
    public void ensureVisible()
    {
+      materialize();
+
       // we want to be sure the user can see the row beneath the output 
       // (this is just a convenient way to determine whether the entire 
       // output is visible)
@@ -197,6 +269,14 @@ public class ChunkOutputUi
       if (!attached_)
          return;
       
+      // while output is held, the placeholder's height stands in for the
+      // (empty) widget's
+      if (!deferredOutput_.isEmpty())
+      {
+         showPlaceholder();
+         return;
+      }
+      
       // if ensuring visible, also ensure that the associated code is unfolded
       if (ensureVisible)
       {
@@ -216,6 +296,14 @@ public class ChunkOutputUi
       widget.getElement().getStyle().setHeight(height, Unit.PX);
       display_.onLineWidgetChanged(lineWidget_.getLineWidget());
       
+      // remember the height of visible output so that a placeholder of the
+      // same height can stand in for it when the notebook is next opened
+      if (widget.getExpansionState() == ChunkOutputWidget.EXPANDED &&
+          widget.isVisible())
+      {
+         def_.setOutputHeight(height);
+      }
+      
       // if we need to ensure that this output is visible, wait for the event
       // loop to finish (so Ace gets a chance to adjust the line widgets and
       // do a render pass), then make sure the line beneath our widget is 
@@ -248,6 +336,43 @@ public class ChunkOutputUi
    }
 
    // Private methods ---------------------------------------------------------
+   
+   private boolean isNearViewport(int firstVisibleRow, int lastVisibleRow,
+                                  int marginRows)
+   {
+      int row = getCurrentRow();
+      return row >= firstVisibleRow - marginRows &&
+             row <= lastVisibleRow + marginRows;
+   }
+   
+   private void showPlaceholder()
+   {
+      int height = 
+            outputWidget_.getExpansionState() == ChunkOutputWidget.COLLAPSED ?
+               CHUNK_COLLAPSED_HEIGHT :
+               Math.max(MIN_CHUNK_HEIGHT, def_.getOutputHeight());
+      
+      outputWidget_.setVisible(true);
+      outputWidget_.getElement().getStyle().setHeight(height, Unit.PX);
+      display_.onLineWidgetChanged(lineWidget_.getLineWidget());
+   }
+   
+   private static class DeferredOutput
+   {
+      public DeferredOutput(RmdChunkOutput output, int mode, int scope,
+                            boolean complete)
+      {
+         this.output = output;
+         this.mode = mode;
+         this.scope = scope;
+         this.complete = complete;
+      }
+      
+      public final RmdChunkOutput output;
+      public final int mode;
+      public final int scope;
+      public final boolean complete;
+   }
 
    private final PinnedLineWidget lineWidget_;
    private final ChunkOutputWidget outputWidget_;
@@ -258,6 +383,16 @@ public class ChunkOutputUi
 
    private boolean attached_ = false;
    private HandlerRegistration renderHandlerReg_ = null;
+   
+   // replayed output not yet shown (because the chunk hasn't been near the
+   // viewport)
+   private ArrayList<DeferredOutput> deferredOutput_ = 
+         new ArrayList<DeferredOutput>();
+   
+   // how near the viewport (in rows) output must be to be shown, and how far
+   // it must be for its HTML widgets to be unloaded
+   private final static int MATERIALIZE_MARGIN_ROWS = 100;
+   private final static int UNLOAD_MARGIN_ROWS = 300;
 
    public final static int MIN_CHUNK_HEIGHT = 25;
    public final static int CHUNK_COLLAPSED_HEIGHT = 15;
@@ -58,6 +58,7 @@ import org.rstudio.studio.client.workbench.views.console.model.ConsoleServerOper
 import org.rstudio.studio.client.workbench.views.console.shell.ConsoleLanguageTracker;
 import org.rstudio.studio.client.workbench.views.source.Source;
 import org.rstudio.studio.client.workbench.views.source.SourceWindowManager;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ChunkOutputHeightQueue;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ChunkOutputWidget;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ChunkRowExecState;
 import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
@@ -227,6 +228,19 @@ public class TextEditingTargetNotebook
       // render to ensure that ace places the line widgets correctly)
       renderReg_ = docDisplay_.addRenderFinishedHandler(this);
       
+      // show held chunk output as it nears the viewport (and unload HTML 
+      // widgets as they leave it); the editor renders whenever it scrolls
+      releaseOnDismiss_.add(docDisplay_.addRenderFinishedHandler(
+            new RenderFinishedEvent.Handler()
+      {
+         @Override
+         public void onRenderFinished(RenderFinishedEvent event)
+         {
+            if (!syncOutputsToViewport_.isRunning())
+               syncOutputsToViewport_.schedule(100);
+         }
+      }));
+      
       releaseOnDismiss_.add(editingTarget_.addInterruptChunkHandler(new InterruptChunkEvent.Handler()
       {
          @Override
@@ -730,8 +744,7 @@ public class TextEditingTargetNotebook
          if (ensureVisible && mode == NotebookQueueUnit.EXEC_MODE_BATCH)
             ensureVisible = false;
          
-         outputs_.get(chunkId).getOutputWidget()
-                              .showChunkOutput(event.getOutput(), mode,
+         outputs_.get(chunkId).showChunkOutput(event.getOutput(), mode,
                                   NotebookQueueUnit.EXEC_SCOPE_PARTIAL,
                                   !queue_.isChunkExecuting(chunkId),
                                   ensureVisible);
@@ -1057,6 +1070,7 @@ public class TextEditingTargetNotebook
                ChunkOutputUi newOutput = new ChunkOutputUi(
                      docUpdateSentinel_.getId(), 
                      docDisplay_, def, this, outputWidget);
+               newOutput.takeDeferredOutput(output);
                outputs_.put(output.getChunkId(), newOutput);
                return;
             }
@@ -1127,6 +1141,10 @@ public class TextEditingTargetNotebook
       
       for (ChunkOutputUi output: outputs_.values())
       {
+         // chunks ending before the reparsed rows are unchanged
+         if (output.getCurrentRow() < event.getChangedStartRow())
+            continue;
+         
          Scope scope = output.getScope();
          // if the scope associated with this output no longer looks like a 
          // valid chunk scope, or is considerably out of sync with the widget,
@@ -1242,6 +1260,8 @@ public class TextEditingTargetNotebook
                )
          );
 
+         // show any output still held for the chunk before it's replaced
+         output.materialize();
          output.getOutputWidget().setCodeExecuting(mode, execScope);
          
          // scroll the widget into view if it's a single-shot exec
@@ -1327,6 +1347,7 @@ public class TextEditingTargetNotebook
    public void onDismiss()
    {
       closeAllSatelliteChunks();
+      ChunkOutputHeightQueue.remove(docUpdateSentinel_.getId());
    }
    
    // set the output mode based on the global pref (or our local 
@@ -1657,6 +1678,20 @@ public class TextEditingTargetNotebook
       }
    };
    
+   private Timer syncOutputsToViewport_ = new Timer()
+   {
+      @Override
+      public void run()
+      {
+         int firstRow = docDisplay_.getFirstVisibleRow();
+         int lastRow = docDisplay_.getLastVisibleRow();
+         for (ChunkOutputUi output: outputs_.values())
+         {
+            output.syncToViewport(firstRow, lastRow);
+         }
+      }
+   };
+   
    private Timer resizePlotsLocal_ = new Timer()
    {
       @Override
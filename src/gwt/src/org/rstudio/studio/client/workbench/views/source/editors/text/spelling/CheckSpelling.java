@@ -23,6 +23,7 @@ import com.google.gwt.user.client.ui.PopupPanel;
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.Rectangle;
 import org.rstudio.core.client.ResultCallback;
+import org.rstudio.core.client.StringUtil;
 import org.rstudio.studio.client.RStudioGinjector;
 import org.rstudio.studio.client.common.GlobalDisplay;
 import org.rstudio.studio.client.common.SimpleRequestCallback;
@@ -165,6 +166,8 @@ public class CheckSpelling
          if (checkForCancel())
             return;
 
+         // no word is being shown while looking for the next
+         currentRange_ = null;
          showProgress();
 
          Iterable<Range> wordSource = docDisplay_.getWords(
@@ -261,6 +264,12 @@ public class CheckSpelling
       return canceled_;
    }
 
+   // whether the dialog is no longer showing the misspelling at the range
+   private boolean isStale(Range range)
+   {
+      return canceled_ || currentRange_ != range;
+   }
+
    private void showProgress()
    {
       if (view_.isShowing())
@@ -282,6 +291,7 @@ public class CheckSpelling
    {
       try
       {
+         currentRange_ = range;
          docDisplay_.setSelectionRange(range);
          docDisplay_.moveCursorNearTop();
          view_.clearSuggestions();
@@ -305,17 +315,27 @@ public class CheckSpelling
          // meaning we'll be avoiding a completely incorrect region.
          Scheduler.get().scheduleFixedDelay(() ->
          {
+            if (isStale(range))
+               return false;
+
             showDialog(docDisplay_.getCursorBounds());
 
             view_.focusReplacement();
 
-            String[] suggestions = spellChecker_.suggestionList(word);
-            view_.setSuggestions(suggestions);
-            if (suggestions.length > 0)
+            spellChecker_.suggestionList(word, (suggestions) ->
             {
-               view_.getReplacement().setText(suggestions[0]);
-               view_.focusReplacement();
-            }
+               // the user may have moved on from the word meanwhile
+               if (isStale(range) ||
+                   !StringUtil.equals(word, view_.getMisspelledWord().getText()))
+                  return;
+
+               view_.setSuggestions(suggestions);
+               if (suggestions.length > 0)
+               {
+                  view_.getReplacement().setText(suggestions[0]);
+                  view_.focusReplacement();
+               }
+            });
 
             return false;
          }, 100);
@@ -342,6 +362,9 @@ public class CheckSpelling
 
    private Position currentPos_;
 
+   // the misspelled word being shown, if any
+   private Range currentRange_;
+
    private boolean wrapped_;
    private boolean canceled_;
 }
@@ -15,6 +15,8 @@
 package org.rstudio.studio.client.workbench.views.source.model;
 
 import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
@@ -47,6 +49,7 @@ import org.rstudio.studio.client.workbench.model.ChangeTracker;
 import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
 import org.rstudio.studio.client.workbench.views.source.editors.text.Fold;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.VimMarks;
+import org.rstudio.studio.client.workbench.views.source.editors.text.events.DocumentChangedEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.FoldChangeEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.SourceOnSaveChangedEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.rmd.ChunkDefinition;
@@ -55,11 +58,13 @@ import org.rstudio.studio.client.workbench.views.source.events.SaveFileEvent;
 import org.rstudio.studio.client.workbench.views.source.events.SaveInitiatedEvent;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DocUpdateSentinel
       implements ValueChangeHandler<Void>,
-      FoldChangeEvent.Handler
+      FoldChangeEvent.Handler,
+      DocumentChangedEvent.Handler
 {
    private class ReopenFileCallback extends ServerRequestCallback<SourceDocument>
    {
@@ -127,6 +132,7 @@ public class DocUpdateSentinel
       dirtyState_ = dirtyState;
       eventBus_ = events;
       changeTracker_ = docDisplay.getChangeTracker();
+      editLog_ = new DocumentEditLog(docDisplay);
       propertyChangeHandlers_ = 
             new HashMap<String, ValueChangeHandlerManager<String>>();
 
@@ -141,6 +147,7 @@ public class DocUpdateSentinel
 
       docDisplay_.addValueChangeHandler(this);
       docDisplay_.addFoldChangeHandler(this);
+      docDisplay_.addDocumentChangedHandler(this);
 
       // Web only
       if (!Desktop.isDesktop())
@@ -378,27 +385,92 @@ public class DocUpdateSentinel
          actually sent to the server. */
       final ChangeTracker thisChangeTracker = changeTracker_.fork();
 
-      final String newContents = docDisplay_.getCode();
-      String oldContents = sourceDoc_.getContents();
+      // when the server has the contents we last synced and we have seen
+      // every edit made since, we can build the update from those edits
+      // rather than by copying and comparing the whole document
+      final String oldContents = sourceDoc_.getContents();
+      List<DocumentEditLog.Edit> loggedEdits = null;
+      String replayedContents = null;
+      if (syncedHash_ != null &&
+          syncedHash_ == sourceDoc_.getHash() &&
+          !editLog_.isOverflowed())
+      {
+         loggedEdits = editLog_.takeEdits();
+         replayedContents = DocumentEditLog.apply(oldContents, loggedEdits);
+
+         // an edit we missed (or misrecorded) would leave the replayed
+         // contents out of step with the editor, so resync if they differ
+         if (replayedContents.length() != getDocumentLength())
+         {
+            Debug.log("Document edits out of sync; saving full document");
+            loggedEdits = null;
+         }
+      }
+
+      final boolean incremental = loggedEdits != null;
+      final List<DocumentEditLog.Edit> edits = loggedEdits;
+      final String newContents;
+      if (incremental)
+      {
+         newContents = replayedContents;
+      }
+      else
+      {
+         // edits from here on are relative to the snapshot we take now
+         // (we can't track offsets in documents with CRLF line endings)
+         resetEditLog();
+         newContents = docDisplay_.getCode();
+      }
+      final boolean trackEdits = newContents.indexOf('\r') == -1;
+      final int epoch = syncEpoch_;
       final String hash = sourceDoc_.getHash();
 
-      final String foldSpec = Fold.encode(Fold.flatten(docDisplay_.getFolds()));
+      // folds only need re-encoding if they (or the lines they span) changed
+      if (foldSpecStale_)
+      {
+         foldSpec_ = Fold.encode(Fold.flatten(docDisplay_.getFolds()));
+         foldSpecStale_ = false;
+      }
+      final String foldSpec = foldSpec_;
       String oldFoldSpec = sourceDoc_.getFoldSpec();
       
       final JsArray<ChunkDefinition> newChunkDefs = docDisplay_.getChunkDefs();
       JsArray<ChunkDefinition> oldChunkDefs = 
             sourceDoc_.getNotebookDoc().getChunkDefs();
       
-      //String patch = DiffMatchPatch.diff(oldContents, newContents);
-      SubstringDiff diff = new SubstringDiff(oldContents, newContents);
+      final JsArrayString replacements = JsArrayString.createArray().cast();
+      final JsArrayInteger offsets = JsArrayInteger.createArray().cast();
+      final JsArrayInteger lengths = JsArrayInteger.createArray().cast();
+      if (incremental)
+      {
+         for (DocumentEditLog.Edit edit : edits)
+         {
+            replacements.push(edit.text);
+            offsets.push(edit.offset);
+            lengths.push(edit.length);
+         }
+      }
+      else
+      {
+         //String patch = DiffMatchPatch.diff(oldContents, newContents);
+         SubstringDiff diff = new SubstringDiff(oldContents, newContents);
+         if (!diff.isEmpty())
+         {
+            replacements.push(diff.getReplacement());
+            offsets.push(diff.getOffset());
+            lengths.push(diff.getLength());
+         }
+      }
 
       // Don't auto-save when there are no changes. In addition to being
       // wasteful, it causes the server to think the document is dirty.
-      if (path == null && fileType == null && diff.isEmpty()
+      if (path == null && fileType == null && replacements.length() == 0
           && foldSpec == oldFoldSpec 
           && (newChunkDefs == null || 
               ChunkDefinition.equalTo(newChunkDefs, oldChunkDefs)))
       {
+         if (!incremental)
+            onSynced(hash, trackEdits, epoch);
          changesPending_ = false;
          return false;
       }
@@ -411,7 +483,10 @@ public class DocUpdateSentinel
          // documents, which we have to do or else CodeMirror starts
          // acting funny. If we add the extra \n but don't do this
          // check, then reloading the browser causes empty documents
-         // to appear dirty.
+         // to appear dirty. (The server still has the empty document, so
+         // hold on to the edit which added the \n.)
+         if (incremental)
+            editLog_.restoreEdits(edits);
          changesPending_ = false;
          return false;
       }
@@ -430,23 +505,30 @@ public class DocUpdateSentinel
          Debug.logException(e);
       }
 
-      server_.saveDocumentDiff(
+      // only one incremental save at a time: any save made while this one
+      // is in flight compares the whole document instead
+      if (incremental)
+         syncedHash_ = null;
+
+      server_.saveDocumentEdits(
             sourceDoc_.getId(),
             path,
             fileType,
             encoding,
             foldSpec,
             newChunkDefs,
-            diff.getReplacement(),
-            diff.getOffset(),
-            diff.getLength(),
+            replacements,
+            offsets,
+            lengths,
             hash,
+            incremental ? newContents.length() : -1,
             new ServerRequestCallback<String>()
             {
                @Override
                public void onError(ServerError error)
                {
                   Debug.logError(error);
+                  onSyncFailed(incremental, edits, hash, epoch);
                   if (progress != null)
                      progress.onError(error.getUserMessage());
                   try
@@ -486,6 +568,7 @@ public class DocUpdateSentinel
                                            path,
                                            fileType,
                                            encoding);
+                        onSynced(newHash, trackEdits, epoch);
                      }
                      catch(Exception ex)
                      {
@@ -506,6 +589,15 @@ public class DocUpdateSentinel
                   {
                      // We just hit a race condition where two updates
                      // happened at once. Try again
+                     onSyncFailed(incremental, edits, hash, epoch);
+                     doSave(path, fileType, encoding, progress);
+                  }
+                  else if (incremental)
+                  {
+                     // The server couldn't apply our edits, or they didn't
+                     // leave it with a document the length of ours. Send the
+                     // whole document instead.
+                     resetEditLog();
                      doSave(path, fileType, encoding, progress);
                   }
                   else
@@ -550,6 +642,48 @@ public class DocUpdateSentinel
          sourceDoc_.setEncoding(encoding);
    }
 
+   private void onSynced(String hash, boolean trackEdits, int epoch)
+   {
+      // ignore saves that were overtaken by a full resync
+      if (epoch != syncEpoch_)
+         return;
+      
+      // the server now has the contents recorded in sourceDoc_
+      syncedHash_ = trackEdits ? hash : null;
+   }
+
+   private void onSyncFailed(boolean incremental,
+                             List<DocumentEditLog.Edit> edits,
+                             String hash,
+                             int epoch)
+   {
+      if (!incremental || epoch != syncEpoch_)
+         return;
+      
+      // the server still has the contents we last synced, so the edits we
+      // tried to send need to go out again with the next save
+      editLog_.restoreEdits(edits);
+      syncedHash_ = hash;
+   }
+
+   // forgets the edits made so far; the next save compares the whole document
+   private void resetEditLog()
+   {
+      editLog_.clear();
+      syncEpoch_++;
+      syncedHash_ = null;
+   }
+
+   // the length of the document in the editor, found without copying it
+   private int getDocumentLength()
+   {
+      int rows = docDisplay_.getRowCount();
+      int length = rows - 1;
+      for (int row = 0; row < rows; row++)
+         length += docDisplay_.getLength(row);
+      return length;
+   }
+
    public boolean sourceOnSave()
    {
       return sourceDoc_.sourceOnSave();
@@ -704,9 +838,20 @@ public class DocUpdateSentinel
       autosaver_.nudge();
    }
 
+   @Override
+   public void onDocumentChanged(DocumentChangedEvent event)
+   {
+      editLog_.onDocumentChanged(event.getEvent());
+
+      // folds move with the lines around them
+      if (event.getEvent().lines.length() > 1)
+         foldSpecStale_ = true;
+   }
+
    @Override
    public void onFoldChange(FoldChangeEvent event)
    {
+      foldSpecStale_ = true;
       changesPending_ = true;
       autosaver_.nudge();
    }
@@ -792,6 +937,16 @@ public class DocUpdateSentinel
    }
    
    private boolean changesPending_ = false;
+   private final DocumentEditLog editLog_;
+   
+   // the hash of the contents the server has for this document (which are
+   // those in sourceDoc_, and which editLog_ holds the edits relative to);
+   // null if unknown
+   private String syncedHash_ = null;
+   private int syncEpoch_ = 0;
+   
+   private String foldSpec_ = null;
+   private boolean foldSpecStale_ = true;
    private final ChangeTracker changeTracker_;
    private final SourceServerOperations server_;
    private final DocDisplay docDisplay_;
@@ -0,0 +1,248 @@
+/*
+ * DocumentEditLog.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.AceDocumentChangeEventNative;
+
+/**
+ * Accumulates the edits made to a document, as reported by Ace change
+ * events, so that they can be replayed against an earlier copy of the
+ * document without comparing the whole document against that copy.
+ * Adjacent and overlapping edits (e.g. typing a word) are merged as they
+ * arrive, so the log only grows with the number of distinct places edited.
+ */
+class DocumentEditLog
+{
+   public static class Edit
+   {
+      public Edit(int offset, int length, String text)
+      {
+         this.offset = offset;
+         this.length = length;
+         this.text = text;
+      }
+
+      // replaces [offset, offset + length) of the document as it was
+      // before this edit with text
+      public final int offset;
+      public final int length;
+      public final String text;
+   }
+
+   public DocumentEditLog(DocDisplay docDisplay)
+   {
+      docDisplay_ = docDisplay;
+   }
+
+   public void onDocumentChanged(AceDocumentChangeEventNative event)
+   {
+      String text = event.lines.join("\n");
+      int offset = offsetOf(event.start.getRow(), event.start.getColumn());
+      if (event.action == "insert")
+         add(offset, 0, text);
+      else
+         add(offset, text.length(), "");
+   }
+
+   /**
+    * @return true if more distinct edits were made than the log will hold;
+    *    the log must then be cleared and the document resynchronized
+    */
+   public boolean isOverflowed()
+   {
+      return overflowed_;
+   }
+
+   public boolean isEmpty()
+   {
+      return edits_.isEmpty();
+   }
+
+   /**
+    * Removes and returns all edits recorded so far, oldest first.
+    */
+   public List<Edit> takeEdits()
+   {
+      List<Edit> edits = edits_;
+      edits_ = new ArrayList<Edit>();
+      return edits;
+   }
+
+   /**
+    * Puts back edits previously returned by takeEdits() (e.g. because they
+    * could not be saved), ahead of any edits recorded since.
+    */
+   public void restoreEdits(List<Edit> edits)
+   {
+      List<Edit> later = edits_;
+      edits_ = new ArrayList<Edit>(edits);
+      for (Edit edit : later)
+         add(edit.offset, edit.length, edit.text);
+   }
+
+   public void clear()
+   {
+      edits_.clear();
+      overflowed_ = false;
+   }
+
+   /**
+    * @return the contents with the edits applied to them in order
+    */
+   public static String apply(String contents, List<Edit> edits)
+   {
+      if (edits.isEmpty())
+         return contents;
+
+      // rather than rebuilding the whole string for each edit, describe the
+      // result as a list of pieces (ranges of the original contents and
+      // inserted texts) and join them once at the end; the list only grows
+      // with the number of edits
+      List<Segment> segments = new ArrayList<Segment>();
+      segments.add(new Segment(contents, 0, contents.length()));
+      for (Edit edit : edits)
+      {
+         int index = split(segments, edit.offset);
+         int end = split(segments, edit.offset + edit.length);
+         segments.subList(index, end).clear();
+         if (edit.text.length() > 0)
+            segments.add(index, new Segment(edit.text, 0, edit.text.length()));
+      }
+
+      StringBuilder result = new StringBuilder();
+      for (Segment segment : segments)
+         result.append(segment.text, segment.start, segment.end);
+      return result.toString();
+   }
+
+   // ensures a segment boundary falls at the given offset of the text the
+   // segments describe, and returns the index of the segment starting there
+   private static int split(List<Segment> segments, int offset)
+   {
+      int position = 0;
+      for (int i = 0; i < segments.size(); i++)
+      {
+         Segment segment = segments.get(i);
+         if (offset == position)
+            return i;
+
+         int length = segment.end - segment.start;
+         if (offset < position + length)
+         {
+            int at = segment.start + offset - position;
+            segments.set(i, new Segment(segment.text, segment.start, at));
+            segments.add(i + 1, new Segment(segment.text, at, segment.end));
+            return i + 1;
+         }
+         position += length;
+      }
+
+      if (offset != position)
+         throw new IndexOutOfBoundsException("Edit offset " + offset +
+                                             " is past the end of the document");
+      return segments.size();
+   }
+
+   // records the replacement of [offset, offset + length) of the document
+   // (as it stands after the edits already recorded) with text
+   void add(int offset, int length, String text)
+   {
+      if (length == 0 && text.length() == 0)
+         return;
+
+      int count = edits_.size();
+      if (count > 0)
+      {
+         // if this edit touches the text written by the previous one, fold
+         // the two together into a single edit of the earlier document
+         Edit last = edits_.get(count - 1);
+         int lastEnd = last.offset + last.text.length();
+         if (offset <= lastEnd && offset + length >= last.offset)
+         {
+            int start = Math.min(offset, last.offset);
+            int end = Math.max(offset + length, lastEnd);
+            String prefix = offset > last.offset ?
+                  last.text.substring(0, offset - last.offset) : "";
+            String suffix = offset + length < lastEnd ?
+                  last.text.substring(offset + length - last.offset) : "";
+
+            edits_.remove(count - 1);
+            Edit merged = new Edit(
+                  start,
+                  (last.offset - start) + last.length + (end - lastEnd),
+                  prefix + text + suffix);
+            if (merged.length > 0 || merged.text.length() > 0)
+               edits_.add(merged);
+            return;
+         }
+      }
+
+      if (count >= MAX_EDITS)
+      {
+         edits_.clear();
+         overflowed_ = true;
+      }
+
+      if (!overflowed_)
+         edits_.add(new Edit(offset, length, text));
+   }
+
+   private int offsetOf(int row, int column)
+   {
+      // text before the start of an edit is never changed by it, so the
+      // offset of a row at or above the last edit is still valid; walk from
+      // there rather than from the top of the document when we can
+      if (row < anchorRow_)
+      {
+         anchorRow_ = 0;
+         anchorOffset_ = 0;
+      }
+
+      for (; anchorRow_ < row; anchorRow_++)
+         anchorOffset_ += docDisplay_.getLength(anchorRow_) + 1;
+
+      return anchorOffset_ + column;
+   }
+
+   // the range [start, end) of text
+   private static class Segment
+   {
+      public Segment(String text, int start, int end)
+      {
+         this.text = text;
+         this.start = start;
+         this.end = end;
+      }
+
+      public final String text;
+      public final int start;
+      public final int end;
+   }
+
+   private final DocDisplay docDisplay_;
+
+   private List<Edit> edits_ = new ArrayList<Edit>();
+   private boolean overflowed_ = false;
+
+   // a row of the document and the offset at which it starts
+   private int anchorRow_ = 0;
+   private int anchorOffset_ = 0;
+
+   private static final int MAX_EDITS = 200;
+}
@@ -15,6 +15,7 @@
 package org.rstudio.studio.client.workbench.views.source.model;
 
 import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayInteger;
 import com.google.gwt.core.client.JsArrayString;
 
 import org.rstudio.core.client.js.JsObject;
@@ -126,6 +127,26 @@ public interface SourceServerOperations extends FilesServerOperations,
                          String hash,
                          ServerRequestCallback<String> requestCallback);
 
+   /**
+    * Same as saveDocumentDiff, but with any number of replacements, which
+    * are applied in order (so the offset of each is relative to the
+    * document as it stands after the replacements before it). The server
+    * discards the replacements, returning null, unless they produce a
+    * document of the given length (or the length is -1).
+    */
+   void saveDocumentEdits(String id,
+                          String path,
+                          String fileType,
+                          String encoding,
+                          String foldSpec,
+                          JsArray<ChunkDefinition> chunkOutput,
+                          JsArrayString replacements,
+                          JsArrayInteger offsets,
+                          JsArrayInteger lengths,
+                          String hash,
+                          int documentLength,
+                          ServerRequestCallback<String> requestCallback);
+
    void checkForExternalEdit(
          String id,
          ServerRequestCallback<CheckForExternalEditResult> requestCallback);
@@ -73,6 +73,8 @@ public class TerminalInfoDialog extends ModalDialogBase
          diagnostics.append("Interactive: '").append(cpi.getInteractionModeName()).append("'\n");
          diagnostics.append("WebSockets:  '").append(uiPrefs_.terminalUseWebsockets().getValue()).append("'\n");
          diagnostics.append("Typing lag:  '").append(session.getSocket().getTypingLagMsg()).append("'\n");
+         diagnostics.append("Throughput:  '").append(session.getSocket().getThroughputMsg()).append("'\n");
+         diagnostics.append("Render lag:  '").append(session.getSocket().getRenderLagMsg()).append("'\n");
 
          diagnostics.append("\nSystem Information\n------------------\n");
          diagnostics.append("Desktop:    '").append(Desktop.isDesktop()).append("'\n");
@@ -51,6 +51,7 @@ import org.rstudio.studio.client.workbench.views.terminal.events.TerminalTitleEv
 import org.rstudio.studio.client.workbench.views.terminal.events.XTermTitleEvent;
 import org.rstudio.studio.client.workbench.views.terminal.xterm.XTermWidget;
 
+import com.google.gwt.animation.client.AnimationScheduler;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
@@ -247,6 +248,7 @@ public class TerminalSession extends XTermWidget
       connecting_ = false;
       restartSequenceWritten_ = false;
       reloading_ = false;
+      reloadGeneration_++;
       deferredOutput_.clear();
    }
 
@@ -283,6 +285,19 @@ public class TerminalSession extends XTermWidget
    {
       disconnect(false);
    }
+
+   @Override
+   public void receivedBuffer(String buffer)
+   {
+      // a reload in progress will bring the terminal up to date anyway
+      if (reloading_)
+         return;
+
+      reset();
+      deferredOutput_.clear();
+      reloading_ = true;
+      writeReloadedBuffer(buffer, 0, ++reloadGeneration_);
+   }
    
    public void receivedSendToTerminal(String input)
    {
@@ -685,7 +700,7 @@ public class TerminalSession extends XTermWidget
       else
       {
          reloading_ = true;
-         fetchNextChunk(0);
+         reloadBuffer();
       }
    }
 
@@ -721,6 +736,83 @@ public class TerminalSession extends XTermWidget
       }
    }
    
+   /**
+    * Reload the saved buffer into the terminal emulator; over the websocket
+    * in one message if possible, otherwise via RPC a chunk at a time.
+    */
+   private void reloadBuffer()
+   {
+      if (!shellSupportsReload())
+      {
+         reloading_ = false;
+         return;
+      }
+
+      final int generation = ++reloadGeneration_;
+      Scheduler.get().scheduleDeferred(() -> {
+         onResize();
+         socket_.requestBuffer(new TerminalSessionSocket.BufferCallback()
+         {
+            @Override
+            public void onBuffer(String buffer)
+            {
+               if (reloading_ && generation == reloadGeneration_)
+                  writeReloadedBuffer(buffer, 0, generation);
+            }
+
+            @Override
+            public void onUnavailable()
+            {
+               if (reloading_ && generation == reloadGeneration_)
+                  fetchNextChunk(0);
+            }
+         });
+      });
+   }
+
+   /**
+    * Write a reloaded buffer to the terminal emulator a frame-sized slice at
+    * a time, so that reloading long buffers doesn't block the browser.
+    */
+   private void writeReloadedBuffer(final String buffer,
+                                    final int start,
+                                    final int generation)
+   {
+      AnimationScheduler.get().requestAnimationFrame(timestamp ->
+      {
+         if (!reloading_ || generation != reloadGeneration_)
+            return;
+
+         // don't split a surrogate pair across writes
+         int end = Math.min(start + RELOAD_FRAME_SIZE, buffer.length());
+         if (end < buffer.length())
+         {
+            char last = buffer.charAt(end - 1);
+            if (last >= '\uD800' && last <= '\uDBFF')
+               end--;
+         }
+
+         accept(buffer.substring(start, end));
+         if (end < buffer.length())
+            writeReloadedBuffer(buffer, end, generation);
+         else
+            reloadComplete();
+      });
+   }
+
+   private void reloadComplete()
+   {
+      writeRestartSequence();
+      if (procInfo_.getZombie())
+         showZombieMessage();
+      reloading_ = false;
+      for (String outputStr : deferredOutput_)
+      {
+         socket_.dispatchOutput(outputStr, doLocalEcho());
+      }
+      deferredOutput_.clear();
+   }
+
    private void fetchNextChunk(final int chunkToFetch)
    {
       if (!shellSupportsReload())
@@ -746,15 +838,7 @@ public class TerminalSession extends XTermWidget
                   }
                   else
                   {
-                     writeRestartSequence();
-                     if (procInfo_.getZombie())
-                        showZombieMessage();
-                     reloading_ = false;
-                     for (String outputStr : deferredOutput_)
-                     {
-                        socket_.dispatchOutput(outputStr, doLocalEcho());
-                     }
-                     deferredOutput_.clear();
+                     reloadComplete();
                   }
                }
 
@@ -867,6 +951,10 @@ public class TerminalSession extends XTermWidget
    private boolean terminating_;
    private boolean reloading_;
    private final ArrayList<String> deferredOutput_ = new ArrayList<>();
+   private int reloadGeneration_;
+
+   // most of a reloaded buffer to write to the terminal emulator per frame
+   private static final int RELOAD_FRAME_SIZE = 64 * 1024;
    private boolean restartSequenceWritten_;
    private final StringBuilder inputQueue_ = new StringBuilder();
    private int inputSequence_ = ShellInput.IGNORE_SEQUENCE;
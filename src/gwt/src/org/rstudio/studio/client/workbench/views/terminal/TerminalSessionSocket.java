@@ -17,6 +17,10 @@ package org.rstudio.studio.client.workbench.views.terminal;
 
 import java.util.LinkedList;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationHandle;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.user.client.Timer;
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.HandlerRegistrations;
@@ -65,6 +69,14 @@ public class TerminalSessionSocket
        * Called to disconnect the terminal
        */
       void connectionDisconnected();
+
+      /**
+       * Called when the server sends the saved buffer without it being
+       * requested, because output was dropped while it was paused; the
+       * terminal's contents should be replaced with the buffer.
+       * @param buffer saved buffer
+       */
+      void receivedBuffer(String buffer);
    }
    
    public interface ConnectCallback
@@ -82,7 +94,23 @@ public class TerminalSessionSocket
       void onError(String message);
    }
    
-   // Monitor and report input/display lag to console
+   public interface BufferCallback
+   {
+      /**
+       * Called with the terminal's saved buffer.
+       * @param buffer saved buffer
+       */
+      void onBuffer(String buffer);
+
+      /**
+       * Called if the buffer can't be delivered over the socket (e.g. the
+       * terminal is using RPC), in which case it must be fetched via RPC.
+       */
+      void onUnavailable();
+   }
+
+   // Monitor and report input/display lag, output throughput, and delay
+   // between receiving output and writing it to the terminal emulator
    private class InputEchoTimeMonitor
    {
       class InputDatapoint
@@ -156,10 +184,48 @@ public class TerminalSessionSocket
       {
          return average() + "ms";
       }
+
+      void outputWritten(int chars, double lag)
+      {
+         // only count time spent streaming output, not idle gaps between
+         double now = Duration.currentTimeMillis();
+         if (lastOutputTime_ > 0 && now - lastOutputTime_ < OUTPUT_IDLE_MS)
+            outputTime_ += now - lastOutputTime_;
+         lastOutputTime_ = now;
+         outputChars_ += chars;
+
+         renderPoints_++;
+         renderTime_ += lag;
+         maxRenderTime_ = Math.max(maxRenderTime_, lag);
+      }
+
+      String throughputMsg()
+      {
+         if (outputTime_ <= 0)
+            return outputChars_ + " chars";
+         return Math.round(outputChars_ * 1000 / outputTime_) + " chars/s";
+      }
+
+      String renderLagMsg()
+      {
+         long average = renderPoints_ > 0
+               ? Math.round(renderTime_ / renderPoints_)
+               : 0;
+         return average + "ms (max " + Math.round(maxRenderTime_) + "ms)";
+      }
       
       private final LinkedList<InputDatapoint> pending_;
       private long accumulatedPoints_;
       private long accumulatedTime_;
+
+      private double outputChars_;
+      private double outputTime_;
+      private double lastOutputTime_;
+      private long renderPoints_;
+      private double renderTime_;
+      private double maxRenderTime_;
+
+      private static final int OUTPUT_IDLE_MS = 1000;
    }
    
    /**
@@ -214,6 +280,29 @@ public class TerminalSessionSocket
             switchToRPC();
          }
       };   
+
+      // While output is paused, check whether the terminal emulator has
+      // caught up enough to have the server resume it
+      outputFlowTimer_ = new Timer()
+      {
+         @Override
+         public void run()
+         {
+            if (socket_ == null)
+            {
+               outputPaused_ = false;
+               outputFlowTimer_.cancel();
+            }
+            else if (pendingOutput_.length() < RESUME_PENDING_OUTPUT &&
+                     xterm_.getWriteBacklog() == 0)
+            {
+               diagnostic_.log("Resuming output");
+               outputPaused_ = false;
+               outputFlowTimer_.cancel();
+               socket_.send(TerminalSocketPacket.resumeOutputPacket());
+            }
+         }
+      };
    }
 
    /**
@@ -287,6 +376,8 @@ public class TerminalSessionSocket
             public void onClose(CloseEvent event)
             {
                diagnostic_.log("WebSocket closed");
+               socketOpen_ = false;
+               bufferCallback_ = null;
                if (socket_ != null)
                {
                   // if socket is already null then we're probably in the middle of switching to RPC
@@ -305,6 +396,19 @@ public class TerminalSessionSocket
                {
                   receivedKeepAlive();
                }
+               else if (TerminalSocketPacket.isBuffer(msg))
+               {
+                  BufferCallback callback = bufferCallback_;
+                  bufferCallback_ = null;
+                  if (callback != null)
+                     callback.onBuffer(TerminalSocketPacket.getBuffer(msg));
+                  else
+                  {
+                     // output still waiting to be written is in the buffer
+                     pendingOutput_ = "";
+                     session_.receivedBuffer(TerminalSocketPacket.getBuffer(msg));
+                  }
+               }
                else
                {
                   onConsoleOutput(new ConsoleOutputEvent(TerminalSocketPacket.getMessage(msg)));
@@ -316,6 +420,9 @@ public class TerminalSessionSocket
             {
                connectWebSocketTimer_.cancel();
                diagnostic_.log("WebSocket connected");
+               socketOpen_ = true;
+               if (bufferCallback_ != null)
+                  socket_.send(TerminalSocketPacket.bufferRequestPacket());
                callback.onConnected();
                if (webSocketPingInterval_ > 0)
                {
@@ -349,6 +456,7 @@ public class TerminalSessionSocket
    private void switchToRPC()
    {
       socket_ = null;
+      socketOpen_ = false;
       keepAliveTimer_.cancel();
       connectWebSocketTimer_.cancel();
    
@@ -361,6 +469,12 @@ public class TerminalSessionSocket
          {
             diagnostic_.log("Switched to RPC");
             connectCallback_.onConnected();
+
+            // a buffer requested over the websocket must now come via RPC
+            BufferCallback callback = bufferCallback_;
+            bufferCallback_ = null;
+            if (callback != null)
+               callback.onUnavailable();
          }
       
          @Override
@@ -372,6 +486,27 @@ public class TerminalSessionSocket
       });
    }      
    
+   /**
+    * Request the terminal's saved buffer over the websocket, so that it
+    * arrives in a single message. If the websocket is still connecting, the
+    * request is made once it opens.
+    * @param callback receives the buffer, or is told to fetch it via RPC
+    */
+   public void requestBuffer(BufferCallback callback)
+   {
+      if (consoleProcess_ == null ||
+          consoleProcess_.getChannelMode() != ConsoleProcessInfo.CHANNEL_WEBSOCKET ||
+          socket_ == null)
+      {
+         callback.onUnavailable();
+         return;
+      }
+
+      bufferCallback_ = callback;
+      if (socketOpen_)
+         socket_.send(TerminalSocketPacket.bufferRequestPacket());
+   }
+
    /**
     * Send user input to the server.
     * @param inputSequence used to fix out-of-order RPC calls
@@ -398,9 +533,7 @@ public class TerminalSessionSocket
          break;
       case ConsoleProcessInfo.CHANNEL_WEBSOCKET:
          if (socket_ != null)
-         {
-            socket_.send(TerminalSocketPacket.textPacket(input));
-         }
+            queueInput(input);
          else
             diagnosticError("Tried to send user input over null websocket");
             
@@ -440,6 +573,115 @@ public class TerminalSessionSocket
       localEcho_.write(output);
    }
    
+   /**
+    * Queue user input to be sent over the websocket; input arriving together
+    * (e.g. keystrokes queued up while the browser was busy) is sent as one
+    * packet.
+    */
+   private void queueInput(String input)
+   {
+      pendingInput_ += input;
+      if (inputFlushScheduled_)
+         return;
+
+      inputFlushScheduled_ = true;
+      Scheduler.get().scheduleDeferred(() -> flushInput());
+   }
+
+   private void flushInput()
+   {
+      inputFlushScheduled_ = false;
+      if (pendingInput_.isEmpty())
+         return;
+
+      if (socket_ != null)
+         socket_.send(TerminalSocketPacket.textPacket(pendingInput_));
+      else
+         diagnosticError("Tried to send user input over null websocket");
+      pendingInput_ = "";
+   }
+
+   /**
+    * Queue output from the server to be written to the terminal emulator on
+    * the next animation frame, so that output arriving in many small
+    * messages results in a single write per frame.
+    */
+   private void queueOutput(String output)
+   {
+      if (output == null || output.isEmpty())
+         return;
+
+      if (pendingOutput_.isEmpty())
+         pendingOutputTime_ = Duration.currentTimeMillis();
+      pendingOutput_ += output;
+
+      requestOutputFrame();
+      checkOutputBacklog();
+   }
+
+   private void requestOutputFrame()
+   {
+      if (outputFrame_ != null)
+         return;
+
+      outputFrame_ = AnimationScheduler.get().requestAnimationFrame(timestamp ->
+      {
+         outputFrame_ = null;
+         flushOutput(MAX_FRAME_OUTPUT);
+      });
+   }
+
+   /**
+    * Write pending output to the terminal emulator.
+    * @param maxChars maximum number of characters to write; any remainder
+    *                 is written on the following frame(s)
+    */
+   private void flushOutput(int maxChars)
+   {
+      if (pendingOutput_.isEmpty())
+         return;
+
+      // don't split a surrogate pair across writes
+      int end = pendingOutput_.length();
+      if (end > maxChars)
+      {
+         end = maxChars;
+         char last = pendingOutput_.charAt(end - 1);
+         if (last >= '\uD800' && last <= '\uDBFF')
+            end--;
+      }
+      String output = pendingOutput_.substring(0, end);
+      pendingOutput_ = pendingOutput_.substring(end);
+
+      double lag = Duration.currentTimeMillis() - pendingOutputTime_;
+      inputEchoTiming_.outputReceived(output);
+      inputEchoTiming_.outputWritten(output.length(), lag);
+      session_.receivedOutput(output);
+
+      if (!pendingOutput_.isEmpty())
+         requestOutputFrame();
+      checkOutputBacklog();
+   }
+
+   /**
+    * If the terminal emulator is falling behind the server's output, ask the
+    * server to hold output until it catches up (websocket only).
+    */
+   private void checkOutputBacklog()
+   {
+      if (socket_ == null || outputPaused_)
+         return;
+
+      if (pendingOutput_.length() > MAX_PENDING_OUTPUT ||
+          xterm_.getWriteBacklog() > MAX_WRITE_BACKLOG)
+      {
+         diagnostic_.log("Pausing output");
+         outputPaused_ = true;
+         socket_.send(TerminalSocketPacket.pauseOutputPacket());
+         outputFlowTimer_.scheduleRepeating(OUTPUT_FLOW_POLL_MS);
+      }
+   }
+
    @Override
    public void onTerminalDataInput(TerminalDataInputEvent event)
    {
@@ -450,8 +692,7 @@ public class TerminalSessionSocket
    @Override
    public void onConsoleOutput(ConsoleOutputEvent event)
    {
-      inputEchoTiming_.outputReceived(event.getOutput());
-      session_.receivedOutput(event.getOutput());
+      queueOutput(event.getOutput());
    }
 
    private void addHandlerRegistration(HandlerRegistration reg)
@@ -472,9 +713,23 @@ public class TerminalSessionSocket
    public void disconnect(boolean permanent)
    {
       diagnostic_.log(permanent ? "Permanently Disconnected" : "Disconnected");
+
+      // deliver anything still waiting for the next tick or frame
+      flushInput();
+      if (outputFrame_ != null)
+      {
+         outputFrame_.cancel();
+         outputFrame_ = null;
+      }
+      flushOutput(Integer.MAX_VALUE);
+      outputFlowTimer_.cancel();
+      outputPaused_ = false;
+      bufferCallback_ = null;
+
       if (socket_ != null)
          socket_.close();
       socket_ = null;
+      socketOpen_ = false;
       registrations_.removeHandler();
       if (permanent)
       {
@@ -508,6 +763,16 @@ public class TerminalSessionSocket
    {
       return inputEchoTiming_.averageTimeMsg();
    }
+
+   public String getThroughputMsg()
+   {
+      return inputEchoTiming_.throughputMsg();
+   }
+
+   public String getRenderLagMsg()
+   {
+      return inputEchoTiming_.renderLagMsg();
+   }
    
    private void receivedKeepAlive()
    {
@@ -521,6 +786,8 @@ public class TerminalSessionSocket
    private HandlerRegistration terminalInputHandler_;
    private final InputEchoTimeMonitor inputEchoTiming_;
    private Websocket socket_;
+   private boolean socketOpen_;
+   private BufferCallback bufferCallback_;
    private final TerminalLocalEcho localEcho_;
    private final TerminalDiagnostics diagnostic_ = new TerminalDiagnostics();
    
@@ -535,4 +802,29 @@ public class TerminalSessionSocket
    private final int webSocketPingInterval_;
    private final Timer connectWebSocketTimer_;
    private final int webSocketConnectTimeout_;
+
+   // input waiting to be sent over the websocket
+   private String pendingInput_ = "";
+   private boolean inputFlushScheduled_ = false;
+
+   // output waiting to be written to the terminal emulator, and when the
+   // oldest of it arrived
+   private String pendingOutput_ = "";
+   private double pendingOutputTime_;
+   private AnimationHandle outputFrame_;
+
+   // output flow control (websocket only)
+   private boolean outputPaused_ = false;
+   private final Timer outputFlowTimer_;
+
+   // most output to write to the terminal emulator per animation frame
+   private static final int MAX_FRAME_OUTPUT = 128 * 1024;
+
+   // pause output when this much is waiting to be written, or the terminal
+   // emulator has this many writes still to process; resume once it has
+   // caught up
+   private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+   private static final int RESUME_PENDING_OUTPUT = MAX_PENDING_OUTPUT / 4;
+   private static final int MAX_WRITE_BACKLOG = 4;
+   private static final int OUTPUT_FLOW_POLL_MS = 100;
 }
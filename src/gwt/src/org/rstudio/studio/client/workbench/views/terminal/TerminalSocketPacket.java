@@ -25,8 +25,13 @@ import org.rstudio.core.client.StringUtil;
  * First character is a method indicator, as follows:
  *    "a" = send text, e.g. "aHello"
  *    "b" = ping/pong, e.g. "b"
+ *    "c" = pause output (client to server), e.g. "c"
+ *    "d" = resume output (client to server), e.g. "d"
+ *    "e" = request saved buffer (client to server), e.g. "e"
+ *    "f" = saved buffer (server to client), e.g. "fHello"
  *    
- * Only the "send text" method has a payload (everything after the "a").
+ * Only the "send text" and "saved buffer" methods have a payload (everything
+ * after the first character).
  * 
  * See SessionConsoleProcessSocketPacket in session code for C++ side of this sophisticated
  * wire format.
@@ -42,11 +47,40 @@ public class TerminalSocketPacket
       return keepAlivePrefix;
    }
    
+   public static String pauseOutputPacket()
+   {
+      return pauseOutputPrefix;
+   }
+
+   public static String resumeOutputPacket()
+   {
+      return resumeOutputPrefix;
+   }
+
+   public static String bufferRequestPacket()
+   {
+      return bufferRequestPrefix;
+   }
+
    public static boolean isKeepAlive(String text)
    {
       return StringUtil.equals(text, keepAlivePrefix);
    }
    
+   public static boolean isBuffer(String text)
+   {
+      return text.startsWith(bufferPrefix);
+   }
+
+   public static String getBuffer(String text)
+   {
+      if (text.startsWith(bufferPrefix))
+      {
+         return text.substring(1);
+      }
+      return "";
+   }
+
    public static String getMessage(String text)
    {
       if (text.startsWith(textPrefix))
@@ -58,4 +92,8 @@ public class TerminalSocketPacket
 
    private static final String keepAlivePrefix = "b";
    private static final String textPrefix = "a";
+   private static final String pauseOutputPrefix = "c";
+   private static final String resumeOutputPrefix = "d";
+   private static final String bufferRequestPrefix = "e";
+   private static final String bufferPrefix = "f";
 }
@@ -64,6 +64,13 @@ public class XTermNative extends JavaScriptObject
       this.write(data);
    }-*/;
   
+   /**
+    * @return number of writes the terminal has yet to process
+    */
+   public final native int getWriteBacklog() /*-{
+      return this.writeBuffer ? this.writeBuffer.length : 0;
+   }-*/;
+
    /**
     * Compute and return available dimensions for terminal.
     * @return Visible number of columns and rows
@@ -123,6 +123,14 @@ public class XTermWidget extends Widget
       terminal_.write(str);
    }
 
+   /**
+    * @return number of writes the terminal has yet to process
+    */
+   public int getWriteBacklog()
+   {
+      return terminal_.getWriteBacklog();
+   }
+
    /**
     * Clear terminal buffer.
     */
@@ -131,6 +139,14 @@ public class XTermWidget extends Widget
       terminal_.clear();
    }
 
+   /**
+    * Reset the terminal emulator, discarding its contents and modes.
+    */
+   public void reset()
+   {
+      terminal_.reset();
+   }
+
    /**
     * Inject the xterm.js styles into the page.
     * @param cssResource
@@ -0,0 +1,106 @@
+var EditSession = require("ace/edit_session").EditSession;
+var RMode = require("mode/r").Mode;
+
+// Helpers for checking scope tree rebuilds
+function createRSession(text) {
+   var session = new EditSession(text);
+   session.setMode(new RMode(false, session));
+   return session;
+}
+
+function describeScopes(scopes) {
+   return scopes.map(function(scope) {
+      return {
+         label: scope.label,
+         preamble: scope.preamble,
+         start: scope.start,
+         end: scope.end,
+         children: describeScopes(scope.$children)
+      };
+   });
+}
+
+function assertSameScopes(assert, session) {
+   var codeModel = session.getMode().codeModel;
+   var fresh = createRSession(session.getValue()).getMode().codeModel;
+   assert.deepEqual(describeScopes(codeModel.getScopeTree()),
+                    describeScopes(fresh.getScopeTree()));
+}
+
+function makeFunctions(count) {
+   var lines = [];
+   for (var i = 0; i < count; i++) {
+      lines.push("f" + i + " <- function(x) {");
+      lines.push("   if (x) {");
+      lines.push("      print(x)");
+      lines.push("   }");
+      lines.push("}");
+      lines.push("");
+   }
+   return lines.join("\n");
+}
+
+QUnit.module("R Code Model");
+
+QUnit.test("Scope tree rebuild stops once it converges", function(assert) {
+
+   var session = createRSession(makeFunctions(200));
+   var codeModel = session.getMode().codeModel;
+   codeModel.getScopeTree();
+   codeModel.takeScopeTreeChangedEndRow();
+
+   // editing inside one function only rebuilds the rows around it
+   session.insert({row: 602, column: 12}, "y + ");
+   codeModel.getScopeTree();
+   assert.ok(codeModel.takeScopeTreeChangedEndRow() <= 610);
+   assertSameScopes(assert, session);
+
+   // as does inserting and removing rows
+   session.insert({row: 605, column: 0}, "g <- function() {\n}\n");
+   codeModel.getScopeTree();
+   assert.ok(codeModel.takeScopeTreeChangedEndRow() <= 610);
+   assertSameScopes(assert, session);
+
+   session.remove({start: {row: 605, column: 0}, end: {row: 607, column: 0}});
+   codeModel.getScopeTree();
+   assert.ok(codeModel.takeScopeTreeChangedEndRow() <= 610);
+   assertSameScopes(assert, session);
+});
+
+QUnit.test("Scope tree rebuild continues past unbalanced edits", function(assert) {
+
+   var session = createRSession(makeFunctions(50));
+   var codeModel = session.getMode().codeModel;
+   codeModel.getScopeTree();
+   codeModel.takeScopeTreeChangedEndRow();
+
+   // an unmatched brace changes the scopes of every following row
+   session.insert({row: 150, column: 0}, "{");
+   codeModel.getScopeTree();
+   assert.equal(codeModel.takeScopeTreeChangedEndRow(), session.getLength());
+   assertSameScopes(assert, session);
+
+   // as does an unmatched parenthesis, which the following braces look
+   // back across
+   session.insert({row: 150, column: 1}, "h <- function(a,");
+   codeModel.getScopeTree();
+   assert.equal(codeModel.takeScopeTreeChangedEndRow(), session.getLength());
+   assertSameScopes(assert, session);
+
+   session.remove({start: {row: 150, column: 0}, end: {row: 150, column: 17}});
+   codeModel.getScopeTree();
+   assertSameScopes(assert, session);
+});
+
+QUnit.test("Scope tree rebuild relabels scopes after an edited row", function(assert) {
+
+   var session = createRSession("x <- 1\n{\n   1\n}\n" + makeFunctions(10));
+   var codeModel = session.getMode().codeModel;
+   codeModel.getScopeTree();
+
+   // the brace on the next row now begins a function's body
+   session.remove({start: {row: 0, column: 0}, end: {row: 0, column: 6}});
+   session.insert({row: 0, column: 0}, "g <- function()");
+   assertSameScopes(assert, session);
+   assert.equal(codeModel.getScopeTree()[0].label, "g()");
+});
@@ -14,6 +14,7 @@
  */
 package org.rstudio.core.client;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.rstudio.core.client.ConsoleOutputWriter;
@@ -205,6 +206,53 @@ public class ConsoleOutputWriterTests extends GWTTestCase
       Assert.assertEquals(expected.toString(), getInnerHTML(output));
    }
 
+   public void testTrimReleasesVirtualConsoleBuffer()
+   {
+      // trimming the DOM should also release the trimmed text from the
+      // virtual console, while carriage returns continue to overwrite
+      // the current line
+      final List<VirtualConsole> consoles = new ArrayList<VirtualConsole>();
+      ConsoleOutputWriter output = new ConsoleOutputWriter(new VCFactory()
+      {
+         @Override
+         public VirtualConsole create(Element elem)
+         {
+            VirtualConsole vc = super.create(elem);
+            consoles.add(vc);
+            return vc;
+         }
+      });
+      final int maxLines = 10;
+      output.setMaxOutputLines(maxLines);
+      
+      for (int i = 0; i < 100; i++)
+      {
+         output.outputToConsole(numberedLine(i), 
+               nullClazz, notError, checkLineCount);
+      }
+      Assert.assertEquals(1, consoles.size());
+      VirtualConsole vc = consoles.get(0);
+      
+      StringBuilder expected = new StringBuilder();
+      for (int i = 90; i < 100; i++)
+         expected.append(numberedLine(i));
+      Assert.assertEquals(expected.toString(), vc.toString());
+      Assert.assertEquals(expected.length(), vc.getLength());
+      Assert.assertEquals(maxLines, vc.getLineCount());
+      
+      output.outputToConsole("abc", nullClazz, notError, checkLineCount);
+      output.outputToConsole("\rxyz\n", nullClazz, notError, checkLineCount);
+      
+      expected = new StringBuilder();
+      for (int i = 91; i < 100; i++)
+         expected.append(numberedLine(i));
+      expected.append("xyz\n");
+      Assert.assertEquals(expected.toString(), vc.toString());
+      Assert.assertEquals("<span>" + expected.toString() + "</span>", 
+            getInnerHTML(output));
+      Assert.assertEquals(maxLines, output.getCurrentLines());
+   }
+
    public void testWriteSimpleError()
    {
       ConsoleOutputWriter output = getCOW();
@@ -633,5 +681,50 @@ public class ConsoleOutputWriterTests extends GWTTestCase
       Assert.assertEquals(
             "<span class=\"myClass\">one\ntwo\nthree</span>",
             getInnerHTML(output));
-   } 
+   }
+
+   public void testLineCountWithOverwrites()
+   {
+      // carriage returns and backspaces rewrite existing ranges; the line
+      // count maintained by the virtual console must match the DOM
+      ConsoleOutputWriter output = getCOW();
+      
+      output.outputToConsole("one\ntwo", myClass, notError, ignoreLineCount);
+      output.outputToConsole("\rthree\n", myClass, notError, ignoreLineCount);
+      output.outputToConsole("four\b\b\n", myErrorClass, isError, ignoreLineCount);
+      output.outputToConsole("\033[31mfive\033[39m\n\rsix", myClass, 
+            notError, ignoreLineCount);
+      
+      Assert.assertEquals(4, output.getCurrentLines());
+      Assert.assertEquals(DomUtils.countLines(output.getElement(), true),
+            output.getCurrentLines());
+   }
+
+   public void testLineCountTracksDomAcrossManyWrites()
+   {
+      // the running line count must agree with a walk of the output (as
+      // it was previously computed) after every kind of write, including
+      // ones that rewrite ranges deep into the scrollback
+      ConsoleOutputWriter output = getCOW();
+      for (int i = 0; i < 2000; i++)
+      {
+         String text = numberedLine(i);
+         if (i % 7 == 0)
+            text = "partial " + i + "\roverwritten " + i + "\n";
+         else if (i % 11 == 0)
+            text = "back" + "\b\b\b" + i + "\n";
+         
+         output.outputToConsole(text, 
+               (i % 2 == 0) ? myClass : myErrorClass, notError, ignoreLineCount);
+         
+         if (i % 100 == 99)
+         {
+            Assert.assertEquals(
+                  DomUtils.countLines(output.getElement(), true),
+                  output.getCurrentLines());
+         }
+      }
+      
+      Assert.assertEquals(2000, output.getCurrentLines());
+   }
  }
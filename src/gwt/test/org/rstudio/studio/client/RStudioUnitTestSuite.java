@@ -22,9 +22,18 @@ import org.rstudio.core.client.VirtualConsoleTests;
 import org.rstudio.core.client.dom.DomUtilsTests;
 import org.rstudio.studio.client.application.model.SessionScopeTests;
 import org.rstudio.studio.client.common.r.RTokenizerTests;
+import org.rstudio.studio.client.server.remote.ClientEventDispatcherTests;
+import org.rstudio.studio.client.server.remote.RpcRequestBatcherTests;
+import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionRequesterTests;
+import org.rstudio.studio.client.workbench.views.history.HistoryIndexTests;
 import org.rstudio.studio.client.workbench.views.jobs.model.JobManagerTests;
 import org.rstudio.studio.client.workbench.views.jobs.view.JobsListTests;
+import org.rstudio.studio.client.workbench.views.output.find.FindResultStoreTests;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ChunkOutputHeightQueueTests;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ScopeManagerTests;
 import org.rstudio.studio.client.workbench.views.source.editors.text.assist.RChunkHeaderParserTests;
+import org.rstudio.studio.client.workbench.views.source.editors.text.r.SignatureCacheTests;
+import org.rstudio.studio.client.workbench.views.source.model.DocumentEditLogTests;
 import org.rstudio.studio.client.workbench.views.terminal.TerminalLocalEchoTests;
 import org.rstudio.studio.client.workbench.views.terminal.TerminalSessionSocketTests;
 
@@ -51,6 +60,15 @@ public class RStudioUnitTestSuite extends GWTTestSuite
       // suite.addTestSuite(RChunkHeaderParserTests.class);
       suite.addTestSuite(SessionScopeTests.class);
       suite.addTestSuite(JobsListTests.class);
+      suite.addTestSuite(ClientEventDispatcherTests.class);
+      suite.addTestSuite(RpcRequestBatcherTests.class);
+      suite.addTestSuite(CompletionRequesterTests.class);
+      suite.addTestSuite(ScopeManagerTests.class);
+      suite.addTestSuite(DocumentEditLogTests.class);
+      suite.addTestSuite(FindResultStoreTests.class);
+      suite.addTestSuite(SignatureCacheTests.class);
+      suite.addTestSuite(HistoryIndexTests.class);
+      suite.addTestSuite(ChunkOutputHeightQueueTests.class);
       
       // Pro-only tests
       
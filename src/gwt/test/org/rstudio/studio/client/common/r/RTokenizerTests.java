@@ -14,6 +14,8 @@
  */
 package org.rstudio.studio.client.common.r;
 
+import java.util.ArrayList;
+
 import junit.framework.Assert;
 
 import com.google.gwt.junit.client.GWTTestCase;
@@ -119,6 +121,64 @@ public class RTokenizerTests extends GWTTestCase
       }) ;
    }
    
+   public void testSameTokensAsRegexTokenizer()
+   {
+      String[] samples = new String[] {
+         "# compute summary statistics for each group\r\n",
+         "result <- data %>% group_by(`group name`) %>% summarise(n = n())\n",
+         "x <- c(1, 2.5, 1e-7, 0xFF, 0x, 10L, 3i, 1e+, .5e2L) * .5\n",
+         "if (!is.null(y) && y$value >= 10) { print('done\\n') }\n",
+         "f <- function(a, b = list(), ...) a[[1]] + b[2] - ..1\n",
+         "s <- \"a \\\" b\" ; t <- 'c \\' d' ; u <- \"\n\"\n",
+         "\u00C1b.c_1 <- `a`b\u00A0\u3000\u2003\u000B\f\uFEFFz\n",
+         "# comment\u2028x # another\u2029y\n",
+         "a %in% b %% c -> d ->> e <<- f == g != h <= i\n",
+         "@ ? \\ \u00E9\u00E8 5 %unterminated\n",
+         "`unterminated name\n",
+         "'unterminated string\n",
+         "\"ends in escape \\"
+      };
+
+      for (String sample : samples)
+         assertSameTokens(sample);
+
+      // and all of them together
+      StringBuilder all = new StringBuilder();
+      for (String sample : samples)
+         all.append(sample);
+      assertSameTokens(all.toString());
+   }
+
+   public void testTokensCoverInput()
+   {
+      String code = "x <- list(a = 1, `b c` = 'd')\n# done\u00A0\n%o";
+      int offset = 0;
+      for (RToken token : RTokenizer.asTokens(code))
+      {
+         Assert.assertEquals(offset, token.getOffset());
+         offset += token.getLength();
+      }
+      Assert.assertEquals(code.length(), offset);
+   }
+
+   private void assertSameTokens(String code)
+   {
+      ArrayList<RToken> expected = RegexRTokenizer.asTokens(code);
+      ArrayList<RToken> actual = RTokenizer.asTokens(code);
+      Assert.assertEquals(expected, actual);
+
+      // strings also record whether they were terminated
+      for (int i = 0; i < expected.size(); i++)
+      {
+         if (expected.get(i) instanceof RStringToken)
+         {
+            Assert.assertEquals(
+                  ((RStringToken) expected.get(i)).isWellFormed(),
+                  ((RStringToken) actual.get(i)).isWellFormed());
+         }
+      }
+   }
+
    protected void verify(String data,
                          int tokenType,
                          String content)
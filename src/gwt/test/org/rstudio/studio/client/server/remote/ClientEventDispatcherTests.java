@@ -0,0 +1,154 @@
+/*
+ * ClientEventDispatcherTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.workbench.events.BusyEvent;
+import org.rstudio.studio.client.workbench.views.console.events.ConsoleWriteOutputEvent;
+import org.rstudio.studio.client.workbench.views.console.model.ConsoleText;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class ClientEventDispatcherTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   private static native ClientEvent busyEvent(int id, boolean busy) /*-{
+      return { id: id, type: "busy", data: { value: busy } };
+   }-*/;
+
+   private static native ClientEvent unknownEvent(int id) /*-{
+      return { id: id, type: "no_such_event", data: null };
+   }-*/;
+
+   private static native ConsoleText consoleText(String text, String console) /*-{
+      return { text: text, console: console };
+   }-*/;
+
+   private interface DrainedCallback
+   {
+      void onDrained(List<Boolean> received);
+   }
+
+   /**
+    * Enqueues a backlog of busy events and invokes the callback once the
+    * dispatcher has delivered all of them to the event bus.
+    */
+   private void dispatchBacklog(final int count, final DrainedCallback callback)
+   {
+      EventBus eventBus = new EventBus(null, null);
+      ClientEventDispatcher dispatcher = new ClientEventDispatcher(eventBus);
+
+      final List<Boolean> received = new ArrayList<Boolean>();
+      eventBus.addHandler(BusyEvent.TYPE, event ->
+      {
+         received.add(event.isBusy());
+         if (received.size() == count)
+            callback.onDrained(received);
+      });
+
+      for (int i = 0; i < count; i++)
+         dispatcher.enqueEvent(busyEvent(i, i % 3 == 0));
+   }
+
+   public void testEventsDispatchedInOrder()
+   {
+      delayTestFinish(10000);
+      dispatchBacklog(1000, received ->
+      {
+         for (int i = 0; i < received.size(); i++)
+            assertEquals(i % 3 == 0, received.get(i).booleanValue());
+         finishTest();
+      });
+   }
+
+   public void testConsoleOutputCoalesced()
+   {
+      // a burst of output events is written to the console once
+      EventBus eventBus = new EventBus(null, null);
+      ConsoleOutputCoalescer coalescer = new ConsoleOutputCoalescer(eventBus);
+
+      final List<String> writes = new ArrayList<String>();
+      eventBus.addHandler(ConsoleWriteOutputEvent.TYPE,
+            event -> writes.add(event.getOutput()));
+
+      StringBuilder expected = new StringBuilder();
+      for (int i = 0; i < 1000; i++)
+      {
+         String text = "line " + i + "\n";
+         expected.append(text);
+         coalescer.add(ClientEvent.ConsoleOutput, consoleText(text, ""));
+      }
+      coalescer.flush();
+
+      assertEquals(1, writes.size());
+      assertEquals(expected.toString(), writes.get(0));
+      assertEquals(1000, coalescer.getEventsReceived());
+      assertEquals(999, coalescer.getWritesSaved());
+   }
+
+   public void testConsoleOutputRunsSplitByConsole()
+   {
+      // output bound for another console ends the current run
+      EventBus eventBus = new EventBus(null, null);
+      ConsoleOutputCoalescer coalescer = new ConsoleOutputCoalescer(eventBus);
+
+      final List<String> writes = new ArrayList<String>();
+      eventBus.addHandler(ConsoleWriteOutputEvent.TYPE,
+            event -> writes.add(event.getConsole() + ":" + event.getOutput()));
+
+      coalescer.add(ClientEvent.ConsoleOutput, consoleText("a", "1"));
+      coalescer.add(ClientEvent.ConsoleOutput, consoleText("b", "1"));
+      coalescer.add(ClientEvent.ConsoleOutput, consoleText("c", "2"));
+      coalescer.flush();
+
+      assertEquals(2, writes.size());
+      assertEquals("1:ab", writes.get(0));
+      assertEquals("2:c", writes.get(1));
+      assertEquals(1, coalescer.getWritesSaved());
+   }
+
+   public void testUnknownEventsSkipped()
+   {
+      // events without a dispatcher are dropped without disturbing the
+      // events around them
+      EventBus eventBus = new EventBus(null, null);
+      ClientEventDispatcher dispatcher = new ClientEventDispatcher(eventBus);
+
+      final List<Boolean> received = new ArrayList<Boolean>();
+      delayTestFinish(10000);
+      eventBus.addHandler(BusyEvent.TYPE, event ->
+      {
+         received.add(event.isBusy());
+         if (received.size() == 2)
+         {
+            assertTrue(received.get(0));
+            assertFalse(received.get(1));
+            finishTest();
+         }
+      });
+
+      dispatcher.enqueEvent(busyEvent(0, true));
+      dispatcher.enqueEvent(unknownEvent(1));
+      dispatcher.enqueEvent(busyEvent(2, false));
+   }
+}
@@ -0,0 +1,275 @@
+/*
+ * RpcRequestBatcherTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rstudio.core.client.jsonrpc.RpcError;
+import org.rstudio.core.client.jsonrpc.RpcRequest;
+import org.rstudio.core.client.jsonrpc.RpcRequestCallback;
+import org.rstudio.core.client.jsonrpc.RpcResponse;
+
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class RpcRequestBatcherTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   /**
+    * Stands in for the session's rpc handler: answers individual calls and
+    * multi_call batches (synchronously) from the same set of methods.
+    */
+   private static class StandInServer implements RpcRequestBatcher.Transport
+   {
+      @Override
+      public void send(RpcRequest request, RpcRequestCallback callback)
+      {
+         requestsReceived++;
+         methodsReceived.add(request.getMethod());
+         if (failTransport)
+         {
+            callback.onError(request, RpcError.create(
+                  RpcError.TRANSMISSION_ERROR, "Connection refused"));
+            return;
+         }
+
+         String response;
+         if (request.getMethod().equals(RpcRequestBatcher.MULTI_CALL))
+         {
+            JSONArray calls = request.getParams().get(0).isArray();
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < calls.size(); i++)
+            {
+               JSONObject call = calls.get(i).isObject();
+               JSONObject result = execute(
+                     call.get("method").isString().stringValue(),
+                     call.get("params").isArray());
+               results.set(i, result);
+            }
+            JSONObject envelope = new JSONObject();
+            envelope.put("result", results);
+            envelope.put("ep", new JSONString("false"));
+            response = envelope.toString();
+         }
+         else
+         {
+            JSONObject result = execute(request.getMethod(),
+                                        request.getParams());
+            result.put("ep", new JSONString("false"));
+            response = result.toString();
+         }
+
+         callback.onResponseReceived(request, RpcResponse.parse(response));
+      }
+
+      private JSONObject execute(String method, JSONArray params)
+      {
+         JSONObject response = new JSONObject();
+         if (method.equals("add"))
+         {
+            double sum = 0;
+            for (int i = 0; i < params.size(); i++)
+               sum += params.get(i).isNumber().doubleValue();
+            response.put("result", new JSONNumber(sum));
+         }
+         else if (method.equals("echo"))
+         {
+            response.put("result", params);
+         }
+         else if (method.equals("async"))
+         {
+            response.put("asyncHandle", new JSONString("handle" + params.toString()));
+         }
+         else
+         {
+            JSONObject error = new JSONObject();
+            error.put("code", new JSONNumber(RpcError.METHOD_NOT_FOUND));
+            error.put("message", new JSONString("Method not found"));
+            response.put("error", error);
+         }
+         return response;
+      }
+
+      public int requestsReceived = 0;
+      public List<String> methodsReceived = new ArrayList<String>();
+      public boolean failTransport = false;
+   }
+
+   private static class RecordingCallback implements RpcRequestCallback
+   {
+      public RecordingCallback(List<String> outcomes)
+      {
+         outcomes_ = outcomes;
+      }
+
+      @Override
+      public void onError(RpcRequest request, RpcError error)
+      {
+         outcomes_.add(request.getMethod() + " failed: " + error.getMessage());
+      }
+
+      @Override
+      public void onResponseReceived(RpcRequest request, RpcResponse response)
+      {
+         outcomes_.add(request.getMethod() + " -> " +
+                       new JSONObject(response).toString());
+      }
+
+      private final List<String> outcomes_;
+   }
+
+   private static RpcRequest request(String method, JSONArray params)
+   {
+      return new RpcRequest("/rpc/" + method, method, params, null, false,
+                            null, null, "client", "1.0");
+   }
+
+   private static JSONArray numbers(double... values)
+   {
+      JSONArray array = new JSONArray();
+      for (int i = 0; i < values.length; i++)
+         array.set(i, new JSONNumber(values[i]));
+      return array;
+   }
+
+   private static List<RpcRequest> workload()
+   {
+      JSONArray strings = new JSONArray();
+      strings.set(0, new JSONString("a"));
+      strings.set(1, new JSONString("b"));
+
+      List<RpcRequest> requests = new ArrayList<RpcRequest>();
+      requests.add(request("add", numbers(1, 2, 3)));
+      requests.add(request("echo", strings));
+      requests.add(request("missing", new JSONArray()));
+      requests.add(request("async", numbers(7)));
+      requests.add(request("add", numbers(-4.5, 0.5)));
+      return requests;
+   }
+
+   private List<String> run(StandInServer server, boolean batched)
+   {
+      RpcRequestBatcher batcher = new RpcRequestBatcher(server);
+      batcher.setEnabled(batched);
+
+      List<String> outcomes = new ArrayList<String>();
+      for (RpcRequest request : workload())
+         batcher.send(request, new RecordingCallback(outcomes));
+      batcher.flush();
+      return outcomes;
+   }
+
+   public void testBatchedMatchesUnbatched()
+   {
+      StandInServer unbatchedServer = new StandInServer();
+      List<String> unbatched = run(unbatchedServer, false);
+
+      StandInServer batchedServer = new StandInServer();
+      List<String> batched = run(batchedServer, true);
+
+      assertEquals(workload().size(), unbatchedServer.requestsReceived);
+      assertEquals(1, batchedServer.requestsReceived);
+      assertEquals(unbatched, batched);
+   }
+
+   public void testSingleRequestIsNotWrapped()
+   {
+      StandInServer server = new StandInServer();
+      RpcRequestBatcher batcher = new RpcRequestBatcher(server);
+      batcher.setEnabled(true);
+
+      List<String> outcomes = new ArrayList<String>();
+      batcher.send(request("add", numbers(2, 2)), new RecordingCallback(outcomes));
+      batcher.flush();
+
+      assertEquals(1, server.requestsReceived);
+      assertEquals(0, batcher.getBatchesSent());
+      assertEquals(1, outcomes.size());
+   }
+
+   public void testTransportErrorReachesEveryCall()
+   {
+      StandInServer unbatchedServer = new StandInServer();
+      unbatchedServer.failTransport = true;
+      List<String> unbatched = run(unbatchedServer, false);
+
+      StandInServer batchedServer = new StandInServer();
+      batchedServer.failTransport = true;
+      List<String> batched = run(batchedServer, true);
+
+      assertEquals(workload().size(), batched.size());
+      assertEquals(unbatched, batched);
+   }
+
+   public void testInputRepliesAreNotBatched()
+   {
+      assertFalse(RpcRequestBatcher.isBatchable("console_input"));
+      assertFalse(RpcRequestBatcher.isBatchable("edit_completed"));
+      assertFalse(RpcRequestBatcher.isBatchable("client_init"));
+      assertTrue(RpcRequestBatcher.isBatchable("add"));
+
+      // console input is sent on its own, after anything already queued,
+      // since the session only accepts it as a request of its own while R
+      // is waiting for it
+      StandInServer server = new StandInServer();
+      RpcRequestBatcher batcher = new RpcRequestBatcher(server);
+      batcher.setEnabled(true);
+
+      List<String> outcomes = new ArrayList<String>();
+      batcher.send(request("add", numbers(1)), new RecordingCallback(outcomes));
+      batcher.send(request("echo", numbers(2)), new RecordingCallback(outcomes));
+      batcher.send(request("console_input", numbers(3)),
+                   new RecordingCallback(outcomes));
+      batcher.send(request("add", numbers(4)), new RecordingCallback(outcomes));
+      batcher.flush();
+
+      List<String> expected = new ArrayList<String>();
+      expected.add(RpcRequestBatcher.MULTI_CALL);
+      expected.add("console_input");
+      expected.add("add");
+      assertEquals(expected, server.methodsReceived);
+      assertEquals(4, outcomes.size());
+      assertTrue(outcomes.get(2).startsWith("console_input"));
+   }
+
+   public void testCancelledRequestIsDropped()
+   {
+      StandInServer server = new StandInServer();
+      RpcRequestBatcher batcher = new RpcRequestBatcher(server);
+      batcher.setEnabled(true);
+
+      List<String> outcomes = new ArrayList<String>();
+      RpcRequest cancelled = request("echo", numbers(2));
+      batcher.send(request("add", numbers(1)), new RecordingCallback(outcomes));
+      batcher.send(cancelled, new RecordingCallback(outcomes));
+      batcher.send(request("add", numbers(3)), new RecordingCallback(outcomes));
+      cancelled.cancel();
+      batcher.flush();
+
+      assertEquals(2, batcher.getRequestsBatched());
+      assertEquals(2, outcomes.size());
+      assertTrue(outcomes.get(0).startsWith("add"));
+      assertTrue(outcomes.get(1).startsWith("add"));
+   }
+}
@@ -0,0 +1,161 @@
+/*
+ * CompletionRequesterTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell.assist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.studio.client.common.codetools.RCompletionType;
+import org.rstudio.studio.client.workbench.codesearch.CodeSearchOracle;
+import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionRequester.QualifiedName;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class CompletionRequesterTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   private static final String[] SYLLABLES = {
+         "fil", "ter", "mut", "ate", "sel", "ect", "sum", "mar", "ise",
+         "gro", "up", "by", "arr", "ange", "join", "left", "read", "csv",
+         "map", "df", "str", "det", "col", "row", "pivot", "long", "wide"
+   };
+
+   private static final String[] SEPARATORS = { "", "_", ".", "" };
+
+   /**
+    * Produces a deterministic set of R-like names (e.g. "filter_at",
+    * "read.csv", "group_by_at") to complete against.
+    */
+   private static List<QualifiedName> candidates(int count)
+   {
+      List<QualifiedName> candidates = new ArrayList<QualifiedName>(count);
+      int seed = 17;
+      for (int i = 0; i < count; i++)
+      {
+         StringBuilder name = new StringBuilder();
+         int parts = 2 + (i % 3);
+         for (int j = 0; j < parts; j++)
+         {
+            seed = (seed * 1103515245 + 12345) & 0x7fffffff;
+            if (j > 0)
+               name.append(SEPARATORS[seed % SEPARATORS.length]);
+            name.append(SYLLABLES[(seed >> 8) % SYLLABLES.length]);
+         }
+         name.append(i);
+
+         int type = i % 10 == 0 ? RCompletionType.ARGUMENT
+                                : RCompletionType.FUNCTION;
+         candidates.add(new QualifiedName(name.toString(), "pkg" + (i % 7),
+                                          false, type));
+      }
+      return candidates;
+   }
+
+   /**
+    * Narrows the way the requester did before scores were precomputed:
+    * every comparison made by the sort re-scores both candidates.
+    */
+   private static ArrayList<QualifiedName> referenceNarrow(
+         final String token,
+         List<QualifiedName> candidates)
+   {
+      String tokenFuzzy = token.replaceAll("(?!^)[._]", "");
+      ArrayList<QualifiedName> result = new ArrayList<QualifiedName>();
+      for (QualifiedName qname : candidates)
+      {
+         if (StringUtil.isSubsequence(qname.name, tokenFuzzy, true) &&
+             (token.startsWith(".") || !qname.name.startsWith(".")))
+            result.add(qname);
+      }
+
+      Collections.sort(result, (lhs, rhs) ->
+      {
+         int lhsScore = CodeSearchOracle.scoreMatch(lhs.name, token, false);
+         int rhsScore = CodeSearchOracle.scoreMatch(rhs.name, token, false);
+         if (lhs.type == RCompletionType.ARGUMENT) lhsScore -= 3;
+         if (rhs.type == RCompletionType.ARGUMENT) rhsScore -= 3;
+         if (lhsScore == rhsScore)
+            return lhs.compareTo(rhs);
+         return lhsScore < rhsScore ? -1 : 1;
+      });
+      return result;
+   }
+
+   /**
+    * Simulates typing the token one character at a time, narrowing the
+    * previous keystroke's list as the requester does.
+    */
+   private static List<QualifiedName> type(String token,
+                                           List<QualifiedName> candidates)
+   {
+      List<QualifiedName> narrowed = candidates;
+      for (int i = 1; i <= token.length(); i++)
+         narrowed = CompletionRequester.narrowCompletions(
+               token.substring(0, i), narrowed);
+      return narrowed;
+   }
+
+   public void testNarrowingMatchesReference()
+   {
+      List<QualifiedName> candidates = candidates(5000);
+      for (String token : new String[] { "f", "fil", "grby", "read.c", "Sum" })
+      {
+         assertEquals(token,
+                      referenceNarrow(token, candidates),
+                      CompletionRequester.narrowCompletions(token, candidates));
+      }
+   }
+
+   public void testIncrementalNarrowingMatchesFullNarrowing()
+   {
+      List<QualifiedName> candidates = candidates(5000);
+      String token = "mutsel";
+      assertEquals(CompletionRequester.narrowCompletions(token, candidates),
+                   type(token, candidates));
+   }
+
+   public void testEachMatchScoredOnce()
+   {
+      final int[] calls = new int[1];
+      CompletionRequester.MatchScorer counting = (name, token, isFile) ->
+      {
+         calls[0]++;
+         return CodeSearchOracle.scoreMatch(name, token, isFile);
+      };
+
+      // the reference re-scores both candidates on every comparison the
+      // sort makes; each match should now be scored exactly once, and
+      // candidates that don't match not at all
+      List<QualifiedName> narrowed = candidates(50000);
+      String token = "grpbyx";
+      for (int i = 1; i <= token.length(); i++)
+      {
+         String prefix = token.substring(0, i);
+         calls[0] = 0;
+         narrowed = CompletionRequester.narrowCompletions(
+               prefix, narrowed, counting);
+         assertEquals(prefix, narrowed.size(), calls[0]);
+         if (i == 1)
+            assertFalse(narrowed.isEmpty());
+      }
+   }
+}
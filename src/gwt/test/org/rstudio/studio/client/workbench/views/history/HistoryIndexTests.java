@@ -0,0 +1,126 @@
+/*
+ * HistoryIndexTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.rstudio.studio.client.workbench.views.history.model.HistoryEntry;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+import junit.framework.Assert;
+
+public class HistoryIndexTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   public void testTokenizeSplitsOnWhitespace()
+   {
+      Assert.assertEquals(Arrays.asList("install", "packages"),
+                          HistoryIndex.tokenize("  install \t packages\n"));
+   }
+
+   public void testTokenizeSplitsOutPunctuation()
+   {
+      Assert.assertEquals(Arrays.asList("x", "<", "-", "c", "(", "1", ")"),
+                          HistoryIndex.tokenize("x <- c(1)"));
+      Assert.assertEquals(Arrays.asList("dplyr", ":", ":", "filter"),
+                          HistoryIndex.tokenize("dplyr::filter"));
+   }
+
+   public void testTokenizeEmpty()
+   {
+      Assert.assertTrue(HistoryIndex.tokenize("").isEmpty());
+      Assert.assertTrue(HistoryIndex.tokenize("   ").isEmpty());
+   }
+
+   public void testSearchMatchesAllTerms()
+   {
+      HistoryIndex index = createIndex(
+            "library(dplyr)",
+            "x <- filter(df, y > 1)",
+            "dplyr::filter(df, y > 2)",
+            "plot(x)");
+
+      assertCommands(index.search("filter df", 10),
+                     "dplyr::filter(df, y > 2)",
+                     "x <- filter(df, y > 1)");
+      assertCommands(index.search("dplyr filter", 10),
+                     "dplyr::filter(df, y > 2)");
+      assertCommands(index.search("mutate", 10));
+   }
+
+   public void testSearchShortTermsScanEverything()
+   {
+      // terms shorter than a trigram can't use the postings
+      HistoryIndex index = createIndex("a <- 1", "b <- 2", "ab");
+      assertCommands(index.search("a", 10), "ab", "a <- 1");
+      assertCommands(index.search("<", 10), "b <- 2", "a <- 1");
+   }
+
+   public void testSearchNewestFirstAndLimited()
+   {
+      HistoryIndex index = createIndex("print(1)", "print(2)", "print(3)");
+      assertCommands(index.search("print", 2), "print(3)", "print(2)");
+   }
+
+   public void testSearchRefinesAndBroadens()
+   {
+      HistoryIndex index = createIndex("summary(fit)", "summary(model)");
+
+      // extending the query filters the previous matches
+      assertCommands(index.search("summ", 10), "summary(model)", "summary(fit)");
+      assertCommands(index.search("summary(m", 10), "summary(model)");
+
+      // a query that doesn't extend the last one starts over
+      assertCommands(index.search("summary(f", 10), "summary(fit)");
+   }
+
+   public void testAddedCommandsSearchable()
+   {
+      HistoryIndex index = createIndex("mean(x)");
+      Assert.assertTrue(index.search("median", 10).isEmpty());
+
+      ArrayList<String> commands = new ArrayList<String>();
+      commands.add("median(x)");
+      index.addCommands(commands);
+
+      ArrayList<HistoryEntry> results = index.search("median", 10);
+      assertCommands(results, "median(x)");
+      Assert.assertEquals(1, (int) results.get(0).getIndex());
+   }
+
+   private HistoryIndex createIndex(String... commands)
+   {
+      ArrayList<HistoryEntry> entries = new ArrayList<HistoryEntry>();
+      for (int i = 0; i < commands.length; i++)
+         entries.add(HistoryEntry.create(i, commands[i]));
+      return new HistoryIndex(entries);
+   }
+
+   private void assertCommands(ArrayList<HistoryEntry> results,
+                               String... expected)
+   {
+      ArrayList<String> actual = new ArrayList<String>();
+      for (HistoryEntry entry : results)
+         actual.add(entry.getCommand());
+      Assert.assertEquals(Arrays.asList(expected), actual);
+   }
+}
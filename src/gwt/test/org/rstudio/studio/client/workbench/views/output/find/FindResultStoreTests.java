@@ -0,0 +1,155 @@
+/*
+ * FindResultStoreTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.output.find;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.rstudio.studio.client.workbench.views.output.find.FindResultStore.Group;
+import org.rstudio.studio.client.workbench.views.output.find.FindResultStore.Item;
+import org.rstudio.studio.client.workbench.views.output.find.model.FindResult;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+import junit.framework.Assert;
+
+public class FindResultStoreTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   public void testGroupedByFile()
+   {
+      FindResultStore store = new FindResultStore();
+      ArrayList<Item> items = store.addMatches(results("a.R", "a.R", "b.R"));
+
+      Assert.assertEquals(2, store.getGroupCount());
+      Assert.assertEquals(3, store.getMatchCount());
+      Assert.assertEquals("a.R", store.getGroup(0).getFile());
+      Assert.assertEquals(2, store.getGroup(0).getCount());
+      Assert.assertEquals("b.R", store.getGroup(1).getFile());
+      Assert.assertEquals(1, store.getGroup(1).getCount());
+
+      // a header before each file's matches
+      assertItems(items, "a.R:", "a.R", "a.R", "b.R:", "b.R");
+   }
+
+   public void testGroupsContinueAcrossBatches()
+   {
+      FindResultStore store = new FindResultStore();
+      store.addMatches(results("a.R"));
+      ArrayList<Item> items = store.addMatches(results("a.R", "b.R"));
+
+      Assert.assertEquals(2, store.getGroupCount());
+      Assert.assertEquals(2, store.getGroup(0).getCount());
+      assertItems(items, "a.R", "b.R:", "b.R");
+   }
+
+   public void testReappearingFileStartsNewGroup()
+   {
+      FindResultStore store = new FindResultStore();
+      store.addMatches(results("a.R", "b.R", "a.R"));
+
+      Assert.assertEquals(3, store.getGroupCount());
+      Assert.assertEquals("a.R", store.getGroup(2).getFile());
+      Assert.assertEquals(2, store.getGroup(2).getIndex());
+      Assert.assertNull(store.getGroup(3));
+      Assert.assertNull(store.getGroup(-1));
+   }
+
+   public void testFolding()
+   {
+      FindResultStore store = new FindResultStore();
+      store.addMatches(results("a.R", "a.R", "b.R"));
+      Group group = store.getGroup(0);
+
+      store.setFolded(group, true);
+      Assert.assertTrue(group.isFolded());
+      assertItems(store.getItems(), "a.R:", "b.R:", "b.R");
+
+      // matches added to a folded file aren't displayed
+      Assert.assertEquals(1, store.addMatches(results("b.R")).size());
+      store.setFolded(store.getGroup(1), true);
+      Assert.assertTrue(store.addMatches(results("b.R")).isEmpty());
+      Assert.assertEquals(5, store.getMatchCount());
+
+      store.setFolded(group, false);
+      assertItems(store.getItems(), "a.R:", "a.R", "a.R", "b.R:");
+   }
+
+   public void testFirstItem()
+   {
+      FindResultStore store = new FindResultStore();
+      store.addMatches(results("a.R", "b.R", "b.R"));
+
+      Item first = store.getFirstItem(store.getGroup(1));
+      Assert.assertFalse(first.isHeader());
+      Assert.assertEquals(1, first.getResult().getLine());
+      Assert.assertSame(store.getGroup(1), first.getGroup());
+   }
+
+   public void testFull()
+   {
+      FindResultStore store = new FindResultStore(3);
+      store.addMatches(results("a.R", "a.R"));
+      Assert.assertFalse(store.isFull());
+
+      ArrayList<Item> items = store.addMatches(results("a.R", "b.R", "c.R"));
+      Assert.assertTrue(store.isFull());
+      Assert.assertEquals(3, store.getMatchCount());
+      Assert.assertEquals(1, store.getGroupCount());
+      assertItems(items, "a.R");
+
+      Assert.assertTrue(store.addMatches(results("d.R")).isEmpty());
+   }
+
+   public void testClear()
+   {
+      FindResultStore store = new FindResultStore(2);
+      store.addMatches(results("a.R", "b.R"));
+      Assert.assertTrue(store.isFull());
+
+      store.clear();
+      Assert.assertFalse(store.isFull());
+      Assert.assertEquals(0, store.getMatchCount());
+      Assert.assertEquals(0, store.getGroupCount());
+      Assert.assertTrue(store.getItems().isEmpty());
+
+      ArrayList<Item> items = store.addMatches(results("c.R"));
+      Assert.assertEquals(0, items.get(0).getGroup().getIndex());
+   }
+
+   // one result per file given, numbered by line in the order given
+   private static List<FindResult> results(String... files)
+   {
+      ArrayList<FindResult> results = new ArrayList<FindResult>();
+      for (String file : files)
+         results.add(FindResult.create(file, results.size(), ""));
+      return results;
+   }
+
+   // compares items with their files, header items' files ending in ":"
+   private static void assertItems(List<Item> items, String... expected)
+   {
+      ArrayList<String> actual = new ArrayList<String>();
+      for (Item item : items)
+         actual.add(item.getGroup().getFile() + (item.isHeader() ? ":" : ""));
+      Assert.assertEquals(Arrays.asList(expected), actual);
+   }
+}
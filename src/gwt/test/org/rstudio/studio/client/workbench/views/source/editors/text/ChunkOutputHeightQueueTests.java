@@ -0,0 +1,53 @@
+/*
+ * ChunkOutputHeightQueueTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+import junit.framework.Assert;
+
+public class ChunkOutputHeightQueueTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   public void testRepeatedChangesCoalesced()
+   {
+      // the queue only compares widgets until its frame runs, and the
+      // pending syncs are discarded before then, so no widget is needed
+      int before = ChunkOutputHeightQueue.getCoalescedCount();
+      for (int i = 0; i < 1000; i++)
+         ChunkOutputHeightQueue.add(DOC_ID, null);
+      ChunkOutputHeightQueue.remove(DOC_ID);
+
+      Assert.assertEquals(999, ChunkOutputHeightQueue.getCoalescedCount() - before);
+   }
+
+   public void testRemovedDocumentNotCoalesced()
+   {
+      int before = ChunkOutputHeightQueue.getCoalescedCount();
+      ChunkOutputHeightQueue.add(DOC_ID, null);
+      ChunkOutputHeightQueue.remove(DOC_ID);
+      ChunkOutputHeightQueue.add(DOC_ID, null);
+      ChunkOutputHeightQueue.remove(DOC_ID);
+
+      Assert.assertEquals(0, ChunkOutputHeightQueue.getCoalescedCount() - before);
+   }
+
+   private static final String DOC_ID = "chunk-output-height-queue-tests";
+}
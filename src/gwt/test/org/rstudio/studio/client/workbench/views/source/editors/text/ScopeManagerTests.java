@@ -0,0 +1,233 @@
+/*
+ * ScopeManagerTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text;
+
+import java.util.ArrayList;
+
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Position;
+
+import junit.framework.Assert;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.junit.client.GWTTestCase;
+
+// Checks how a scope tree is kept up to date as a document is edited,
+// replaying the scope events a scope tree manager would produce for a
+// document of nested brace scopes.
+public class ScopeManagerTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   public void testReparseIsBounded()
+   {
+      withScopeSupport(() ->
+      {
+         for (int size : new int[] { SMALL_SIZE, LARGE_SIZE })
+         {
+            ArrayList<Integer> rows = makeDocument(size);
+            ScopeManager manager = parse(rows);
+
+            // typing in a row in the middle of the document only reparses
+            // the rows around it
+            int reparsed = edit(manager, rows, size / 2 + 5, 0);
+            Assert.assertTrue(
+                  "Reparsed " + reparsed + " of " + size + " rows",
+                  reparsed <= MAX_ROWS_REPARSED);
+            assertSameScopes(parse(rows), manager);
+         }
+      });
+   }
+
+   public void testInsertedAndRemovedRows()
+   {
+      withScopeSupport(() ->
+      {
+         ArrayList<Integer> rows = makeDocument(SMALL_SIZE);
+         ScopeManager manager = parse(rows);
+
+         // insert a new row, then a new scope, in the middle of the document
+         int row = SMALL_SIZE / 2 + 5;
+         rows.add(row, PLAIN);
+         Assert.assertTrue(edit(manager, rows, row, 1) <= MAX_ROWS_REPARSED);
+         assertSameScopes(parse(rows), manager);
+
+         rows.add(row, CLOSE);
+         rows.add(row, OPEN);
+         edit(manager, rows, row, 2);
+         assertSameScopes(parse(rows), manager);
+
+         // remove them again
+         rows.remove(row);
+         rows.remove(row);
+         rows.remove(row);
+         Assert.assertTrue(edit(manager, rows, row, -3) <= MAX_ROWS_REPARSED);
+         assertSameScopes(parse(rows), manager);
+      });
+   }
+
+   public void testUnbalancedEditReparsesToEnd()
+   {
+      withScopeSupport(() ->
+      {
+         ArrayList<Integer> rows = makeDocument(SMALL_SIZE);
+         ScopeManager manager = parse(rows);
+
+         // an unmatched brace changes the scopes of every following row
+         int row = SMALL_SIZE / 2 + 5;
+         rows.set(row, OPEN);
+         edit(manager, rows, row, 0);
+         assertSameScopes(parse(rows), manager);
+
+         rows.set(row, PLAIN);
+         edit(manager, rows, row, 0);
+         assertSameScopes(parse(rows), manager);
+      });
+   }
+
+   public void testScopesOutsideChangedRowsKept()
+   {
+      withScopeSupport(() ->
+      {
+         ArrayList<Integer> rows = makeDocument(SMALL_SIZE);
+         ScopeManager manager = parse(rows);
+         int row = SMALL_SIZE / 2 + 5;
+         Scope before = manager.getScopeList().get(row / 12 - 1);
+         Scope after = manager.getScopeList().get(row / 12 + 2);
+
+         // listeners such as the document outline rely on the scopes outside
+         // the reparsed rows being the same objects (moved by the rows
+         // inserted)
+         rows.add(row, PLAIN);
+         edit(manager, rows, row, 1);
+         Assert.assertSame(before, manager.getScopeList().get(row / 12 - 1));
+         Assert.assertSame(after, manager.getScopeList().get(row / 12 + 2));
+         Assert.assertEquals((row / 12 + 2) * 12 + 1,
+                             after.getBodyStart().getRow());
+      });
+   }
+
+   // reparses the document following a change at the given row, as
+   // ScopeTreeManager does, and returns the number of rows reparsed
+   private int edit(ScopeManager manager,
+                    ArrayList<Integer> rows,
+                    int row,
+                    int rowDelta)
+   {
+      Position resume = manager.invalidateFromIncremental(Position.create(row, 0));
+      int damageEndRow = row + 1 + Math.max(0, rowDelta);
+
+      int reparsed = 0;
+      for (int i = resume.getRow(); i < rows.size(); i++)
+      {
+         if (i > resume.getRow() && i >= damageEndRow &&
+             manager.restoreFrom(i, rowDelta))
+         {
+            break;
+         }
+
+         parseRow(manager, rows, i);
+         reparsed++;
+      }
+
+      manager.setParsePosition(Position.create(rows.size(), 0));
+      return reparsed;
+   }
+
+   private ScopeManager parse(ArrayList<Integer> rows)
+   {
+      ScopeManager manager = new ScopeManager();
+      for (int i = 0; i < rows.size(); i++)
+         parseRow(manager, rows, i);
+      manager.setParsePosition(Position.create(rows.size(), 0));
+      return manager;
+   }
+
+   private void parseRow(ScopeManager manager, ArrayList<Integer> rows, int row)
+   {
+      int kind = rows.get(row);
+      if (kind == OPEN)
+         manager.onScopeStart(Position.create(row, 0));
+      else if (kind == CLOSE)
+         manager.onScopeEnd(Position.create(row, 1));
+   }
+
+   // blocks of twelve rows, each a brace scope holding another
+   private ArrayList<Integer> makeDocument(int size)
+   {
+      int[] block = new int[] {
+         OPEN, PLAIN, PLAIN, OPEN, PLAIN, PLAIN,
+         PLAIN, PLAIN, CLOSE, PLAIN, CLOSE, PLAIN
+      };
+
+      ArrayList<Integer> rows = new ArrayList<Integer>();
+      for (int i = 0; i < size; i++)
+         rows.add(block[i % block.length]);
+      return rows;
+   }
+
+   private void assertSameScopes(ScopeManager expected, ScopeManager actual)
+   {
+      Assert.assertEquals(describe(expected.getScopeList()),
+                          describe(actual.getScopeList()));
+   }
+
+   private String describe(JsArray<Scope> scopes)
+   {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < scopes.length(); i++)
+      {
+         Scope scope = scopes.get(i);
+         builder.append("[")
+                .append(describe(scope.getBodyStart()))
+                .append("-")
+                .append(describe(scope.getEnd()))
+                .append(describe(scope.getChildren()))
+                .append("]");
+      }
+      return builder.toString();
+   }
+
+   private String describe(Position position)
+   {
+      if (position == null)
+         return "null";
+      return position.getRow() + ":" + position.getColumn();
+   }
+
+   private void withScopeSupport(Runnable test)
+   {
+      delayTestFinish(LOAD_TIMEOUT_MS);
+      AceEditor.load(() ->
+      {
+         test.run();
+         finishTest();
+      });
+   }
+
+   private static final int PLAIN = 0;
+   private static final int OPEN = 1;
+   private static final int CLOSE = 2;
+
+   private static final int SMALL_SIZE = 2000;
+   private static final int LARGE_SIZE = 16000;
+   // about a block's worth: an edit in a scope's first row reparses the
+   // whole scope
+   private static final int MAX_ROWS_REPARSED = 24;
+   private static final int LOAD_TIMEOUT_MS = 60000;
+}
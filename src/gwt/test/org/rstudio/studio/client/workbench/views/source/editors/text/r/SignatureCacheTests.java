@@ -0,0 +1,208 @@
+/*
+ * SignatureCacheTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text.r;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.rstudio.studio.client.common.codetools.Completions;
+import org.rstudio.studio.client.common.codetools.RCompletionType;
+import org.rstudio.studio.client.workbench.views.environment.events.EnvironmentRefreshEvent;
+import org.rstudio.studio.client.workbench.views.environment.events.GlobalEnvironmentChangedEvent;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayBoolean;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.junit.client.GWTTestCase;
+
+import junit.framework.Assert;
+
+public class SignatureCacheTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   public void testGlobalEnvironmentChangesDropEntries()
+   {
+      SignatureCache cache = new SignatureCache(new FakeIndex());
+      cache.put("foo", "", "(x)");
+      cache.put("bar", "", "(y)");
+      cache.put("foo", "package:pkg", "(z)");
+
+      cache.onGlobalEnvironmentChanged(new GlobalEnvironmentChangedEvent(
+            names("foo", "baz")));
+      Assert.assertNull(cache.get("foo", ""));
+      Assert.assertEquals("(y)", cache.get("bar", ""));
+      Assert.assertEquals("(z)", cache.get("foo", "package:pkg"));
+
+      // without names, anything in the global environment may have changed
+      cache.onGlobalEnvironmentChanged(new GlobalEnvironmentChangedEvent(null));
+      Assert.assertNull(cache.get("bar", ""));
+      Assert.assertEquals("(z)", cache.get("foo", "package:pkg"));
+   }
+
+   public void testUnqualifiedEntriesDroppedOnRefresh()
+   {
+      SignatureCache cache = new SignatureCache(new FakeIndex());
+      cache.put("foo", "", "(x)");
+      cache.put("lm", "package:stats", "(formula, data)");
+      cache.put("stats::glm", "", "(formula, family)");
+
+      cache.onEnvironmentRefresh(new EnvironmentRefreshEvent());
+      Assert.assertNull(cache.get("foo", ""));
+      Assert.assertEquals("(formula, data)", cache.get("lm", "package:stats"));
+      Assert.assertEquals("(formula, family)", cache.get("stats::glm", ""));
+   }
+
+   public void testAssignedFunctionDropped()
+   {
+      SignatureCache cache = new SignatureCache(new FakeIndex());
+      cache.put("foo", "", "(x)");
+      cache.put("bar", "", "(y)");
+      cache.put("foo", "package:pkg", "(z)");
+
+      cache.removeFunction("foo");
+      Assert.assertNull(cache.get("foo", ""));
+      Assert.assertEquals("(y)", cache.get("bar", ""));
+      Assert.assertEquals("(z)", cache.get("foo", "package:pkg"));
+   }
+
+   public void testAnsweredFromPackageIndex()
+   {
+      SignatureCache cache = new SignatureCache(new FakeIndex());
+      Assert.assertEquals("(formula, data)", cache.get("stats::lm", ""));
+      Assert.assertEquals("(formula, data)", cache.get("lm", "package:stats"));
+      Assert.assertNull(cache.get("lm", ""));
+
+      // the session infers these from write.table
+      Assert.assertNull(cache.get("utils::write.csv", ""));
+   }
+
+   public void testFilledFromCompletions()
+   {
+      FakeIndex index = new FakeIndex();
+      SignatureCache cache = new SignatureCache(index);
+      cache.setLoadedPackages(loaded("stats", "utils"));
+
+      cache.addCompletions(completions(
+            "lm", "stats", RCompletionType.FUNCTION,
+            "mine", "R_GlobalEnv", RCompletionType.FUNCTION,
+            "data = ", "lm", RCompletionType.ARGUMENT));
+
+      Assert.assertEquals("(formula, data)", cache.get("lm", ""));
+      Assert.assertNull(cache.get("mine", ""));
+      Assert.assertEquals("[stats]", index.indexed.toString());
+
+      // what was learned from completions is kept until an object of the
+      // same name changes
+      Assert.assertEquals("(formula, data)", cache.get("lm", ""));
+      cache.onGlobalEnvironmentChanged(new GlobalEnvironmentChangedEvent(
+            names("lm")));
+      Assert.assertNull(cache.get("lm", ""));
+   }
+
+   public void testMaskedInCompletions()
+   {
+      SignatureCache cache = new SignatureCache(new FakeIndex());
+      cache.setLoadedPackages(loaded("stats"));
+      cache.addCompletions(completions("lm", "stats", RCompletionType.FUNCTION));
+      Assert.assertEquals("(formula, data)", cache.get("lm", ""));
+
+      // a function of the same name defined in the global environment
+      cache.addCompletions(completions("lm", "R_GlobalEnv", RCompletionType.FUNCTION));
+      Assert.assertNull(cache.get("lm", ""));
+   }
+
+   public void testPackageChangesDropEntries()
+   {
+      SignatureCache cache = new SignatureCache(new FakeIndex());
+      cache.setLoadedPackages(loaded("stats", "utils"));
+      cache.put("foo", "", "(x)");
+      cache.put("lm", "package:stats", "(old)");
+      cache.put("head", "package:utils", "(x, n)");
+
+      HashMap<String, String> updated = loaded("stats", "utils");
+      updated.put("stats", "2.0");
+      cache.setLoadedPackages(updated);
+
+      Assert.assertNull(cache.get("foo", ""));
+      Assert.assertEquals("(formula, data)", cache.get("lm", "package:stats"));
+      Assert.assertEquals("(x, n)", cache.get("head", "package:utils"));
+   }
+
+   private static class FakeIndex implements SignatureCache.PackageIndex
+   {
+      @Override
+      public String getArgs(String pkg, String name)
+      {
+         if (pkg.equals("stats") && name.equals("lm"))
+            return "(formula, data)";
+         if (pkg.equals("utils") && name.startsWith("write."))
+            return "(x, file)";
+         return null;
+      }
+
+      @Override
+      public void ensureIndexed(String pkg)
+      {
+         if (!indexed.contains(pkg))
+            indexed.add(pkg);
+      }
+
+      public final ArrayList<String> indexed = new ArrayList<String>();
+   }
+
+   private static HashMap<String, String> loaded(String... packages)
+   {
+      HashMap<String, String> loaded = new HashMap<String, String>();
+      for (String pkg : packages)
+         loaded.put(pkg, "1.0");
+      return loaded;
+   }
+
+   private static JsArrayString names(String... names)
+   {
+      JsArrayString array = JavaScriptObject.createArray().cast();
+      for (String name : names)
+         array.push(name);
+      return array;
+   }
+
+   // completions given as (name, package, type) triples
+   private static Completions completions(Object... entries)
+   {
+      JsArrayString names = JavaScriptObject.createArray().cast();
+      JsArrayString packages = JavaScriptObject.createArray().cast();
+      JsArrayBoolean quote = JavaScriptObject.createArray().cast();
+      JsArrayInteger types = JavaScriptObject.createArray().cast();
+      JsArrayString meta = JavaScriptObject.createArray().cast();
+      for (int i = 0; i < entries.length; i += 3)
+      {
+         names.push((String) entries[i]);
+         packages.push((String) entries[i + 1]);
+         quote.push(false);
+         types.push((Integer) entries[i + 2]);
+         meta.push("");
+      }
+
+      return Completions.createCompletions(
+            "", names, packages, quote, types, meta, "",
+            false, false, false, null, "R");
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * DocumentEditLogTests.java
+ *
+ * Copyright (C) 2009-19 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.rstudio.studio.client.workbench.views.source.model.DocumentEditLog.Edit;
+
+import com.google.gwt.junit.client.GWTTestCase;
+
+import junit.framework.Assert;
+
+public class DocumentEditLogTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudioTests";
+   }
+
+   public void testApplyMultipleEdits()
+   {
+      // each edit's offset is relative to the result of the ones before it
+      Assert.assertEquals("goodbye cruel world", DocumentEditLog.apply(
+            "hello world",
+            Arrays.asList(new Edit(0, 5, "goodbye"),
+                          new Edit(8, 0, "cruel "))));
+   }
+
+   public void testApplyOverlappingEdits()
+   {
+      // the second edit removes part of the text the first one wrote
+      Assert.assertEquals("aXef", DocumentEditLog.apply(
+            "abcdef",
+            Arrays.asList(new Edit(1, 2, "XYZ"),
+                          new Edit(2, 3, ""))));
+   }
+
+   public void testApplyLineEndings()
+   {
+      Assert.assertEquals("a\nb\r\nc\n", DocumentEditLog.apply(
+            "a\r\nb\nc",
+            Arrays.asList(new Edit(1, 2, "\n"),
+                          new Edit(3, 1, "\r\n"),
+                          new Edit(6, 0, "\n"))));
+   }
+
+   public void testApplyNoEdits()
+   {
+      Assert.assertEquals("abc",
+            DocumentEditLog.apply("abc", new ArrayList<Edit>()));
+   }
+
+   public void testTypingMerged()
+   {
+      DocumentEditLog log = new DocumentEditLog(null);
+      List<Edit> raw = record(log,
+            new Edit(5, 0, "a"),
+            new Edit(6, 0, "b"),
+            new Edit(7, 0, "c"),
+            new Edit(7, 1, ""));
+
+      List<Edit> edits = log.takeEdits();
+      Assert.assertEquals(1, edits.size());
+      Assert.assertEquals(5, edits.get(0).offset);
+      Assert.assertEquals(0, edits.get(0).length);
+      Assert.assertEquals("ab", edits.get(0).text);
+      assertSameResult("0123456789", raw, edits);
+   }
+
+   public void testOverlappingEditsMerged()
+   {
+      DocumentEditLog log = new DocumentEditLog(null);
+
+      // delete from before the inserted text into it, then replace across
+      // its end
+      List<Edit> raw = record(log,
+            new Edit(2, 0, "xyz"),
+            new Edit(1, 3, ""),
+            new Edit(1, 3, "Q"));
+
+      List<Edit> edits = log.takeEdits();
+      Assert.assertEquals(1, edits.size());
+      assertSameResult("0123456789", raw, edits);
+      Assert.assertEquals("0Q456789",
+            DocumentEditLog.apply("0123456789", edits));
+   }
+
+   public void testInsertAndDeleteCancelOut()
+   {
+      DocumentEditLog log = new DocumentEditLog(null);
+      record(log, new Edit(3, 0, "abc"), new Edit(3, 3, ""));
+      Assert.assertTrue(log.isEmpty());
+   }
+
+   public void testDisjointEditsKeptInOrder()
+   {
+      DocumentEditLog log = new DocumentEditLog(null);
+      List<Edit> raw = record(log,
+            new Edit(8, 1, "x\r\ny"),
+            new Edit(0, 0, "\n"),
+            new Edit(5, 2, ""));
+
+      List<Edit> edits = log.takeEdits();
+      Assert.assertEquals(3, edits.size());
+      assertSameResult("0123456789", raw, edits);
+   }
+
+   public void testRestoredEditsPrecedeLaterOnes()
+   {
+      DocumentEditLog log = new DocumentEditLog(null);
+      List<Edit> raw = record(log, new Edit(0, 1, "A"), new Edit(5, 0, "b"));
+      List<Edit> taken = log.takeEdits();
+
+      // edits made while the taken ones were being saved
+      raw.addAll(record(log, new Edit(6, 0, "c"), new Edit(9, 1, "")));
+      log.restoreEdits(taken);
+
+      assertSameResult("0123456789", raw, log.takeEdits());
+   }
+
+   public void testOverflow()
+   {
+      DocumentEditLog log = new DocumentEditLog(null);
+      for (int i = 0; i < 300; i++)
+         log.add(i * 2, 0, "x");
+
+      Assert.assertTrue(log.isOverflowed());
+      Assert.assertTrue(log.isEmpty());
+
+      log.clear();
+      Assert.assertFalse(log.isOverflowed());
+   }
+
+   // records the edits in the log, returning them as a list
+   private static List<Edit> record(DocumentEditLog log, Edit... edits)
+   {
+      for (Edit edit : edits)
+         log.add(edit.offset, edit.length, edit.text);
+      return new ArrayList<Edit>(Arrays.asList(edits));
+   }
+
+   private static void assertSameResult(String contents,
+                                        List<Edit> raw,
+                                        List<Edit> logged)
+   {
+      String expected = contents;
+      for (Edit edit : raw)
+      {
+         expected = expected.substring(0, edit.offset) +
+                    edit.text +
+                    expected.substring(edit.offset + edit.length);
+      }
+      Assert.assertEquals(expected, DocumentEditLog.apply(contents, logged));
+   }
+}